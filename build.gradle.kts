@@ -26,6 +26,14 @@ repositories {
     mavenCentral()
     maven(url = "https://oss.sonatype.org/content/repositories/snapshots")
 }
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+    }
+}
+configurations["jmhImplementation"].extendsFrom(configurations.testImplementation.get())
+configurations["jmhRuntimeOnly"].extendsFrom(configurations.testRuntimeOnly.get())
 dependencies {
     implementation("org.eclipse.keypop:keypop-reader-java-api:2.0.1")
     implementation("org.eclipse.keypop:keypop-card-java-api:2.0.1")
@@ -42,6 +50,8 @@ dependencies {
     testImplementation("org.junit.vintage:junit-vintage-engine")
     testImplementation("org.assertj:assertj-core:3.25.3")
     testImplementation("org.mockito:mockito-core:5.11.0")
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 val javaSourceLevel: String by project
@@ -73,6 +83,13 @@ tasks {
         }
         finalizedBy("jacocoTestReport")
     }
+    register<JavaExec>("jmh") {
+        group = "verification"
+        description = "Runs the JMH benchmarks, JMH options can be passed with -Pjmh.args=\"...\"."
+        classpath = sourceSets["jmh"].runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        args((project.findProperty("jmh.args") as String? ?: "").split(" ").filter { it.isNotBlank() })
+    }
     jacocoTestReport {
         dependsOn("test")
         reports {
@@ -0,0 +1,139 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.CalypsoCardApiFactory;
+import org.eclipse.keypop.calypso.card.GetDataTag;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.ChannelControl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the duration of a PKI transaction when the card certificate is verified in the calling
+ * thread while parsing the response to the "open secure session" command (serialized mode) or in
+ * the background as soon as the opening is prepared (overlapped mode), see {@link
+ * AsymmetricCryptoSecuritySettingExtension#setCardCertificateVerificationExecutor}.
+ *
+ * <p>The card certificate is read during the card selection. The card takes {@value
+ * #APDU_LATENCY_MILLIS} ms to process each APDU and the certificate verification takes {@value
+ * #VERIFICATION_LATENCY_MILLIS} ms, as a signature verification on a terminal would.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.args="CardCertificateVerificationBenchmark"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CardCertificateVerificationBenchmark {
+
+  private static final long APDU_LATENCY_MILLIS = 2;
+  private static final long VERIFICATION_LATENCY_MILLIS = 5;
+  private static final byte SFI_EVENT_LOG = 0x08;
+  private static final byte SFI_COUNTERS = 0x19;
+  private static final int RECORD_SIZE = 29;
+  private static final byte[] SERIAL_NUMBER = HexUtil.toByteArray("0000000011223344");
+  private static final byte[] EVENT = new byte[RECORD_SIZE];
+
+  @Param({"SERIALIZED", "OVERLAPPED"})
+  public String mode;
+
+  private CalypsoCardApiFactory calypsoCardApiFactory;
+  private AsymmetricCryptoSecuritySetting securitySetting;
+  private ExecutorService executor;
+  private SimulatedCardReader cardReader;
+  private SimulatedCalypsoCard.State cardState;
+
+  @Setup
+  public void setUp() {
+    calypsoCardApiFactory = CalypsoExtensionService.getInstance().getCalypsoCardApiFactory();
+    securitySetting =
+        calypsoCardApiFactory
+            .createAsymmetricCryptoSecuritySetting(new SimulatedCryptoServices.AsymmetricFactory())
+            .addPcaCertificate(new SimulatedCryptoServices.Pca())
+            .addCardCertificateParser(
+                new SimulatedCryptoServices.CardCertificateParserImpl(
+                    VERIFICATION_LATENCY_MILLIS, TimeUnit.MILLISECONDS));
+    if (mode.equals("OVERLAPPED")) {
+      executor = Executors.newSingleThreadExecutor();
+      CalypsoExtensionService.getInstance()
+          .getAsymmetricCryptoSecuritySettingExtension(securitySetting)
+          .setCardCertificateVerificationExecutor(executor);
+    }
+    SimulatedCalypsoCard card =
+        new SimulatedCalypsoCard(SERIAL_NUMBER, SimulatedCalypsoCard.APP_TYPE_PKI)
+            .addFile(0x2010, SFI_EVENT_LOG, ElementaryFile.Type.CYCLIC, RECORD_SIZE, 3)
+            .addFile(0x2069, SFI_COUNTERS, ElementaryFile.Type.COUNTERS, RECORD_SIZE, 1)
+            .setCounter(SFI_COUNTERS, 1, 0xFFFFFF)
+            .setCardCertificate(SimulatedCryptoServices.buildCardCertificate(SERIAL_NUMBER));
+    cardReader =
+        new SimulatedCardReader("BENCHMARK_READER", card)
+            .setApduLatency(APDU_LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+    cardState = card.saveState();
+  }
+
+  @Setup(Level.Iteration)
+  public void restoreCard() {
+    cardReader.getCard().restoreState(cardState);
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  @Benchmark
+  public CalypsoCardAdapter pkiTransaction() throws Exception {
+    CalypsoCardSelectionExtensionAdapter cardSelectionExtension =
+        (CalypsoCardSelectionExtensionAdapter)
+            calypsoCardApiFactory.createCalypsoCardSelectionExtension();
+    cardSelectionExtension.prepareGetData(GetDataTag.CARD_CERTIFICATE);
+    CalypsoCardAdapter card =
+        (CalypsoCardAdapter)
+            cardSelectionExtension.parse(
+                new TestDtoAdapters.CardSelectionResponseAdapter(
+                    new TestDtoAdapters.ApduResponseAdapter(
+                        cardReader.getCard().getSelectApplicationResponse()),
+                    cardReader.transmitCardRequest(
+                        cardSelectionExtension.getCardSelectionRequest().getCardRequest(),
+                        org.eclipse.keypop.card.ChannelControl.KEEP_OPEN)));
+    calypsoCardApiFactory
+        .createSecurePkiModeTransactionManager(cardReader, card, securitySetting)
+        .prepareOpenSecureSession()
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    return card;
+  }
+}
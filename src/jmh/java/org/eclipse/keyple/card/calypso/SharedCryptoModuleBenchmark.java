@@ -0,0 +1,143 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.CalypsoCardApiFactory;
+import org.eclipse.keypop.calypso.card.WriteAccessLevel;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.transaction.ChannelControl;
+import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the number of secure transactions per second performed with a single crypto module
+ * shared by several readers, see {@link
+ * SymmetricCryptoSecuritySettingExtension#enableCryptoModuleSharing(int)}.
+ *
+ * <p>Each thread plays a reader with its own card and performs a ticketing validation in a secure
+ * session (read the counter, decrease it, append an event). All the threads share the same security
+ * setting, hence the same crypto module. The scores of the benchmarks of the different thread
+ * counts give the throughput per crypto module and the cost of the arbitration.
+ *
+ * <p>Run with {@code ./gradlew jmh -Pjmh.args="SharedCryptoModuleBenchmark"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharedCryptoModuleBenchmark {
+
+  private static final byte SFI_EVENT_LOG = 0x08;
+  private static final byte SFI_COUNTERS = 0x19;
+  private static final int RECORD_SIZE = 29;
+  private static final byte[] SERIAL_NUMBER = HexUtil.toByteArray("0000000011223344");
+  private static final byte[] EVENT = new byte[RECORD_SIZE];
+
+  /** State shared by all the readers. */
+  @State(Scope.Benchmark)
+  public static class CryptoModule {
+
+    private CalypsoCardApiFactory calypsoCardApiFactory;
+    private SymmetricCryptoSecuritySetting securitySetting;
+
+    @Setup
+    public void setUp() {
+      calypsoCardApiFactory = CalypsoExtensionService.getInstance().getCalypsoCardApiFactory();
+      securitySetting =
+          calypsoCardApiFactory.createSymmetricCryptoSecuritySetting(
+              new SimulatedCryptoServices.SymmetricFactory());
+      CalypsoExtensionService.getInstance()
+          .getSymmetricCryptoSecuritySettingExtension(securitySetting)
+          .enableCryptoModuleSharing(10000);
+    }
+  }
+
+  /** State of a reader. */
+  @State(Scope.Thread)
+  public static class Reader {
+
+    private SimulatedCardReader cardReader;
+    private SimulatedCalypsoCard.State cardState;
+
+    @Setup
+    public void setUp() {
+      SimulatedCalypsoCard card =
+          new SimulatedCalypsoCard(SERIAL_NUMBER, SimulatedCalypsoCard.APP_TYPE_REGULAR)
+              .addFile(0x2010, SFI_EVENT_LOG, ElementaryFile.Type.CYCLIC, RECORD_SIZE, 3)
+              .addFile(0x2069, SFI_COUNTERS, ElementaryFile.Type.COUNTERS, RECORD_SIZE, 1)
+              .setCounter(SFI_COUNTERS, 1, 0xFFFFFF);
+      cardReader = new SimulatedCardReader("BENCHMARK_READER", card);
+      cardState = card.saveState();
+    }
+
+    @Setup(Level.Iteration)
+    public void restoreCard() {
+      cardReader.getCard().restoreState(cardState);
+    }
+  }
+
+  private static CalypsoCardAdapter secureTransaction(CryptoModule cryptoModule, Reader reader)
+      throws CardCommandException {
+    CalypsoCardAdapter card =
+        new CalypsoCardAdapter(
+            new TestDtoAdapters.CardSelectionResponseAdapter(
+                new TestDtoAdapters.ApduResponseAdapter(
+                    reader.cardReader.getCard().getSelectApplicationResponse())));
+    cryptoModule
+        .calypsoCardApiFactory
+        .createSecureRegularModeTransactionManager(
+            reader.cardReader, card, cryptoModule.securitySetting)
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    return card;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public CalypsoCardAdapter oneReader(CryptoModule cryptoModule, Reader reader)
+      throws CardCommandException {
+    return secureTransaction(cryptoModule, reader);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public CalypsoCardAdapter fourReaders(CryptoModule cryptoModule, Reader reader)
+      throws CardCommandException {
+    return secureTransaction(cryptoModule, reader);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public CalypsoCardAdapter sixteenReaders(CryptoModule cryptoModule, Reader reader)
+      throws CardCommandException {
+    return secureTransaction(cryptoModule, reader);
+  }
+}
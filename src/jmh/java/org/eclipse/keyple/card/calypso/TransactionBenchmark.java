@@ -0,0 +1,188 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.CalypsoCardApiFactory;
+import org.eclipse.keypop.calypso.card.WriteAccessLevel;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.ChannelControl;
+import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.TransactionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the CPU time and the allocations of a complete card transaction for each kind of
+ * transaction manager, starting from the parsing of the selection response.
+ *
+ * <p>Each benchmark replays a typical ticketing validation: read the environment, the contracts and
+ * the counters, open a secure session (when applicable), decrease a counter, append an event and
+ * close the session. The card and the crypto services are in-process simulations, see {@link
+ * SimulatedCalypsoCard} and {@link SimulatedCryptoServices}; the content of the cards is restored
+ * before each iteration.
+ *
+ * <p>Run with {@code ./gradlew jmh} or {@code ./gradlew jmh -Pjmh.args="-prof gc"} to also measure
+ * the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionBenchmark {
+
+  private static final byte SFI_ENVIRONMENT = 0x07;
+  private static final byte SFI_EVENT_LOG = 0x08;
+  private static final byte SFI_CONTRACTS = 0x09;
+  private static final byte SFI_COUNTERS = 0x19;
+  private static final int NB_CONTRACTS = 4;
+  private static final int RECORD_SIZE = 29;
+  private static final byte[] SERIAL_NUMBER = HexUtil.toByteArray("0000000011223344");
+  private static final byte[] EVENT = new byte[RECORD_SIZE];
+
+  private CalypsoCardApiFactory calypsoCardApiFactory;
+  private SymmetricCryptoSecuritySetting symmetricCryptoSecuritySetting;
+  private AsymmetricCryptoSecuritySetting asymmetricCryptoSecuritySetting;
+  private SimulatedCardReader regularCardReader;
+  private SimulatedCardReader extendedCardReader;
+  private SimulatedCardReader pkiCardReader;
+  private SimulatedCalypsoCard.State regularCardState;
+  private SimulatedCalypsoCard.State extendedCardState;
+  private SimulatedCalypsoCard.State pkiCardState;
+
+  @Setup
+  public void setUp() {
+    calypsoCardApiFactory = CalypsoExtensionService.getInstance().getCalypsoCardApiFactory();
+    symmetricCryptoSecuritySetting =
+        calypsoCardApiFactory.createSymmetricCryptoSecuritySetting(
+            new SimulatedCryptoServices.SymmetricFactory());
+    asymmetricCryptoSecuritySetting =
+        calypsoCardApiFactory
+            .createAsymmetricCryptoSecuritySetting(new SimulatedCryptoServices.AsymmetricFactory())
+            .addPcaCertificate(new SimulatedCryptoServices.Pca())
+            .addCardCertificateParser(new SimulatedCryptoServices.CardCertificateParserImpl());
+    regularCardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    extendedCardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_EXTENDED);
+    pkiCardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    regularCardState = regularCardReader.getCard().saveState();
+    extendedCardState = extendedCardReader.getCard().saveState();
+    pkiCardState = pkiCardReader.getCard().saveState();
+  }
+
+  @Setup(Level.Iteration)
+  public void restoreCards() {
+    regularCardReader.getCard().restoreState(regularCardState);
+    extendedCardReader.getCard().restoreState(extendedCardState);
+    pkiCardReader.getCard().restoreState(pkiCardState);
+  }
+
+  private static SimulatedCardReader createCardReader(byte applicationType) {
+    SimulatedCalypsoCard card =
+        new SimulatedCalypsoCard(SERIAL_NUMBER, applicationType)
+            .addFile(0x2001, SFI_ENVIRONMENT, ElementaryFile.Type.LINEAR, RECORD_SIZE, 1)
+            .addFile(0x2010, SFI_EVENT_LOG, ElementaryFile.Type.CYCLIC, RECORD_SIZE, 3)
+            .addFile(0x2020, SFI_CONTRACTS, ElementaryFile.Type.LINEAR, RECORD_SIZE, NB_CONTRACTS)
+            .addFile(0x2069, SFI_COUNTERS, ElementaryFile.Type.COUNTERS, RECORD_SIZE, 1)
+            .setCounter(SFI_COUNTERS, 1, 0xFFFFFF)
+            .setCardCertificate(SimulatedCryptoServices.buildCardCertificate(SERIAL_NUMBER));
+    return new SimulatedCardReader("BENCHMARK_READER", card);
+  }
+
+  private static CalypsoCardAdapter selectCard(SimulatedCardReader cardReader)
+      throws CardCommandException {
+    return new CalypsoCardAdapter(
+        new TestDtoAdapters.CardSelectionResponseAdapter(
+            new TestDtoAdapters.ApduResponseAdapter(
+                cardReader.getCard().getSelectApplicationResponse())));
+  }
+
+  private static <T extends TransactionManager<T>> T prepareReadTicketingData(T cardTransaction) {
+    return cardTransaction
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .prepareReadRecords(SFI_CONTRACTS, 1, NB_CONTRACTS, RECORD_SIZE)
+        .prepareReadCounter(SFI_COUNTERS, 1);
+  }
+
+  @Benchmark
+  public CalypsoCardAdapter freeTransaction() throws CardCommandException {
+    CalypsoCardAdapter card = selectCard(regularCardReader);
+    prepareReadTicketingData(
+            calypsoCardApiFactory.createFreeTransactionManager(regularCardReader, card))
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    return card;
+  }
+
+  @Benchmark
+  public CalypsoCardAdapter secureRegularModeTransaction() throws CardCommandException {
+    CalypsoCardAdapter card = selectCard(regularCardReader);
+    prepareReadTicketingData(
+            calypsoCardApiFactory
+                .createSecureRegularModeTransactionManager(
+                    regularCardReader, card, symmetricCryptoSecuritySetting)
+                .prepareOpenSecureSession(WriteAccessLevel.DEBIT))
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    symmetricCryptoSecuritySetting.initCryptoContextForNextTransaction();
+    return card;
+  }
+
+  @Benchmark
+  public CalypsoCardAdapter secureExtendedModeTransaction() throws CardCommandException {
+    CalypsoCardAdapter card = selectCard(extendedCardReader);
+    prepareReadTicketingData(
+            calypsoCardApiFactory
+                .createSecureExtendedModeTransactionManager(
+                    extendedCardReader, card, symmetricCryptoSecuritySetting)
+                .prepareOpenSecureSession(WriteAccessLevel.DEBIT))
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    symmetricCryptoSecuritySetting.initCryptoContextForNextTransaction();
+    return card;
+  }
+
+  @Benchmark
+  public CalypsoCardAdapter securePkiModeTransaction() throws CardCommandException {
+    CalypsoCardAdapter card = selectCard(pkiCardReader);
+    prepareReadTicketingData(
+            calypsoCardApiFactory
+                .createSecurePkiModeTransactionManager(
+                    pkiCardReader, card, asymmetricCryptoSecuritySetting)
+                .prepareOpenSecureSession())
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    return card;
+  }
+}
@@ -11,8 +11,20 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
@@ -26,13 +38,19 @@
 import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.CertificateValidationException;
 import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.*;
 import org.eclipse.keypop.calypso.crypto.asymmetric.transaction.spi.AsymmetricCryptoCardTransactionManagerFactorySpi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Adapter of {@link AsymmetricCryptoSecuritySetting}.
  *
  * @since 3.1.0
  */
-final class AsymmetricCryptoSecuritySettingAdapter implements AsymmetricCryptoSecuritySetting {
+final class AsymmetricCryptoSecuritySettingAdapter
+    implements AsymmetricCryptoSecuritySetting, AsymmetricCryptoSecuritySettingExtension {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(AsymmetricCryptoSecuritySettingAdapter.class);
 
   private static final String MSG_THE_PROVIDED_PCA_CERTIFICATE_MUST_IMPLEMENT_PCA_CERTIFICATE_SPI =
       "The provided 'pcaCertificate' must implement 'PcaCertificateSpi'";
@@ -57,9 +75,19 @@ final class AsymmetricCryptoSecuritySettingAdapter implements AsymmetricCryptoSe
 
   private final AsymmetricCryptoCardTransactionManagerFactorySpi
       cryptoCardTransactionManagerFactorySpi;
-  private final Map<String, CaCertificateContentSpi> caCertificates = new HashMap<>();
+  private volatile ConcurrentMap<ByteBuffer, CaCertificateContentSpi> caCertificates =
+      new ConcurrentHashMap<>();
   private final Map<Byte, CaCertificateParserSpi> caCertificateParsers = new HashMap<>();
   private final Map<Byte, CardCertificateParserSpi> cardCertificateParsers = new HashMap<>();
+  private final Object certificateStoreUpdateLock = new Object();
+  private final Object certificateReloadLock = new Object();
+  private List<CertificateStoreUpdate> certificateStoreUpdatesDuringReload;
+  private CardPublicKeyCache cardPublicKeyCache;
+  private final Object caCertificatePersistenceLock = new Object();
+  private CaCertificateFileStore caCertificateFileStore;
+  private Executor caCertificatePersistenceExecutor;
+  private CompletableFuture<Void> caCertificatePersistence;
+  private Executor cardCertificateVerificationExecutor;
 
   /**
    * Constructor.
@@ -95,25 +123,16 @@ public AsymmetricCryptoSecuritySetting addPcaCertificate(PcaCertificate pcaCerti
     }
     PcaCertificateSpi pcaCertificateSpi = (PcaCertificateSpi) pcaCertificate;
 
-    // Check certificate and get content
-    CaCertificateContentSpi certificateContent;
-    try {
-      certificateContent = pcaCertificateSpi.checkCertificateAndGetContent();
-    } catch (CertificateValidationException e) {
-      throw new InvalidCertificateException(MSG_INVALID_CERTIFICATE + e.getMessage(), e);
-    } catch (AsymmetricCryptoException e) {
-      throw new CryptoException(
-          MSG_AN_ERROR_OCCURS_DURING_THE_CHECK_OF_THE_CERTIFICATE + e.getMessage(), e);
-    }
-
-    // Save the certificate content into the store
-    String pcaKeyRef = HexUtil.toHex(certificateContent.getPublicKeyReference());
-    if (caCertificates.containsKey(pcaKeyRef)) {
-      throw new IllegalStateException(
-          MSG_A_CERTIFICATE_IS_ALREADY_REGISTERED_FOR_THE_PROVIDED_PUBLIC_KEY_REFERENCE
-              + pcaKeyRef);
+    // Check certificate and save its content into the store
+    CaCertificateContentSpi pcaCertificateContent = checkPcaCertificate(pcaCertificateSpi);
+    synchronized (certificateStoreUpdateLock) {
+      registerCertificateContent(caCertificates, pcaCertificateContent);
+      recordCertificateStoreUpdate(
+          store ->
+              store.putIfAbsent(
+                  toKey(pcaCertificateContent.getPublicKeyReference().clone()),
+                  pcaCertificateContent));
     }
-    caCertificates.put(pcaKeyRef, certificateContent);
     return this;
   }
 
@@ -132,35 +151,348 @@ public AsymmetricCryptoSecuritySetting addCaCertificate(CaCertificate caCertific
     }
     CaCertificateSpi caCertificateSpi = (CaCertificateSpi) caCertificate;
 
-    // Get the issuer public key reference
-    String issuerKeyRef = HexUtil.toHex(caCertificateSpi.getIssuerPublicKeyReference());
+    // Check the CA certificate using the issuer's certificate content and save its content into the
+    // store
+    CaCertificateContentSpi caCertificateContent =
+        checkCaCertificate(
+            caCertificateSpi, getIssuerCertificateContent(caCertificates, caCertificateSpi));
+    synchronized (certificateStoreUpdateLock) {
+      registerCertificateContent(caCertificates, caCertificateContent);
+      recordCertificateStoreUpdate(
+          store -> replayCaCertificates(store, Collections.singletonList(caCertificateSpi)));
+    }
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public AsymmetricCryptoSecuritySetting addCaCertificates(
+      Collection<? extends CaCertificate> caCertificates) {
+    List<CaCertificateSpi> caCertificateSpis = toCaCertificateSpis(caCertificates);
+    synchronized (certificateStoreUpdateLock) {
+      ConcurrentMap<ByteBuffer, CaCertificateContentSpi> store =
+          new ConcurrentHashMap<>(this.caCertificates);
+      registerCaCertificates(store, caCertificateSpis);
+      this.caCertificates = store;
+      recordCertificateStoreUpdate(
+          updatedStore -> replayCaCertificates(updatedStore, caCertificateSpis));
+    }
+    return this;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public AsymmetricCryptoSecuritySetting reloadCertificates(
+      Collection<? extends PcaCertificate> pcaCertificates,
+      Collection<? extends CaCertificate> caCertificates) {
+    Assert.getInstance().notNull(pcaCertificates, "pcaCertificates");
+    List<PcaCertificateSpi> pcaCertificateSpis = new ArrayList<>(pcaCertificates.size());
+    for (PcaCertificate pcaCertificate : pcaCertificates) {
+      if (!(pcaCertificate instanceof PcaCertificateSpi)) {
+        throw new IllegalArgumentException(
+            MSG_THE_PROVIDED_PCA_CERTIFICATE_MUST_IMPLEMENT_PCA_CERTIFICATE_SPI);
+      }
+      pcaCertificateSpis.add((PcaCertificateSpi) pcaCertificate);
+    }
+    List<CaCertificateSpi> caCertificateSpis = toCaCertificateSpis(caCertificates);
+    synchronized (certificateReloadLock) {
+      synchronized (certificateStoreUpdateLock) {
+        certificateStoreUpdatesDuringReload = new ArrayList<>();
+      }
+      try {
+        ConcurrentMap<ByteBuffer, CaCertificateContentSpi> store = new ConcurrentHashMap<>();
+        for (CaCertificateContentSpi pcaCertificateContent :
+            checkInParallel(pcaCertificateSpis, this::checkPcaCertificate)) {
+          registerCertificateContent(store, pcaCertificateContent);
+        }
+        registerCaCertificates(store, caCertificateSpis);
+        synchronized (certificateStoreUpdateLock) {
+          for (CertificateStoreUpdate update : certificateStoreUpdatesDuringReload) {
+            update.applyTo(store);
+          }
+          this.caCertificates = store;
+          // The keys verified with the previous store, including the ones being verified, are
+          // dropped
+          if (cardPublicKeyCache != null) {
+            cardPublicKeyCache.clear();
+          }
+        }
+      } finally {
+        synchronized (certificateStoreUpdateLock) {
+          certificateStoreUpdatesDuringReload = null;
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Checks and registers the provided CA certificate read from a card.
+   *
+   * <p>Unlike {@link #addCaCertificate(CaCertificate)}, the certificate is ignored if a certificate
+   * is already registered for the same public key reference, which is the case when the same CA
+   * certificate has meanwhile been read from another card by a concurrent transaction.
+   *
+   * @param caCertificate The CA certificate.
+   * @return True if the certificate has been registered, false if it was already registered.
+   * @throws IllegalStateException If the issuer certificate is not registered.
+   * @throws InvalidCertificateException If the certificate is invalid.
+   * @throws CryptoException If an error occurs while checking the certificate.
+   * @since 3.1.7
+   */
+  boolean addCaCertificateReadFromCard(final CaCertificateSpi caCertificate) {
+    CaCertificateContentSpi caCertificateContent =
+        checkCaCertificate(
+            caCertificate, getIssuerCertificateContent(caCertificates, caCertificate));
+    synchronized (certificateStoreUpdateLock) {
+      if (caCertificates.putIfAbsent(
+              toKey(caCertificateContent.getPublicKeyReference().clone()), caCertificateContent)
+          != null) {
+        return false;
+      }
+      recordCertificateStoreUpdate(
+          store -> replayCaCertificates(store, Collections.singletonList(caCertificate)));
+    }
+    return true;
+  }
 
-    // Search the issuer certificate
-    CaCertificateContentSpi issuerCertificateContent = caCertificates.get(issuerKeyRef);
+  /**
+   * Records the provided update of the certificate store if a reload is in progress, in order to
+   * apply it to the new store.
+   *
+   * <p>Must be invoked while holding the certificate store update lock.
+   *
+   * @param update The update.
+   */
+  private void recordCertificateStoreUpdate(CertificateStoreUpdate update) {
+    if (certificateStoreUpdatesDuringReload != null) {
+      certificateStoreUpdatesDuringReload.add(update);
+    }
+  }
+
+  /**
+   * Checks and registers into the provided store the CA certificates added during a reload, in the
+   * order of the chain of trust.
+   *
+   * <p>The certificates already registered in the store are skipped, and the ones whose issuer is
+   * not registered or which are no longer valid are ignored.
+   *
+   * @param store The new certificate store.
+   * @param caCertificates The CA certificates.
+   */
+  private static void replayCaCertificates(
+      ConcurrentMap<ByteBuffer, CaCertificateContentSpi> store,
+      List<CaCertificateSpi> caCertificates) {
+    List<CaCertificateSpi> pendingCertificates = new ArrayList<>(caCertificates);
+    boolean isProgressing = true;
+    while (!pendingCertificates.isEmpty() && isProgressing) {
+      isProgressing = false;
+      Iterator<CaCertificateSpi> iterator = pendingCertificates.iterator();
+      while (iterator.hasNext()) {
+        CaCertificateSpi certificate = iterator.next();
+        CaCertificateContentSpi issuerCertificateContent =
+            store.get(toKey(certificate.getIssuerPublicKeyReference()));
+        if (issuerCertificateContent != null) {
+          iterator.remove();
+          isProgressing = true;
+          try {
+            CaCertificateContentSpi caCertificateContent =
+                checkCaCertificate(certificate, issuerCertificateContent);
+            store.putIfAbsent(
+                toKey(caCertificateContent.getPublicKeyReference().clone()), caCertificateContent);
+          } catch (RuntimeException e) {
+            logger.warn("CA certificate added during the reload ignored: {}", e.getMessage());
+          }
+        }
+      }
+    }
+    if (!pendingCertificates.isEmpty()) {
+      logger.warn(
+          "{} CA certificate(s) added during the reload ignored, issuer not registered",
+          pendingCertificates.size());
+    }
+  }
+
+  /**
+   * Converts the provided CA certificates to their SPI.
+   *
+   * @param caCertificates The CA certificates.
+   * @return A new list.
+   * @throws IllegalArgumentException If the collection is null or contains an invalid instance.
+   */
+  private static List<CaCertificateSpi> toCaCertificateSpis(
+      Collection<? extends CaCertificate> caCertificates) {
+    Assert.getInstance().notNull(caCertificates, "caCertificates");
+    List<CaCertificateSpi> caCertificateSpis = new ArrayList<>(caCertificates.size());
+    for (CaCertificate caCertificate : caCertificates) {
+      if (!(caCertificate instanceof CaCertificateSpi)) {
+        throw new IllegalArgumentException(
+            MSG_THE_PROVIDED_CA_CERTIFICATE_MUST_IMPLEMENT_CA_CERTIFICATE_SPI);
+      }
+      caCertificateSpis.add((CaCertificateSpi) caCertificate);
+    }
+    return caCertificateSpis;
+  }
+
+  /**
+   * Checks the provided CA certificates level by level in the chain of trust and registers their
+   * content into the provided store.
+   *
+   * @param store The store containing the issuers of the first level.
+   * @param caCertificates The CA certificates.
+   * @throws IllegalStateException If the issuer of a certificate is not found.
+   */
+  private static void registerCaCertificates(
+      ConcurrentMap<ByteBuffer, CaCertificateContentSpi> store,
+      List<CaCertificateSpi> caCertificates) {
+    List<CaCertificateSpi> pendingCertificates = new ArrayList<>(caCertificates);
+    while (!pendingCertificates.isEmpty()) {
+      // Select the certificates whose issuer is known
+      List<CaCertificateSpi> certificates = new ArrayList<>();
+      List<CaCertificateContentSpi> issuerCertificateContents = new ArrayList<>();
+      List<CaCertificateSpi> nextPendingCertificates = new ArrayList<>();
+      for (CaCertificateSpi certificate : pendingCertificates) {
+        CaCertificateContentSpi issuerCertificateContent =
+            store.get(toKey(certificate.getIssuerPublicKeyReference()));
+        if (issuerCertificateContent != null) {
+          certificates.add(certificate);
+          issuerCertificateContents.add(issuerCertificateContent);
+        } else {
+          nextPendingCertificates.add(certificate);
+        }
+      }
+      if (certificates.isEmpty()) {
+        throw new IllegalStateException(
+            MSG_THE_ISSUER_CERTIFICATE_IS_NOT_REGISTERED
+                + HexUtil.toHex(nextPendingCertificates.get(0).getIssuerPublicKeyReference()));
+      }
+      // Check them in parallel
+      List<Integer> indexes = new ArrayList<>(certificates.size());
+      for (int i = 0; i < certificates.size(); i++) {
+        indexes.add(i);
+      }
+      for (CaCertificateContentSpi caCertificateContent :
+          checkInParallel(
+              indexes,
+              i -> checkCaCertificate(certificates.get(i), issuerCertificateContents.get(i)))) {
+        registerCertificateContent(store, caCertificateContent);
+      }
+      pendingCertificates = nextPendingCertificates;
+    }
+  }
+
+  /**
+   * Applies the provided check to each of the provided certificates, in parallel on the common
+   * fork-join pool.
+   *
+   * @param certificates The certificates.
+   * @param check The check.
+   * @param <C> The type of the certificates.
+   * @return The certificate contents, in the order of the certificates.
+   */
+  private static <C> List<CaCertificateContentSpi> checkInParallel(
+      List<C> certificates, CertificateCheck<C> check) {
+    List<CaCertificateContentSpi> contents = new ArrayList<>(certificates.size());
+    certificates.parallelStream().map(check::check).forEachOrdered(contents::add);
+    return contents;
+  }
+
+  /**
+   * Returns the content of the issuer certificate of the provided CA certificate.
+   *
+   * @param store The certificate store.
+   * @param caCertificate The CA certificate.
+   * @return A not null reference.
+   * @throws IllegalStateException If the issuer certificate is not registered.
+   */
+  private static CaCertificateContentSpi getIssuerCertificateContent(
+      ConcurrentMap<ByteBuffer, CaCertificateContentSpi> store, CaCertificateSpi caCertificate) {
+    CaCertificateContentSpi issuerCertificateContent =
+        store.get(toKey(caCertificate.getIssuerPublicKeyReference()));
     if (issuerCertificateContent == null) {
-      throw new IllegalStateException(MSG_THE_ISSUER_CERTIFICATE_IS_NOT_REGISTERED + issuerKeyRef);
+      throw new IllegalStateException(
+          MSG_THE_ISSUER_CERTIFICATE_IS_NOT_REGISTERED
+              + HexUtil.toHex(caCertificate.getIssuerPublicKeyReference()));
+    }
+    return issuerCertificateContent;
+  }
+
+  /**
+   * Checks the provided PCA certificate.
+   *
+   * @param pcaCertificate The PCA certificate.
+   * @return The certificate content.
+   * @throws InvalidCertificateException If the certificate is invalid.
+   * @throws CryptoException If an error occurs while checking the certificate.
+   */
+  private CaCertificateContentSpi checkPcaCertificate(PcaCertificateSpi pcaCertificate) {
+    try {
+      return pcaCertificate.checkCertificateAndGetContent();
+    } catch (CertificateValidationException e) {
+      throw new InvalidCertificateException(MSG_INVALID_CERTIFICATE + e.getMessage(), e);
+    } catch (AsymmetricCryptoException e) {
+      throw new CryptoException(
+          MSG_AN_ERROR_OCCURS_DURING_THE_CHECK_OF_THE_CERTIFICATE + e.getMessage(), e);
     }
+  }
 
-    // Check the CA certificate using the issuer's certificate content
-    CaCertificateContentSpi caCertificateContent;
+  /**
+   * Checks the provided CA certificate using the content of its issuer certificate.
+   *
+   * @param caCertificate The CA certificate.
+   * @param issuerCertificateContent The content of the issuer certificate.
+   * @return The certificate content.
+   * @throws InvalidCertificateException If the certificate is invalid.
+   * @throws CryptoException If an error occurs while checking the certificate.
+   */
+  private static CaCertificateContentSpi checkCaCertificate(
+      CaCertificateSpi caCertificate, CaCertificateContentSpi issuerCertificateContent) {
     try {
-      caCertificateContent =
-          caCertificateSpi.checkCertificateAndGetContent(issuerCertificateContent);
+      return caCertificate.checkCertificateAndGetContent(issuerCertificateContent);
     } catch (CertificateValidationException e) {
       throw new InvalidCertificateException(MSG_INVALID_CERTIFICATE + e.getMessage(), e);
     } catch (AsymmetricCryptoException e) {
       throw new CryptoException(
           MSG_AN_ERROR_OCCURS_DURING_THE_CHECK_OF_THE_CERTIFICATE + e.getMessage(), e);
     }
+  }
 
-    // Save the certificate content into the store
-    String caKeyRef = HexUtil.toHex(caCertificateContent.getPublicKeyReference());
-    if (caCertificates.containsKey(caKeyRef)) {
+  /**
+   * Saves the provided certificate content into the provided store.
+   *
+   * @param store The certificate store.
+   * @param certificateContent The certificate content.
+   * @throws IllegalStateException If a certificate is already registered for the same public key
+   *     reference.
+   */
+  private static void registerCertificateContent(
+      ConcurrentMap<ByteBuffer, CaCertificateContentSpi> store,
+      CaCertificateContentSpi certificateContent) {
+    byte[] publicKeyReference = certificateContent.getPublicKeyReference();
+    if (store.putIfAbsent(toKey(publicKeyReference.clone()), certificateContent) != null) {
       throw new IllegalStateException(
-          MSG_A_CERTIFICATE_IS_ALREADY_REGISTERED_FOR_THE_PROVIDED_PUBLIC_KEY_REFERENCE + caKeyRef);
+          MSG_A_CERTIFICATE_IS_ALREADY_REGISTERED_FOR_THE_PROVIDED_PUBLIC_KEY_REFERENCE
+              + HexUtil.toHex(publicKeyReference));
     }
-    caCertificates.put(caKeyRef, caCertificateContent);
-    return this;
+  }
+
+  /**
+   * Returns the key of the certificate store for the provided public key reference.
+   *
+   * @param publicKeyReference The public key reference, which must not be modified afterwards if
+   *     the key is stored.
+   * @return A key wrapping the provided array.
+   */
+  private static ByteBuffer toKey(byte[] publicKeyReference) {
+    return ByteBuffer.wrap(publicKeyReference);
   }
 
   /**
@@ -218,6 +550,123 @@ public AsymmetricCryptoSecuritySetting addCardCertificateParser(
     return this;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public AsymmetricCryptoSecuritySetting enableCardPublicKeyCache(
+      int maxSize, int timeToLiveMillis) {
+    Assert.getInstance()
+        .greaterOrEqual(maxSize, 1, "maxSize")
+        .greaterOrEqual(timeToLiveMillis, 1, "timeToLiveMillis");
+    cardPublicKeyCache = new CardPublicKeyCache(maxSize, timeToLiveMillis);
+    return this;
+  }
+
+  /**
+   * Returns the cache of the card public keys.
+   *
+   * @return Null if the cache is not enabled.
+   * @since 3.1.7
+   */
+  CardPublicKeyCache getCardPublicKeyCache() {
+    return cardPublicKeyCache;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public AsymmetricCryptoSecuritySetting setCardCertificateVerificationExecutor(Executor executor) {
+    cardCertificateVerificationExecutor = executor;
+    return this;
+  }
+
+  /**
+   * Returns the executor on which the card certificate is verified in the background.
+   *
+   * @return Null if the card certificate is verified in the calling thread.
+   * @since 3.1.7
+   */
+  Executor getCardCertificateVerificationExecutor() {
+    return cardCertificateVerificationExecutor;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public AsymmetricCryptoSecuritySetting enableCaCertificatePersistence(
+      Path file, Executor executor) {
+    Assert.getInstance().notNull(file, "file").notNull(executor, "executor");
+    CaCertificateFileStore fileStore = new CaCertificateFileStore(file);
+    List<byte[]> certificates;
+    try {
+      certificates = fileStore.load();
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "Unable to load the CA certificate file: " + e.getMessage(), e);
+    }
+    int registeredCertificateCount = 0;
+    for (byte[] certificate : certificates) {
+      try {
+        CaCertificateParserSpi caCertificateParser = caCertificateParsers.get(certificate[0]);
+        if (caCertificateParser == null) {
+          throw new IllegalStateException(
+              "No certificate parser registered for type " + HexUtil.toHex(certificate[0]));
+        }
+        addCaCertificate((CaCertificate) caCertificateParser.parseCertificate(certificate));
+        registeredCertificateCount++;
+      } catch (CertificateValidationException | RuntimeException e) {
+        logger.warn("Persisted CA certificate ignored: {}", e.getMessage());
+      }
+    }
+    logger.info("{} CA certificate(s) registered from file {}", registeredCertificateCount, file);
+    synchronized (caCertificatePersistenceLock) {
+      caCertificateFileStore = fileStore;
+      caCertificatePersistenceExecutor = executor;
+    }
+    return this;
+  }
+
+  /**
+   * Schedules the persistence of the provided CA certificate read from a card, if the persistence
+   * is enabled.
+   *
+   * <p>The certificate is written after the previously scheduled ones, on the persistence executor.
+   * A failure to write the file is logged and does not prevent the transaction from continuing.
+   *
+   * @param caCertificate The raw CA certificate, already registered.
+   * @since 3.1.7
+   */
+  void persistCaCertificate(byte[] caCertificate) {
+    synchronized (caCertificatePersistenceLock) {
+      if (caCertificateFileStore == null) {
+        return;
+      }
+      final CaCertificateFileStore fileStore = caCertificateFileStore;
+      final byte[] certificate = caCertificate.clone();
+      Runnable task =
+          () -> {
+            try {
+              fileStore.append(certificate);
+            } catch (IOException | RuntimeException e) {
+              logger.warn("Unable to persist the CA certificate: {}", e.getMessage());
+            }
+          };
+      caCertificatePersistence =
+          caCertificatePersistence == null || caCertificatePersistence.isDone()
+              ? CompletableFuture.runAsync(task, caCertificatePersistenceExecutor)
+              : caCertificatePersistence.thenRunAsync(task, caCertificatePersistenceExecutor);
+    }
+  }
+
   /**
    * Retrieves the CA certificate from the provided public key reference.
    *
@@ -226,7 +675,7 @@ public AsymmetricCryptoSecuritySetting addCardCertificateParser(
    * @since 3.1.0
    */
   CaCertificateContentSpi getCaCertificate(byte[] publicKeyReference) {
-    return caCertificates.get(HexUtil.toHex(publicKeyReference));
+    return caCertificates.get(toKey(publicKeyReference));
   }
 
   /**
@@ -250,4 +699,33 @@ CaCertificateParserSpi getCaCertificateParser(byte certificateType) {
   CardCertificateParserSpi getCardCertificateParser(byte certificateType) {
     return cardCertificateParsers.get(certificateType);
   }
+
+  /** Update of a certificate store. */
+  private interface CertificateStoreUpdate {
+
+    /**
+     * Applies the update to the provided certificate store.
+     *
+     * @param store The certificate store.
+     */
+    void applyTo(ConcurrentMap<ByteBuffer, CaCertificateContentSpi> store);
+  }
+
+  /**
+   * Check of a certificate.
+   *
+   * @param <C> The type of the certificate.
+   */
+  private interface CertificateCheck<C> {
+
+    /**
+     * Checks the provided certificate.
+     *
+     * @param certificate The certificate.
+     * @return The certificate content.
+     * @throws InvalidCertificateException If the certificate is invalid.
+     * @throws CryptoException If an error occurs while checking the certificate.
+     */
+    CaCertificateContentSpi check(C certificate);
+  }
 }
@@ -0,0 +1,139 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.Executor;
+import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.CryptoException;
+import org.eclipse.keypop.calypso.card.transaction.InvalidCertificateException;
+import org.eclipse.keypop.calypso.card.transaction.spi.CaCertificate;
+import org.eclipse.keypop.calypso.card.transaction.spi.PcaCertificate;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.CaCertificateSpi;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.PcaCertificateSpi;
+
+/**
+ * Features of the asymmetric crypto security settings specific to the Calypso card extension, not
+ * covered by the Keypop Calypso card API.
+ *
+ * <p>An instance is obtained from a security setting created by the factory of this extension with
+ * {@link
+ * CalypsoExtensionService#getAsymmetricCryptoSecuritySettingExtension(AsymmetricCryptoSecuritySetting)}.
+ * Its methods act on the security setting itself and return it to allow chaining.
+ *
+ * @since 3.1.7
+ */
+public interface AsymmetricCryptoSecuritySettingExtension {
+
+  /**
+   * Adds several CA certificates at once, the certificates being checked in parallel.
+   *
+   * <p>The certificates may be provided in any order, and may be issued by other certificates of
+   * the collection: the certificates whose issuer is known are checked in parallel, then the ones
+   * issued by them, and so on. The store is only updated if all the certificates are valid.
+   *
+   * @param caCertificates The CA certificates, each of them implementing {@link CaCertificateSpi}.
+   * @return The security setting.
+   * @throws IllegalArgumentException If the collection is null or contains an invalid instance.
+   * @throws IllegalStateException If the issuer of a certificate is not registered, or if a
+   *     certificate is already registered for the public key reference of a certificate.
+   * @throws InvalidCertificateException If a certificate is invalid.
+   * @throws CryptoException If an error occurs while checking a certificate.
+   * @since 3.1.7
+   */
+  AsymmetricCryptoSecuritySetting addCaCertificates(
+      Collection<? extends CaCertificate> caCertificates);
+
+  /**
+   * Replaces all the registered PCA and CA certificates, the certificates being checked in
+   * parallel.
+   *
+   * <p>The new store is built aside and replaces the current one only if all the certificates are
+   * valid. The transactions in progress on other threads thus use either the previous or the new
+   * store, never a partially loaded one. The certificates added meanwhile, e.g. the CA certificates
+   * read from the cards, are checked again and added to the new store if their issuer is still
+   * registered. The card public key cache, if enabled, is cleared.
+   *
+   * @param pcaCertificates The PCA certificates, each of them implementing {@link
+   *     PcaCertificateSpi}.
+   * @param caCertificates The CA certificates, each of them implementing {@link CaCertificateSpi},
+   *     in any order.
+   * @return The security setting.
+   * @throws IllegalArgumentException If a collection is null or contains an invalid instance.
+   * @throws IllegalStateException If the issuer of a CA certificate is not provided, or if several
+   *     certificates have the same public key reference.
+   * @throws InvalidCertificateException If a certificate is invalid.
+   * @throws CryptoException If an error occurs while checking a certificate.
+   * @since 3.1.7
+   */
+  AsymmetricCryptoSecuritySetting reloadCertificates(
+      Collection<? extends PcaCertificate> pcaCertificates,
+      Collection<? extends CaCertificate> caCertificates);
+
+  /**
+   * Enables the caching of the card public keys extracted from the verified card certificates.
+   *
+   * <p>When enabled, the certificate of a card already verified within the provided time to live is
+   * neither parsed nor verified again, the public key extracted at the time of its verification
+   * being reused. A key is identified by the application serial number of the card and the digest
+   * of its certificate. The least recently used key is evicted when the maximum size is reached.
+   *
+   * <p>The cache is shared by all the transaction managers using this setting, possibly
+   * concurrently.
+   *
+   * @param maxSize The maximum number of cached keys.
+   * @param timeToLiveMillis The time in milliseconds during which a verified key is reused.
+   * @return The security setting.
+   * @throws IllegalArgumentException If a value is out of range.
+   * @since 3.1.7
+   */
+  AsymmetricCryptoSecuritySetting enableCardPublicKeyCache(int maxSize, int timeToLiveMillis);
+
+  /**
+   * Enables the persistence of the CA certificates read from the cards into the provided file.
+   *
+   * <p>The CA certificates already present in the file are first parsed with the registered CA
+   * certificate parsers, checked and registered, in the order in which they were learned. The
+   * parsers and the PCA certificates must therefore be registered before. A certificate which can
+   * no longer be parsed, verified or registered is ignored. Then, each CA certificate read from a
+   * card and successfully registered is appended to the file, so that the next start of the
+   * application does not need to read it again from a card.
+   *
+   * <p>The certificates are written to the file on the provided executor, in the order in which
+   * they were registered, so that the transactions do not wait for the storage device. A failure to
+   * write the file is only logged.
+   *
+   * @param file The path of the file, which is created if it does not exist.
+   * @param executor The executor on which the certificates are written to the file.
+   * @return The security setting.
+   * @throws IllegalArgumentException If the provided path or executor is null.
+   * @throws IllegalStateException If the file cannot be read or is not a CA certificate file.
+   * @since 3.1.7
+   */
+  AsymmetricCryptoSecuritySetting enableCaCertificatePersistence(Path file, Executor executor);
+
+  /**
+   * Sets the executor on which the card certificate is verified in the background.
+   *
+   * <p>When set, the verification of a card certificate already present in the card image when the
+   * opening of the secure session is prepared (e.g. read during the card selection) is started
+   * immediately on this executor, and thus overlaps with the exchanges with the card. The result is
+   * awaited when the response to the "open secure session" command is parsed. If the issuer
+   * certificate is not registered, the verification is done as usual at that time.
+   *
+   * @param executor The executor, or null to verify the card certificate in the calling thread.
+   * @return The security setting.
+   * @since 3.1.7
+   */
+  AsymmetricCryptoSecuritySetting setCardCertificateVerificationExecutor(Executor executor);
+}
@@ -0,0 +1,44 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+/**
+ * Receiver of the APDUs exchanged with the card during a transaction, notified as soon as they are
+ * recorded in the transaction audit data (CL-CSS-INFODATA.1).
+ *
+ * <p>Implementations are invoked synchronously by the thread processing the commands and must not
+ * keep a reference to the provided arrays beyond the call.
+ *
+ * <p>The sink is notified once the card has already executed the commands, so its failures do not
+ * interrupt the transaction: a runtime exception thrown by the sink is logged by the transaction
+ * manager and the next pairs are still provided to it.
+ *
+ * <p>An instance is registered with {@link
+ * TransactionManagerExtension#setAuditDataSink(AuditDataSink, boolean)}. Ready-to-use
+ * implementations are provided by {@link
+ * CalypsoExtensionService#createAuditDataSink(java.nio.ByteBuffer)} and {@link
+ * CalypsoExtensionService#createAuditDataSink(java.io.OutputStream)}.
+ *
+ * @since 3.1.7
+ */
+public interface AuditDataSink {
+
+  /**
+   * Invoked for each request/response pair exchanged with the card.
+   *
+   * @param apduRequest The raw APDU request.
+   * @param apduResponse The raw APDU response, including the status word.
+   * @throws IllegalStateException If the pair can't be written.
+   * @since 3.1.7
+   */
+  void onApduExchanged(byte[] apduRequest, byte[] apduResponse);
+}
@@ -0,0 +1,129 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import org.eclipse.keyple.core.util.Assert;
+
+/**
+ * Implementations of {@link AuditDataSink} writing the APDUs into a caller-supplied destination.
+ *
+ * <p>Each APDU is written as a 2-byte big-endian length followed by its bytes, the request first,
+ * then the response.
+ *
+ * @since 3.1.7
+ */
+final class AuditDataSinkAdapters {
+
+  private static final int LENGTH_SIZE = 2;
+
+  private AuditDataSinkAdapters() {}
+
+  /**
+   * Sink writing into a {@link ByteBuffer}, from its current position.
+   *
+   * @since 3.1.7
+   */
+  static final class ByteBufferAuditDataSink implements AuditDataSink {
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Builds a new instance.
+     *
+     * @param buffer The destination buffer.
+     * @since 3.1.7
+     */
+    ByteBufferAuditDataSink(ByteBuffer buffer) {
+      Assert.getInstance().notNull(buffer, "buffer");
+      this.buffer = buffer;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The pair is written entirely or not at all.
+     *
+     * @throws IllegalStateException If the remaining space of the buffer is not sufficient.
+     * @since 3.1.7
+     */
+    @Override
+    public void onApduExchanged(byte[] apduRequest, byte[] apduResponse) {
+      int length = 2 * LENGTH_SIZE + apduRequest.length + apduResponse.length;
+      if (buffer.remaining() < length) {
+        throw new IllegalStateException(
+            "Audit data buffer overflow: "
+                + length
+                + " bytes required, "
+                + buffer.remaining()
+                + " remaining");
+      }
+      buffer.putShort((short) apduRequest.length).put(apduRequest);
+      buffer.putShort((short) apduResponse.length).put(apduResponse);
+    }
+  }
+
+  /**
+   * Sink writing into an {@link OutputStream}.
+   *
+   * <p>The stream is neither flushed nor closed by the sink.
+   *
+   * @since 3.1.7
+   */
+  static final class OutputStreamAuditDataSink implements AuditDataSink {
+
+    private final OutputStream outputStream;
+    private final byte[] lengthBuffer = new byte[LENGTH_SIZE];
+
+    /**
+     * Builds a new instance.
+     *
+     * @param outputStream The destination stream.
+     * @since 3.1.7
+     */
+    OutputStreamAuditDataSink(OutputStream outputStream) {
+      Assert.getInstance().notNull(outputStream, "outputStream");
+      this.outputStream = outputStream;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException If an I/O error occurs.
+     * @since 3.1.7
+     */
+    @Override
+    public void onApduExchanged(byte[] apduRequest, byte[] apduResponse) {
+      try {
+        write(apduRequest);
+        write(apduResponse);
+      } catch (IOException e) {
+        throw new IllegalStateException("Unable to write the audit data: " + e.getMessage(), e);
+      }
+    }
+
+    /**
+     * Writes the length-prefixed APDU.
+     *
+     * @param apdu The APDU.
+     * @throws IOException If an I/O error occurs.
+     */
+    private void write(byte[] apdu) throws IOException {
+      lengthBuffer[0] = (byte) (apdu.length >> 8);
+      lengthBuffer[1] = (byte) apdu.length;
+      outputStream.write(lengthBuffer);
+      outputStream.write(apdu);
+    }
+  }
+}
@@ -0,0 +1,1003 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.keyple.core.util.Assert;
+import org.eclipse.keypop.calypso.card.WriteAccessLevel;
+import org.eclipse.keypop.calypso.card.card.DirectoryHeader;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.card.ApduResponseApi;
+
+/**
+ * Compact binary codec of the card image and of its components, alternative to the JSON form
+ * produced by {@link org.eclipse.keyple.core.util.json.JsonUtil}.
+ *
+ * <p>An encoded object starts with the version of the format, followed by a sequence of TLV
+ * elements: a one-byte tag, a length coded on 7-bit groups (least significant group first) and the
+ * value. Structured values are themselves sequences of TLV elements. Unknown tags are skipped by
+ * the decoder, so that new elements can be added without breaking the readers of a previous
+ * version.
+ *
+ * @since 3.1.7
+ */
+final class BinaryCodec {
+
+  /** Version of the binary format. */
+  static final byte FORMAT_VERSION = 1;
+
+  /* Card image tags */
+  static final byte TAG_SELECT_APPLICATION_RESPONSE = 0x01;
+  static final byte TAG_POWER_ON_DATA = 0x02;
+  static final byte TAG_DIRECTORY_HEADER = 0x03;
+  static final byte TAG_FILE = 0x04;
+  static final byte TAG_DF_RATIFIED = 0x05;
+  static final byte TAG_TRANSACTION_COUNTER = 0x06;
+  static final byte TAG_PIN_ATTEMPT_COUNTER = 0x07;
+  static final byte TAG_SV_DATA = 0x08;
+  static final byte TAG_DF_INVALIDATED = 0x09;
+  static final byte TAG_TRACEABILITY_INFORMATION = 0x0A;
+  static final byte TAG_CARD_PUBLIC_KEY = 0x0B;
+  static final byte TAG_CARD_CERTIFICATE = 0x0C;
+  static final byte TAG_CA_CERTIFICATE = 0x0D;
+
+  /* SV data tags */
+  static final byte TAG_SV_KVC = 0x01;
+  static final byte TAG_SV_GET_HEADER = 0x02;
+  static final byte TAG_SV_GET_DATA = 0x03;
+  static final byte TAG_SV_BALANCE = 0x04;
+  static final byte TAG_SV_LAST_TNUM = 0x05;
+
+  /* Header tags (common to DF and EF) */
+  private static final byte TAG_LID = 0x01;
+  private static final byte TAG_ACCESS_CONDITIONS = 0x02;
+  private static final byte TAG_KEY_INDEXES = 0x03;
+  private static final byte TAG_DF_STATUS = 0x04;
+  private static final byte TAG_KIF = 0x05;
+  private static final byte TAG_KVC = 0x06;
+  private static final byte TAG_RECORDS_NUMBER = 0x07;
+  private static final byte TAG_RECORD_SIZE = 0x08;
+  private static final byte TAG_EF_TYPE = 0x09;
+  private static final byte TAG_SHARED_REFERENCE = 0x0A;
+
+  /* EF tags */
+  private static final byte TAG_SFI = 0x01;
+  private static final byte TAG_FILE_HEADER = 0x02;
+  private static final byte TAG_RECORD = 0x03;
+
+  /* SV log record tags */
+  private static final byte TAG_RAW_DATA = 0x01;
+  private static final byte TAG_OFFSET = 0x02;
+
+  /* Command tags */
+  private static final byte TAG_COMMAND = 0x01;
+  private static final byte TAG_COMMAND_REF = 0x02;
+  private static final byte TAG_LE = 0x03;
+  private static final byte TAG_APDU_REQUEST = 0x04;
+  private static final byte TAG_SUCCESSFUL_STATUS_WORD = 0x05;
+  private static final byte TAG_APDU_INFO = 0x06;
+  private static final byte TAG_APDU_RESPONSE = 0x07;
+
+  private static final WriteAccessLevel[] WRITE_ACCESS_LEVELS = WriteAccessLevel.values();
+  private static final ElementaryFile.Type[] EF_TYPES = ElementaryFile.Type.values();
+  private static final CardCommandRef[] COMMAND_REFS = CardCommandRef.values();
+
+  private BinaryCodec() {}
+
+  /**
+   * Encodes the image of the provided card.
+   *
+   * <p>The card is identified by its select application response or its power-on data, from which
+   * the static characteristics are rebuilt when decoding. The dynamic data (files, counters, SV,
+   * certificates...) are encoded as they are.
+   *
+   * @param card The card.
+   * @return A not empty array.
+   * @since 3.1.7
+   */
+  static byte[] encodeCard(CalypsoCardAdapter card) {
+    Writer writer = new Writer();
+    card.writeImage(writer);
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes a card image.
+   *
+   * @param data The encoded data.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the data is malformed or if its version is not supported.
+   * @since 3.1.7
+   */
+  static CalypsoCardAdapter decodeCard(byte[] data) {
+    Reader reader = new Reader(data);
+    byte[] selectApplicationResponse = null;
+    String powerOnData = null;
+    while (reader.next()) {
+      if (reader.getTag() == TAG_SELECT_APPLICATION_RESPONSE) {
+        selectApplicationResponse = reader.getBytes();
+      } else if (reader.getTag() == TAG_POWER_ON_DATA) {
+        powerOnData = reader.getString();
+      }
+    }
+    CalypsoCardAdapter card;
+    try {
+      card =
+          new CalypsoCardAdapter(
+              new CardSelectionResponseAdapter(
+                  selectApplicationResponse != null
+                      ? new ApduResponseAdapter(selectApplicationResponse)
+                      : null,
+                  powerOnData));
+    } catch (CardCommandException e) {
+      throw new IllegalArgumentException("Bad select application response: " + e.getMessage(), e);
+    }
+    card.readImage(new Reader(data));
+    return card;
+  }
+
+  /**
+   * Encodes a directory header.
+   *
+   * @param directoryHeader The directory header.
+   * @return A not empty array.
+   * @since 3.1.7
+   */
+  static byte[] encodeDirectoryHeader(DirectoryHeader directoryHeader) {
+    Writer writer = new Writer();
+    writeDirectoryHeader(writer, directoryHeader);
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes a directory header.
+   *
+   * @param data The encoded data.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the data is malformed or if its version is not supported.
+   * @since 3.1.7
+   */
+  static DirectoryHeader decodeDirectoryHeader(byte[] data) {
+    return readDirectoryHeader(new Reader(data));
+  }
+
+  /**
+   * Encodes a file header.
+   *
+   * @param fileHeader The file header.
+   * @return A not empty array.
+   * @since 3.1.7
+   */
+  static byte[] encodeFileHeader(FileHeaderAdapter fileHeader) {
+    Writer writer = new Writer();
+    writeFileHeader(writer, fileHeader);
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes a file header.
+   *
+   * @param data The encoded data.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the data is malformed or if its version is not supported.
+   * @since 3.1.7
+   */
+  static FileHeaderAdapter decodeFileHeader(byte[] data) {
+    return readFileHeader(new Reader(data));
+  }
+
+  /**
+   * Encodes an EF, including its header and its records.
+   *
+   * @param file The EF.
+   * @return A not empty array.
+   * @since 3.1.7
+   */
+  static byte[] encodeFile(ElementaryFile file) {
+    Writer writer = new Writer();
+    writeFile(writer, file);
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes an EF.
+   *
+   * @param data The encoded data.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the data is malformed or if its version is not supported.
+   * @since 3.1.7
+   */
+  static ElementaryFileAdapter decodeFile(byte[] data) {
+    return readFile(new Reader(data));
+  }
+
+  /**
+   * Encodes an SV load log record.
+   *
+   * @param svLoadLogRecord The log record.
+   * @return A not empty array.
+   * @since 3.1.7
+   */
+  static byte[] encodeSvLoadLogRecord(SvLoadLogRecordAdapter svLoadLogRecord) {
+    Writer writer = new Writer();
+    writer.writeBytes(TAG_RAW_DATA, svLoadLogRecord.getRawData());
+    writer.writeInt(TAG_OFFSET, svLoadLogRecord.getOffset());
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes an SV load log record.
+   *
+   * @param data The encoded data.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the data is malformed or if its version is not supported.
+   * @since 3.1.7
+   */
+  static SvLoadLogRecordAdapter decodeSvLoadLogRecord(byte[] data) {
+    Reader reader = new Reader(data);
+    byte[] rawData = new byte[0];
+    int offset = 0;
+    while (reader.next()) {
+      if (reader.getTag() == TAG_RAW_DATA) {
+        rawData = reader.getBytes();
+      } else if (reader.getTag() == TAG_OFFSET) {
+        offset = reader.getInt();
+      }
+    }
+    return new SvLoadLogRecordAdapter(rawData, offset);
+  }
+
+  /**
+   * Encodes an SV debit log record.
+   *
+   * @param svDebitLogRecord The log record.
+   * @return A not empty array.
+   * @since 3.1.7
+   */
+  static byte[] encodeSvDebitLogRecord(SvDebitLogRecordAdapter svDebitLogRecord) {
+    Writer writer = new Writer();
+    writer.writeBytes(TAG_RAW_DATA, svDebitLogRecord.getRawData());
+    writer.writeInt(TAG_OFFSET, svDebitLogRecord.getOffset());
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes an SV debit log record.
+   *
+   * @param data The encoded data.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the data is malformed or if its version is not supported.
+   * @since 3.1.7
+   */
+  static SvDebitLogRecordAdapter decodeSvDebitLogRecord(byte[] data) {
+    Reader reader = new Reader(data);
+    byte[] rawData = new byte[0];
+    int offset = 0;
+    while (reader.next()) {
+      if (reader.getTag() == TAG_RAW_DATA) {
+        rawData = reader.getBytes();
+      } else if (reader.getTag() == TAG_OFFSET) {
+        offset = reader.getInt();
+      }
+    }
+    return new SvDebitLogRecordAdapter(rawData, offset);
+  }
+
+  /**
+   * Encodes a list of commands.
+   *
+   * <p>Only the command reference, the LE field and the exchanged APDUs are encoded. The
+   * transaction context of the commands is not part of the encoded data.
+   *
+   * @param commands The commands.
+   * @return A not empty array.
+   * @since 3.1.7
+   */
+  static byte[] encodeCommands(List<? extends Command> commands) {
+    Writer writer = new Writer();
+    for (Command command : commands) {
+      Writer commandWriter = new Writer(false);
+      commandWriter.writeInt(TAG_COMMAND_REF, command.getCommandRef().ordinal());
+      commandWriter.writeInt(TAG_LE, command.getLe());
+      ApduRequestAdapter apduRequest = command.getApduRequest();
+      if (apduRequest != null) {
+        commandWriter.writeBytes(TAG_APDU_REQUEST, apduRequest.getApdu());
+        for (Integer successfulStatusWord : apduRequest.getSuccessfulStatusWords()) {
+          commandWriter.writeInt(TAG_SUCCESSFUL_STATUS_WORD, successfulStatusWord);
+        }
+        if (apduRequest.getInfo() != null) {
+          commandWriter.writeString(TAG_APDU_INFO, apduRequest.getInfo());
+        }
+      }
+      if (command.getApduResponse() != null) {
+        commandWriter.writeBytes(TAG_APDU_RESPONSE, command.getApduResponse().getApdu());
+      }
+      writer.writeNested(TAG_COMMAND, commandWriter);
+    }
+    return writer.toByteArray();
+  }
+
+  /**
+   * Decodes a list of commands.
+   *
+   * @param data The encoded data.
+   * @return A not null list.
+   * @throws IllegalArgumentException If the data is malformed or if its version is not supported.
+   * @since 3.1.7
+   */
+  static List<CommandRecord> decodeCommands(byte[] data) {
+    Reader reader = new Reader(data);
+    List<CommandRecord> commandRecords = new ArrayList<>();
+    while (reader.next()) {
+      if (reader.getTag() == TAG_COMMAND) {
+        commandRecords.add(readCommand(reader.getNested()));
+      }
+    }
+    return commandRecords;
+  }
+
+  /**
+   * Writes a directory header as a sequence of TLV elements.
+   *
+   * @param writer The writer.
+   * @param directoryHeader The directory header.
+   * @since 3.1.7
+   */
+  static void writeDirectoryHeader(Writer writer, DirectoryHeader directoryHeader) {
+    writer.writeShort(TAG_LID, directoryHeader.getLid());
+    writer.writeBytes(TAG_ACCESS_CONDITIONS, directoryHeader.getAccessConditions());
+    writer.writeBytes(TAG_KEY_INDEXES, directoryHeader.getKeyIndexes());
+    writer.writeByte(TAG_DF_STATUS, directoryHeader.getDfStatus());
+    byte[] kif = new byte[WRITE_ACCESS_LEVELS.length];
+    byte[] kvc = new byte[WRITE_ACCESS_LEVELS.length];
+    for (WriteAccessLevel level : WRITE_ACCESS_LEVELS) {
+      kif[level.ordinal()] = directoryHeader.getKif(level);
+      kvc[level.ordinal()] = directoryHeader.getKvc(level);
+    }
+    writer.writeBytes(TAG_KIF, kif);
+    writer.writeBytes(TAG_KVC, kvc);
+  }
+
+  /**
+   * Reads a directory header from a sequence of TLV elements.
+   *
+   * @param reader The reader.
+   * @return A new instance.
+   * @since 3.1.7
+   */
+  static DirectoryHeader readDirectoryHeader(Reader reader) {
+    DirectoryHeaderAdapter.DirectoryHeaderBuilder builder = DirectoryHeaderAdapter.builder();
+    while (reader.next()) {
+      switch (reader.getTag()) {
+        case TAG_LID:
+          builder.lid(reader.getShort());
+          break;
+        case TAG_ACCESS_CONDITIONS:
+          builder.accessConditions(reader.getBytes());
+          break;
+        case TAG_KEY_INDEXES:
+          builder.keyIndexes(reader.getBytes());
+          break;
+        case TAG_DF_STATUS:
+          builder.dfStatus(reader.getByte());
+          break;
+        case TAG_KIF:
+          byte[] kif = reader.getBytes();
+          for (int i = 0; i < kif.length && i < WRITE_ACCESS_LEVELS.length; i++) {
+            builder.kif(WRITE_ACCESS_LEVELS[i], kif[i]);
+          }
+          break;
+        case TAG_KVC:
+          byte[] kvc = reader.getBytes();
+          for (int i = 0; i < kvc.length && i < WRITE_ACCESS_LEVELS.length; i++) {
+            builder.kvc(WRITE_ACCESS_LEVELS[i], kvc[i]);
+          }
+          break;
+        default:
+          // Unknown element
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Writes a file header as a sequence of TLV elements.
+   *
+   * @param writer The writer.
+   * @param fileHeader The file header.
+   * @since 3.1.7
+   */
+  static void writeFileHeader(Writer writer, FileHeaderAdapter fileHeader) {
+    writer.writeShort(TAG_LID, fileHeader.getLid());
+    writer.writeInt(TAG_RECORDS_NUMBER, fileHeader.getRecordsNumber());
+    writer.writeInt(TAG_RECORD_SIZE, fileHeader.getRecordSize());
+    if (fileHeader.getEfType() != null) {
+      writer.writeByte(TAG_EF_TYPE, (byte) fileHeader.getEfType().ordinal());
+    }
+    if (fileHeader.getAccessConditions() != null) {
+      writer.writeBytes(TAG_ACCESS_CONDITIONS, fileHeader.getAccessConditions());
+    }
+    if (fileHeader.getKeyIndexes() != null) {
+      writer.writeBytes(TAG_KEY_INDEXES, fileHeader.getKeyIndexes());
+    }
+    if (fileHeader.getDfStatus() != null) {
+      writer.writeByte(TAG_DF_STATUS, fileHeader.getDfStatus());
+    }
+    if (fileHeader.getSharedReference() != null) {
+      writer.writeShort(TAG_SHARED_REFERENCE, fileHeader.getSharedReference());
+    }
+  }
+
+  /**
+   * Reads a file header from a sequence of TLV elements.
+   *
+   * @param reader The reader.
+   * @return A new instance.
+   * @since 3.1.7
+   */
+  static FileHeaderAdapter readFileHeader(Reader reader) {
+    FileHeaderAdapter.FileHeaderBuilder builder = FileHeaderAdapter.builder();
+    while (reader.next()) {
+      switch (reader.getTag()) {
+        case TAG_LID:
+          builder.lid(reader.getShort());
+          break;
+        case TAG_RECORDS_NUMBER:
+          builder.recordsNumber(reader.getInt());
+          break;
+        case TAG_RECORD_SIZE:
+          builder.recordSize(reader.getInt());
+          break;
+        case TAG_EF_TYPE:
+          builder.type(EF_TYPES[reader.getByte()]);
+          break;
+        case TAG_ACCESS_CONDITIONS:
+          builder.accessConditions(reader.getBytes());
+          break;
+        case TAG_KEY_INDEXES:
+          builder.keyIndexes(reader.getBytes());
+          break;
+        case TAG_DF_STATUS:
+          builder.dfStatus(reader.getByte());
+          break;
+        case TAG_SHARED_REFERENCE:
+          builder.sharedReference(reader.getShort());
+          break;
+        default:
+          // Unknown element
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Writes an EF as a sequence of TLV elements.
+   *
+   * <p>Each record is encoded as its number followed by its content.
+   *
+   * @param writer The writer.
+   * @param file The EF.
+   * @since 3.1.7
+   */
+  static void writeFile(Writer writer, ElementaryFile file) {
+    writer.writeByte(TAG_SFI, file.getSfi());
+    if (file.getHeader() != null) {
+      Writer headerWriter = new Writer(false);
+      writeFileHeader(headerWriter, (FileHeaderAdapter) file.getHeader());
+      writer.writeNested(TAG_FILE_HEADER, headerWriter);
+    }
+    for (Map.Entry<Integer, byte[]> entry : file.getData().getAllRecordsContent().entrySet()) {
+      writer.writeRecord(TAG_RECORD, entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Reads an EF from a sequence of TLV elements.
+   *
+   * @param reader The reader.
+   * @return A new instance.
+   * @since 3.1.7
+   */
+  static ElementaryFileAdapter readFile(Reader reader) {
+    byte sfi = 0;
+    FileHeaderAdapter header = null;
+    List<Integer> recordNumbers = new ArrayList<>();
+    List<byte[]> recordContents = new ArrayList<>();
+    while (reader.next()) {
+      switch (reader.getTag()) {
+        case TAG_SFI:
+          sfi = reader.getByte();
+          break;
+        case TAG_FILE_HEADER:
+          header = readFileHeader(reader.getNested());
+          break;
+        case TAG_RECORD:
+          recordNumbers.add(reader.getRecordNumber());
+          recordContents.add(reader.getRecordContent());
+          break;
+        default:
+          // Unknown element
+      }
+    }
+    ElementaryFileAdapter file = new ElementaryFileAdapter(sfi);
+    if (header != null) {
+      file.setHeader(header);
+    }
+    for (int i = 0; i < recordNumbers.size(); i++) {
+      file.getData().setContent(recordNumbers.get(i), recordContents.get(i));
+    }
+    return file;
+  }
+
+  /**
+   * Reads a command from a sequence of TLV elements.
+   *
+   * @param reader The reader.
+   * @return A new instance.
+   */
+  private static CommandRecord readCommand(Reader reader) {
+    CardCommandRef commandRef = null;
+    int le = 0;
+    ApduRequestAdapter apduRequest = null;
+    List<Integer> successfulStatusWords = new ArrayList<>();
+    String info = null;
+    ApduResponseApi apduResponse = null;
+    while (reader.next()) {
+      switch (reader.getTag()) {
+        case TAG_COMMAND_REF:
+          commandRef = COMMAND_REFS[reader.getInt()];
+          break;
+        case TAG_LE:
+          le = reader.getInt();
+          break;
+        case TAG_APDU_REQUEST:
+          apduRequest = new ApduRequestAdapter(reader.getBytes());
+          break;
+        case TAG_SUCCESSFUL_STATUS_WORD:
+          successfulStatusWords.add(reader.getInt());
+          break;
+        case TAG_APDU_INFO:
+          info = reader.getString();
+          break;
+        case TAG_APDU_RESPONSE:
+          apduResponse = new ApduResponseAdapter(reader.getBytes());
+          break;
+        default:
+          // Unknown element
+      }
+    }
+    if (apduRequest != null) {
+      for (Integer successfulStatusWord : successfulStatusWords) {
+        apduRequest.addSuccessfulStatusWord(successfulStatusWord);
+      }
+      apduRequest.setInfo(info);
+    }
+    return new CommandRecord(commandRef, le, apduRequest, apduResponse);
+  }
+
+  /**
+   * Decoded form of a command: its reference, its LE field and the exchanged APDUs.
+   *
+   * @since 3.1.7
+   */
+  static final class CommandRecord {
+
+    private final CardCommandRef commandRef;
+    private final int le;
+    private final ApduRequestAdapter apduRequest;
+    private final ApduResponseApi apduResponse;
+
+    private CommandRecord(
+        CardCommandRef commandRef,
+        int le,
+        ApduRequestAdapter apduRequest,
+        ApduResponseApi apduResponse) {
+      this.commandRef = commandRef;
+      this.le = le;
+      this.apduRequest = apduRequest;
+      this.apduResponse = apduResponse;
+    }
+
+    /**
+     * @return The command reference.
+     * @since 3.1.7
+     */
+    CardCommandRef getCommandRef() {
+      return commandRef;
+    }
+
+    /**
+     * @return The value of the LE field.
+     * @since 3.1.7
+     */
+    int getLe() {
+      return le;
+    }
+
+    /**
+     * @return The APDU request or null if the command was not built.
+     * @since 3.1.7
+     */
+    ApduRequestAdapter getApduRequest() {
+      return apduRequest;
+    }
+
+    /**
+     * @return The APDU response or null if the command was not processed.
+     * @since 3.1.7
+     */
+    ApduResponseApi getApduResponse() {
+      return apduResponse;
+    }
+  }
+
+  /**
+   * Writer of TLV elements into a growing array.
+   *
+   * @since 3.1.7
+   */
+  static final class Writer {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    /**
+     * Builds a new writer starting with the version of the format.
+     *
+     * @since 3.1.7
+     */
+    Writer() {
+      this(true);
+    }
+
+    /**
+     * Builds a new writer.
+     *
+     * @param isVersionWritten false to build a writer of a structured value.
+     * @since 3.1.7
+     */
+    Writer(boolean isVersionWritten) {
+      if (isVersionWritten) {
+        buffer[length++] = FORMAT_VERSION;
+      }
+    }
+
+    /**
+     * Writes a byte array.
+     *
+     * @param tag The tag.
+     * @param value The value.
+     * @since 3.1.7
+     */
+    void writeBytes(byte tag, byte[] value) {
+      writeHeader(tag, value.length);
+      System.arraycopy(value, 0, buffer, length, value.length);
+      length += value.length;
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param tag The tag.
+     * @param value The value.
+     * @since 3.1.7
+     */
+    void writeByte(byte tag, byte value) {
+      writeHeader(tag, 1);
+      buffer[length++] = value;
+    }
+
+    /**
+     * Writes a boolean as a byte.
+     *
+     * @param tag The tag.
+     * @param value The value.
+     * @since 3.1.7
+     */
+    void writeBoolean(byte tag, boolean value) {
+      writeByte(tag, value ? (byte) 1 : (byte) 0);
+    }
+
+    /**
+     * Writes a short on 2 bytes.
+     *
+     * @param tag The tag.
+     * @param value The value.
+     * @since 3.1.7
+     */
+    void writeShort(byte tag, short value) {
+      writeHeader(tag, 2);
+      buffer[length++] = (byte) (value >> 8);
+      buffer[length++] = (byte) value;
+    }
+
+    /**
+     * Writes an int on 4 bytes.
+     *
+     * @param tag The tag.
+     * @param value The value.
+     * @since 3.1.7
+     */
+    void writeInt(byte tag, int value) {
+      writeHeader(tag, 4);
+      putInt(value);
+    }
+
+    /**
+     * Writes a string in UTF-8.
+     *
+     * @param tag The tag.
+     * @param value The value.
+     * @since 3.1.7
+     */
+    void writeString(byte tag, String value) {
+      writeBytes(tag, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a record: its number on 4 bytes followed by its content.
+     *
+     * @param tag The tag.
+     * @param recordNumber The record number.
+     * @param content The record content.
+     * @since 3.1.7
+     */
+    void writeRecord(byte tag, int recordNumber, byte[] content) {
+      writeHeader(tag, 4 + content.length);
+      putInt(recordNumber);
+      System.arraycopy(content, 0, buffer, length, content.length);
+      length += content.length;
+    }
+
+    /**
+     * Writes the elements of another writer as a structured value.
+     *
+     * @param tag The tag.
+     * @param nested The writer of the structured value.
+     * @since 3.1.7
+     */
+    void writeNested(byte tag, Writer nested) {
+      writeHeader(tag, nested.length);
+      System.arraycopy(nested.buffer, 0, buffer, length, nested.length);
+      length += nested.length;
+    }
+
+    /**
+     * Returns the encoded data.
+     *
+     * @return A new array.
+     * @since 3.1.7
+     */
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * Writes the tag and the length, and ensures the capacity for the value.
+     *
+     * @param tag The tag.
+     * @param valueLength The length of the value.
+     */
+    private void writeHeader(byte tag, int valueLength) {
+      ensureCapacity(1 + 5 + valueLength);
+      buffer[length++] = tag;
+      int remaining = valueLength;
+      while ((remaining & ~0x7F) != 0) {
+        buffer[length++] = (byte) ((remaining & 0x7F) | 0x80);
+        remaining >>>= 7;
+      }
+      buffer[length++] = (byte) remaining;
+    }
+
+    private void putInt(int value) {
+      buffer[length++] = (byte) (value >> 24);
+      buffer[length++] = (byte) (value >> 16);
+      buffer[length++] = (byte) (value >> 8);
+      buffer[length++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extraLength) {
+      if (length + extraLength > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extraLength));
+      }
+    }
+  }
+
+  /**
+   * Reader of TLV elements.
+   *
+   * <p>The elements are browsed with {@link #next()}, the value of the current element being
+   * retrieved with the getter corresponding to its type.
+   *
+   * @since 3.1.7
+   */
+  static final class Reader {
+
+    private static final String MSG_MALFORMED_DATA = "Malformed binary data at offset ";
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+    private byte tag;
+    private int valueOffset;
+    private int valueLength;
+
+    /**
+     * Builds a new reader of encoded data, checking the version of the format.
+     *
+     * @param data The encoded data.
+     * @throws IllegalArgumentException If the data is empty or if its version is not supported.
+     * @since 3.1.7
+     */
+    Reader(byte[] data) {
+      Assert.getInstance().notEmpty(data, "data");
+      if (data[0] < 1 || data[0] > FORMAT_VERSION) {
+        throw new IllegalArgumentException("Unsupported binary format version: " + data[0]);
+      }
+      this.data = data;
+      this.position = 1;
+      this.end = data.length;
+    }
+
+    /**
+     * Builds a new reader of a structured value.
+     *
+     * @param data The encoded data.
+     * @param offset The offset of the structured value.
+     * @param length The length of the structured value.
+     */
+    private Reader(byte[] data, int offset, int length) {
+      this.data = data;
+      this.position = offset;
+      this.end = offset + length;
+    }
+
+    /**
+     * Moves to the next element.
+     *
+     * @return false if there are no more elements.
+     * @throws IllegalArgumentException If the element is malformed.
+     * @since 3.1.7
+     */
+    boolean next() {
+      if (position >= end) {
+        return false;
+      }
+      tag = data[position++];
+      int elementLength = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (position >= end || shift > 28) {
+          throw new IllegalArgumentException(MSG_MALFORMED_DATA + position);
+        }
+        b = data[position++];
+        elementLength |= (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      if (elementLength < 0 || elementLength > end - position) {
+        throw new IllegalArgumentException(MSG_MALFORMED_DATA + position);
+      }
+      valueOffset = position;
+      valueLength = elementLength;
+      position += elementLength;
+      return true;
+    }
+
+    /**
+     * @return The tag of the current element.
+     * @since 3.1.7
+     */
+    byte getTag() {
+      return tag;
+    }
+
+    /**
+     * @return A copy of the value of the current element.
+     * @since 3.1.7
+     */
+    byte[] getBytes() {
+      return Arrays.copyOfRange(data, valueOffset, valueOffset + valueLength);
+    }
+
+    /**
+     * @return The value of the current element as a byte.
+     * @since 3.1.7
+     */
+    byte getByte() {
+      checkValueLength(1);
+      return data[valueOffset];
+    }
+
+    /**
+     * @return The value of the current element as a boolean.
+     * @since 3.1.7
+     */
+    boolean getBoolean() {
+      return getByte() != 0;
+    }
+
+    /**
+     * @return The value of the current element as a short.
+     * @since 3.1.7
+     */
+    short getShort() {
+      checkValueLength(2);
+      return (short) (((data[valueOffset] & 0xFF) << 8) | (data[valueOffset + 1] & 0xFF));
+    }
+
+    /**
+     * @return The value of the current element as an int.
+     * @since 3.1.7
+     */
+    int getInt() {
+      checkValueLength(4);
+      return getInt(valueOffset);
+    }
+
+    /**
+     * @return The value of the current element as a UTF-8 string.
+     * @since 3.1.7
+     */
+    String getString() {
+      return new String(data, valueOffset, valueLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The record number of the current record element.
+     * @since 3.1.7
+     */
+    int getRecordNumber() {
+      if (valueLength < 4) {
+        throw new IllegalArgumentException(MSG_MALFORMED_DATA + valueOffset);
+      }
+      return getInt(valueOffset);
+    }
+
+    /**
+     * @return A copy of the content of the current record element.
+     * @since 3.1.7
+     */
+    byte[] getRecordContent() {
+      return Arrays.copyOfRange(data, valueOffset + 4, valueOffset + valueLength);
+    }
+
+    /**
+     * @return A reader of the elements contained in the value of the current element.
+     * @since 3.1.7
+     */
+    Reader getNested() {
+      return new Reader(data, valueOffset, valueLength);
+    }
+
+    private int getInt(int offset) {
+      return ((data[offset] & 0xFF) << 24)
+          | ((data[offset + 1] & 0xFF) << 16)
+          | ((data[offset + 2] & 0xFF) << 8)
+          | (data[offset + 3] & 0xFF);
+    }
+
+    private void checkValueLength(int expectedLength) {
+      if (valueLength != expectedLength) {
+        throw new IllegalArgumentException(MSG_MALFORMED_DATA + valueOffset);
+      }
+    }
+  }
+}
@@ -0,0 +1,188 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file storing the raw CA certificates learned from the cards, to register them again
+ * at the next start of the application.
+ *
+ * <p>The file starts with a 4-byte magic number followed by a 1-byte format version. Each
+ * certificate is then stored as a 2-byte big-endian length, the certificate bytes and the 4-byte
+ * CRC32 of the certificate bytes. The file is memory-mapped for reading. The reading stops at the
+ * first incomplete or corrupted record, which is overwritten by the next appended certificate, the
+ * file being then truncated after it. A file whose header is incomplete, e.g. after a crash during
+ * the first writing, is handled as an empty file. A certificate already present in the file is not
+ * appended again.
+ *
+ * <p>The integrity check only detects the storage errors: the loaded certificates are verified
+ * again against their issuer before being registered.
+ *
+ * @since 3.1.7
+ */
+final class CaCertificateFileStore {
+
+  private static final byte FORMAT_VERSION = 1;
+  // Magic number followed by the format version
+  private static final byte[] HEADER = {'K', 'C', 'A', 'C', FORMAT_VERSION};
+  private static final int HEADER_SIZE = HEADER.length;
+  private static final int LENGTH_SIZE = 2;
+  private static final int CRC_SIZE = 4;
+  private static final int MAX_CERTIFICATE_SIZE = 0xFFFF;
+
+  private final Path file;
+  private final Set<ByteBuffer> storedCertificates = new HashSet<>();
+  private long endPosition;
+
+  /**
+   * Constructor.
+   *
+   * @param file The path of the file, which is created when the first certificate is appended.
+   * @since 3.1.7
+   */
+  CaCertificateFileStore(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Returns the path of the file.
+   *
+   * @return A not null reference.
+   * @since 3.1.7
+   */
+  Path getFile() {
+    return file;
+  }
+
+  /**
+   * Reads all the valid certificates of the file.
+   *
+   * @return A not null list, empty if the file does not exist, is empty or has an incomplete
+   *     header.
+   * @throws IOException If the file cannot be read or is not a CA certificate file.
+   * @since 3.1.7
+   */
+  synchronized List<byte[]> load() throws IOException {
+    List<byte[]> certificates = new ArrayList<>();
+    storedCertificates.clear();
+    endPosition = 0;
+    if (!file.toFile().exists()) {
+      return certificates;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size == 0) {
+        return certificates;
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int headerLength = (int) Math.min(size, HEADER_SIZE);
+      if (!Arrays.equals(
+          readBytes(buffer, new byte[headerLength]), Arrays.copyOf(HEADER, headerLength))) {
+        throw new IOException("Not a CA certificate file: " + file);
+      }
+      if (headerLength < HEADER_SIZE) {
+        // Incomplete header: the header is written again with the first certificate
+        return certificates;
+      }
+      CRC32 crc = new CRC32();
+      while (buffer.remaining() >= LENGTH_SIZE + CRC_SIZE) {
+        int length = buffer.getShort() & 0xFFFF;
+        if (length == 0 || buffer.remaining() < length + CRC_SIZE) {
+          break;
+        }
+        byte[] certificate = readBytes(buffer, new byte[length]);
+        crc.reset();
+        crc.update(certificate);
+        if ((int) crc.getValue() != buffer.getInt()) {
+          break;
+        }
+        certificates.add(certificate);
+        storedCertificates.add(ByteBuffer.wrap(certificate));
+        endPosition = buffer.position();
+      }
+      if (endPosition == 0) {
+        endPosition = HEADER_SIZE;
+      }
+    }
+    return certificates;
+  }
+
+  /**
+   * Appends a certificate to the file and forces its writing to the storage device.
+   *
+   * <p>The file must have been loaded before.
+   *
+   * @param certificate The certificate bytes.
+   * @return false if the certificate is already present in the file.
+   * @throws IOException If the file cannot be written.
+   * @since 3.1.7
+   */
+  synchronized boolean append(byte[] certificate) throws IOException {
+    if (certificate.length == 0 || certificate.length > MAX_CERTIFICATE_SIZE) {
+      throw new IOException("Invalid certificate length: " + certificate.length);
+    }
+    ByteBuffer storedCertificate = ByteBuffer.wrap(certificate.clone());
+    if (storedCertificates.contains(storedCertificate)) {
+      return false;
+    }
+    try (FileChannel channel =
+        FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      ByteBuffer buffer;
+      if (endPosition == 0) {
+        // New file
+        buffer = ByteBuffer.allocate(HEADER_SIZE + LENGTH_SIZE + certificate.length + CRC_SIZE);
+        buffer.put(HEADER);
+      } else {
+        buffer = ByteBuffer.allocate(LENGTH_SIZE + certificate.length + CRC_SIZE);
+      }
+      CRC32 crc = new CRC32();
+      crc.update(certificate);
+      buffer.putShort((short) certificate.length).put(certificate).putInt((int) crc.getValue());
+      ((Buffer) buffer).flip();
+      long position = endPosition;
+      while (buffer.hasRemaining()) {
+        position += channel.write(buffer, position);
+      }
+      // Removes the rest of a previously overwritten incomplete or corrupted record
+      channel.truncate(position);
+      channel.force(false);
+      endPosition = position;
+    }
+    storedCertificates.add(storedCertificate);
+    return true;
+  }
+
+  /**
+   * Fills the provided array from the current position of the provided buffer.
+   *
+   * @param buffer The source buffer.
+   * @param bytes The destination array.
+   * @return The destination array.
+   */
+  private static byte[] readBytes(ByteBuffer buffer, byte[] bytes) {
+    buffer.get(bytes);
+    return bytes;
+  }
+}
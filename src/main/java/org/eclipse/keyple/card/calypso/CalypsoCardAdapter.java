@@ -38,6 +38,8 @@ final class CalypsoCardAdapter implements CalypsoCard, SmartCardSpi {
   private static final Logger logger = LoggerFactory.getLogger(CalypsoCardAdapter.class);
 
   private static final int CARD_REV1_ATR_LENGTH = 20;
+  private static final int SFI_INDEX_SIZE = 32; // SFI coded on 5 bits
+  private static final int LID_INDEX_INITIAL_CAPACITY = 16;
   private static final int REV1_CARD_DEFAULT_WRITE_OPERATIONS_NUMBER_SUPPORTED_PER_SESSION = 3;
   private static final int REV2_CARD_DEFAULT_WRITE_OPERATIONS_NUMBER_SUPPORTED_PER_SESSION = 6;
   private static final int SI_BUFFER_SIZE_INDICATOR = 0;
@@ -82,8 +84,23 @@ final class CalypsoCardAdapter implements CalypsoCard, SmartCardSpi {
   private boolean isModificationCounterInBytes = true;
   private DirectoryHeader directoryHeader;
   private final Set<ElementaryFile> files = Collections.newSetFromMap(new ConcurrentHashMap<>());
-  private final Set<ElementaryFile> filesBackup =
-      Collections.newSetFromMap(new ConcurrentHashMap<>());
+  // Original state of the files modified since the last backup, excluded from the JSON
+  // representation
+  private final transient Map<ElementaryFileAdapter, FileBackup> filesBackup =
+      new IdentityHashMap<>();
+  private transient boolean isFilesBackupActive;
+  // Indexes of the files of the card image, excluded from the JSON representation
+  private final transient ElementaryFileAdapter[] filesBySfi =
+      new ElementaryFileAdapter[SFI_INDEX_SIZE];
+  // LID index: LIDs sorted in ascending order and files at the same positions
+  private transient short[] lidIndexKeys = new short[LID_INDEX_INITIAL_CAPACITY];
+  private transient ElementaryFileAdapter[] lidIndexFiles =
+      new ElementaryFileAdapter[LID_INDEX_INITIAL_CAPACITY];
+  private transient int lidIndexSize;
+  // Records and binary bytes known to be identical to the card, excluded from the JSON
+  // representation
+  private final transient Map<Byte, BitSet> upToDateRecordsBySfi = new HashMap<>();
+  private final transient Map<Byte, BitSet> upToDateBinaryBytesBySfi = new HashMap<>();
   private ElementaryFileAdapter currentEf;
   private Boolean isDfRatified;
   private Integer transactionCounter;
@@ -819,10 +836,9 @@ public ElementaryFile getFileBySfi(byte sfi) {
     if (sfi == 0) {
       return null;
     }
-    for (ElementaryFile ef : files) {
-      if (ef.getSfi() == sfi) {
-        return ef;
-      }
+    ElementaryFile ef = findFileBySfi(sfi);
+    if (ef != null) {
+      return ef;
     }
     logger.warn("EF not found (sfi {}h)", HexUtil.toHex(sfi));
     return null;
@@ -835,10 +851,9 @@ public ElementaryFile getFileBySfi(byte sfi) {
    */
   @Override
   public ElementaryFile getFileByLid(short lid) {
-    for (ElementaryFile ef : files) {
-      if (ef.getHeader() != null && ef.getHeader().getLid() == lid) {
-        return ef;
-      }
+    ElementaryFile ef = findFileByLid(lid);
+    if (ef != null) {
+      return ef;
     }
     logger.warn("EF not found (lid {}h)", HexUtil.toHex(lid));
     return null;
@@ -868,29 +883,106 @@ private ElementaryFileAdapter getOrCreateFile(byte sfi, short lid) {
     if (sfi == 0 && lid == 0 && currentEf != null) {
       return currentEf;
     }
+    ElementaryFileAdapter ef = null;
     if (sfi != 0) {
       // Search by SFI
-      for (ElementaryFile ef : files) {
-        if (ef.getSfi() == sfi) {
-          currentEf = (ElementaryFileAdapter) ef;
-          return currentEf;
-        }
-      }
+      ef = findFileBySfi(sfi);
     } else if (lid != 0) {
       // Search by LID
-      for (ElementaryFile ef : files) {
-        if (ef.getHeader() != null && ef.getHeader().getLid() == lid) {
-          currentEf = (ElementaryFileAdapter) ef;
-          return currentEf;
-        }
+      ef = findFileByLid(lid);
+    }
+    if (ef == null) {
+      // Create a new EF with the provided SFI
+      ef = new ElementaryFileAdapter(sfi);
+      files.add(ef);
+      indexFile(ef);
+      if (isFilesBackupActive) {
+        filesBackup.put(ef, new FileBackup(true));
       }
     }
-    // Create a new EF with the provided SFI
-    currentEf = new ElementaryFileAdapter(sfi);
-    files.add(currentEf);
+    currentEf = ef;
     return currentEf;
   }
 
+  /**
+   * Returns the EF having the provided SFI using the SFI index.<br>
+   * Values not coded on 5 bits are searched in the whole set of EFs.
+   *
+   * @param sfi The SFI.
+   * @return Null if the EF is not found.
+   */
+  private ElementaryFileAdapter findFileBySfi(byte sfi) {
+    if (sfi > 0 && sfi < filesBySfi.length) {
+      return filesBySfi[sfi];
+    }
+    for (ElementaryFile ef : files) {
+      if (ef.getSfi() == sfi) {
+        return (ElementaryFileAdapter) ef;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Adds the provided EF to the SFI and LID indexes.
+   *
+   * @param ef The EF.
+   */
+  private void indexFile(ElementaryFileAdapter ef) {
+    if (ef.getSfi() > 0 && ef.getSfi() < filesBySfi.length) {
+      filesBySfi[ef.getSfi()] = ef;
+    }
+    if (ef.getHeader() != null) {
+      indexFileByLid(ef.getHeader().getLid(), ef);
+    }
+  }
+
+  /**
+   * Returns the EF having the provided LID using the LID index.
+   *
+   * @param lid The LID.
+   * @return Null if the EF is not found.
+   */
+  private ElementaryFileAdapter findFileByLid(short lid) {
+    int index = Arrays.binarySearch(lidIndexKeys, 0, lidIndexSize, lid);
+    return index >= 0 ? lidIndexFiles[index] : null;
+  }
+
+  /**
+   * Associates the provided EF to the provided LID in the LID index, replacing any EF previously
+   * associated to it.
+   *
+   * @param lid The LID.
+   * @param ef The EF.
+   */
+  private void indexFileByLid(short lid, ElementaryFileAdapter ef) {
+    int index = Arrays.binarySearch(lidIndexKeys, 0, lidIndexSize, lid);
+    if (index >= 0) {
+      lidIndexFiles[index] = ef;
+      return;
+    }
+    index = -index - 1;
+    if (lidIndexSize == lidIndexKeys.length) {
+      lidIndexKeys = Arrays.copyOf(lidIndexKeys, lidIndexSize * 2);
+      lidIndexFiles = Arrays.copyOf(lidIndexFiles, lidIndexSize * 2);
+    }
+    System.arraycopy(lidIndexKeys, index, lidIndexKeys, index + 1, lidIndexSize - index);
+    System.arraycopy(lidIndexFiles, index, lidIndexFiles, index + 1, lidIndexSize - index);
+    lidIndexKeys[index] = lid;
+    lidIndexFiles[index] = ef;
+    lidIndexSize++;
+  }
+
+  /** Rebuilds the SFI and LID indexes from the current set of EFs. */
+  private void rebuildFileIndexes() {
+    Arrays.fill(filesBySfi, null);
+    Arrays.fill(lidIndexFiles, 0, lidIndexSize, null);
+    lidIndexSize = 0;
+    for (ElementaryFile ef : files) {
+      indexFile((ElementaryFileAdapter) ef);
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -936,11 +1028,13 @@ void setPinAttemptRemaining(int pinAttemptCounter) {
    */
   void setFileHeader(byte sfi, FileHeaderAdapter header) {
     ElementaryFileAdapter ef = getOrCreateFile(sfi, header.getLid());
+    backupHeader(ef);
     if (ef.getHeader() == null) {
       ef.setHeader(header);
     } else {
       ef.getHeader().updateMissingInfoFrom(header);
     }
+    indexFileByLid(ef.getHeader().getLid(), ef);
   }
 
   /**
@@ -955,7 +1049,12 @@ void setFileHeader(byte sfi, FileHeaderAdapter header) {
    */
   void setContent(byte sfi, int numRecord, byte[] content) {
     ElementaryFileAdapter ef = getOrCreateFile(sfi, (short) 0);
+    backupRecord(ef, numRecord);
     ef.getData().setContent(numRecord, content);
+    clearUpToDateRecord(ef.getSfi(), numRecord);
+    if (numRecord == 1) {
+      upToDateBinaryBytesBySfi.remove(ef.getSfi());
+    }
   }
 
   /**
@@ -969,7 +1068,9 @@ void setContent(byte sfi, int numRecord, byte[] content) {
    */
   void setCounter(byte sfi, int numCounter, byte[] content) {
     ElementaryFileAdapter ef = getOrCreateFile(sfi, (short) 0);
+    backupRecord(ef, 1);
     ef.getData().setCounter(numCounter, content);
+    clearUpToDateRecord(ef.getSfi(), 1);
   }
 
   /**
@@ -987,7 +1088,9 @@ void setCounter(byte sfi, int numCounter, byte[] content) {
    */
   void setContent(byte sfi, int numRecord, byte[] content, int offset) {
     ElementaryFileAdapter ef = getOrCreateFile(sfi, (short) 0);
+    backupRecord(ef, numRecord);
     ef.getData().setContent(numRecord, content, offset);
+    clearUpToDateContent(ef.getSfi(), numRecord, offset, content.length);
   }
 
   /**
@@ -1004,7 +1107,9 @@ void setContent(byte sfi, int numRecord, byte[] content, int offset) {
    */
   void fillContent(byte sfi, int numRecord, byte[] content, int offset) {
     ElementaryFileAdapter ef = getOrCreateFile(sfi, (short) 0);
+    backupRecord(ef, numRecord);
     ef.getData().fillContent(numRecord, content, offset);
+    clearUpToDateContent(ef.getSfi(), numRecord, offset, content.length);
   }
 
   /**
@@ -1020,17 +1125,126 @@ void fillContent(byte sfi, int numRecord, byte[] content, int offset) {
    */
   void addCyclicContent(byte sfi, byte[] content) {
     ElementaryFileAdapter ef = getOrCreateFile(sfi, (short) 0);
+    if (isFilesBackupActive) {
+      // All records are shifted and a new one is added
+      SortedMap<Integer, byte[]> records = ef.getData().getAllRecordsContent();
+      for (Integer numRecord : records.keySet()) {
+        backupRecord(ef, numRecord);
+      }
+      backupRecord(ef, records.isEmpty() ? 1 : records.lastKey() + 1);
+    }
     ef.getData().addCyclicContent(content);
+    upToDateRecordsBySfi.remove(ef.getSfi());
+  }
+
+  /**
+   * Indicates that the content of the specified record has just been read from the card and is
+   * therefore identical to the card content.
+   *
+   * <p>This state is lost as soon as the record is modified in the card image by any other means.
+   *
+   * @param sfi The SFI (should be not 0).
+   * @param numRecord The record number.
+   * @since 3.1.7
+   */
+  void setRecordUpToDate(byte sfi, int numRecord) {
+    BitSet records = upToDateRecordsBySfi.get(sfi);
+    if (records == null) {
+      records = new BitSet();
+      upToDateRecordsBySfi.put(sfi, records);
+    }
+    records.set(numRecord);
+  }
+
+  /**
+   * Indicates if the content of the specified record is known to be identical to the card content.
+   *
+   * @param sfi The SFI.
+   * @param numRecord The record number.
+   * @return True if the record has been read from the card and not modified since.
+   * @since 3.1.7
+   */
+  boolean isRecordUpToDate(byte sfi, int numRecord) {
+    BitSet records = upToDateRecordsBySfi.get(sfi);
+    return records != null && records.get(numRecord);
+  }
+
+  /**
+   * Indicates that the specified bytes of a binary file have just been read from the card and are
+   * therefore identical to the card content.
+   *
+   * <p>This state is lost as soon as the bytes are modified in the card image by any other means.
+   *
+   * @param sfi The SFI (should be not 0).
+   * @param offset The offset of the first byte.
+   * @param length The number of bytes.
+   * @since 3.1.7
+   */
+  void setBinaryContentUpToDate(byte sfi, int offset, int length) {
+    BitSet bytes = upToDateBinaryBytesBySfi.get(sfi);
+    if (bytes == null) {
+      bytes = new BitSet();
+      upToDateBinaryBytesBySfi.put(sfi, bytes);
+    }
+    bytes.set(offset, offset + length);
+  }
+
+  /**
+   * Indicates if the specified bytes of a binary file are known to be identical to the card
+   * content.
+   *
+   * @param sfi The SFI.
+   * @param offset The offset of the first byte.
+   * @param length The number of bytes.
+   * @return True if all the bytes have been read from the card and not modified since.
+   * @since 3.1.7
+   */
+  boolean isBinaryContentUpToDate(byte sfi, int offset, int length) {
+    BitSet bytes = upToDateBinaryBytesBySfi.get(sfi);
+    return bytes != null && bytes.nextClearBit(offset) >= offset + length;
+  }
+
+  /**
+   * Removes the up-to-date state of the provided record.
+   *
+   * @param sfi The SFI.
+   * @param numRecord The record number.
+   */
+  private void clearUpToDateRecord(byte sfi, int numRecord) {
+    BitSet records = upToDateRecordsBySfi.get(sfi);
+    if (records != null) {
+      records.clear(numRecord);
+    }
+  }
+
+  /**
+   * Removes the up-to-date state of the provided record and, for record #1, of the provided bytes
+   * of a binary file.
+   *
+   * @param sfi The SFI.
+   * @param numRecord The record number.
+   * @param offset The offset of the first byte.
+   * @param length The number of bytes.
+   */
+  private void clearUpToDateContent(byte sfi, int numRecord, int offset, int length) {
+    clearUpToDateRecord(sfi, numRecord);
+    BitSet bytes = upToDateBinaryBytesBySfi.get(sfi);
+    if (numRecord == 1 && bytes != null) {
+      bytes.clear(offset, offset + length);
+    }
   }
 
   /**
    * Make a backup of the Elementary Files.<br>
-   * This method should be used before starting a card secure session.
+   * This method should be used before starting a card secure session.<br>
+   * No copy is made at this stage: the original content of each header or record is saved on its
+   * first modification.
    *
    * @since 2.0.0
    */
   void backupFiles() {
-    copyFiles(files, filesBackup);
+    filesBackup.clear();
+    isFilesBackupActive = true;
     svBalanceBackup = svBalance;
     svLastTNumBackup = svLastTNum;
   }
@@ -1038,27 +1252,105 @@ void backupFiles() {
   /**
    * Restore the last backup of Elementary Files.<br>
    * This method should be used when SW of the card close secure session command is unsuccessful or
-   * if secure session is aborted.
+   * if secure session is aborted.<br>
+   * Only the headers and records modified since the backup are reverted.
    *
    * @since 2.0.0
    */
   void restoreFiles() {
-    copyFiles(filesBackup, files);
+    for (Map.Entry<ElementaryFileAdapter, FileBackup> entry : filesBackup.entrySet()) {
+      ElementaryFileAdapter ef = entry.getKey();
+      FileBackup fileBackup = entry.getValue();
+      if (fileBackup.isCreated) {
+        files.remove(ef);
+        if (currentEf == ef) {
+          currentEf = null;
+        }
+        continue;
+      }
+      if (fileBackup.isHeaderSaved) {
+        ef.setHeader(fileBackup.header);
+      }
+      SortedMap<Integer, byte[]> records = ef.getData().getAllRecordsContent();
+      for (Map.Entry<Integer, byte[]> record : fileBackup.records.entrySet()) {
+        if (record.getValue() != null) {
+          records.put(record.getKey(), record.getValue());
+        } else {
+          records.remove(record.getKey());
+        }
+      }
+    }
+    if (!filesBackup.isEmpty()) {
+      rebuildFileIndexes();
+    }
+    filesBackup.clear();
+    isFilesBackupActive = false;
+    // The restored contents may differ from the card contents
+    upToDateRecordsBySfi.clear();
+    upToDateBinaryBytesBySfi.clear();
     svBalance = svBalanceBackup;
     svLastTNum = svLastTNumBackup;
   }
 
   /**
-   * Copy a set of ElementaryFile to another one by cloning each element.
+   * Discards the last backup of Elementary Files and stops saving the original contents.<br>
+   * This method should be used when the card close secure session command is successful: the
+   * modifications made during the session are then kept in the card image.
+   *
+   * @since 3.1.7
+   */
+  void commitFiles() {
+    filesBackup.clear();
+    isFilesBackupActive = false;
+    svBalanceBackup = svBalance;
+    svLastTNumBackup = svLastTNum;
+  }
+
+  /**
+   * Saves the original header of the provided EF if a backup is active and if it has not already
+   * been saved.
+   *
+   * @param ef The EF.
+   */
+  private void backupHeader(ElementaryFileAdapter ef) {
+    FileBackup fileBackup = getFileBackup(ef);
+    if (fileBackup != null && !fileBackup.isHeaderSaved) {
+      fileBackup.header = ef.getHeader() != null ? new FileHeaderAdapter(ef.getHeader()) : null;
+      fileBackup.isHeaderSaved = true;
+    }
+  }
+
+  /**
+   * Saves the original content of the provided record if a backup is active and if it has not
+   * already been saved.
+   *
+   * @param ef The EF.
+   * @param numRecord The record number.
+   */
+  private void backupRecord(ElementaryFileAdapter ef, int numRecord) {
+    FileBackup fileBackup = getFileBackup(ef);
+    if (fileBackup != null && !fileBackup.records.containsKey(numRecord)) {
+      byte[] content = ef.getData().getAllRecordsContent().get(numRecord);
+      fileBackup.records.put(numRecord, content != null ? content.clone() : null);
+    }
+  }
+
+  /**
+   * Returns the backup of the provided EF, creating it if needed.
    *
-   * @param src the source (should be not null).
-   * @param dest the destination (should be not null).
+   * @param ef The EF.
+   * @return Null if no backup is active.
    */
-  private static void copyFiles(Set<ElementaryFile> src, Set<ElementaryFile> dest) {
-    dest.clear();
-    for (ElementaryFile file : src) {
-      dest.add(new ElementaryFileAdapter(file));
+  private FileBackup getFileBackup(ElementaryFileAdapter ef) {
+    if (!isFilesBackupActive) {
+      return null;
+    }
+    FileBackup fileBackup = filesBackup.get(ef);
+    if (fileBackup == null) {
+      fileBackup = new FileBackup(false);
+      filesBackup.put(ef, fileBackup);
     }
+    return fileBackup;
   }
 
   /**
@@ -1160,10 +1452,22 @@ CardPublicKeySpi getCardPublicKeySpi() {
   void addCardCertificateBytes(byte[] cardCertificateBytes, boolean isFirstPart) {
     if (isFirstPart) {
       this.cardCertificate = ByteBuffer.allocate(CalypsoCardConstant.CARD_CERTIFICATE_SIZE);
+    } else if (cardCertificate == null) {
+      // The first part has not been received
+      return;
     }
     cardCertificate.put(cardCertificateBytes);
   }
 
+  /**
+   * Removes the card certificate, possibly incomplete.
+   *
+   * @since 3.1.7
+   */
+  void discardCardCertificate() {
+    cardCertificate = null;
+  }
+
   /**
    * Sets the CA certificate bytes received in response to the GET DATA command for the tag {@link
    * org.eclipse.keypop.calypso.card.GetDataTag#CA_CERTIFICATE}.
@@ -1175,10 +1479,22 @@ void addCardCertificateBytes(byte[] cardCertificateBytes, boolean isFirstPart) {
   void addCaCertificateBytes(byte[] caCertificateBytes, boolean isFirstPart) {
     if (isFirstPart) {
       this.caCertificate = ByteBuffer.allocate(CalypsoCardConstant.CA_CERTIFICATE_SIZE);
+    } else if (caCertificate == null) {
+      // The first part has not been received
+      return;
     }
     caCertificate.put(caCertificateBytes);
   }
 
+  /**
+   * Removes the CA certificate, possibly incomplete.
+   *
+   * @since 3.1.7
+   */
+  void discardCaCertificate() {
+    caCertificate = null;
+  }
+
   /**
    * Sets the SV signature.
    *
@@ -1298,6 +1614,156 @@ CalypsoCardAdapter setPreOpenDataOut(byte[] preOpenDataOut) {
     return this;
   }
 
+  /**
+   * Writes the image of the card using the binary format.
+   *
+   * <p>The selection data come first, followed by the data collected during the transactions. The
+   * transient data of an ongoing transaction (challenge, pre-open data, SV signature...) are not
+   * written.
+   *
+   * @param writer The writer.
+   * @see BinaryCodec
+   * @since 3.1.7
+   */
+  void writeImage(BinaryCodec.Writer writer) {
+    if (selectApplicationResponse != null) {
+      writer.writeBytes(
+          BinaryCodec.TAG_SELECT_APPLICATION_RESPONSE, selectApplicationResponse.getApdu());
+    } else if (powerOnData != null) {
+      writer.writeString(BinaryCodec.TAG_POWER_ON_DATA, powerOnData);
+    }
+    if (directoryHeader != null) {
+      BinaryCodec.Writer headerWriter = new BinaryCodec.Writer(false);
+      BinaryCodec.writeDirectoryHeader(headerWriter, directoryHeader);
+      writer.writeNested(BinaryCodec.TAG_DIRECTORY_HEADER, headerWriter);
+    }
+    for (ElementaryFile ef : files) {
+      BinaryCodec.Writer fileWriter = new BinaryCodec.Writer(false);
+      BinaryCodec.writeFile(fileWriter, ef);
+      writer.writeNested(BinaryCodec.TAG_FILE, fileWriter);
+    }
+    if (isDfRatified != null) {
+      writer.writeBoolean(BinaryCodec.TAG_DF_RATIFIED, isDfRatified);
+    }
+    if (transactionCounter != null) {
+      writer.writeInt(BinaryCodec.TAG_TRANSACTION_COUNTER, transactionCounter);
+    }
+    if (pinAttemptCounter != null) {
+      writer.writeInt(BinaryCodec.TAG_PIN_ATTEMPT_COUNTER, pinAttemptCounter);
+    }
+    if (svBalance != null) {
+      BinaryCodec.Writer svWriter = new BinaryCodec.Writer(false);
+      svWriter.writeByte(BinaryCodec.TAG_SV_KVC, svKvc);
+      if (svGetHeader != null) {
+        svWriter.writeBytes(BinaryCodec.TAG_SV_GET_HEADER, svGetHeader);
+      }
+      if (svGetData != null) {
+        svWriter.writeBytes(BinaryCodec.TAG_SV_GET_DATA, svGetData);
+      }
+      svWriter.writeInt(BinaryCodec.TAG_SV_BALANCE, svBalance);
+      svWriter.writeInt(BinaryCodec.TAG_SV_LAST_TNUM, svLastTNum);
+      writer.writeNested(BinaryCodec.TAG_SV_DATA, svWriter);
+    }
+    writer.writeBoolean(BinaryCodec.TAG_DF_INVALIDATED, isDfInvalidated);
+    if (traceabilityInformation != null) {
+      writer.writeBytes(BinaryCodec.TAG_TRACEABILITY_INFORMATION, traceabilityInformation);
+    }
+    if (cardPublicKey != null) {
+      writer.writeBytes(BinaryCodec.TAG_CARD_PUBLIC_KEY, cardPublicKey);
+    }
+    if (cardCertificate != null) {
+      writer.writeBytes(BinaryCodec.TAG_CARD_CERTIFICATE, cardCertificate.array());
+    }
+    if (caCertificate != null) {
+      writer.writeBytes(BinaryCodec.TAG_CA_CERTIFICATE, caCertificate.array());
+    }
+  }
+
+  /**
+   * Reads the data collected during the transactions from a card image in binary format.
+   *
+   * <p>The selection data are expected to have been used to build the current instance and are
+   * ignored.
+   *
+   * @param reader The reader.
+   * @see BinaryCodec
+   * @since 3.1.7
+   */
+  void readImage(BinaryCodec.Reader reader) {
+    while (reader.next()) {
+      switch (reader.getTag()) {
+        case BinaryCodec.TAG_DIRECTORY_HEADER:
+          setDirectoryHeader(BinaryCodec.readDirectoryHeader(reader.getNested()));
+          break;
+        case BinaryCodec.TAG_FILE:
+          ElementaryFileAdapter ef = BinaryCodec.readFile(reader.getNested());
+          files.add(ef);
+          indexFile(ef);
+          break;
+        case BinaryCodec.TAG_DF_RATIFIED:
+          isDfRatified = reader.getBoolean();
+          break;
+        case BinaryCodec.TAG_TRANSACTION_COUNTER:
+          transactionCounter = reader.getInt();
+          break;
+        case BinaryCodec.TAG_PIN_ATTEMPT_COUNTER:
+          pinAttemptCounter = reader.getInt();
+          break;
+        case BinaryCodec.TAG_SV_DATA:
+          readSvData(reader.getNested());
+          break;
+        case BinaryCodec.TAG_DF_INVALIDATED:
+          isDfInvalidated = reader.getBoolean();
+          break;
+        case BinaryCodec.TAG_TRACEABILITY_INFORMATION:
+          traceabilityInformation = reader.getBytes();
+          break;
+        case BinaryCodec.TAG_CARD_PUBLIC_KEY:
+          cardPublicKey = reader.getBytes();
+          break;
+        case BinaryCodec.TAG_CARD_CERTIFICATE:
+          cardCertificate = ByteBuffer.wrap(reader.getBytes());
+          cardCertificate.position(cardCertificate.limit());
+          break;
+        case BinaryCodec.TAG_CA_CERTIFICATE:
+          caCertificate = ByteBuffer.wrap(reader.getBytes());
+          caCertificate.position(caCertificate.limit());
+          break;
+        default:
+          // Selection data or unknown element
+      }
+    }
+  }
+
+  /**
+   * Reads the SV data from a card image in binary format.
+   *
+   * @param reader The reader of the SV data element.
+   */
+  private void readSvData(BinaryCodec.Reader reader) {
+    while (reader.next()) {
+      switch (reader.getTag()) {
+        case BinaryCodec.TAG_SV_KVC:
+          svKvc = reader.getByte();
+          break;
+        case BinaryCodec.TAG_SV_GET_HEADER:
+          svGetHeader = reader.getBytes();
+          break;
+        case BinaryCodec.TAG_SV_GET_DATA:
+          svGetData = reader.getBytes();
+          break;
+        case BinaryCodec.TAG_SV_BALANCE:
+          svBalance = reader.getInt();
+          break;
+        case BinaryCodec.TAG_SV_LAST_TNUM:
+          svLastTNum = reader.getInt();
+          break;
+        default:
+          // Unknown element
+      }
+    }
+  }
+
   /**
    * Gets the object content as a Json string.
    *
@@ -1381,4 +1847,18 @@ private PatchRev12 setLegacyCase1() {
       return this;
     }
   }
+
+  /** POJO containing the original state of an EF modified during a secure session. */
+  private static final class FileBackup {
+
+    private final boolean isCreated;
+    private boolean isHeaderSaved;
+    private FileHeaderAdapter header;
+    // A null content means that the record did not exist
+    private final Map<Integer, byte[]> records = new HashMap<>();
+
+    private FileBackup(boolean isCreated) {
+      this.isCreated = isCreated;
+    }
+  }
 }
@@ -193,6 +193,17 @@ public CalypsoCardSelectionExtension prepareGetData(GetDataTag tag) {
       case TRACEABILITY_INFORMATION:
         commands.add(new CommandGetDataTraceabilityInformation(transactionContext, commandContext));
         break;
+      case CARD_CERTIFICATE:
+        commands.add(new CommandGetDataCertificate(transactionContext, commandContext, true, true));
+        commands.add(
+            new CommandGetDataCertificate(transactionContext, commandContext, true, false));
+        break;
+      case CA_CERTIFICATE:
+        commands.add(
+            new CommandGetDataCertificate(transactionContext, commandContext, false, true));
+        commands.add(
+            new CommandGetDataCertificate(transactionContext, commandContext, false, false));
+        break;
       default:
         throw new UnsupportedOperationException("Unsupported Get Data tag: " + tag.name());
     }
@@ -307,6 +318,11 @@ private static void parseApduResponses(
       try {
         commands.get(i).parseResponseForSelection(apduResponses.get(i), calypsoCard);
       } catch (CardCommandException e) {
+        if (commands.get(i) instanceof CommandGetDataCertificate) {
+          // The certificate will be read again during the transaction if needed
+          ((CommandGetDataCertificate) commands.get(i)).discardCertificate(calypsoCard);
+          continue;
+        }
         CardCommandRef commandRef = commands.get(i).getCommandRef();
         if (commandRef == CardCommandRef.READ_RECORDS
             || commandRef == CardCommandRef.READ_BINARY
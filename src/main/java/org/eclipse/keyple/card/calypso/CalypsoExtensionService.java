@@ -11,13 +11,21 @@
  ************************************************************************************** */
 package org.eclipse.keyple.card.calypso;
 
+import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
 import static org.eclipse.keyple.card.calypso.JsonAdapters.*;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import org.eclipse.keyple.core.common.CommonApiProperties;
 import org.eclipse.keyple.core.common.KeypleCardExtension;
+import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keyple.core.util.json.JsonUtil;
 import org.eclipse.keypop.calypso.card.CalypsoCardApiFactory;
 import org.eclipse.keypop.calypso.card.card.*;
+import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.SecureSymmetricCryptoTransactionManager;
+import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.TransactionManager;
 import org.eclipse.keypop.card.CardApiProperties;
 import org.eclipse.keypop.reader.ReaderApiProperties;
 
@@ -33,11 +41,23 @@ public final class CalypsoExtensionService implements KeypleCardExtension { // N
 
   static {
     // Register additional JSON adapters.
-    JsonUtil.registerTypeAdapter(DirectoryHeader.class, new DirectoryHeaderJsonAdapter(), false);
-    JsonUtil.registerTypeAdapter(ElementaryFile.class, new ElementaryFileJsonAdapter(), false);
-    JsonUtil.registerTypeAdapter(FileHeader.class, new FileHeaderJsonAdapter(), false);
-    JsonUtil.registerTypeAdapter(SvLoadLogRecord.class, new SvLoadLogRecordJsonAdapter(), false);
-    JsonUtil.registerTypeAdapter(SvDebitLogRecord.class, new SvDebitLogRecordJsonAdapter(), false);
+    // The implementation classes are registered too, so that they are streamed when they are
+    // serialized directly or as the declared type of a field.
+    DirectoryHeaderJsonAdapter directoryHeaderJsonAdapter = new DirectoryHeaderJsonAdapter();
+    ElementaryFileJsonAdapter elementaryFileJsonAdapter = new ElementaryFileJsonAdapter();
+    FileHeaderJsonAdapter fileHeaderJsonAdapter = new FileHeaderJsonAdapter();
+    SvLoadLogRecordJsonAdapter svLoadLogRecordJsonAdapter = new SvLoadLogRecordJsonAdapter();
+    SvDebitLogRecordJsonAdapter svDebitLogRecordJsonAdapter = new SvDebitLogRecordJsonAdapter();
+    JsonUtil.registerTypeAdapter(DirectoryHeader.class, directoryHeaderJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(DirectoryHeaderAdapter.class, directoryHeaderJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(ElementaryFile.class, elementaryFileJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(ElementaryFileAdapter.class, elementaryFileJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(FileHeader.class, fileHeaderJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(FileHeaderAdapter.class, fileHeaderJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(SvLoadLogRecord.class, svLoadLogRecordJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(SvLoadLogRecordAdapter.class, svLoadLogRecordJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(SvDebitLogRecord.class, svDebitLogRecordJsonAdapter, false);
+    JsonUtil.registerTypeAdapter(SvDebitLogRecordAdapter.class, svDebitLogRecordJsonAdapter, false);
     JsonUtil.registerTypeAdapter(Command.class, new AbstractCardCommandJsonAdapter(), false);
   }
 
@@ -61,6 +81,162 @@ public CalypsoCardApiFactory getCalypsoCardApiFactory() {
     return new CalypsoCardApiFactoryAdapter();
   }
 
+  /**
+   * Returns the features specific to this extension of a transaction manager created by a {@link
+   * CalypsoCardApiFactory} provided by this service.
+   *
+   * @param transactionManager The transaction manager.
+   * @param <T> The type of the transaction manager.
+   * @return A not null reference acting on the provided transaction manager.
+   * @throws IllegalArgumentException If the transaction manager is null or has not been created by
+   *     this extension.
+   * @since 3.1.7
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends TransactionManager<T>>
+      TransactionManagerExtension<T> getTransactionManagerExtension(T transactionManager) {
+    Assert.getInstance().notNull(transactionManager, "transactionManager");
+    if (!(transactionManager instanceof TransactionManagerAdapter)) {
+      throw new IllegalArgumentException(
+          "The provided 'transactionManager' must be created by the Calypso card extension");
+    }
+    return (TransactionManagerExtension<T>) transactionManager;
+  }
+
+  /**
+   * Returns the features specific to this extension of a secure transaction manager using a
+   * symmetric crypto service, created by a {@link CalypsoCardApiFactory} provided by this service.
+   *
+   * @param transactionManager The transaction manager.
+   * @param <T> The type of the transaction manager.
+   * @return A not null reference acting on the provided transaction manager.
+   * @throws IllegalArgumentException If the transaction manager is null or has not been created by
+   *     this extension.
+   * @since 3.1.7
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends SecureSymmetricCryptoTransactionManager<T>>
+      SecureSymmetricCryptoTransactionManagerExtension<T>
+          getSecureSymmetricCryptoTransactionManagerExtension(T transactionManager) {
+    Assert.getInstance().notNull(transactionManager, "transactionManager");
+    if (!(transactionManager instanceof SecureSymmetricCryptoTransactionManagerAdapter)) {
+      throw new IllegalArgumentException(
+          "The provided 'transactionManager' must be created by the Calypso card extension");
+    }
+    return (SecureSymmetricCryptoTransactionManagerExtension<T>) transactionManager;
+  }
+
+  /**
+   * Returns the features specific to this extension of a symmetric crypto security setting created
+   * by a {@link CalypsoCardApiFactory} provided by this service.
+   *
+   * @param securitySetting The security setting.
+   * @return A not null reference acting on the provided security setting.
+   * @throws IllegalArgumentException If the security setting is null or has not been created by
+   *     this extension.
+   * @since 3.1.7
+   */
+  public SymmetricCryptoSecuritySettingExtension getSymmetricCryptoSecuritySettingExtension(
+      SymmetricCryptoSecuritySetting securitySetting) {
+    Assert.getInstance().notNull(securitySetting, "securitySetting");
+    if (!(securitySetting instanceof SymmetricCryptoSecuritySettingAdapter)) {
+      throw new IllegalArgumentException(
+          "The provided 'securitySetting' must be created by the Calypso card extension");
+    }
+    return (SymmetricCryptoSecuritySettingExtension) securitySetting;
+  }
+
+  /**
+   * Returns the features specific to this extension of an asymmetric crypto security setting
+   * created by a {@link CalypsoCardApiFactory} provided by this service.
+   *
+   * @param securitySetting The security setting.
+   * @return A not null reference acting on the provided security setting.
+   * @throws IllegalArgumentException If the security setting is null or has not been created by
+   *     this extension.
+   * @since 3.1.7
+   */
+  public AsymmetricCryptoSecuritySettingExtension getAsymmetricCryptoSecuritySettingExtension(
+      AsymmetricCryptoSecuritySetting securitySetting) {
+    Assert.getInstance().notNull(securitySetting, "securitySetting");
+    if (!(securitySetting instanceof AsymmetricCryptoSecuritySettingAdapter)) {
+      throw new IllegalArgumentException(
+          "The provided 'securitySetting' must be created by the Calypso card extension");
+    }
+    return (AsymmetricCryptoSecuritySettingExtension) securitySetting;
+  }
+
+  /**
+   * Creates an {@link AuditDataSink} writing the APDUs into the provided buffer, from its current
+   * position.
+   *
+   * <p>Each APDU is written as a 2-byte big-endian length followed by its bytes, the request first,
+   * then the response. A pair is written entirely or not at all: when the remaining space of the
+   * buffer is not sufficient, the sink fails and the pair is not written.
+   *
+   * @param buffer The destination buffer.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the buffer is null.
+   * @since 3.1.7
+   */
+  public AuditDataSink createAuditDataSink(ByteBuffer buffer) {
+    return new AuditDataSinkAdapters.ByteBufferAuditDataSink(buffer);
+  }
+
+  /**
+   * Creates an {@link AuditDataSink} writing the APDUs into the provided stream.
+   *
+   * <p>The APDUs are written in the same format as {@link #createAuditDataSink(ByteBuffer)}. The
+   * stream is neither flushed nor closed by the sink.
+   *
+   * @param outputStream The destination stream.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the stream is null.
+   * @since 3.1.7
+   */
+  public AuditDataSink createAuditDataSink(OutputStream outputStream) {
+    return new AuditDataSinkAdapters.OutputStreamAuditDataSink(outputStream);
+  }
+
+  /**
+   * Encodes the image of the provided card into a compact binary form, alternative to its JSON form
+   * (e.g. to transfer it from a terminal to a back-office).
+   *
+   * <p>The binary form starts with the version of the format, followed by length-prefixed TLV
+   * elements. It contains the selection data of the card and the data collected during the
+   * transactions (files, counters, SV, certificates...), but not the transient data of an ongoing
+   * transaction.
+   *
+   * @param calypsoCard The card.
+   * @return A not empty array.
+   * @throws IllegalArgumentException If the card is null or has not been selected with this
+   *     extension.
+   * @since 3.1.7
+   */
+  public byte[] encodeCalypsoCard(CalypsoCard calypsoCard) {
+    Assert.getInstance().notNull(calypsoCard, "calypsoCard");
+    if (!(calypsoCard instanceof CalypsoCardAdapter)) {
+      throw new IllegalArgumentException(
+          "The provided 'calypsoCard' must be selected with the Calypso card extension");
+    }
+    return BinaryCodec.encodeCard((CalypsoCardAdapter) calypsoCard);
+  }
+
+  /**
+   * Decodes a card image produced by {@link #encodeCalypsoCard(CalypsoCard)}.
+   *
+   * <p>The elements unknown to this version of the extension are ignored.
+   *
+   * @param data The encoded card image.
+   * @return A new instance.
+   * @throws IllegalArgumentException If the data is null, empty, malformed or if its version is not
+   *     supported.
+   * @since 3.1.7
+   */
+  public CalypsoCard decodeCalypsoCard(byte[] data) {
+    return BinaryCodec.decodeCard(data);
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -0,0 +1,218 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.CardPublicKeySpi;
+
+/**
+ * Bounded cache of the card public keys extracted from already verified card certificates.
+ *
+ * <p>An entry is identified by the application serial number of the card and the SHA-256 digest of
+ * its certificate. The least recently used entry is evicted when the maximum size is reached, and
+ * an entry expires after the configured time to live, counted from the verification of the
+ * certificate.
+ *
+ * <p>Clearing the cache starts a new generation: a key verified with a certificate store read
+ * before the clearing is not added afterwards.
+ *
+ * <p>The cache is thread-safe.
+ *
+ * @since 3.1.7
+ */
+final class CardPublicKeyCache {
+
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
+  private final int maxSize;
+  private final long timeToLiveNanos;
+  private final Clock clock;
+  private final Map<ByteBuffer, Entry> entries;
+  private long generation;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize The maximum number of entries.
+   * @param timeToLiveMillis The time to live of an entry, in milliseconds.
+   * @since 3.1.7
+   */
+  CardPublicKeyCache(int maxSize, long timeToLiveMillis) {
+    this(maxSize, timeToLiveMillis, System::nanoTime);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize The maximum number of entries.
+   * @param timeToLiveMillis The time to live of an entry, in milliseconds.
+   * @param clock The time source.
+   * @since 3.1.7
+   */
+  CardPublicKeyCache(final int maxSize, long timeToLiveMillis, Clock clock) {
+    this.maxSize = maxSize;
+    this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+    this.clock = clock;
+    entries =
+        new LinkedHashMap<ByteBuffer, Entry>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Entry> eldest) {
+            return size() > maxSize;
+          }
+        };
+  }
+
+  /**
+   * Returns the maximum number of entries.
+   *
+   * @return A positive number.
+   * @since 3.1.7
+   */
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * Returns the public key extracted from the provided certificate of the provided card, if it has
+   * been verified within the time to live.
+   *
+   * @param applicationSerialNumber The application serial number of the card.
+   * @param cardCertificate The card certificate.
+   * @return Null if the key is not in the cache or has expired.
+   * @since 3.1.7
+   */
+  CardPublicKeySpi get(byte[] applicationSerialNumber, byte[] cardCertificate) {
+    ByteBuffer key = computeKey(applicationSerialNumber, cardCertificate);
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (clock.nanoTime() - entry.verificationTime >= timeToLiveNanos) {
+        entries.remove(key);
+        return null;
+      }
+      return entry.cardPublicKey;
+    }
+  }
+
+  /**
+   * Returns the current generation of the cache, to be retrieved before the issuer certificate
+   * used to verify a card certificate.
+   *
+   * @return A number incremented each time the cache is cleared.
+   * @since 3.1.7
+   */
+  long getGeneration() {
+    synchronized (entries) {
+      return generation;
+    }
+  }
+
+  /**
+   * Adds the public key extracted from the provided verified certificate of the provided card,
+   * unless the cache has been cleared since the provided generation.
+   *
+   * @param applicationSerialNumber The application serial number of the card.
+   * @param cardCertificate The verified card certificate.
+   * @param cardPublicKey The card public key.
+   * @param generation The generation of the cache retrieved before the verification.
+   * @since 3.1.7
+   */
+  void put(
+      byte[] applicationSerialNumber,
+      byte[] cardCertificate,
+      CardPublicKeySpi cardPublicKey,
+      long generation) {
+    ByteBuffer key = computeKey(applicationSerialNumber, cardCertificate);
+    Entry entry = new Entry(cardPublicKey, clock.nanoTime());
+    synchronized (entries) {
+      if (generation == this.generation) {
+        entries.put(key, entry);
+      }
+    }
+  }
+
+  /**
+   * Removes all the entries and starts a new generation.
+   *
+   * @since 3.1.7
+   */
+  void clear() {
+    synchronized (entries) {
+      entries.clear();
+      generation++;
+    }
+  }
+
+  /**
+   * Computes the key of an entry.
+   *
+   * @param applicationSerialNumber The application serial number.
+   * @param cardCertificate The card certificate.
+   * @return The serial number followed by the digest of the certificate.
+   */
+  private static ByteBuffer computeKey(byte[] applicationSerialNumber, byte[] cardCertificate) {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // SHA-256 is supported by every Java platform
+      throw new IllegalStateException(DIGEST_ALGORITHM + " algorithm not available", e);
+    }
+    byte[] digest = messageDigest.digest(cardCertificate);
+    ByteBuffer key = ByteBuffer.allocate(applicationSerialNumber.length + digest.length);
+    key.put(applicationSerialNumber).put(digest);
+    ((Buffer) key).flip();
+    return key;
+  }
+
+  /**
+   * Time source of the cache.
+   *
+   * @since 3.1.7
+   */
+  interface Clock {
+
+    /**
+     * Returns the current value of the time source.
+     *
+     * @return A number of nanoseconds.
+     * @since 3.1.7
+     */
+    long nanoTime();
+  }
+
+  /** Cached card public key. */
+  private static final class Entry {
+
+    private final CardPublicKeySpi cardPublicKey;
+    private final long verificationTime;
+
+    /**
+     * Constructor.
+     *
+     * @param cardPublicKey The card public key.
+     * @param verificationTime The time of the verification of the certificate.
+     */
+    private Entry(CardPublicKeySpi cardPublicKey, long verificationTime) {
+      this.cardPublicKey = cardPublicKey;
+      this.verificationTime = verificationTime;
+    }
+  }
+}
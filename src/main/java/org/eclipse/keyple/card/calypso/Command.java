@@ -15,8 +15,10 @@
 import static org.eclipse.keyple.card.calypso.CalypsoCardConstant.SW_RECORD_NOT_FOUND;
 import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeSet;
 import org.eclipse.keypop.calypso.card.transaction.CryptoException;
 import org.eclipse.keypop.calypso.card.transaction.CryptoIOException;
 import org.eclipse.keypop.calypso.crypto.asymmetric.AsymmetricCryptoException;
@@ -52,10 +54,13 @@ abstract class Command {
    */
   static final Map<Integer, StatusProperties> STATUS_TABLE;
 
+  private static final StatusTable DEFAULT_STATUS_TABLE;
+
   static {
     HashMap<Integer, StatusProperties> m = new HashMap<>();
     m.put(0x9000, new StatusProperties("Success"));
     STATUS_TABLE = m;
+    DEFAULT_STATUS_TABLE = new StatusTable(m);
   }
 
   private final CardCommandRef commandRef;
@@ -267,6 +272,30 @@ final boolean isCryptoServiceSynchronized() {
    */
   abstract void parseResponse(ApduResponseApi apduResponse) throws CardCommandException;
 
+  /**
+   * Returns the SFI of the EF targeted by the command.
+   *
+   * <p>Commands targeting different EFs are independent from each other and may be reordered when
+   * the secure sessions are packed.
+   *
+   * @return 0 if the command targets the current EF or is not related to an EF.
+   * @since 3.1.7
+   */
+  int getTargetSfi() {
+    return 0;
+  }
+
+  /**
+   * Indicates if the command modifies the content of the EF it targets.
+   *
+   * @return false by default.
+   * @see #getTargetSfi()
+   * @since 3.1.7
+   */
+  boolean isTargetEfModified() {
+    return false;
+  }
+
   /**
    * Sets the Calypso card and invoke the {@link #setApduResponseAndCheckStatus(ApduResponseApi)}
    * method.
@@ -426,8 +455,8 @@ final boolean setApduResponseAndCheckStatusInBestEffortMode(ApduResponseApi apdu
    * @return A not null reference
    * @since 2.0.1
    */
-  Map<Integer, StatusProperties> getStatusTable() {
-    return STATUS_TABLE;
+  StatusTable getStatusTable() {
+    return DEFAULT_STATUS_TABLE;
   }
 
   /**
@@ -580,4 +609,47 @@ Class<? extends CardCommandException> getExceptionClass() {
       return exceptionClass;
     }
   }
+
+  /**
+   * Immutable table of the status words expected by a command, built once from the map describing
+   * them.<br>
+   * The status words are stored in a sorted array of primitive integers and searched by dichotomy,
+   * so that no boxing nor hashing occurs when checking a response.
+   *
+   * @since 3.1.7
+   */
+  static final class StatusTable {
+
+    private final int[] statusWords;
+    private final StatusProperties[] statusProperties;
+
+    /**
+     * Creates a table containing the entries of the provided map.
+     *
+     * @param statusTable The status word properties indexed by status word.
+     * @since 3.1.7
+     */
+    StatusTable(Map<Integer, StatusProperties> statusTable) {
+      statusWords = new int[statusTable.size()];
+      statusProperties = new StatusProperties[statusTable.size()];
+      int i = 0;
+      for (Integer statusWord : new TreeSet<>(statusTable.keySet())) {
+        statusWords[i] = statusWord;
+        statusProperties[i] = statusTable.get(statusWord);
+        i++;
+      }
+    }
+
+    /**
+     * Gets the properties of the provided status word.
+     *
+     * @param statusWord The status word.
+     * @return Null if the status word is not referenced.
+     * @since 3.1.7
+     */
+    StatusProperties get(int statusWord) {
+      int index = Arrays.binarySearch(statusWords, statusWord);
+      return index >= 0 ? statusProperties[index] : null;
+    }
+  }
 }
@@ -28,7 +28,7 @@
  */
 final class CommandGetDataCertificate extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -39,7 +39,7 @@ final class CommandGetDataCertificate extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P1 or P2 value not supported", CardDataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final boolean isCardCertificate;
@@ -154,13 +154,38 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
     updateTerminalSessionIfNeeded();
   }
 
+  /**
+   * Removes the certificate targeted by this command from the provided card image, when a part of
+   * it could not be retrieved.
+   *
+   * @param card The card image.
+   * @since 3.1.7
+   */
+  void discardCertificate(CalypsoCardAdapter card) {
+    if (isCardCertificate) {
+      card.discardCardCertificate();
+    } else {
+      card.discardCaCertificate();
+    }
+  }
+
+  /**
+   * Indicates whether this command retrieves the last part of the card certificate.
+   *
+   * @return True if the card certificate is complete once the response to this command is parsed.
+   * @since 3.1.7
+   */
+  boolean isCardCertificateLastPart() {
+    return isCardCertificate && !isFirstPart;
+  }
+
   /**
    * {@inheritDoc}
    *
    * @since 3.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
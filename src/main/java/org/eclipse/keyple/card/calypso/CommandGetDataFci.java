@@ -34,7 +34,7 @@ final class CommandGetDataFci extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandGetDataFci.class);
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -46,7 +46,7 @@ final class CommandGetDataFci extends Command {
         0x6B00,
         new StatusProperties("P1 or P2 value not supported", CardDataAccessException.class));
     m.put(0x6283, new StatusProperties("Successful execution, FCI request and DF is invalidated"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /* BER-TLV tags definitions */
@@ -273,7 +273,7 @@ boolean isDfInvalidated() {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
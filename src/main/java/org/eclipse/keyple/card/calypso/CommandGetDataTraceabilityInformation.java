@@ -28,7 +28,7 @@
  */
 final class CommandGetDataTraceabilityInformation extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -39,7 +39,7 @@ final class CommandGetDataTraceabilityInformation extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P1 or P2 value not supported", CardDataAccessException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -117,7 +117,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -34,7 +34,7 @@ final class CommandIncreaseOrDecrease extends Command {
 
   private static final int SW_POSTPONED_DATA = 0x6200;
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -73,7 +73,7 @@ final class CommandIncreaseOrDecrease extends Command {
         SW_POSTPONED_DATA,
         new StatusProperties(
             "Successful execution, response data postponed until session closing"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final int sfi;
@@ -244,6 +244,26 @@ boolean synchronizeCryptoServiceBeforeCardProcessing() {
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return sfi;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  boolean isTargetEfModified() {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -277,7 +297,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -31,7 +31,7 @@ final class CommandIncreaseOrDecreaseMultiple extends Command {
 
   private static final Logger logger =
       LoggerFactory.getLogger(CommandIncreaseOrDecreaseMultiple.class);
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -70,7 +70,7 @@ final class CommandIncreaseOrDecreaseMultiple extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P1 or P2 value not supported", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final byte sfi;
@@ -169,6 +169,26 @@ boolean synchronizeCryptoServiceBeforeCardProcessing() {
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return sfi;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  boolean isTargetEfModified() {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -197,7 +217,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
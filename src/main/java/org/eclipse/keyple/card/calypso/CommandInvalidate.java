@@ -25,7 +25,7 @@
  */
 final class CommandInvalidate extends Command {
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -43,7 +43,7 @@ final class CommandInvalidate extends Command {
         0x6985,
         new StatusProperties(
             "Access forbidden (DF context is invalid)", CardAccessForbiddenException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -120,7 +120,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -31,7 +31,7 @@
 final class CommandReadBinary extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandReadBinary.class);
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -60,7 +60,7 @@ final class CommandReadBinary extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P1 value not supported", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final byte sfi;
@@ -194,6 +194,39 @@ private byte[] buildAnticipatedResponse() {
     return null; // NOSONAR
   }
 
+  /**
+   * Returns the offset of the first byte read.
+   *
+   * @return An offset.
+   * @since 3.1.7
+   */
+  int getOffset() {
+    return offset;
+  }
+
+  /**
+   * Returns the SFI of the EF read.
+   *
+   * @return 0 if the EF is the current EF.
+   * @since 3.1.7
+   */
+  byte getSfi() {
+    return sfi;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Beyond offset 255, the SFI is not encoded in the command, which reads the current EF
+   * selected by a preceding command.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return offset > 255 ? 0 : sfi; // FFh
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -206,6 +239,11 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
       return;
     }
     getTransactionContext().getCard().setContent(sfi, 1, apduResponse.getDataOut(), offset);
+    if (sfi != 0) {
+      getTransactionContext()
+          .getCard()
+          .setBinaryContentUpToDate(sfi, offset, apduResponse.getDataOut().length);
+    }
     if (!isCryptoServiceSynchronized()) {
       updateTerminalSessionIfNeeded();
     } else if (getCommandContext().isSecureSessionOpen()
@@ -222,7 +260,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -30,7 +30,7 @@
 final class CommandReadRecordMultiple extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandReadRecordMultiple.class);
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -76,7 +76,7 @@ final class CommandReadRecordMultiple extends Command {
         new StatusProperties(
             "Successful execution, partial read only: issue another Read Record Multiple from record"
                 + " (P1 + (Size of returned data) / (R. Length)) to continue reading"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final byte sfi;
@@ -166,6 +166,16 @@ boolean synchronizeCryptoServiceBeforeCardProcessing() {
     return !getCommandContext().isSecureSessionOpen();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return sfi;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -197,7 +207,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -32,7 +32,7 @@ final class CommandReadRecords extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandReadRecords.class);
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -61,7 +61,7 @@ final class CommandReadRecords extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P2 value not supported", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /**
@@ -200,6 +200,48 @@ boolean synchronizeCryptoServiceBeforeCardProcessing() {
     return true;
   }
 
+  /**
+   * Returns the number of the first record read.
+   *
+   * @return A record number.
+   * @since 3.1.7
+   */
+  int getFirstRecordNumber() {
+    return firstRecordNumber;
+  }
+
+  /**
+   * Returns the number of the last record read.
+   *
+   * @return A record number.
+   * @since 3.1.7
+   */
+  int getLastRecordNumber() {
+    return readMode == ReadMode.ONE_RECORD
+        ? firstRecordNumber
+        : firstRecordNumber + getLe() / (recordSize + 2) - 1;
+  }
+
+  /**
+   * Returns the size of one record as provided by the caller.
+   *
+   * @return 0 if the size is determined by the card.
+   * @since 3.1.7
+   */
+  int getRecordSize() {
+    return recordSize;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return sfi;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -214,6 +256,9 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
     byte[] dataOut = apduResponse.getDataOut();
     if (readMode == CommandReadRecords.ReadMode.ONE_RECORD) {
       getTransactionContext().getCard().setContent((byte) sfi, firstRecordNumber, dataOut);
+      if (sfi != 0) {
+        getTransactionContext().getCard().setRecordUpToDate((byte) sfi, firstRecordNumber);
+      }
     } else {
       int apduLen = dataOut.length;
       int index = 0;
@@ -223,6 +268,9 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
         getTransactionContext()
             .getCard()
             .setContent((byte) sfi, recordNb, Arrays.copyOfRange(dataOut, index, index + len));
+        if (sfi != 0) {
+          getTransactionContext().getCard().setRecordUpToDate((byte) sfi, recordNb & 0xFF);
+        }
         index = index + len;
         apduLen = apduLen - 2 - len;
       }
@@ -243,7 +291,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -30,7 +30,7 @@
 final class CommandSearchRecordMultiple extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandSearchRecordMultiple.class);
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -76,7 +76,7 @@ final class CommandSearchRecordMultiple extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P1 or P2 value not supported", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final SearchCommandDataAdapter data;
@@ -192,6 +192,16 @@ boolean synchronizeCryptoServiceBeforeCardProcessing() {
     return !getCommandContext().isSecureSessionOpen();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return data.getSfi();
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -225,7 +235,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -68,7 +68,7 @@ final class CommandSelectFile extends Command {
 
   private static final CardCommandRef commandRef = CardCommandRef.SELECT_FILE;
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -77,7 +77,7 @@ final class CommandSelectFile extends Command {
         new StatusProperties("Lc value not supported", CardIllegalParameterException.class));
     m.put(0x6A82, new StatusProperties("File not found", CardDataAccessException.class));
     m.put(0x6119, new StatusProperties("Correct execution (ISO7816 T=0)"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private static final int TAG_PROPRIETARY_INFORMATION = 0x85;
@@ -247,7 +247,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 
@@ -74,7 +74,7 @@ final class CommandSvDebitOrUndebit extends Command {
       "Unable to verify the card SV MAC associated to the SV operation";
   public static final String MSG_INVALID_CARD_SESSION_MAC = "Invalid card session MAC";
   private static final int SW_POSTPONED_DATA = 0x6200;
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -98,7 +98,7 @@ final class CommandSvDebitOrUndebit extends Command {
         SW_POSTPONED_DATA,
         new StatusProperties(
             "Successful execution, response data postponed until session closing"));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final int amount;
@@ -329,7 +329,7 @@ private void updateCalypsoCardSvHistory(CalypsoCardAdapter calypsoCard) {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -32,7 +32,7 @@ final class CommandSvGet extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandSvGet.class);
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -52,7 +52,7 @@ final class CommandSvGet extends Command {
     m.put(
         0x6D00,
         new StatusProperties("SV function not present", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final byte[] header;
@@ -199,7 +199,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
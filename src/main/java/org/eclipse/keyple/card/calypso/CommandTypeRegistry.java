@@ -0,0 +1,84 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the card command classes which may be instantiated from their fully qualified name
+ * when a command is read from its JSON form.
+ *
+ * <p>The names are resolved without any call to {@link Class#forName(String)}, and a name which
+ * does not designate a registered command class is rejected.
+ *
+ * @since 3.1.7
+ */
+final class CommandTypeRegistry {
+
+  private static final Class<?>[] COMMAND_CLASSES = {
+    CommandAppendRecord.class,
+    CommandChangeKey.class,
+    CommandChangePin.class,
+    CommandCloseSecureSession.class,
+    CommandGenerateAsymmetricKeyPair.class,
+    CommandGetChallenge.class,
+    CommandGetDataCardPublicKey.class,
+    CommandGetDataCertificate.class,
+    CommandGetDataEfList.class,
+    CommandGetDataFci.class,
+    CommandGetDataFcp.class,
+    CommandGetDataTraceabilityInformation.class,
+    CommandIncreaseOrDecrease.class,
+    CommandIncreaseOrDecreaseMultiple.class,
+    CommandInvalidate.class,
+    CommandManageSession.class,
+    CommandOpenSecureSession.class,
+    CommandPutData.class,
+    CommandRatification.class,
+    CommandReadBinary.class,
+    CommandReadRecordMultiple.class,
+    CommandReadRecords.class,
+    CommandRehabilitate.class,
+    CommandSearchRecordMultiple.class,
+    CommandSelectFile.class,
+    CommandSvDebitOrUndebit.class,
+    CommandSvGet.class,
+    CommandSvReload.class,
+    CommandUpdateOrWriteBinary.class,
+    CommandUpdateRecord.class,
+    CommandVerifyPin.class,
+    CommandWriteRecord.class
+  };
+
+  private static final Map<String, Class<?>> COMMAND_CLASSES_BY_NAME = new HashMap<>();
+
+  static {
+    for (Class<?> commandClass : COMMAND_CLASSES) {
+      COMMAND_CLASSES_BY_NAME.put(commandClass.getName(), commandClass);
+    }
+  }
+
+  /**
+   * Returns the command class having the provided fully qualified name.
+   *
+   * @param className The fully qualified class name.
+   * @return Null if no registered class has this name.
+   * @since 3.1.7
+   */
+  static Class<?> getCommandClass(String className) {
+    return COMMAND_CLASSES_BY_NAME.get(className);
+  }
+
+  /** (private) */
+  private CommandTypeRegistry() {}
+}
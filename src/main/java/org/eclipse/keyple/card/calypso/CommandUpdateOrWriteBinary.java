@@ -29,7 +29,7 @@
 final class CommandUpdateOrWriteBinary extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandUpdateOrWriteBinary.class);
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -67,7 +67,7 @@ final class CommandUpdateOrWriteBinary extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P1 value not supported", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private final byte sfi;
@@ -160,6 +160,29 @@ boolean synchronizeCryptoServiceBeforeCardProcessing() {
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Beyond offset 255, the SFI is not encoded in the command, which modifies the current EF
+   * selected by a preceding command.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return offset > 255 ? 0 : sfi; // FFh
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  boolean isTargetEfModified() {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -183,7 +206,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.1.0
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -30,7 +30,7 @@ final class CommandUpdateRecord extends Command {
 
   private static final Logger logger = LoggerFactory.getLogger(CommandUpdateRecord.class);
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -66,7 +66,7 @@ final class CommandUpdateRecord extends Command {
     m.put(
         0x6B00,
         new StatusProperties("P2 value not supported", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   /* Construction arguments */
@@ -150,6 +150,26 @@ boolean synchronizeCryptoServiceBeforeCardProcessing() {
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  int getTargetSfi() {
+    return sfi;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  boolean isTargetEfModified() {
+    return true;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -169,7 +189,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
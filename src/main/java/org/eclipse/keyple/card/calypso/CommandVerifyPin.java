@@ -36,7 +36,7 @@ final class CommandVerifyPin extends Command {
 
   private static final CardCommandRef commandRef = CardCommandRef.VERIFY_PIN;
 
-  private static final Map<Integer, StatusProperties> STATUS_TABLE;
+  private static final StatusTable STATUS_TABLE;
 
   static {
     Map<Integer, StatusProperties> m = new HashMap<>(Command.STATUS_TABLE);
@@ -68,7 +68,7 @@ final class CommandVerifyPin extends Command {
     m.put(
         0x6D00,
         new StatusProperties("PIN function not present", CardIllegalParameterException.class));
-    STATUS_TABLE = m;
+    STATUS_TABLE = new StatusTable(m);
   }
 
   private byte[] pin;
@@ -244,7 +244,7 @@ void parseResponse(ApduResponseApi apduResponse) throws CardCommandException {
    * @since 2.0.1
    */
   @Override
-  Map<Integer, StatusProperties> getStatusTable() {
+  StatusTable getStatusTable() {
     return STATUS_TABLE;
   }
 }
@@ -0,0 +1,80 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
+
+/**
+ * Grants the exclusive access to a crypto module shared by several concurrent transactions.
+ *
+ * <p>The access is granted in the order of the requests, and a request fails if the access is not
+ * granted within the configured maximum waiting time. The access is not bound to a thread and may
+ * therefore be released by another thread than the one which obtained it.
+ *
+ * @since 3.1.7
+ */
+final class CryptoModuleAccessArbiter {
+
+  private final Semaphore semaphore = new Semaphore(1, true);
+  private final long maxWaitTimeMillis;
+
+  /**
+   * Constructor.
+   *
+   * @param maxWaitTimeMillis The maximum time to wait for the access, in milliseconds.
+   * @since 3.1.7
+   */
+  CryptoModuleAccessArbiter(long maxWaitTimeMillis) {
+    this.maxWaitTimeMillis = maxWaitTimeMillis;
+  }
+
+  /**
+   * Returns the maximum time to wait for the access.
+   *
+   * @return A number of milliseconds.
+   * @since 3.1.7
+   */
+  long getMaxWaitTimeMillis() {
+    return maxWaitTimeMillis;
+  }
+
+  /**
+   * Waits for the exclusive access to the crypto module.
+   *
+   * @throws SymmetricCryptoIOException If the access is not granted within the maximum waiting
+   *     time, or if the current thread is interrupted.
+   * @since 3.1.7
+   */
+  void acquire() throws SymmetricCryptoIOException {
+    try {
+      if (!semaphore.tryAcquire(maxWaitTimeMillis, TimeUnit.MILLISECONDS)) {
+        throw new SymmetricCryptoIOException(
+            "The crypto module is not available after " + maxWaitTimeMillis + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SymmetricCryptoIOException(
+          "Interrupted while waiting for the crypto module: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Releases the exclusive access to the crypto module.
+   *
+   * @since 3.1.7
+   */
+  void release() {
+    semaphore.release();
+  }
+}
@@ -180,6 +180,26 @@ public byte getKvc(WriteAccessLevel writeAccessLevel) {
     return kvc.get(writeAccessLevel);
   }
 
+  /**
+   * Gets the KIFs of the access levels provided by the card.
+   *
+   * @return A not null map.
+   * @since 3.1.7
+   */
+  EnumMap<WriteAccessLevel, Byte> getKifs() {
+    return kif;
+  }
+
+  /**
+   * Gets the KVCs of the access levels provided by the card.
+   *
+   * @return A not null map.
+   * @since 3.1.7
+   */
+  EnumMap<WriteAccessLevel, Byte> getKvcs() {
+    return kvc;
+  }
+
   /**
    * Gets a new builder.
    *
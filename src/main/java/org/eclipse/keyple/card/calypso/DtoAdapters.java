@@ -12,6 +12,8 @@
 package org.eclipse.keyple.card.calypso;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.eclipse.keyple.core.util.ByteArrayUtil;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keyple.core.util.json.JsonUtil;
@@ -21,6 +23,9 @@
 import org.eclipse.keypop.calypso.crypto.asymmetric.transaction.spi.AsymmetricCryptoCardTransactionManagerSpi;
 import org.eclipse.keypop.calypso.crypto.symmetric.SvCommandSecurityDataApi;
 import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+import org.eclipse.keypop.card.ApduResponseApi;
+import org.eclipse.keypop.card.CardResponseApi;
+import org.eclipse.keypop.card.CardSelectionResponseApi;
 import org.eclipse.keypop.card.spi.ApduRequestSpi;
 import org.eclipse.keypop.card.spi.CardRequestSpi;
 import org.eclipse.keypop.card.spi.CardSelectionRequestSpi;
@@ -46,9 +51,16 @@ private DtoAdapters() {}
   static final class ApduRequestAdapter implements ApduRequestSpi {
 
     private static final int DEFAULT_SUCCESSFUL_CODE = 0x9000;
+    private static final Set<Integer> DEFAULT_SUCCESSFUL_STATUS_WORDS =
+        Collections.singleton(DEFAULT_SUCCESSFUL_CODE);
+    private static final int MAX_SHARED_SUCCESSFUL_STATUS_WORDS_SETS = 32;
+
+    /* Immutable sets of successful status words shared by the requests, indexed by themselves */
+    private static final ConcurrentMap<Set<Integer>, Set<Integer>> sharedSuccessfulStatusWordsSets =
+        new ConcurrentHashMap<>();
 
     private byte[] apdu;
-    private final Set<Integer> successfulStatusWords;
+    private Set<Integer> successfulStatusWords;
     private String info;
 
     /**
@@ -61,8 +73,7 @@ static final class ApduRequestAdapter implements ApduRequestSpi {
      */
     ApduRequestAdapter(byte[] apdu) {
       this.apdu = apdu;
-      successfulStatusWords = new HashSet<>();
-      successfulStatusWords.add(DEFAULT_SUCCESSFUL_CODE);
+      successfulStatusWords = DEFAULT_SUCCESSFUL_STATUS_WORDS;
     }
 
     /**
@@ -70,15 +81,46 @@ static final class ApduRequestAdapter implements ApduRequestSpi {
      *
      * <p>Note: initially, the list contains the standard successful status word {@code 9000h}.
      *
+     * <p>The list is immutable and is replaced by another one, shared with the other requests
+     * having the same successful status words.
+     *
      * @param successfulStatusWord A positive int &le; {@code FFFFh}.
      * @return The object instance.
      * @since 2.0.0
      */
     ApduRequestAdapter addSuccessfulStatusWord(int successfulStatusWord) {
-      successfulStatusWords.add(successfulStatusWord);
+      if (!successfulStatusWords.contains(successfulStatusWord)) {
+        Set<Integer> statusWords = new HashSet<>(successfulStatusWords);
+        statusWords.add(successfulStatusWord);
+        successfulStatusWords = getSharedSuccessfulStatusWords(statusWords);
+      }
       return this;
     }
 
+    /**
+     * Returns the shared immutable set equal to the provided one, and creates it if needed.
+     *
+     * <p>The number of shared sets is bounded, beyond which the provided set is no longer shared.
+     *
+     * @param statusWords The status words.
+     * @return An immutable set.
+     */
+    private static Set<Integer> getSharedSuccessfulStatusWords(Set<Integer> statusWords) {
+      Set<Integer> sharedStatusWords = sharedSuccessfulStatusWordsSets.get(statusWords);
+      if (sharedStatusWords != null) {
+        return sharedStatusWords;
+      }
+      sharedStatusWords = Collections.unmodifiableSet(statusWords);
+      if (sharedSuccessfulStatusWordsSets.size() < MAX_SHARED_SUCCESSFUL_STATUS_WORDS_SETS) {
+        Set<Integer> existingStatusWords =
+            sharedSuccessfulStatusWordsSets.putIfAbsent(statusWords, sharedStatusWords);
+        if (existingStatusWords != null) {
+          return existingStatusWords;
+        }
+      }
+      return sharedStatusWords;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -581,6 +623,16 @@ public byte[] getRawData() {
       return cardResponse;
     }
 
+    /**
+     * Gets the offset of the debit log in the raw data.
+     *
+     * @return A positive int.
+     * @since 3.1.7
+     */
+    int getOffset() {
+      return offset;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -733,6 +785,16 @@ public byte[] getRawData() {
       return cardResponse;
     }
 
+    /**
+     * Gets the offset of the load log in the raw data.
+     *
+     * @return A positive int.
+     * @since 3.1.7
+     */
+    int getOffset() {
+      return offset;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -869,6 +931,122 @@ public String toString() {
     }
   }
 
+  /**
+   * Implementation of {@link ApduResponseApi} built from raw bytes.
+   *
+   * @since 3.1.7
+   */
+  static final class ApduResponseAdapter implements ApduResponseApi {
+
+    private final byte[] apdu;
+    private final int statusWord;
+
+    /**
+     * Constructor.
+     *
+     * @param apdu The raw APDU response, including the status word.
+     * @since 3.1.7
+     */
+    ApduResponseAdapter(byte[] apdu) {
+      this.apdu = apdu;
+      statusWord = ((apdu[apdu.length - 2] & 0xFF) << 8) | (apdu[apdu.length - 1] & 0xFF);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public byte[] getApdu() {
+      return apdu;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public byte[] getDataOut() {
+      return Arrays.copyOfRange(apdu, 0, apdu.length - 2);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public int getStatusWord() {
+      return statusWord;
+    }
+  }
+
+  /**
+   * Implementation of {@link CardSelectionResponseApi} used to rebuild a card image from its
+   * selection data.
+   *
+   * @since 3.1.7
+   */
+  static final class CardSelectionResponseAdapter implements CardSelectionResponseApi {
+
+    private final ApduResponseApi selectApplicationResponse;
+    private final String powerOnData;
+
+    /**
+     * Constructor.
+     *
+     * @param selectApplicationResponse The select application response (may be null).
+     * @param powerOnData The power-on data (may be null).
+     * @since 3.1.7
+     */
+    CardSelectionResponseAdapter(ApduResponseApi selectApplicationResponse, String powerOnData) {
+      this.selectApplicationResponse = selectApplicationResponse;
+      this.powerOnData = powerOnData;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public String getPowerOnData() {
+      return powerOnData;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public ApduResponseApi getSelectApplicationResponse() {
+      return selectApplicationResponse;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public boolean hasMatched() {
+      return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public CardResponseApi getCardResponse() {
+      return null;
+    }
+  }
+
   /**
    * The local command context specific to each command.
    *
@@ -916,9 +1094,8 @@ boolean isEncryptionActive() {
   static final class TransactionContextDto {
 
     private CalypsoCardAdapter card;
-    private final SymmetricCryptoCardTransactionManagerSpi symmetricCryptoCardTransactionManagerSpi;
-    private final AsymmetricCryptoCardTransactionManagerSpi
-        asymmetricCryptoCardTransactionManagerSpi;
+    private SymmetricCryptoCardTransactionManagerSpi symmetricCryptoCardTransactionManagerSpi;
+    private AsymmetricCryptoCardTransactionManagerSpi asymmetricCryptoCardTransactionManagerSpi;
     private boolean isSecureSessionOpen;
 
     /**
@@ -1028,6 +1205,17 @@ void setCard(CalypsoCardAdapter card) {
       this.card = card;
     }
 
+    /**
+     * Sets the symmetric crypto service.
+     *
+     * @param symmetricCryptoCardTransactionManagerSpi The symmetric crypto service SPI.
+     * @since 3.1.7
+     */
+    void setSymmetricCryptoCardTransactionManagerSpi(
+        SymmetricCryptoCardTransactionManagerSpi symmetricCryptoCardTransactionManagerSpi) {
+      this.symmetricCryptoCardTransactionManagerSpi = symmetricCryptoCardTransactionManagerSpi;
+    }
+
     /**
      * @param isSecureSessionOpen Is secure session open?
      * @since 2.3.2
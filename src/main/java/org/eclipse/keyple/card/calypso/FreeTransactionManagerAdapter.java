@@ -86,6 +86,16 @@ void resetTransaction() {
     commands.clear();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  void onCardRebound() {
+    // NOP
+  }
+
   /**
    * {@inheritDoc}
    *
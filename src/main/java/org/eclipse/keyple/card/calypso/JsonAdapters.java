@@ -13,20 +13,28 @@
 
 import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
 
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import java.lang.reflect.Type;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Map;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keyple.core.util.json.JsonUtil;
+import org.eclipse.keypop.calypso.card.WriteAccessLevel;
 import org.eclipse.keypop.calypso.card.card.*;
 
 /**
  * Contains all JSON adapters used for serialization and deserialization processes.<br>
  * These adapters are required for interfaces and abstract classes.
  *
+ * <p>The adapters stream the objects directly with {@link JsonWriter} and {@link JsonReader},
+ * producing the same JSON form as the reflective serialization configured by {@link JsonUtil}
+ * (numbers and byte arrays as hex strings, null fields omitted).
+ *
  * @since 2.2.3
  */
 final class JsonAdapters {
@@ -34,38 +42,186 @@ final class JsonAdapters {
   private static final String TYPE = "type";
   private static final String DATA = "data";
   private static final String UNKNOWN_TYPE_TEMPLATE = "Unknown type: %s";
+  private static final String MISSING_TYPE = "Missing type";
+
+  private static final String LID = "lid";
+  private static final String ACCESS_CONDITIONS = "accessConditions";
+  private static final String KEY_INDEXES = "keyIndexes";
+  private static final String DF_STATUS = "dfStatus";
+  private static final String KIF = "kif";
+  private static final String KVC = "kvc";
+  private static final String RECORDS_NUMBER = "recordsNumber";
+  private static final String RECORD_SIZE = "recordSize";
+  private static final String SHARED_REFERENCE = "sharedReference";
+  private static final String SFI = "sfi";
+  private static final String HEADER = "header";
+  private static final String RECORDS = "records";
+  private static final String OFFSET = "offset";
+  private static final String CARD_RESPONSE = "cardResponse";
+
+  private static final FileHeaderJsonAdapter FILE_HEADER_JSON_ADAPTER = new FileHeaderJsonAdapter();
 
   private JsonAdapters() {}
 
+  /**
+   * Reads a hex string as a byte.
+   *
+   * @param in The reader.
+   * @return The value.
+   * @throws IOException If the value can't be read.
+   */
+  private static byte nextByte(JsonReader in) throws IOException {
+    return HexUtil.toByte(in.nextString());
+  }
+
+  /**
+   * Reads a hex string as a short.
+   *
+   * @param in The reader.
+   * @return The value.
+   * @throws IOException If the value can't be read.
+   */
+  private static short nextShort(JsonReader in) throws IOException {
+    return HexUtil.toShort(in.nextString());
+  }
+
+  /**
+   * Reads a hex string as an int.
+   *
+   * @param in The reader.
+   * @return The value.
+   * @throws IOException If the value can't be read.
+   */
+  private static int nextInt(JsonReader in) throws IOException {
+    return HexUtil.toInt(in.nextString());
+  }
+
+  /**
+   * Reads a hex string as a byte array.
+   *
+   * @param in The reader.
+   * @return The value.
+   * @throws IOException If the value can't be read.
+   */
+  private static byte[] nextBytes(JsonReader in) throws IOException {
+    return HexUtil.toByteArray(in.nextString());
+  }
+
+  /**
+   * Returns true if the next value is null, consuming it.
+   *
+   * @param in The reader.
+   * @return true if the value was null.
+   * @throws IOException If the value can't be read.
+   */
+  private static boolean skipNull(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Writes a map of bytes indexed by access level.
+   *
+   * @param out The writer.
+   * @param name The name of the field.
+   * @param map The map.
+   * @throws IOException If the value can't be written.
+   */
+  private static void writeLevelMap(JsonWriter out, String name, Map<WriteAccessLevel, Byte> map)
+      throws IOException {
+    out.name(name).beginObject();
+    for (Map.Entry<WriteAccessLevel, Byte> entry : map.entrySet()) {
+      out.name(entry.getKey().name()).value(HexUtil.toHex(entry.getValue()));
+    }
+    out.endObject();
+  }
+
   /**
    * JSON serializer/deserializer of a {@link DirectoryHeader}.
    *
    * @since 2.0.0
    */
-  static final class DirectoryHeaderJsonAdapter
-      implements JsonSerializer<DirectoryHeaderAdapter>, JsonDeserializer<DirectoryHeaderAdapter> {
+  static final class DirectoryHeaderJsonAdapter extends TypeAdapter<DirectoryHeader> {
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.1.1
+     * @since 3.1.7
      */
     @Override
-    public JsonElement serialize(
-        DirectoryHeaderAdapter src, Type typeOfSrc, JsonSerializationContext context) {
-      return context.serialize(src);
+    public void write(JsonWriter out, DirectoryHeader src) throws IOException {
+      if (src == null) {
+        out.nullValue();
+        return;
+      }
+      DirectoryHeaderAdapter header = (DirectoryHeaderAdapter) src;
+      out.beginObject();
+      out.name(LID).value(HexUtil.toHex(header.getLid()));
+      if (header.getAccessConditions() != null) {
+        out.name(ACCESS_CONDITIONS).value(HexUtil.toHex(header.getAccessConditions()));
+      }
+      if (header.getKeyIndexes() != null) {
+        out.name(KEY_INDEXES).value(HexUtil.toHex(header.getKeyIndexes()));
+      }
+      out.name(DF_STATUS).value(HexUtil.toHex(header.getDfStatus()));
+      writeLevelMap(out, KIF, header.getKifs());
+      writeLevelMap(out, KVC, header.getKvcs());
+      out.endObject();
     }
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.0.0
+     * @since 3.1.7
      */
     @Override
-    public DirectoryHeaderAdapter deserialize(
-        JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      return context.deserialize(json, DirectoryHeaderAdapter.class);
+    public DirectoryHeader read(JsonReader in) throws IOException {
+      if (skipNull(in)) {
+        return null;
+      }
+      DirectoryHeaderAdapter.DirectoryHeaderBuilder builder = DirectoryHeaderAdapter.builder();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (skipNull(in)) {
+          continue;
+        }
+        switch (name) {
+          case LID:
+            builder.lid(nextShort(in));
+            break;
+          case ACCESS_CONDITIONS:
+            builder.accessConditions(nextBytes(in));
+            break;
+          case KEY_INDEXES:
+            builder.keyIndexes(nextBytes(in));
+            break;
+          case DF_STATUS:
+            builder.dfStatus(nextByte(in));
+            break;
+          case KIF:
+            in.beginObject();
+            while (in.hasNext()) {
+              builder.kif(WriteAccessLevel.valueOf(in.nextName()), nextByte(in));
+            }
+            in.endObject();
+            break;
+          case KVC:
+            in.beginObject();
+            while (in.hasNext()) {
+              builder.kvc(WriteAccessLevel.valueOf(in.nextName()), nextByte(in));
+            }
+            in.endObject();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return builder.build();
     }
   }
 
@@ -74,30 +230,100 @@ public DirectoryHeaderAdapter deserialize(
    *
    * @since 2.0.0
    */
-  static final class ElementaryFileJsonAdapter
-      implements JsonSerializer<ElementaryFileAdapter>, JsonDeserializer<ElementaryFileAdapter> {
+  static final class ElementaryFileJsonAdapter extends TypeAdapter<ElementaryFile> {
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.1.1
+     * @since 3.1.7
      */
     @Override
-    public JsonElement serialize(
-        ElementaryFileAdapter src, Type typeOfSrc, JsonSerializationContext context) {
-      return context.serialize(src);
+    public void write(JsonWriter out, ElementaryFile src) throws IOException {
+      if (src == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name(SFI).value(HexUtil.toHex(src.getSfi()));
+      if (src.getHeader() != null) {
+        out.name(HEADER);
+        FILE_HEADER_JSON_ADAPTER.write(out, src.getHeader());
+      }
+      out.name(DATA).beginObject().name(RECORDS).beginObject();
+      for (Map.Entry<Integer, byte[]> entry : src.getData().getAllRecordsContent().entrySet()) {
+        out.name(HexUtil.toHex(entry.getKey())).value(HexUtil.toHex(entry.getValue()));
+      }
+      out.endObject().endObject();
+      out.endObject();
     }
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.0.0
+     * @since 3.1.7
      */
     @Override
-    public ElementaryFileAdapter deserialize(
-        JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      return context.deserialize(json, ElementaryFileAdapter.class);
+    public ElementaryFile read(JsonReader in) throws IOException {
+      if (skipNull(in)) {
+        return null;
+      }
+      ElementaryFileAdapter ef = null;
+      FileHeaderAdapter header = null;
+      FileDataAdapter data = new FileDataAdapter();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (skipNull(in)) {
+          continue;
+        }
+        switch (name) {
+          case SFI:
+            ef = new ElementaryFileAdapter(nextByte(in));
+            break;
+          case HEADER:
+            header = FILE_HEADER_JSON_ADAPTER.read(in);
+            break;
+          case DATA:
+            readData(in, data);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      if (ef == null) {
+        ef = new ElementaryFileAdapter((byte) 0);
+      }
+      if (header != null) {
+        ef.setHeader(header);
+      }
+      for (Map.Entry<Integer, byte[]> entry : data.getAllRecordsContent().entrySet()) {
+        ef.getData().setContent(entry.getKey(), entry.getValue());
+      }
+      return ef;
+    }
+
+    /**
+     * Reads the records of the file data.
+     *
+     * @param in The reader.
+     * @param data The file data to fill.
+     * @throws IOException If the value can't be read.
+     */
+    private static void readData(JsonReader in, FileDataAdapter data) throws IOException {
+      in.beginObject();
+      while (in.hasNext()) {
+        if (in.nextName().equals(RECORDS) && !skipNull(in)) {
+          in.beginObject();
+          while (in.hasNext()) {
+            data.setContent(HexUtil.toInt(in.nextName()), nextBytes(in));
+          }
+          in.endObject();
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
     }
   }
 
@@ -106,30 +332,89 @@ public ElementaryFileAdapter deserialize(
    *
    * @since 2.0.0
    */
-  static final class FileHeaderJsonAdapter
-      implements JsonSerializer<FileHeaderAdapter>, JsonDeserializer<FileHeaderAdapter> {
+  static final class FileHeaderJsonAdapter extends TypeAdapter<FileHeader> {
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.1.1
+     * @since 3.1.7
      */
     @Override
-    public JsonElement serialize(
-        FileHeaderAdapter src, Type typeOfSrc, JsonSerializationContext context) {
-      return context.serialize(src);
+    public void write(JsonWriter out, FileHeader src) throws IOException {
+      if (src == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name(LID).value(HexUtil.toHex(src.getLid()));
+      out.name(RECORDS_NUMBER).value(HexUtil.toHex(src.getRecordsNumber()));
+      out.name(RECORD_SIZE).value(HexUtil.toHex(src.getRecordSize()));
+      if (src.getEfType() != null) {
+        out.name(TYPE).value(src.getEfType().name());
+      }
+      if (src.getAccessConditions() != null) {
+        out.name(ACCESS_CONDITIONS).value(HexUtil.toHex(src.getAccessConditions()));
+      }
+      if (src.getKeyIndexes() != null) {
+        out.name(KEY_INDEXES).value(HexUtil.toHex(src.getKeyIndexes()));
+      }
+      if (src.getDfStatus() != null) {
+        out.name(DF_STATUS).value(HexUtil.toHex(src.getDfStatus()));
+      }
+      if (src.getSharedReference() != null) {
+        out.name(SHARED_REFERENCE).value(HexUtil.toHex(src.getSharedReference()));
+      }
+      out.endObject();
     }
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.0.0
+     * @since 3.1.7
      */
     @Override
-    public FileHeaderAdapter deserialize(
-        JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      return context.deserialize(json, FileHeaderAdapter.class);
+    public FileHeaderAdapter read(JsonReader in) throws IOException {
+      if (skipNull(in)) {
+        return null;
+      }
+      FileHeaderAdapter.FileHeaderBuilder builder = FileHeaderAdapter.builder();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (skipNull(in)) {
+          continue;
+        }
+        switch (name) {
+          case LID:
+            builder.lid(nextShort(in));
+            break;
+          case RECORDS_NUMBER:
+            builder.recordsNumber(nextInt(in));
+            break;
+          case RECORD_SIZE:
+            builder.recordSize(nextInt(in));
+            break;
+          case TYPE:
+            builder.type(ElementaryFile.Type.valueOf(in.nextString()));
+            break;
+          case ACCESS_CONDITIONS:
+            builder.accessConditions(nextBytes(in));
+            break;
+          case KEY_INDEXES:
+            builder.keyIndexes(nextBytes(in));
+            break;
+          case DF_STATUS:
+            builder.dfStatus(nextByte(in));
+            break;
+          case SHARED_REFERENCE:
+            builder.sharedReference(nextShort(in));
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return builder.build();
     }
   }
 
@@ -138,30 +423,35 @@ public FileHeaderAdapter deserialize(
    *
    * @since 2.0.0
    */
-  static final class SvLoadLogRecordJsonAdapter
-      implements JsonSerializer<SvLoadLogRecordAdapter>, JsonDeserializer<SvLoadLogRecordAdapter> {
+  static final class SvLoadLogRecordJsonAdapter extends TypeAdapter<SvLoadLogRecord> {
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.1.1
+     * @since 3.1.7
      */
     @Override
-    public JsonElement serialize(
-        SvLoadLogRecordAdapter src, Type typeOfSrc, JsonSerializationContext context) {
-      return context.serialize(src);
+    public void write(JsonWriter out, SvLoadLogRecord src) throws IOException {
+      if (src == null) {
+        out.nullValue();
+        return;
+      }
+      SvLoadLogRecordAdapter logRecord = (SvLoadLogRecordAdapter) src;
+      writeLogRecord(out, logRecord.getOffset(), logRecord.getRawData());
     }
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.0.0
+     * @since 3.1.7
      */
     @Override
-    public SvLoadLogRecordAdapter deserialize(
-        JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      return context.deserialize(json, SvLoadLogRecordAdapter.class);
+    public SvLoadLogRecord read(JsonReader in) throws IOException {
+      if (skipNull(in)) {
+        return null;
+      }
+      LogRecordFields fields = readLogRecord(in);
+      return new SvLoadLogRecordAdapter(fields.cardResponse, fields.offset);
     }
   }
 
@@ -170,74 +460,184 @@ public SvLoadLogRecordAdapter deserialize(
    *
    * @since 2.0.0
    */
-  static final class SvDebitLogRecordJsonAdapter
-      implements JsonSerializer<SvDebitLogRecordAdapter>,
-          JsonDeserializer<SvDebitLogRecordAdapter> {
+  static final class SvDebitLogRecordJsonAdapter extends TypeAdapter<SvDebitLogRecord> {
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.1.1
+     * @since 3.1.7
      */
     @Override
-    public JsonElement serialize(
-        SvDebitLogRecordAdapter src, Type typeOfSrc, JsonSerializationContext context) {
-      return context.serialize(src);
+    public void write(JsonWriter out, SvDebitLogRecord src) throws IOException {
+      if (src == null) {
+        out.nullValue();
+        return;
+      }
+      SvDebitLogRecordAdapter logRecord = (SvDebitLogRecordAdapter) src;
+      writeLogRecord(out, logRecord.getOffset(), logRecord.getRawData());
     }
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.0.0
+     * @since 3.1.7
      */
     @Override
-    public SvDebitLogRecordAdapter deserialize(
-        JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      return context.deserialize(json, SvDebitLogRecordAdapter.class);
+    public SvDebitLogRecord read(JsonReader in) throws IOException {
+      if (skipNull(in)) {
+        return null;
+      }
+      LogRecordFields fields = readLogRecord(in);
+      return new SvDebitLogRecordAdapter(fields.cardResponse, fields.offset);
+    }
+  }
+
+  /**
+   * Writes the fields of an SV log record.
+   *
+   * @param out The writer.
+   * @param offset The offset of the log in the card response.
+   * @param cardResponse The card response.
+   * @throws IOException If the value can't be written.
+   */
+  private static void writeLogRecord(JsonWriter out, int offset, byte[] cardResponse)
+      throws IOException {
+    out.beginObject();
+    out.name(OFFSET).value(HexUtil.toHex(offset));
+    if (cardResponse != null) {
+      out.name(CARD_RESPONSE).value(HexUtil.toHex(cardResponse));
+    }
+    out.endObject();
+  }
+
+  /**
+   * Reads the fields of an SV log record.
+   *
+   * @param in The reader.
+   * @return A not null reference.
+   * @throws IOException If the value can't be read.
+   */
+  private static LogRecordFields readLogRecord(JsonReader in) throws IOException {
+    LogRecordFields fields = new LogRecordFields();
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (skipNull(in)) {
+        continue;
+      }
+      if (name.equals(OFFSET)) {
+        fields.offset = nextInt(in);
+      } else if (name.equals(CARD_RESPONSE)) {
+        fields.cardResponse = nextBytes(in);
+      } else {
+        in.skipValue();
+      }
     }
+    in.endObject();
+    return fields;
+  }
+
+  /** POJO containing the fields of an SV log record. */
+  private static final class LogRecordFields {
+    private int offset;
+    private byte[] cardResponse;
   }
 
   /**
    * JSON serializer/deserializer of a {@link Command}.
    *
+   * <p>The command data are streamed using the reflective adapter of the actual command class. The
+   * type of the command is written as the fully qualified name of its class, so that the JSON
+   * remains readable by the previous versions of the library. When reading, only the command
+   * classes of the {@link CommandTypeRegistry} are instantiated.
+   *
    * @since 2.2.3
    */
-  static final class AbstractCardCommandJsonAdapter
-      implements JsonSerializer<Command>, JsonDeserializer<Command> {
+  static final class AbstractCardCommandJsonAdapter extends TypeAdapter<Command> {
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.2.3
+     * @since 3.1.7
      */
     @Override
-    public JsonElement serialize(Command src, Type typeOfSrc, JsonSerializationContext context) {
-      JsonObject jsonObject = new JsonObject();
-      jsonObject.addProperty(TYPE, src.getClass().getName());
-      jsonObject.add(DATA, context.serialize(src));
-      return jsonObject;
+    public void write(JsonWriter out, Command src) throws IOException {
+      if (src == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name(TYPE).value(src.getClass().getName());
+      out.name(DATA);
+      getCommandAdapter(src.getClass()).write(out, src);
+      out.endObject();
     }
 
     /**
      * {@inheritDoc}
      *
-     * @since 2.2.3
+     * @since 3.1.7
      */
     @Override
-    public Command deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
-        throws JsonParseException {
-      JsonObject jsonObject = json.getAsJsonObject();
-      String type = jsonObject.get(TYPE).getAsString();
-      JsonObject data = jsonObject.get(DATA).getAsJsonObject();
-      Command command;
-      try {
-        Class<?> classOfData = Class.forName(type);
-        command = context.deserialize(data, classOfData);
-      } catch (ClassNotFoundException e) {
-        throw new JsonParseException(String.format(UNKNOWN_TYPE_TEMPLATE, type));
+    public Command read(JsonReader in) throws IOException {
+      if (skipNull(in)) {
+        return null;
+      }
+      Class<?> commandClass = null;
+      JsonElement pendingData = null;
+      Command command = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (name.equals(TYPE)) {
+          commandClass = readCommandClass(in);
+        } else if (name.equals(DATA)) {
+          if (commandClass != null) {
+            command = getCommandAdapter(commandClass).read(in);
+          } else {
+            // The type is not known yet, the data must be kept until it is read.
+            pendingData = JsonParser.parseReader(in);
+          }
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      if (commandClass == null) {
+        throw new JsonParseException(MISSING_TYPE);
+      }
+      if (pendingData != null) {
+        command = getCommandAdapter(commandClass).fromJsonTree(pendingData);
       }
       return command;
     }
+
+    /**
+     * Returns the reflective adapter of the provided command class.
+     *
+     * @param classOfCommand The command class.
+     * @return A not null reference.
+     */
+    @SuppressWarnings("unchecked")
+    private static TypeAdapter<Command> getCommandAdapter(Class<?> classOfCommand) {
+      return (TypeAdapter<Command>) JsonUtil.getParser().getAdapter(classOfCommand);
+    }
+
+    /**
+     * Reads the type of a command, written as a fully qualified class name.
+     *
+     * @param in The JSON reader.
+     * @return A not null reference.
+     * @throws IOException If the JSON is not readable.
+     * @throws JsonParseException If the type is not a registered command class.
+     */
+    private static Class<?> readCommandClass(JsonReader in) throws IOException {
+      String type = in.nextString();
+      Class<?> commandClass = CommandTypeRegistry.getCommandClass(type);
+      if (commandClass == null) {
+        throw new JsonParseException(String.format(UNKNOWN_TYPE_TEMPLATE, type));
+      }
+      return commandClass;
+    }
   }
 }
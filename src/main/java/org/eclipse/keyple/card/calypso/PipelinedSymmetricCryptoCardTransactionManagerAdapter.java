@@ -0,0 +1,331 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import org.eclipse.keypop.calypso.crypto.symmetric.SvCommandSecurityDataApi;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoException;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+
+/**
+ * Decorator of a {@link SymmetricCryptoCardTransactionManagerSpi} executing the operations whose
+ * result is not needed by the transaction manager on a dedicated executor, so that they overlap
+ * with the card exchanges.
+ *
+ * <p>The deferred operations are the initialization and the updates of the terminal session MAC
+ * when the encryption is not active. They are executed one after the other in their call order.
+ * Any other operation, including the synchronization of the crypto service, first waits for the
+ * completion of the deferred operations, and the first failure of a deferred operation is then
+ * thrown by this operation.
+ *
+ * <p>No lock is held while a deferred operation is executed. The APDUs recorded meanwhile by the
+ * crypto service in the shared view of the transaction audit data are added to it at the end of the
+ * operation, holding its monitor only during this mutation.
+ *
+ * @since 3.1.7
+ */
+final class PipelinedSymmetricCryptoCardTransactionManagerAdapter
+    implements SymmetricCryptoCardTransactionManagerSpi {
+
+  private static final CompletableFuture<Void> NO_PENDING_OPERATION =
+      CompletableFuture.completedFuture(null);
+
+  private final SymmetricCryptoCardTransactionManagerSpi delegate;
+  private final Executor executor;
+  private final TransactionAuditData.SharedView transactionAuditData;
+  private CompletableFuture<Void> lastOperation = NO_PENDING_OPERATION;
+  private boolean isEncryptionActive;
+
+  /**
+   * Constructor.
+   *
+   * @param delegate The crypto service to decorate.
+   * @param executor The executor of the deferred operations.
+   * @param transactionAuditData The view of the transaction audit data provided to the crypto
+   *     service.
+   * @since 3.1.7
+   */
+  PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+      SymmetricCryptoCardTransactionManagerSpi delegate,
+      Executor executor,
+      TransactionAuditData.SharedView transactionAuditData) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.transactionAuditData = transactionAuditData;
+  }
+
+  /**
+   * Waits for the completion of the deferred operations, ignoring their failures.
+   *
+   * <p>Used when the transaction is reset, since the result of these operations is then obsolete.
+   *
+   * @since 3.1.7
+   */
+  void awaitPendingOperationsSilently() {
+    try {
+      awaitPendingOperations();
+    } catch (Exception e) { // NOSONAR the failure is obsolete
+      // Nothing to do
+    }
+  }
+
+  /**
+   * Schedules the provided operation after the previously deferred ones.
+   *
+   * @param operation The operation.
+   */
+  private void defer(final Operation operation) {
+    lastOperation =
+        lastOperation.thenRunAsync(
+            () -> {
+              transactionAuditData.beginDeferredOperation();
+              try {
+                operation.execute();
+              } catch (SymmetricCryptoException | SymmetricCryptoIOException e) {
+                throw new CompletionException(e);
+              } finally {
+                transactionAuditData.endDeferredOperation();
+              }
+            },
+            executor);
+  }
+
+  /**
+   * Waits for the completion of the deferred operations.
+   *
+   * @throws SymmetricCryptoException If a deferred operation failed with this exception.
+   * @throws SymmetricCryptoIOException If a deferred operation failed with this exception.
+   * @since 3.1.7
+   */
+  void awaitPendingOperations() throws SymmetricCryptoException, SymmetricCryptoIOException {
+    CompletableFuture<Void> pendingOperations = lastOperation;
+    if (pendingOperations == NO_PENDING_OPERATION) {
+      return;
+    }
+    lastOperation = NO_PENDING_OPERATION;
+    try {
+      pendingOperations.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SymmetricCryptoException) {
+        throw (SymmetricCryptoException) cause;
+      }
+      if (cause instanceof SymmetricCryptoIOException) {
+        throw (SymmetricCryptoIOException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] initTerminalSecureSessionContext()
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.initTerminalSecureSessionContext();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The operation is deferred.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void initTerminalSessionMac(
+      final byte[] openSecureSessionDataOut, final byte kif, final byte kvc) {
+    defer(() -> delegate.initTerminalSessionMac(openSecureSessionDataOut, kif, kvc));
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The operation is deferred if the encryption is not active, the provided APDU being then
+   * returned.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] updateTerminalSessionMac(final byte[] cardApdu)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    if (isEncryptionActive) {
+      awaitPendingOperations();
+      return delegate.updateTerminalSessionMac(cardApdu);
+    }
+    defer(() -> delegate.updateTerminalSessionMac(cardApdu));
+    return cardApdu;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] finalizeTerminalSessionMac()
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.finalizeTerminalSessionMac();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] generateTerminalSessionMac()
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.generateTerminalSessionMac();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void activateEncryption() throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    delegate.activateEncryption();
+    isEncryptionActive = true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void deactivateEncryption() throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    delegate.deactivateEncryption();
+    isEncryptionActive = false;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public boolean isCardSessionMacValid(byte[] cardSessionMac)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.isCardSessionMacValid(cardSessionMac);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void computeSvCommandSecurityData(SvCommandSecurityDataApi data)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    delegate.computeSvCommandSecurityData(data);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public boolean isCardSvMacValid(byte[] cardSvMac)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.isCardSvMacValid(cardSvMac);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] cipherPinForPresentation(byte[] cardChallenge, byte[] pin, Byte kif, Byte kvc)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.cipherPinForPresentation(cardChallenge, pin, kif, kvc);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] cipherPinForModification(
+      byte[] cardChallenge, byte[] currentPin, byte[] newPin, Byte kif, Byte kvc)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.cipherPinForModification(cardChallenge, currentPin, newPin, kif, kvc);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] generateCipheredCardKey(
+      byte[] cardChallenge,
+      byte issuerKeyKif,
+      byte issuerKeyKvc,
+      byte targetKeyKif,
+      byte targetKeyKvc)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    return delegate.generateCipheredCardKey(
+        cardChallenge, issuerKeyKif, issuerKeyKvc, targetKeyKif, targetKeyKvc);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void synchronize() throws SymmetricCryptoException, SymmetricCryptoIOException {
+    awaitPendingOperations();
+    delegate.synchronize();
+  }
+
+  /** Crypto service operation. */
+  private interface Operation {
+
+    /**
+     * Executes the operation.
+     *
+     * @throws SymmetricCryptoException If the operation fails.
+     * @throws SymmetricCryptoIOException If the communication with the crypto service fails.
+     */
+    void execute() throws SymmetricCryptoException, SymmetricCryptoIOException;
+  }
+}
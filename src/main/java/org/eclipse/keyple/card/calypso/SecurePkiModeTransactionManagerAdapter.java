@@ -18,11 +18,13 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.card.GetDataTag;
 import org.eclipse.keypop.calypso.card.transaction.*;
-import org.eclipse.keypop.calypso.card.transaction.spi.CaCertificate;
 import org.eclipse.keypop.calypso.card.transaction.spi.CardTransactionCryptoExtension;
 import org.eclipse.keypop.calypso.crypto.asymmetric.AsymmetricCryptoException;
 import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.CertificateValidationException;
@@ -50,13 +52,14 @@
   private static final String MSG_INVALID_CA_CERTIFICATE = "Invalid CA certificate: ";
   private final TransactionContextDto transactionContext;
   private final AsymmetricCryptoSecuritySettingAdapter asymmetricCryptoSecuritySetting;
-  private final CardTransactionCryptoExtension cryptoExtension;
+  private CardTransactionCryptoExtension cryptoExtension;
   private final SecureRandom secureRandom = new SecureRandom();
-  private final int payloadCapacity;
+  private int payloadCapacity;
 
   private ChannelControl originalChannelControl;
   private boolean isGetDataCardCertificatePrepared;
   private boolean isGetDataCaCertificatePrepared;
+  private CompletableFuture<CardPublicKeySpi> cardCertificateVerification;
 
   /**
    * Builds a new instance.
@@ -80,12 +83,37 @@
         asymmetricCryptoSecuritySetting
             .getCryptoCardTransactionManagerFactorySpi()
             .createCardTransactionManager();
-
     cryptoExtension = (CardTransactionCryptoExtension) asymmetricCryptoCardTransactionManagerSpi;
 
     transactionContext = new TransactionContextDto(card, asymmetricCryptoCardTransactionManagerSpi);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The asymmetric crypto service is kept since it is not bound to a card, the public key of the
+   * card being provided to it at the opening of each secure session.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  void onCardRebound() {
+    cardCertificateVerification = null;
+    payloadCapacity = card.getPayloadCapacity();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>As for the creation of the transaction manager, the product type of the card is not checked.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  void checkReboundCard(CalypsoCardAdapter card) {
+    // NOP
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -136,6 +164,7 @@ void resetTransaction() {
     resetCommandContext();
     isGetDataCardCertificatePrepared = false;
     isGetDataCaCertificatePrepared = false;
+    cardCertificateVerification = null;
     disablePreOpenMode();
     commands.clear();
     if (transactionContext.isSecureSessionOpen()) {
@@ -285,33 +314,58 @@ void parseCommandResponse(Command command, ApduResponseApi apduResponse)
       checkCardCertificateAndGetCardPublicKey();
     }
     command.parseResponse(apduResponse);
+    if (command instanceof CommandGetDataCertificate
+        && ((CommandGetDataCertificate) command).isCardCertificateLastPart()) {
+      startCardCertificateVerificationIfPossible();
+    }
   }
 
   /** Extracts the card public key using the PKI chain of trust and place it into the card image. */
   private void checkCardCertificateAndGetCardPublicKey() {
 
-    // Parse the card certificate raw data
-    CardCertificateSpi cardCertificateSpi = parseCardCertificate();
-
-    if (!Arrays.equals(
-        card.getApplicationSerialNumber(), cardCertificateSpi.getCardSerialNumber())) {
-      throw new InvalidCertificateException(
-          "Card serial number and certificate card serial number mismatch");
+    // Use the card public key extracted in the background if available, otherwise reuse the card
+    // public key if the card certificate has already been verified
+    CardPublicKeySpi cardPublicKeySpi = awaitCardCertificateVerification();
+    if (cardPublicKeySpi == null) {
+      CardPublicKeyCache cardPublicKeyCache =
+          asymmetricCryptoSecuritySetting.getCardPublicKeyCache();
+      if (cardPublicKeyCache != null) {
+        cardPublicKeySpi =
+            cardPublicKeyCache.get(card.getApplicationSerialNumber(), card.getCardCertificate());
+      }
+    }
+    if (cardPublicKeySpi != null) {
+      // Force the closing of the channel if originally requested
+      if (originalChannelControl == ChannelControl.CLOSE_AFTER) {
+        executeCardCommands(Collections.emptyList(), ChannelControl.CLOSE_AFTER);
+      }
+      card.setCardPublicKeySpi(cardPublicKeySpi);
+      return;
     }
 
+    // Parse the card certificate raw data
+    CardCertificateSpi cardCertificateSpi =
+        parseCardCertificate(card.getApplicationSerialNumber(), card.getCardCertificate());
+
     // Try to retrieve the issuer certificate content from the store
+    long cardPublicKeyCacheGeneration = getCardPublicKeyCacheGeneration();
     CaCertificateContentSpi caCertificateContentSpi =
         asymmetricCryptoSecuritySetting.getCaCertificate(
             cardCertificateSpi.getIssuerPublicKeyReference());
 
     // If the issuer certificate content is not already registered, then retrieve it from the card
     if (caCertificateContentSpi == null) {
-      // Read the CA certificate from the card using the original channel control
-      readCaCertificate();
+      // Read the CA certificate from the card using the original channel control, unless it has
+      // already been read (e.g. during the card selection)
+      if (card.getCaCertificate().length == 0) {
+        readCaCertificate();
+      }
       // Parse the CA certificate raw data
       CaCertificateSpi caCertificateSpi = parseCaCertificate();
-      // Register the CA certificate into the store
-      asymmetricCryptoSecuritySetting.addCaCertificate((CaCertificate) caCertificateSpi);
+      // Register the CA certificate into the store, unless a concurrent transaction already did
+      if (asymmetricCryptoSecuritySetting.addCaCertificateReadFromCard(caCertificateSpi)) {
+        asymmetricCryptoSecuritySetting.persistCaCertificate(card.getCaCertificate());
+      }
       // Retrieve the CA certificate content from the store
       caCertificateContentSpi =
           asymmetricCryptoSecuritySetting.getCaCertificate(
@@ -323,7 +377,141 @@ private void checkCardCertificateAndGetCardPublicKey() {
       }
     }
 
-    // Check the card certificate using the issuer certificate content and extract the public key
+    // Check the card certificate using the issuer certificate content and extract the public key,
+    // then save it into the card image
+    card.setCardPublicKeySpi(
+        checkCardCertificate(
+            card.getApplicationSerialNumber(),
+            card.getCardCertificate(),
+            cardCertificateSpi,
+            caCertificateContentSpi,
+            cardPublicKeyCacheGeneration));
+  }
+
+  /**
+   * Starts the verification of the card certificate placed into the card image on the executor
+   * provided by the security setting, if any.
+   *
+   * <p>It is invoked when the "open secure session" command is prepared and as soon as the last
+   * part of the card certificate read from the card is parsed.
+   *
+   * <p>The verification is only completed in the background if the issuer certificate is already
+   * registered, otherwise it is done when the response to the "open secure session" command is
+   * parsed.
+   */
+  private void startCardCertificateVerificationIfPossible() {
+    Executor executor = asymmetricCryptoSecuritySetting.getCardCertificateVerificationExecutor();
+    if (executor == null
+        || cardCertificateVerification != null
+        || card.getCardPublicKeySpi() != null
+        || card.getCardCertificate().length == 0) {
+      return;
+    }
+    final byte[] applicationSerialNumber = card.getApplicationSerialNumber().clone();
+    final byte[] cardCertificate = card.getCardCertificate().clone();
+    cardCertificateVerification =
+        CompletableFuture.supplyAsync(
+            () ->
+                verifyCardCertificateWithRegisteredIssuer(applicationSerialNumber, cardCertificate),
+            executor);
+  }
+
+  /**
+   * Waits for the end of the verification of the card certificate started in the background, if
+   * any.
+   *
+   * @return Null if no verification was started or if the issuer certificate was not registered.
+   * @throws InvalidCertificateException If the certificate is invalid.
+   * @throws CryptoException If an error occurred while checking the certificate.
+   */
+  private CardPublicKeySpi awaitCardCertificateVerification() {
+    CompletableFuture<CardPublicKeySpi> verification = cardCertificateVerification;
+    if (verification == null) {
+      return null;
+    }
+    cardCertificateVerification = null;
+    try {
+      return verification.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new CryptoException(
+          "An error occurred while checking the card certificate: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Verifies the provided card certificate using the issuer certificate registered into the
+   * security setting.
+   *
+   * <p>This method does not access the transaction state and may be executed by any thread.
+   *
+   * @param applicationSerialNumber The application serial number of the card.
+   * @param cardCertificate The raw card certificate.
+   * @return Null if the issuer certificate is not registered.
+   * @throws IllegalStateException If the certificate parser is not registered.
+   * @throws InvalidCertificateException If the certificate is invalid.
+   * @throws CryptoException If an error occurred while checking the certificate.
+   */
+  private CardPublicKeySpi verifyCardCertificateWithRegisteredIssuer(
+      byte[] applicationSerialNumber, byte[] cardCertificate) {
+    CardPublicKeyCache cardPublicKeyCache = asymmetricCryptoSecuritySetting.getCardPublicKeyCache();
+    if (cardPublicKeyCache != null) {
+      CardPublicKeySpi cardPublicKeySpi =
+          cardPublicKeyCache.get(applicationSerialNumber, cardCertificate);
+      if (cardPublicKeySpi != null) {
+        return cardPublicKeySpi;
+      }
+    }
+    CardCertificateSpi cardCertificateSpi =
+        parseCardCertificate(applicationSerialNumber, cardCertificate);
+    long cardPublicKeyCacheGeneration = getCardPublicKeyCacheGeneration();
+    CaCertificateContentSpi caCertificateContentSpi =
+        asymmetricCryptoSecuritySetting.getCaCertificate(
+            cardCertificateSpi.getIssuerPublicKeyReference());
+    if (caCertificateContentSpi == null) {
+      return null;
+    }
+    return checkCardCertificate(
+        applicationSerialNumber,
+        cardCertificate,
+        cardCertificateSpi,
+        caCertificateContentSpi,
+        cardPublicKeyCacheGeneration);
+  }
+
+  /**
+   * Returns the current generation of the card public key cache, to be retrieved before the issuer
+   * certificate, so that a key verified with a replaced certificate store is not cached.
+   *
+   * @return 0 if the cache is not enabled.
+   */
+  private long getCardPublicKeyCacheGeneration() {
+    CardPublicKeyCache cardPublicKeyCache = asymmetricCryptoSecuritySetting.getCardPublicKeyCache();
+    return cardPublicKeyCache != null ? cardPublicKeyCache.getGeneration() : 0;
+  }
+
+  /**
+   * Checks the provided card certificate using the provided issuer certificate content, and adds
+   * the extracted public key to the cache if enabled.
+   *
+   * @param applicationSerialNumber The application serial number of the card.
+   * @param cardCertificate The raw card certificate.
+   * @param cardCertificateSpi The parsed card certificate.
+   * @param caCertificateContentSpi The issuer certificate content.
+   * @param cardPublicKeyCacheGeneration The generation of the card public key cache retrieved
+   *     before the issuer certificate content.
+   * @return A non-null reference.
+   * @throws InvalidCertificateException If the certificate is invalid.
+   * @throws CryptoException If an error occurred while checking the certificate.
+   */
+  private CardPublicKeySpi checkCardCertificate(
+      byte[] applicationSerialNumber,
+      byte[] cardCertificate,
+      CardCertificateSpi cardCertificateSpi,
+      CaCertificateContentSpi caCertificateContentSpi,
+      long cardPublicKeyCacheGeneration) {
     CardPublicKeySpi cardPublicKeySpi;
     try {
       cardPublicKeySpi =
@@ -334,31 +522,42 @@ private void checkCardCertificateAndGetCardPublicKey() {
       throw new CryptoException(
           "An error occurred while checking the card certificate: " + e.getMessage(), e);
     }
-
-    // Save the card public key into the card image
-    card.setCardPublicKeySpi(cardPublicKeySpi);
+    CardPublicKeyCache cardPublicKeyCache = asymmetricCryptoSecuritySetting.getCardPublicKeyCache();
+    if (cardPublicKeyCache != null) {
+      cardPublicKeyCache.put(
+          applicationSerialNumber, cardCertificate, cardPublicKeySpi, cardPublicKeyCacheGeneration);
+    }
+    return cardPublicKeySpi;
   }
 
   /**
-   * Parses the card certificate placed into the card image.
+   * Parses the provided card certificate and checks that it belongs to the card.
    *
+   * @param applicationSerialNumber The application serial number of the card.
+   * @param cardCertificateBytes The raw card certificate.
    * @return A non-null reference.
    * @throws IllegalStateException If the certificate parser is not registered.
    * @throws InvalidCertificateException If the certificate is invalid.
    */
-  private CardCertificateSpi parseCardCertificate() {
-    byte[] cardCertificateBytes = card.getCardCertificate();
+  private CardCertificateSpi parseCardCertificate(
+      byte[] applicationSerialNumber, byte[] cardCertificateBytes) {
     CardCertificateParserSpi cardCertificateParser =
         asymmetricCryptoSecuritySetting.getCardCertificateParser(cardCertificateBytes[0]);
     if (cardCertificateParser == null) {
       throw new IllegalStateException(
           "No certificate parser registered for type " + HexUtil.toHex(cardCertificateBytes[0]));
     }
+    CardCertificateSpi cardCertificateSpi;
     try {
-      return cardCertificateParser.parseCertificate(cardCertificateBytes);
+      cardCertificateSpi = cardCertificateParser.parseCertificate(cardCertificateBytes);
     } catch (CertificateValidationException e) {
       throw new InvalidCertificateException(MSG_INVALID_CARD_CERTIFICATE + e.getMessage(), e);
     }
+    if (!Arrays.equals(applicationSerialNumber, cardCertificateSpi.getCardSerialNumber())) {
+      throw new InvalidCertificateException(
+          "Card serial number and certificate card serial number mismatch");
+    }
+    return cardCertificateSpi;
   }
 
   /**
@@ -416,6 +615,8 @@ public SecurePkiModeTransactionManager prepareOpenSecureSession() {
     checkNoSecureSession();
     if (card.getCardCertificate().length == 0 && !isGetDataCardCertificatePrepared) {
       prepareGetData(GetDataTag.CARD_CERTIFICATE);
+    } else {
+      startCardCertificateVerificationIfPossible();
     }
     byte[] terminalChallenge = new byte[8];
     secureRandom.nextBytes(terminalChallenge);
@@ -13,8 +13,15 @@
 
 import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keypop.calypso.card.WriteAccessLevel;
 import org.eclipse.keypop.calypso.card.card.CalypsoCard;
@@ -39,7 +46,8 @@
 abstract class SecureSymmetricCryptoTransactionManagerAdapter<
         T extends SecureSymmetricCryptoTransactionManager<T>>
     extends SecureTransactionManagerAdapter<T>
-    implements SecureSymmetricCryptoTransactionManager<T> {
+    implements SecureSymmetricCryptoTransactionManager<T>,
+        SecureSymmetricCryptoTransactionManagerExtension<T> {
 
   private static final Logger logger =
       LoggerFactory.getLogger(SecureSymmetricCryptoTransactionManagerAdapter.class);
@@ -51,10 +59,12 @@
   private static final int APDU_HEADER_LENGTH = 5;
 
   private final SymmetricCryptoSecuritySettingAdapter symmetricCryptoSecuritySetting;
-  private final SymmetricCryptoCardTransactionManagerSpi symmetricCryptoCardTransactionManagerSpi;
-  private final CardTransactionCryptoExtension cryptoExtension;
+  private SymmetricCryptoCardTransactionManagerSpi symmetricCryptoCardTransactionManagerSpi;
+  private SymmetricCryptoCardTransactionManagerSpi cardBoundCryptoService;
+  private byte[] cardBoundCryptoServiceSerialNumber;
+  private CardTransactionCryptoExtension cryptoExtension;
   private WriteAccessLevel writeAccessLevel;
-  private final int payloadCapacity;
+  private int payloadCapacity;
   private int modificationsCounter;
   private int nbPostponedData;
   private int svPostponedDataIndex = -1;
@@ -62,6 +72,10 @@
   private SvOperation svOperation;
   private SvAction svAction;
   private boolean isSvOperationInSecureSession;
+  private boolean isSessionPackingEnabled;
+  private final Map<Command, Integer> pendingSessionBufferSizes = new IdentityHashMap<>();
+  private int packingStartIndex;
+  private Executor cryptoServiceExecutor;
 
   final TransactionContextDto transactionContext; // package-private for perf optimization
   boolean isExtendedMode; // package-private for perf optimization
@@ -82,7 +96,17 @@
     super(cardReader, card);
 
     this.symmetricCryptoSecuritySetting = symmetricCryptoSecuritySetting;
+    initCardDependentFields();
+    transactionContext = new TransactionContextDto(card, symmetricCryptoCardTransactionManagerSpi);
+  }
 
+  /**
+   * Initializes the fields depending on the current card, including the symmetric crypto service
+   * which is bound to the card serial number and is therefore only requested from the factory when
+   * this serial number changes.
+   */
+  private void initCardDependentFields() {
+    symmetricCryptoSecuritySetting.awaitCryptoContextPrefetch();
     SymmetricCryptoCardTransactionManagerFactorySpi cryptoFactory =
         symmetricCryptoSecuritySetting.getCryptoCardTransactionManagerFactorySpi();
     // Extended mode flag
@@ -96,15 +120,57 @@
             card.getPayloadCapacity(),
             cryptoFactory.getMaxCardApduLengthSupported() - APDU_HEADER_LENGTH);
     // CL-SAM-CSN.1
-    symmetricCryptoCardTransactionManagerSpi =
-        cryptoFactory.createCardTransactionManager(
-            card.getCalypsoSerialNumberFull(), isExtendedMode, getTransactionAuditData());
+    byte[] calypsoSerialNumber = card.getCalypsoSerialNumberFull();
+    if (cardBoundCryptoService == null
+        || !Arrays.equals(calypsoSerialNumber, cardBoundCryptoServiceSerialNumber)) {
+      cardBoundCryptoService =
+          cryptoFactory.createCardTransactionManager(
+              calypsoSerialNumber, isExtendedMode, getSharedTransactionAuditData());
+      cardBoundCryptoServiceSerialNumber = calypsoSerialNumber;
+    }
+    symmetricCryptoCardTransactionManagerSpi = cardBoundCryptoService;
     cryptoExtension = (CardTransactionCryptoExtension) symmetricCryptoCardTransactionManagerSpi;
-
-    transactionContext = new TransactionContextDto(card, symmetricCryptoCardTransactionManagerSpi);
+    CryptoModuleAccessArbiter arbiter =
+        symmetricCryptoSecuritySetting.getCryptoModuleAccessArbiter();
+    if (arbiter != null) {
+      symmetricCryptoCardTransactionManagerSpi =
+          new SharedSymmetricCryptoCardTransactionManagerAdapter(
+              symmetricCryptoCardTransactionManagerSpi, arbiter);
+    }
     modificationsCounter = card.getModificationsCounter();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>A new symmetric crypto service is requested from the factory only if the serial number of
+   * the card differs from the one of the previous card.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  final void onCardRebound() {
+    releaseCryptoModuleAccess();
+    writeAccessLevel = null;
+    svAction = null;
+    initCardDependentFields();
+    installCryptoService();
+  }
+
+  /**
+   * Sets the crypto service to be used by the commands, decorated if an executor is defined for the
+   * crypto service.
+   */
+  private void installCryptoService() {
+    transactionContext.setSymmetricCryptoCardTransactionManagerSpi(
+        cryptoServiceExecutor != null
+            ? new PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+                symmetricCryptoCardTransactionManagerSpi,
+                cryptoServiceExecutor,
+                getSharedTransactionAuditData())
+            : symmetricCryptoCardTransactionManagerSpi);
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -146,6 +212,63 @@ final int getPayloadCapacity() {
     return payloadCapacity;
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public final T setSessionPackingEnabled(boolean isSessionPackingEnabled) {
+    checkNoSecureSession();
+    this.isSessionPackingEnabled = isSessionPackingEnabled;
+    return currentInstance;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public final T setCryptoServiceExecutor(Executor cryptoServiceExecutor) {
+    checkNoSecureSession();
+    awaitPendingCryptoServiceOperations();
+    this.cryptoServiceExecutor = cryptoServiceExecutor;
+    installCryptoService();
+    return currentInstance;
+  }
+
+  /** Waits for the completion of the deferred crypto service operations, ignoring failures. */
+  private void awaitPendingCryptoServiceOperations() {
+    SymmetricCryptoCardTransactionManagerSpi cryptoService =
+        transactionContext.getSymmetricCryptoCardTransactionManagerSpi();
+    if (cryptoService instanceof PipelinedSymmetricCryptoCardTransactionManagerAdapter) {
+      ((PipelinedSymmetricCryptoCardTransactionManagerAdapter) cryptoService)
+          .awaitPendingOperationsSilently();
+    }
+  }
+
+  /**
+   * Waits for the completion of the deferred crypto service operations.
+   *
+   * @throws CryptoException If a deferred operation failed.
+   * @throws CryptoIOException If a deferred operation failed on a communication error.
+   */
+  private void completePendingCryptoServiceOperations() {
+    SymmetricCryptoCardTransactionManagerSpi cryptoService =
+        transactionContext.getSymmetricCryptoCardTransactionManagerSpi();
+    if (cryptoService instanceof PipelinedSymmetricCryptoCardTransactionManagerAdapter) {
+      try {
+        ((PipelinedSymmetricCryptoCardTransactionManagerAdapter) cryptoService)
+            .awaitPendingOperations();
+      } catch (SymmetricCryptoException e) {
+        throw new CryptoException(e.getMessage(), e);
+      } catch (SymmetricCryptoIOException e) {
+        throw new CryptoIOException(e.getMessage(), e);
+      }
+    }
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -153,7 +276,10 @@ final int getPayloadCapacity() {
    */
   @Override
   final void resetTransaction() {
+    awaitPendingCryptoServiceOperations();
     resetCommandContext();
+    pendingSessionBufferSizes.clear();
+    packingStartIndex = 0;
     modificationsCounter = card.getModificationsCounter();
     nbPostponedData = 0;
     svPostponedDataIndex = -1;
@@ -177,6 +303,32 @@ final void resetTransaction() {
         transactionContext.setSecureSessionOpen(false);
       }
     }
+    releaseCryptoModuleAccess();
+  }
+
+  /**
+   * Waits for the background preparation of the crypto context, unless this transaction holds the
+   * access to the shared crypto module. The preparation, possibly requested by another
+   * transaction, then waits for this access and cannot be joined before its release.
+   */
+  private void awaitCryptoContextPrefetchIfNeeded() {
+    if (!(symmetricCryptoCardTransactionManagerSpi
+            instanceof SharedSymmetricCryptoCardTransactionManagerAdapter
+        && ((SharedSymmetricCryptoCardTransactionManagerAdapter)
+                symmetricCryptoCardTransactionManagerSpi)
+            .isAccessGranted())) {
+      symmetricCryptoSecuritySetting.awaitCryptoContextPrefetch();
+    }
+  }
+
+  /** Releases the access to the crypto module if it is shared with other transactions. */
+  private void releaseCryptoModuleAccess() {
+    if (symmetricCryptoCardTransactionManagerSpi
+        instanceof SharedSymmetricCryptoCardTransactionManagerAdapter) {
+      ((SharedSymmetricCryptoCardTransactionManagerAdapter)
+              symmetricCryptoCardTransactionManagerSpi)
+          .releaseAccess();
+    }
   }
 
   /**
@@ -189,6 +341,11 @@ final void prepareNewSecureSessionIfNeeded(Command command) {
     if (!isSecureSessionOpen) {
       return;
     }
+    if (isSessionPackingEnabled) {
+      // The split is postponed until the whole batch is known
+      pendingSessionBufferSizes.put(command, computeCommandSessionBufferSize(command));
+      return;
+    }
     modificationsCounter -= computeCommandSessionBufferSize(command);
     if (modificationsCounter < 0) {
       checkMultipleSessionEnabled(command);
@@ -248,6 +405,210 @@ private void checkMultipleSessionEnabled(Command command) {
               + getTransactionAuditDataAsString());
     }
   }
+  /**
+   * Splits the commands prepared within the current secure session into the minimum number of
+   * sessions that the packing heuristic can find, if the session packing is enabled.
+   *
+   * <p>The commands are processed in blocks of consecutive commands targeting an EF by its SFI. A
+   * block that fits in the current session is kept unchanged. Otherwise, the next command of each
+   * EF is a candidate, and the commands without session buffer cost are taken first, then the
+   * largest one that fits in the current session. A new session is opened when no candidate fits.
+   * The other commands are kept at their position and a new session is opened before them if they
+   * do not fit, as well as the commands preceding them, which may select the current EF they
+   * target (e.g. the "Read Binary" command added before an access beyond offset 255).
+   *
+   * @throws SessionBufferOverflowException If a new session is needed and the multiple session is
+   *     not allowed.
+   */
+  private void packSessionsIfNeeded() {
+    if (pendingSessionBufferSizes.isEmpty()) {
+      return;
+    }
+    List<Command> segment = commands.subList(packingStartIndex, commands.size());
+    List<Command> batch = new ArrayList<>(segment);
+    segment.clear();
+    // Restore the postponed data state of the session at the beginning of the batch
+    for (Command command : batch) {
+      if (isPostponedDataCommand(command)) {
+        nbPostponedData--;
+        if (isSvModifyingCommand(command)) {
+          svPostponedDataIndex = -1;
+        }
+      }
+    }
+    int index = 0;
+    while (index < batch.size()) {
+      Command command = batch.get(index);
+      if (command.getTargetSfi() == 0 || isFollowedByCurrentEfCommand(batch, index)) {
+        if (getPendingSessionBufferSize(command) > modificationsCounter) {
+          addNewSecureSession(command);
+        }
+        addPackedCommand(command);
+        index++;
+        continue;
+      }
+      int blockEnd = index;
+      int blockSize = 0;
+      while (blockEnd < batch.size()
+          && batch.get(blockEnd).getTargetSfi() != 0
+          && !isFollowedByCurrentEfCommand(batch, blockEnd)) {
+        blockSize += getPendingSessionBufferSize(batch.get(blockEnd));
+        blockEnd++;
+      }
+      if (blockSize <= modificationsCounter) {
+        for (Command blockCommand : batch.subList(index, blockEnd)) {
+          addPackedCommand(blockCommand);
+        }
+      } else {
+        packBlock(batch.subList(index, blockEnd));
+      }
+      index = blockEnd;
+    }
+    isSvOperationInSecureSession = svPostponedDataIndex != -1;
+    pendingSessionBufferSizes.clear();
+    packingStartIndex = commands.size();
+  }
+
+  /**
+   * Indicates if the command at the provided index is followed by a command not targeting an EF by
+   * its SFI, which may depend on the EF selected by the former.
+   *
+   * @param batch The commands.
+   * @param index The index of the command.
+   * @return True if the next command does not target an EF by its SFI.
+   */
+  private static boolean isFollowedByCurrentEfCommand(List<Command> batch, int index) {
+    return index + 1 < batch.size() && batch.get(index + 1).getTargetSfi() == 0;
+  }
+
+  /**
+   * Adds the commands of a block of commands targeting EFs by their SFI, reordering them to fill
+   * the sessions.
+   *
+   * @param block The commands of the block, in the order of preparation.
+   */
+  private void packBlock(List<Command> block) {
+    Map<Integer, Deque<Command>> commandsBySfi = new LinkedHashMap<>();
+    for (Command command : block) {
+      Deque<Command> sfiCommands = commandsBySfi.get(command.getTargetSfi());
+      if (sfiCommands == null) {
+        sfiCommands = new ArrayDeque<>();
+        commandsBySfi.put(command.getTargetSfi(), sfiCommands);
+      }
+      sfiCommands.add(command);
+    }
+    for (int nbCommands = block.size(); nbCommands > 0; nbCommands--) {
+      Command selectedCommand = null;
+      int selectedSize = -1;
+      Command largestCommand = null;
+      int largestSize = -1;
+      for (Deque<Command> sfiCommands : commandsBySfi.values()) {
+        Command command = sfiCommands.peekFirst();
+        if (command == null) {
+          continue;
+        }
+        int size = getPendingSessionBufferSize(command);
+        if (size == 0) {
+          selectedCommand = command;
+          break;
+        }
+        if (size <= modificationsCounter && size > selectedSize) {
+          selectedCommand = command;
+          selectedSize = size;
+        }
+        if (size > largestSize) {
+          largestCommand = command;
+          largestSize = size;
+        }
+      }
+      if (selectedCommand == null) {
+        selectedCommand = largestCommand;
+        addNewSecureSession(selectedCommand);
+      }
+      commandsBySfi.get(selectedCommand.getTargetSfi()).pollFirst();
+      addPackedCommand(selectedCommand);
+    }
+  }
+
+  /**
+   * Adds a command to the list of commands to process and updates the session state.
+   *
+   * @param command The command.
+   */
+  private void addPackedCommand(Command command) {
+    modificationsCounter -= getPendingSessionBufferSize(command);
+    if (isPostponedDataCommand(command)) {
+      if (isSvModifyingCommand(command)) {
+        svPostponedDataIndex = nbPostponedData;
+      }
+      nbPostponedData++;
+    }
+    commands.add(command);
+  }
+
+  /**
+   * Closes the current secure session and opens a new one before the provided command.
+   *
+   * @param nextCommand The command to be placed in the new session.
+   * @throws SessionBufferOverflowException If the multiple session is not allowed.
+   */
+  private void addNewSecureSession(Command nextCommand) {
+    checkMultipleSessionEnabled(nextCommand);
+    boolean isEncryptionActiveForNextCommand = nextCommand.getCommandContext().isEncryptionActive();
+    CommandContextDto commandContext =
+        new CommandContextDto(true, isEncryptionActiveForNextCommand);
+    commands.add(
+        new CommandCloseSecureSession(
+            transactionContext, commandContext, true, svPostponedDataIndex));
+    disablePreOpenMode();
+    commands.add(
+        new CommandOpenSecureSession(
+            transactionContext,
+            commandContext,
+            symmetricCryptoSecuritySetting,
+            writeAccessLevel,
+            isExtendedMode));
+    if (isEncryptionActiveForNextCommand) {
+      commands.add(
+          new CommandManageSession(transactionContext, commandContext)
+              .setEncryptionRequested(true));
+    }
+    modificationsCounter = card.getModificationsCounter();
+    nbPostponedData = 0;
+    svPostponedDataIndex = -1;
+  }
+
+  /**
+   * Returns the session buffer size of a command prepared in session packing mode.
+   *
+   * @param command The command.
+   * @return 0 if the command does not modify the card.
+   */
+  private int getPendingSessionBufferSize(Command command) {
+    Integer size = pendingSessionBufferSizes.get(command);
+    return size != null ? size : 0;
+  }
+
+  /**
+   * Indicates whether the provided command produces postponed data in a secure session.
+   *
+   * @param command The command.
+   * @return True if the command produces postponed data.
+   */
+  private boolean isPostponedDataCommand(Command command) {
+    return isSvModifyingCommand(command)
+        || (command instanceof CommandIncreaseOrDecrease && card.isCounterValuePostponed());
+  }
+
+  /**
+   * Indicates whether the provided command is an SV modifying command.
+   *
+   * @param command The command.
+   * @return True if the command is an SV reload, debit or undebit command.
+   */
+  private static boolean isSvModifyingCommand(Command command) {
+    return command instanceof CommandSvReload || command instanceof CommandSvDebitOrUndebit;
+  }
 
   /**
    * {@inheritDoc}
@@ -290,11 +651,14 @@ final T prepareIncreaseOrDecreaseCounter(
    */
   @Override
   public final T processCommands(ChannelControl channelControl) {
+    awaitCryptoContextPrefetchIfNeeded();
     if (commands.isEmpty()) {
       processCryptoPreparedCommands();
       return currentInstance;
     }
+    boolean isSecureSessionClosed = false;
     try {
+      packSessionsIfNeeded();
       List<Command> cardRequestCommands = new ArrayList<>();
       for (Command command : commands) {
         if (command.isCryptoServiceRequiredToFinalizeRequest()
@@ -304,14 +668,20 @@ public final T processCommands(ChannelControl channelControl) {
         }
         command.finalizeRequest();
         cardRequestCommands.add(command);
+        isSecureSessionClosed |= command instanceof CommandCloseSecureSession;
       }
       executeCardCommands(cardRequestCommands, channelControl);
       processCryptoPreparedCommands();
+      if (isSecureSessionClosed && !transactionContext.isSecureSessionOpen()) {
+        releaseCryptoModuleAccess();
+        symmetricCryptoSecuritySetting.prefetchCryptoContextIfEnabled();
+      }
     } catch (RuntimeException e) {
       resetTransaction();
       throw e;
     } finally {
       commands.clear();
+      packingStartIndex = 0;
       if (isExtendedMode && !card.isExtendedModeSupported()) {
         isExtendedMode = false;
       }
@@ -336,11 +706,14 @@ private boolean synchronizeCryptoServiceBeforeCardProcessing(List<Command> comma
     return true;
   }
 
-  /** Process any prepared crypto commands. */
+  /**
+   * Process any prepared crypto commands, once the deferred crypto service operations are
+   * completed.
+   */
   private void processCryptoPreparedCommands() {
     if (symmetricCryptoCardTransactionManagerSpi != null) {
       try {
-        symmetricCryptoCardTransactionManagerSpi.synchronize();
+        transactionContext.getSymmetricCryptoCardTransactionManagerSpi().synchronize();
       } catch (SymmetricCryptoException e) {
         throw new CryptoException(e.getMessage(), e);
       } catch (SymmetricCryptoIOException e) {
@@ -425,11 +798,21 @@ public final T prepareChangePin(byte[] newPin) {
   /**
    * {@inheritDoc}
    *
+   * <p>If the crypto module is shared, the returned crypto extension obtains the access to the
+   * crypto module before each of its operations. The provided class must then be an interface.
+   *
    * @since 3.0.0
    */
   @Override
   public final <E extends CardTransactionCryptoExtension> E getCryptoExtension(
       Class<E> cryptoExtensionClass) {
+    completePendingCryptoServiceOperations();
+    if (symmetricCryptoCardTransactionManagerSpi
+        instanceof SharedSymmetricCryptoCardTransactionManagerAdapter) {
+      return ((SharedSymmetricCryptoCardTransactionManagerAdapter)
+              symmetricCryptoCardTransactionManagerSpi)
+          .decorateCryptoExtension(cryptoExtensionClass, cryptoExtension);
+    }
     return cryptoExtensionClass.cast(cryptoExtension);
   }
 
@@ -466,6 +849,8 @@ public final T prepareOpenSecureSession(WriteAccessLevel writeAccessLevel) {
       nbPostponedData = 0;
       svPostponedDataIndex = -1;
       isSvOperationInSecureSession = false;
+      pendingSessionBufferSizes.clear();
+      packingStartIndex = commands.size();
     } catch (RuntimeException e) {
       resetTransaction();
       throw e;
@@ -482,6 +867,7 @@ public final T prepareOpenSecureSession(WriteAccessLevel writeAccessLevel) {
   public final T prepareCloseSecureSession() {
     try {
       checkSecureSession();
+      packSessionsIfNeeded();
       if (symmetricCryptoSecuritySetting.isRatificationMechanismEnabled()
           && ((CardReader) cardReader).isContactless()) {
         // CL-RAT-CMD.1
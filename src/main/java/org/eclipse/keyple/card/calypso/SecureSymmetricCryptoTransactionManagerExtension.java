@@ -0,0 +1,74 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.Executor;
+import org.eclipse.keypop.calypso.card.transaction.SecureSymmetricCryptoTransactionManager;
+import org.eclipse.keypop.calypso.card.transaction.SessionBufferOverflowException;
+
+/**
+ * Features of the secure transaction managers using a symmetric crypto service specific to the
+ * Calypso card extension, in addition to those of {@link TransactionManagerExtension}.
+ *
+ * <p>An instance is obtained with {@link
+ * CalypsoExtensionService#getSecureSymmetricCryptoTransactionManagerExtension(SecureSymmetricCryptoTransactionManager)}.
+ *
+ * @param <T> The type of the transaction manager.
+ * @since 3.1.7
+ */
+public interface SecureSymmetricCryptoTransactionManagerExtension<
+        T extends SecureSymmetricCryptoTransactionManager<T>>
+    extends TransactionManagerExtension<T> {
+
+  /**
+   * Enables or disables the packing of the secure sessions in multiple session mode (disabled by
+   * default).
+   *
+   * <p>When enabled, the commands modifying the card are no longer split into several secure
+   * sessions as soon as they are prepared. The whole batch prepared within a secure session is
+   * split just before being processed, or when the session close is prepared. Commands targeting
+   * different EFs may then be reordered to fill each session as much as possible, in order to
+   * reduce the number of sessions. The order of the commands targeting the same EF is kept, as well
+   * as the position of the commands not targeting an EF identified by its SFI.
+   *
+   * <p>If the multiple session mode is not enabled, the {@link SessionBufferOverflowException} is
+   * then raised when the batch is split instead of when the overflowing command is prepared.
+   *
+   * @param isSessionPackingEnabled true to enable the packing.
+   * @return The transaction manager.
+   * @throws IllegalStateException If a secure session is open.
+   * @since 3.1.7
+   */
+  T setSessionPackingEnabled(boolean isSessionPackingEnabled);
+
+  /**
+   * Sets the executor on which the crypto service operations whose result is not immediately needed
+   * are executed (null by default).
+   *
+   * <p>When set, the terminal session MAC updates with the card APDUs (when the encryption is not
+   * active) are executed on this executor, in their original order, while the transaction goes on
+   * with the next card exchanges. The transaction waits for them before any other crypto service
+   * operation, such as the computation of the terminal session MAC when closing the session or the
+   * synchronization of the crypto service, which then raises the possible failure of a deferred
+   * operation. They are therefore all completed when the processing of the commands ends, as well
+   * as before the crypto extension is provided.
+   *
+   * <p>The APDUs recorded by the crypto service during a deferred operation are added to the
+   * transaction audit data at the end of the operation.
+   *
+   * @param cryptoServiceExecutor The executor, or null to execute all the operations synchronously.
+   * @return The transaction manager.
+   * @throws IllegalStateException If a secure session is open.
+   * @since 3.1.7
+   */
+  T setCryptoServiceExecutor(Executor cryptoServiceExecutor);
+}
@@ -0,0 +1,400 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.eclipse.keypop.calypso.card.transaction.CryptoIOException;
+import org.eclipse.keypop.calypso.card.transaction.spi.CardTransactionCryptoExtension;
+import org.eclipse.keypop.calypso.crypto.symmetric.SvCommandSecurityDataApi;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoException;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+
+/**
+ * Decorator of a {@link SymmetricCryptoCardTransactionManagerSpi} obtaining the exclusive access to
+ * a crypto module shared with other concurrent transactions before using it.
+ *
+ * <p>The crypto module keeps a context between some operations, which must not be interleaved with
+ * the operations of another transaction. The access is therefore kept from the initialization of
+ * the terminal secure session context until the verification of the card session MAC, and from the
+ * computation of the SV command security data outside a secure session until the verification of
+ * the card SV MAC. The other operations obtain the access for their own duration only.
+ *
+ * <p>The access is also released by {@link #releaseAccess()} when the transaction is aborted.
+ *
+ * <p>The crypto extension of the crypto service uses the same crypto module, and is therefore
+ * decorated in the same way by {@link #decorateCryptoExtension(Class, Object)}.
+ *
+ * @since 3.1.7
+ */
+final class SharedSymmetricCryptoCardTransactionManagerAdapter
+    implements SymmetricCryptoCardTransactionManagerSpi {
+
+  private final SymmetricCryptoCardTransactionManagerSpi delegate;
+  private final CryptoModuleAccessArbiter arbiter;
+  private boolean isAccessGranted;
+  private boolean isSecureSessionInProgress;
+  private boolean isSvOperationInProgress;
+
+  /**
+   * Constructor.
+   *
+   * @param delegate The crypto service to decorate.
+   * @param arbiter The arbiter of the accesses to the shared crypto module.
+   * @since 3.1.7
+   */
+  SharedSymmetricCryptoCardTransactionManagerAdapter(
+      SymmetricCryptoCardTransactionManagerSpi delegate, CryptoModuleAccessArbiter arbiter) {
+    this.delegate = delegate;
+    this.arbiter = arbiter;
+  }
+
+  /**
+   * Releases the access to the crypto module if it is granted, whatever the operation in progress.
+   *
+   * @since 3.1.7
+   */
+  void releaseAccess() {
+    isSecureSessionInProgress = false;
+    isSvOperationInProgress = false;
+    releaseAccessIfIdle();
+  }
+
+  /**
+   * Indicates if the access to the crypto module is currently granted to the transaction.
+   *
+   * @return True if the access is granted.
+   * @since 3.1.7
+   */
+  boolean isAccessGranted() {
+    return isAccessGranted;
+  }
+
+  /**
+   * Decorates the provided crypto extension so that each of its operations obtains the access to
+   * the crypto module, unless it is already granted to the transaction.
+   *
+   * @param cryptoExtensionClass The interface of the crypto extension.
+   * @param cryptoExtension The crypto extension of the decorated crypto service.
+   * @param <E> The type of the crypto extension.
+   * @return A not null reference.
+   * @throws IllegalArgumentException If the provided class is not an interface.
+   * @throws ClassCastException If the crypto extension does not implement the provided interface.
+   * @since 3.1.7
+   */
+  <E extends CardTransactionCryptoExtension> E decorateCryptoExtension(
+      Class<E> cryptoExtensionClass, final Object cryptoExtension) {
+    if (!cryptoExtensionClass.isInterface()) {
+      throw new IllegalArgumentException(
+          "The crypto extension class must be an interface when the crypto module is shared");
+    }
+    cryptoExtensionClass.cast(cryptoExtension);
+    return cryptoExtensionClass.cast(
+        Proxy.newProxyInstance(
+            cryptoExtensionClass.getClassLoader(),
+            new Class<?>[] {cryptoExtensionClass},
+            (proxy, method, args) -> invokeCryptoExtension(cryptoExtension, method, args)));
+  }
+
+  /**
+   * Invokes an operation of the crypto extension after having obtained the access to the crypto
+   * module.
+   *
+   * @param cryptoExtension The crypto extension.
+   * @param method The operation.
+   * @param args The arguments of the operation.
+   * @return The result of the operation.
+   * @throws Throwable The exception thrown by the operation.
+   */
+  private Object invokeCryptoExtension(Object cryptoExtension, Method method, Object[] args)
+      throws Throwable {
+    if (method.getDeclaringClass() == Object.class) {
+      return method.invoke(cryptoExtension, args);
+    }
+    try {
+      obtainAccess();
+    } catch (SymmetricCryptoIOException e) {
+      throw new CryptoIOException(e.getMessage(), e);
+    }
+    try {
+      return method.invoke(cryptoExtension, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * Waits for the access to the crypto module if it is not already granted.
+   *
+   * @throws SymmetricCryptoIOException If the access is not granted in time.
+   */
+  private void obtainAccess() throws SymmetricCryptoIOException {
+    if (!isAccessGranted) {
+      arbiter.acquire();
+      isAccessGranted = true;
+    }
+  }
+
+  /** Releases the access to the crypto module if no multi-step operation is in progress. */
+  private void releaseAccessIfIdle() {
+    if (isAccessGranted && !isSecureSessionInProgress && !isSvOperationInProgress) {
+      isAccessGranted = false;
+      arbiter.release();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The access to the crypto module is kept until the verification of the card session MAC.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] initTerminalSecureSessionContext()
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    isSecureSessionInProgress = true;
+    try {
+      return delegate.initTerminalSecureSessionContext();
+    } catch (SymmetricCryptoException | SymmetricCryptoIOException | RuntimeException e) {
+      releaseAccess();
+      throw e;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void initTerminalSessionMac(byte[] openSecureSessionDataOut, byte kif, byte kvc)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      delegate.initTerminalSessionMac(openSecureSessionDataOut, kif, kvc);
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] updateTerminalSessionMac(byte[] cardApdu)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.updateTerminalSessionMac(cardApdu);
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] finalizeTerminalSessionMac()
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.finalizeTerminalSessionMac();
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] generateTerminalSessionMac()
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.generateTerminalSessionMac();
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void activateEncryption() throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      delegate.activateEncryption();
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void deactivateEncryption() throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      delegate.deactivateEncryption();
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The access to the crypto module is then released.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public boolean isCardSessionMacValid(byte[] cardSessionMac)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.isCardSessionMacValid(cardSessionMac);
+    } finally {
+      isSecureSessionInProgress = false;
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Outside a secure session, the access to the crypto module is kept until the verification of
+   * the card SV MAC.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void computeSvCommandSecurityData(SvCommandSecurityDataApi data)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    isSvOperationInProgress = !isSecureSessionInProgress;
+    try {
+      delegate.computeSvCommandSecurityData(data);
+    } catch (SymmetricCryptoException | SymmetricCryptoIOException | RuntimeException e) {
+      isSvOperationInProgress = false;
+      releaseAccessIfIdle();
+      throw e;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public boolean isCardSvMacValid(byte[] cardSvMac)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.isCardSvMacValid(cardSvMac);
+    } finally {
+      isSvOperationInProgress = false;
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] cipherPinForPresentation(byte[] cardChallenge, byte[] pin, Byte kif, Byte kvc)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.cipherPinForPresentation(cardChallenge, pin, kif, kvc);
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] cipherPinForModification(
+      byte[] cardChallenge, byte[] currentPin, byte[] newPin, Byte kif, Byte kvc)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.cipherPinForModification(cardChallenge, currentPin, newPin, kif, kvc);
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] generateCipheredCardKey(
+      byte[] cardChallenge,
+      byte issuerKeyKif,
+      byte issuerKeyKvc,
+      byte targetKeyKif,
+      byte targetKeyKvc)
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      return delegate.generateCipheredCardKey(
+          cardChallenge, issuerKeyKif, issuerKeyKvc, targetKeyKif, targetKeyKvc);
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void synchronize() throws SymmetricCryptoException, SymmetricCryptoIOException {
+    obtainAccess();
+    try {
+      delegate.synchronize();
+    } finally {
+      releaseAccessIfIdle();
+    }
+  }
+}
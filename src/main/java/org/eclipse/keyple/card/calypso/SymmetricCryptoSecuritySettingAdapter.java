@@ -16,6 +16,8 @@
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keypop.calypso.card.WriteAccessLevel;
 import org.eclipse.keypop.calypso.card.transaction.CryptoException;
@@ -24,14 +26,19 @@
 import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoException;
 import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
 import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerFactorySpi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Adapter of {@link SymmetricCryptoSecuritySetting}.
  *
  * @since 2.3.1
  */
-class SymmetricCryptoSecuritySettingAdapter implements SymmetricCryptoSecuritySetting {
+class SymmetricCryptoSecuritySettingAdapter
+    implements SymmetricCryptoSecuritySetting, SymmetricCryptoSecuritySettingExtension {
 
+  private static final Logger logger =
+      LoggerFactory.getLogger(SymmetricCryptoSecuritySettingAdapter.class);
   private static final String WRITE_ACCESS_LEVEL = "writeAccessLevel";
 
   private final SymmetricCryptoCardTransactionManagerFactorySpi
@@ -58,6 +65,11 @@ class SymmetricCryptoSecuritySettingAdapter implements SymmetricCryptoSecuritySe
   private Byte pinModificationCipheringKif;
   private Byte pinModificationCipheringKvc;
 
+  private final Object cryptoContextPrefetchLock = new Object();
+  private Executor cryptoContextPrefetchExecutor;
+  private CompletableFuture<Void> cryptoContextPrefetch;
+  private CryptoModuleAccessArbiter cryptoModuleAccessArbiter;
+
   SymmetricCryptoSecuritySettingAdapter(
       SymmetricCryptoCardTransactionManagerFactorySpi cryptoCardTransactionManagerFactorySpi) {
     this.cryptoCardTransactionManagerFactorySpi = cryptoCardTransactionManagerFactorySpi;
@@ -222,12 +234,21 @@ public SymmetricCryptoSecuritySetting setPinModificationCipheringKey(byte kif, b
   /**
    * {@inheritDoc}
    *
+   * <p>The preparation is done in the background if an executor is defined with {@link
+   * #setCryptoContextPrefetchExecutor(Executor)}.
+   *
    * @since 3.0.0
    */
   @Override
   public void initCryptoContextForNextTransaction() {
+    synchronized (cryptoContextPrefetchLock) {
+      if (cryptoContextPrefetchExecutor != null) {
+        prefetchCryptoContext();
+        return;
+      }
+    }
     try {
-      cryptoCardTransactionManagerFactorySpi.preInitTerminalSessionContext();
+      preInitTerminalSessionContext();
     } catch (SymmetricCryptoException e) {
       throw new CryptoException(e.getMessage(), e);
     } catch (SymmetricCryptoIOException e) {
@@ -235,6 +256,117 @@ public void initCryptoContextForNextTransaction() {
     }
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public SymmetricCryptoSecuritySetting setCryptoContextPrefetchExecutor(
+      Executor cryptoContextPrefetchExecutor) {
+    synchronized (cryptoContextPrefetchLock) {
+      this.cryptoContextPrefetchExecutor = cryptoContextPrefetchExecutor;
+      if (cryptoContextPrefetchExecutor != null) {
+        prefetchCryptoContext();
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Prepares the crypto context of the next transaction in the background if an executor is defined
+   * for that purpose, and if no preparation is already pending.
+   *
+   * @since 3.1.7
+   */
+  void prefetchCryptoContextIfEnabled() {
+    synchronized (cryptoContextPrefetchLock) {
+      if (cryptoContextPrefetchExecutor != null
+          && (cryptoContextPrefetch == null || cryptoContextPrefetch.isDone())) {
+        prefetchCryptoContext();
+      }
+    }
+  }
+
+  /**
+   * Waits for the completion of the background preparation of the crypto context, if any.
+   *
+   * <p>Must be invoked before any use of the crypto module, which does not support concurrent
+   * accesses. The pending preparation is kept until its completion, so that all the concurrent
+   * callers wait for it.
+   *
+   * @since 3.1.7
+   */
+  void awaitCryptoContextPrefetch() {
+    CompletableFuture<Void> pendingPrefetch;
+    synchronized (cryptoContextPrefetchLock) {
+      pendingPrefetch = cryptoContextPrefetch;
+    }
+    if (pendingPrefetch != null) {
+      pendingPrefetch.join();
+    }
+  }
+
+  /**
+   * Pre-initializes the terminal session context, after having obtained the access to the crypto
+   * module if it is shared.
+   *
+   * @throws SymmetricCryptoException If the crypto module fails.
+   * @throws SymmetricCryptoIOException If the communication with the crypto module fails.
+   */
+  private void preInitTerminalSessionContext()
+      throws SymmetricCryptoException, SymmetricCryptoIOException {
+    CryptoModuleAccessArbiter arbiter = cryptoModuleAccessArbiter;
+    if (arbiter == null) {
+      cryptoCardTransactionManagerFactorySpi.preInitTerminalSessionContext();
+      return;
+    }
+    arbiter.acquire();
+    try {
+      cryptoCardTransactionManagerFactorySpi.preInitTerminalSessionContext();
+    } finally {
+      arbiter.release();
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public SymmetricCryptoSecuritySetting enableCryptoModuleSharing(int maxWaitTimeMillis) {
+    Assert.getInstance().greaterOrEqual(maxWaitTimeMillis, 0, "maxWaitTimeMillis");
+    cryptoModuleAccessArbiter = new CryptoModuleAccessArbiter(maxWaitTimeMillis);
+    return this;
+  }
+
+  /**
+   * Returns the arbiter of the accesses to the crypto module when it is shared.
+   *
+   * @return Null if the crypto module is not shared.
+   * @since 3.1.7
+   */
+  CryptoModuleAccessArbiter getCryptoModuleAccessArbiter() {
+    return cryptoModuleAccessArbiter;
+  }
+
+  /** Schedules the preparation of the crypto context after the pending one, if any. */
+  private void prefetchCryptoContext() {
+    Runnable task =
+        () -> {
+          try {
+            preInitTerminalSessionContext();
+          } catch (Exception e) {
+            logger.warn("Failed to prepare the crypto context: {}", e.getMessage());
+          }
+        };
+    cryptoContextPrefetch =
+        cryptoContextPrefetch == null || cryptoContextPrefetch.isDone()
+            ? CompletableFuture.runAsync(task, cryptoContextPrefetchExecutor)
+            : cryptoContextPrefetch.thenRunAsync(task, cryptoContextPrefetchExecutor);
+  }
+
   /**
    * Indicates if the multiple session mode is enabled.
    *
@@ -0,0 +1,73 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.Executor;
+import org.eclipse.keypop.calypso.card.transaction.CryptoIOException;
+import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
+
+/**
+ * Features of the symmetric crypto security settings specific to the Calypso card extension, not
+ * covered by the Keypop Calypso card API.
+ *
+ * <p>An instance is obtained from a security setting created by the factory of this extension with
+ * {@link
+ * CalypsoExtensionService#getSymmetricCryptoSecuritySettingExtension(SymmetricCryptoSecuritySetting)}.
+ * Its methods act on the security setting itself and return it to allow chaining.
+ *
+ * @since 3.1.7
+ */
+public interface SymmetricCryptoSecuritySettingExtension {
+
+  /**
+   * Sets the executor on which the crypto context of the next transaction is prepared in the
+   * background (null by default).
+   *
+   * <p>When set, the crypto context is prepared on this executor as soon as the executor is set,
+   * then after each secure session closed by a transaction manager using this setting, and each
+   * time {@link SymmetricCryptoSecuritySetting#initCryptoContextForNextTransaction()} is invoked.
+   * The opening of the next secure session thus no longer waits for the crypto module, provided
+   * that the preparation is complete.
+   *
+   * <p>A crypto module holds a single terminal session context at a time, a new preparation
+   * replacing the previous one. A single preparation is therefore kept in advance. The transaction
+   * managers wait for its completion before using the crypto module, and a failure of the
+   * preparation is only logged, the crypto module then preparing the context on demand.
+   *
+   * @param cryptoContextPrefetchExecutor The executor, or null to prepare the crypto context
+   *     synchronously and only on demand.
+   * @return The security setting.
+   * @since 3.1.7
+   */
+  SymmetricCryptoSecuritySetting setCryptoContextPrefetchExecutor(
+      Executor cryptoContextPrefetchExecutor);
+
+  /**
+   * Declares that the crypto module is shared by several transaction managers used concurrently.
+   *
+   * <p>Each transaction manager then obtains the exclusive access to the crypto module before using
+   * it, and keeps it as long as the crypto module holds a context of its transaction, i.e. from the
+   * opening of a secure session until its closing or its abortion. The waiting transactions are
+   * served in their order of arrival, and a transaction waiting longer than the provided time fails
+   * with a {@link CryptoIOException}. The operations of the crypto extension of a transaction
+   * manager also obtain this access for their own duration, unless the transaction already holds
+   * it.
+   *
+   * <p>Must be invoked before the creation of the transaction managers using this setting.
+   *
+   * @param maxWaitTimeMillis The maximum time to wait for the crypto module, in milliseconds.
+   * @return The security setting.
+   * @throws IllegalArgumentException If the provided time is negative.
+   * @since 3.1.7
+   */
+  SymmetricCryptoSecuritySetting enableCryptoModuleSharing(int maxWaitTimeMillis);
+}
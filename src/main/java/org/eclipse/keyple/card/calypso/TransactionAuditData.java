@@ -0,0 +1,412 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.eclipse.keyple.core.util.Assert;
+
+/**
+ * List of the APDUs exchanged during a transaction (CL-CSS-INFODATA.1).
+ *
+ * <p>The list is unbounded by default. It can be limited to a number of APDU pairs and/or to a
+ * number of bytes, in which case it behaves as a ring buffer: the oldest request/response pairs are
+ * evicted to make room for the new ones.
+ *
+ * <p>The APDUs are grouped by pair: {@link #addApduPair(byte[], byte[])} always starts a new pair,
+ * while {@link #add(byte[])} starts a new pair only after a complete one. An incomplete pair (e.g.
+ * a single APDU added by a crypto extension) is evicted alone, so that an odd number of APDUs never
+ * shifts the following pairs. A response whose own request has to be evicted to make room for it
+ * is not recorded either.
+ *
+ * <p>By default the APDUs are kept by reference. When the byte arena is enabled, they are copied
+ * into a single byte array allocated once, and each call to {@link #get(int)} returns a new copy.
+ *
+ * <p>The instance is shared with the crypto extensions which add their own APDUs, so its identity
+ * must not change during the life of the transaction manager.
+ *
+ * @since 3.1.7
+ */
+final class TransactionAuditData extends AbstractList<byte[]> {
+
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int maxEntries;
+  private int maxBytes;
+  private boolean isByteArenaEnabled;
+
+  /* Ring of entries (by reference mode) */
+  private byte[][] entries;
+
+  /* Ring of entries locations (byte arena mode) */
+  private int[] offsets;
+  private int[] lengths;
+  private byte[] arena;
+  private int arenaTail;
+
+  /* Ring of flags indicating the entries starting a pair */
+  private boolean[] pairStarts;
+  private boolean isPairOpen;
+
+  private int head;
+  private int size;
+  private int nbBytes;
+
+  /**
+   * Builds a new unbounded instance.
+   *
+   * @since 3.1.7
+   */
+  TransactionAuditData() {
+    entries = new byte[INITIAL_CAPACITY][];
+    pairStarts = new boolean[INITIAL_CAPACITY];
+  }
+
+  /**
+   * Sets the capacity and the storage mode.<br>
+   * The current content is kept, except the oldest pairs exceeding the new capacity.
+   *
+   * @param maxApduPairs The maximum number of request/response pairs (0 for no limit).
+   * @param maxBytes The maximum cumulated length of the APDUs (0 for no limit).
+   * @param isByteArenaEnabled true to copy the APDUs into a single array of {@code maxBytes} bytes.
+   * @throws IllegalArgumentException If a value is out of range or if the byte arena is enabled
+   *     without limiting the number of bytes.
+   * @since 3.1.7
+   */
+  void configure(int maxApduPairs, int maxBytes, boolean isByteArenaEnabled) {
+    Assert.getInstance()
+        .greaterOrEqual(maxApduPairs, 0, "maxApduPairs")
+        .greaterOrEqual(maxBytes, isByteArenaEnabled ? 1 : 0, "maxBytes");
+    byte[][] content = toArray(new byte[size][]);
+    boolean[] contentPairStarts = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      contentPairStarts[i] = pairStarts[getSlot(i)];
+    }
+    boolean isContentPairOpen = isPairOpen;
+    this.maxEntries = maxApduPairs * 2;
+    this.maxBytes = maxBytes;
+    this.isByteArenaEnabled = isByteArenaEnabled;
+    int slots = maxEntries != 0 ? maxEntries : INITIAL_CAPACITY;
+    if (isByteArenaEnabled) {
+      entries = null;
+      offsets = new int[slots];
+      lengths = new int[slots];
+      arena = new byte[maxBytes];
+    } else {
+      entries = new byte[slots][];
+      offsets = null;
+      lengths = null;
+      arena = null;
+    }
+    pairStarts = new boolean[slots];
+    resetRing();
+    for (int i = 0; i < content.length; i++) {
+      addEntry(content[i], contentPairStarts[i]);
+    }
+    isPairOpen = isContentPairOpen;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The oldest pairs are evicted if the capacity is reached. If the request of the pair
+   * completed by the APDU is evicted, the APDU is not recorded. In byte arena mode, an APDU longer
+   * than the arena empties the list and is not recorded.
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public boolean add(byte[] apdu) {
+    if (isByteArenaEnabled && apdu.length > arena.length) {
+      clear();
+      return false;
+    }
+    boolean isPairStart = !isPairOpen;
+    isPairOpen = isPairStart;
+    modCount++;
+    return addEntry(apdu, isPairStart);
+  }
+
+  /**
+   * Adds a request/response pair, starting a new pair even if the last one is incomplete.
+   *
+   * @param apduRequest The APDU request.
+   * @param apduResponse The APDU response.
+   * @since 3.1.7
+   */
+  void addApduPair(byte[] apduRequest, byte[] apduResponse) {
+    isPairOpen = false;
+    add(apduRequest);
+    add(apduResponse);
+  }
+
+  /**
+   * Adds an entry after having evicted the oldest pairs exceeding the capacity.
+   *
+   * <p>The pair completed by an entry not starting a pair is the most recent one. If it has to be
+   * evicted, the whole incomplete pair is dropped and the entry is not added.
+   *
+   * @param apdu The APDU.
+   * @param isPairStart true if the APDU starts a new pair.
+   * @return false if the entry has been dropped with its incomplete pair.
+   */
+  private boolean addEntry(byte[] apdu, boolean isPairStart) {
+    int length = apdu.length;
+    while (size != 0
+        && ((maxEntries != 0 && size >= maxEntries)
+            || (maxBytes != 0 && nbBytes + length > maxBytes))) {
+      evictOldestPair();
+      if (size == 0 && !isPairStart) {
+        return false;
+      }
+    }
+    if (size == getSlotsNumber()) {
+      grow();
+    }
+    int slot = getSlot(size);
+    if (isByteArenaEnabled) {
+      int firstPartLength = Math.min(length, arena.length - arenaTail);
+      System.arraycopy(apdu, 0, arena, arenaTail, firstPartLength);
+      System.arraycopy(apdu, firstPartLength, arena, 0, length - firstPartLength);
+      offsets[slot] = arenaTail;
+      lengths[slot] = length;
+      arenaTail = (arenaTail + length) % arena.length;
+    } else {
+      entries[slot] = apdu;
+    }
+    pairStarts[slot] = isPairStart;
+    size++;
+    nbBytes += length;
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public byte[] get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    int slot = getSlot(index);
+    if (!isByteArenaEnabled) {
+      return entries[slot];
+    }
+    int offset = offsets[slot];
+    int length = lengths[slot];
+    byte[] apdu = new byte[length];
+    int firstPartLength = Math.min(length, arena.length - offset);
+    System.arraycopy(arena, offset, apdu, 0, firstPartLength);
+    System.arraycopy(arena, 0, apdu, firstPartLength, length - firstPartLength);
+    return apdu;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public void clear() {
+    if (entries != null) {
+      Arrays.fill(entries, null);
+    }
+    resetRing();
+    modCount++;
+  }
+
+  /** Resets the ring indexes. */
+  private void resetRing() {
+    head = 0;
+    size = 0;
+    nbBytes = 0;
+    arenaTail = 0;
+    isPairOpen = false;
+  }
+
+  /**
+   * Evicts the oldest pair, i.e. the oldest APDU and the following APDUs up to the start of the
+   * next pair.
+   */
+  private void evictOldestPair() {
+    do {
+      if (isByteArenaEnabled) {
+        nbBytes -= lengths[head];
+      } else {
+        nbBytes -= entries[head].length;
+        entries[head] = null;
+      }
+      head = (head + 1) % getSlotsNumber();
+      size--;
+    } while (size != 0 && !pairStarts[head]);
+  }
+
+  /** Doubles the number of slots, unwrapping the ring. */
+  private void grow() {
+    int slots = getSlotsNumber();
+    int newSlots = maxEntries != 0 ? Math.min(slots * 2, maxEntries) : slots * 2;
+    boolean[] newPairStarts = new boolean[newSlots];
+    for (int i = 0; i < size; i++) {
+      newPairStarts[i] = pairStarts[getSlot(i)];
+    }
+    pairStarts = newPairStarts;
+    if (isByteArenaEnabled) {
+      int[] newOffsets = unwrap(offsets, newSlots);
+      lengths = unwrap(lengths, newSlots);
+      offsets = newOffsets;
+    } else {
+      byte[][] newEntries = new byte[newSlots][];
+      for (int i = 0; i < size; i++) {
+        newEntries[i] = entries[getSlot(i)];
+      }
+      entries = newEntries;
+    }
+    head = 0;
+  }
+
+  private int[] unwrap(int[] ring, int newSlots) {
+    int[] newRing = new int[newSlots];
+    for (int i = 0; i < size; i++) {
+      newRing[i] = ring[getSlot(i)];
+    }
+    return newRing;
+  }
+
+  private int getSlotsNumber() {
+    return isByteArenaEnabled ? offsets.length : entries.length;
+  }
+
+  private int getSlot(int index) {
+    return (head + index) % getSlotsNumber();
+  }
+
+  /**
+   * View of the audit data provided to a crypto service, whose APDUs may be recorded from another
+   * thread than the one of the transaction manager.
+   *
+   * <p>Each access to the list holds the monitor of the audit data, as the transaction manager does
+   * when recording the card APDUs. During a deferred operation of the crypto service, the APDUs are
+   * kept aside and added all at once at the end of the operation: the monitor is then only held
+   * during the mutation, and the APDUs of the operation are not interleaved with the ones recorded
+   * meanwhile by the transaction manager.
+   *
+   * @since 3.1.7
+   */
+  static final class SharedView extends AbstractList<byte[]> {
+
+    private final TransactionAuditData auditData;
+    private final List<byte[]> deferredApdus = new ArrayList<>();
+    private boolean isDeferredOperationInProgress;
+
+    /**
+     * Constructor.
+     *
+     * @param auditData The audit data.
+     * @since 3.1.7
+     */
+    SharedView(TransactionAuditData auditData) {
+      this.auditData = auditData;
+    }
+
+    /**
+     * Indicates that a deferred operation of the crypto service starts on the current thread.
+     *
+     * @since 3.1.7
+     */
+    void beginDeferredOperation() {
+      isDeferredOperationInProgress = true;
+    }
+
+    /**
+     * Indicates that the deferred operation is completed and records the APDUs it added.
+     *
+     * @since 3.1.7
+     */
+    void endDeferredOperation() {
+      isDeferredOperationInProgress = false;
+      if (deferredApdus.isEmpty()) {
+        return;
+      }
+      synchronized (auditData) {
+        for (byte[] apdu : deferredApdus) {
+          auditData.add(apdu);
+        }
+      }
+      deferredApdus.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public boolean add(byte[] apdu) {
+      if (isDeferredOperationInProgress) {
+        return deferredApdus.add(apdu);
+      }
+      synchronized (auditData) {
+        return auditData.add(apdu);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public byte[] get(int index) {
+      synchronized (auditData) {
+        return auditData.get(index);
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public int size() {
+      synchronized (auditData) {
+        return auditData.size();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @since 3.1.7
+     */
+    @Override
+    public void clear() {
+      synchronized (auditData) {
+        auditData.clear();
+      }
+    }
+  }
+}
@@ -14,6 +14,9 @@
 import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.eclipse.keyple.core.util.Assert;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keyple.core.util.json.JsonUtil;
@@ -66,7 +69,7 @@
  * @since 3.0.0
  */
 abstract class TransactionManagerAdapter<T extends TransactionManager<T>>
-    implements TransactionManager<T> {
+    implements TransactionManager<T>, TransactionManagerExtension<T> {
 
   private static final Logger logger = LoggerFactory.getLogger(TransactionManagerAdapter.class);
 
@@ -93,10 +96,16 @@
   /* Final fields */
   T currentInstance = (T) this;
   final ProxyReaderApi cardReader;
-  final CalypsoCardAdapter card;
-  private final List<byte[]> transactionAuditData = new ArrayList<>();
+  private final TransactionAuditData transactionAuditData = new TransactionAuditData();
+  private final TransactionAuditData.SharedView sharedTransactionAuditData =
+      new TransactionAuditData.SharedView(transactionAuditData);
+  private final AtomicBoolean isAsyncProcessingInProgress = new AtomicBoolean();
 
   /* Dynamic fields */
+  CalypsoCardAdapter card;
+  private AuditDataSink auditDataSink;
+  private boolean isAuditDataKeptInMemory = true;
+  private boolean isReadThroughCacheEnabled;
   final List<Command> commands = new ArrayList<>();
 
   /**
@@ -142,6 +151,29 @@
    */
   abstract void resetTransaction();
 
+  /**
+   * Updates the fields depending on the card after the manager has been bound to a new card.
+   *
+   * @since 3.1.7
+   */
+  abstract void onCardRebound();
+
+  /**
+   * Checks that the provided card meets the preconditions applied when creating this type of
+   * transaction manager.
+   *
+   * <p>By default, the product type of the card must be defined.
+   *
+   * @param card The card to bind.
+   * @throws IllegalArgumentException If the card does not meet the preconditions.
+   * @since 3.1.7
+   */
+  void checkReboundCard(CalypsoCardAdapter card) {
+    if (card.getProductType() == CalypsoCard.ProductType.UNKNOWN) {
+      throw new IllegalArgumentException("The provided 'card' has an undefined product type");
+    }
+  }
+
   /**
    * Closes and opens a new secure session if the three following conditions are satisfied:
    *
@@ -248,11 +280,13 @@ void parseCommandResponse(Command command, ApduResponseApi apduResponse)
    * @since 2.2.0
    */
   private static List<ApduRequestSpi> getApduRequests(List<Command> commands) {
-    List<ApduRequestSpi> apduRequests = new ArrayList<>();
-    if (commands != null) {
-      for (Command command : commands) {
-        apduRequests.add(command.getApduRequest());
-      }
+    if (commands == null) {
+      return new ArrayList<>(0);
+    }
+    // The list is a copy because the card request may outlive the list of commands
+    List<ApduRequestSpi> apduRequests = new ArrayList<>(commands.size());
+    for (Command command : commands) {
+      apduRequests.add(command.getApduRequest());
     }
     return apduRequests;
   }
@@ -304,7 +338,105 @@ private org.eclipse.keypop.card.ChannelControl mapToInternalChannelControl(
   }
 
   /**
-   * Saves the provided exchanged APDU commands in the list of transaction audit data.
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public final T setTransactionAuditDataCapacity(
+      int maxApduPairs, int maxBytes, boolean isByteArenaEnabled) {
+    transactionAuditData.configure(maxApduPairs, maxBytes, isByteArenaEnabled);
+    return currentInstance;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public final T rebind(CalypsoCard card) {
+    Assert.getInstance().notNull(card, "card");
+    if (!(card instanceof CalypsoCardAdapter)) {
+      throw new IllegalArgumentException(
+          "The provided 'card' must be an instance of 'CalypsoCardAdapter'");
+    }
+    checkReboundCard((CalypsoCardAdapter) card);
+    if (getTransactionContext().isSecureSessionOpen()) {
+      throw new IllegalStateException(MSG_SECURE_SESSION_OPEN);
+    }
+    resetTransaction();
+    transactionAuditData.clear();
+    this.card = (CalypsoCardAdapter) card;
+    getTransactionContext().setCard(this.card);
+    onCardRebound();
+    return currentInstance;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public final T setAuditDataSink(AuditDataSink auditDataSink, boolean isAuditDataKeptInMemory) {
+    this.auditDataSink = auditDataSink;
+    this.isAuditDataKeptInMemory = isAuditDataKeptInMemory;
+    return currentInstance;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public final T setReadThroughCacheEnabled(boolean isReadThroughCacheEnabled) {
+    this.isReadThroughCacheEnabled = isReadThroughCacheEnabled;
+    return currentInstance;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @since 3.1.7
+   */
+  @Override
+  public final CompletableFuture<T> processCommandsAsync(
+      final ChannelControl channelControl, Executor executor) {
+    Assert.getInstance().notNull(channelControl, "channelControl").notNull(executor, "executor");
+    if (!isAsyncProcessingInProgress.compareAndSet(false, true)) {
+      throw new IllegalStateException("An asynchronous processing is already in progress");
+    }
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(
+          () -> {
+            T result = null;
+            Throwable failure = null;
+            try {
+              result = processCommands(channelControl);
+            } catch (Throwable t) { // NOSONAR the failure is forwarded to the future
+              failure = t;
+            }
+            // Released before completing the future to allow a dependent stage to continue.
+            isAsyncProcessingInProgress.set(false);
+            if (failure == null) {
+              future.complete(result);
+            } else {
+              future.completeExceptionally(failure);
+            }
+          });
+    } catch (RuntimeException e) {
+      isAsyncProcessingInProgress.set(false);
+      throw e;
+    }
+    return future;
+  }
+
+  /**
+   * Saves the provided exchanged APDU commands in the list of transaction audit data and forwards
+   * them to the audit data sink if any.
    *
    * @param cardRequest The card request.
    * @param cardResponse The associated card response.
@@ -314,12 +446,36 @@ private void saveTransactionAuditData(CardRequestSpi cardRequest, CardResponseAp
       List<ApduRequestSpi> requests = cardRequest.getApduRequests();
       List<ApduResponseApi> responses = cardResponse.getApduResponses();
       for (int i = 0; i < responses.size(); i++) {
-        transactionAuditData.add(requests.get(i).getApdu());
-        transactionAuditData.add(responses.get(i).getApdu());
+        byte[] apduRequest = requests.get(i).getApdu();
+        byte[] apduResponse = responses.get(i).getApdu();
+        if (isAuditDataKeptInMemory) {
+          // The crypto service may record its own APDUs from another thread holding the same lock
+          synchronized (transactionAuditData) {
+            transactionAuditData.addApduPair(apduRequest, apduResponse);
+          }
+        }
+        if (auditDataSink != null) {
+          notifyAuditDataSink(apduRequest, apduResponse);
+        }
       }
     }
   }
 
+  /**
+   * Forwards an exchanged pair to the audit data sink.<br>
+   * The card has already executed the command, so a failure of the sink is only logged.
+   *
+   * @param apduRequest The APDU request.
+   * @param apduResponse The APDU response.
+   */
+  private void notifyAuditDataSink(byte[] apduRequest, byte[] apduResponse) {
+    try {
+      auditDataSink.onApduExchanged(apduRequest, apduResponse);
+    } catch (RuntimeException e) {
+      logger.warn("Unable to forward the APDUs to the audit data sink: {}", e.getMessage(), e);
+    }
+  }
+
   /**
    * Returns a string representation of the transaction audit data.
    *
@@ -513,6 +669,10 @@ public final T prepareReadRecord(byte sfi, int recordNumber) {
               CalypsoCardConstant.NB_REC_MAX,
               MSG_RECORD_NUMBER);
 
+      if (isCardImageUsable(sfi) && card.isRecordUpToDate(sfi, recordNumber)) {
+        return currentInstance;
+      }
+
       // A record size of 0 indicates that the card determines the output length.
       // However, "legacy case 1" cards require a non-zero value.
       int recordSize = card.isLegacyCase1() ? CalypsoCardConstant.LEGACY_REC_LENGTH : 0;
@@ -564,6 +724,27 @@ public final T prepareReadRecords(
               toRecordNumber, fromRecordNumber, CalypsoCardConstant.NB_REC_MAX, "toRecordNumber")
           .isInRange(recordSize, 0, getPayloadCapacity(), "recordSize");
 
+      // Excludes the first and last records already known.
+      if (isCardImageUsable(sfi)) {
+        while (fromRecordNumber <= toRecordNumber && card.isRecordUpToDate(sfi, fromRecordNumber)) {
+          fromRecordNumber++;
+        }
+        while (toRecordNumber >= fromRecordNumber && card.isRecordUpToDate(sfi, toRecordNumber)) {
+          toRecordNumber--;
+        }
+        if (fromRecordNumber > toRecordNumber) {
+          return currentInstance;
+        }
+      }
+
+      // Coalesces the reading with the previous one if it ends with the record preceding the first
+      // one to read, so that both are performed with a minimum number of APDUs.
+      CommandReadRecords precedingCommand =
+          pollPrecedingReadRecordsCommand(sfi, fromRecordNumber, recordSize);
+      if (precedingCommand != null) {
+        fromRecordNumber = precedingCommand.getFirstRecordNumber();
+      }
+
       if (toRecordNumber == fromRecordNumber
           || (card.getProductType() != CalypsoCard.ProductType.PRIME_REVISION_3
               && card.getProductType() != CalypsoCard.ProductType.LIGHT)) {
@@ -719,7 +900,17 @@ public final T prepareReadBinary(byte sfi, int offset, int nbBytesToRead) {
               MSG_OFFSET)
           .greaterOrEqual(nbBytesToRead, 1, "nbBytesToRead");
 
-      if (sfi > 0 && offset > 255) { // FFh
+      if (isCardImageUsable(sfi) && card.isBinaryContentUpToDate(sfi, offset, nbBytesToRead)) {
+        return currentInstance;
+      }
+
+      // Coalesces the reading with the previous one if it ends with the byte preceding the first
+      // one to read. The EF is then already selected.
+      CommandReadBinary precedingCommand = pollPrecedingReadBinaryCommand(sfi, offset);
+      if (precedingCommand != null) {
+        offset = precedingCommand.getOffset();
+        nbBytesToRead += precedingCommand.getLe();
+      } else if (sfi > 0 && offset > 255) { // FFh
         // Tips to select the file: add a "Read Binary" command (read one byte at offset 0).
         commands.add(
             new CommandReadBinary(getTransactionContext(), getCommandContext(), sfi, 0, 1));
@@ -746,6 +937,102 @@ public final T prepareReadBinary(byte sfi, int offset, int nbBytesToRead) {
     return currentInstance;
   }
 
+  /**
+   * Removes and returns the last prepared command if it is a "Read Records" command of the same
+   * command context reading records of the provided size from the provided EF up to the record
+   * preceding the provided one.
+   *
+   * <p>Only applies to cards supporting the reading of multiple records in one APDU.
+   *
+   * @param sfi The SFI of the EF.
+   * @param recordNumber The number of the record following the last record read.
+   * @param recordSize The record size.
+   * @return Null if there is no such command.
+   */
+  private CommandReadRecords pollPrecedingReadRecordsCommand(
+      byte sfi, int recordNumber, int recordSize) {
+    if (recordSize == 0
+        || (card.getProductType() != CalypsoCard.ProductType.PRIME_REVISION_3
+            && card.getProductType() != CalypsoCard.ProductType.LIGHT)) {
+      return null;
+    }
+    Command lastCommand = getLastCommandOfSameContext();
+    if (!(lastCommand instanceof CommandReadRecords)) {
+      return null;
+    }
+    CommandReadRecords command = (CommandReadRecords) lastCommand;
+    if (command.getTargetSfi() != sfi
+        || command.getRecordSize() != recordSize
+        || command.getLastRecordNumber() != recordNumber - 1) {
+      return null;
+    }
+    commands.remove(commands.size() - 1);
+    return command;
+  }
+
+  /**
+   * Removes and returns the last prepared command if it is a "Read Binary" command of the same
+   * command context reading the provided EF up to the byte preceding the provided offset.
+   *
+   * @param sfi The SFI of the EF.
+   * @param offset The offset following the last byte read.
+   * @return Null if there is no such command.
+   */
+  private CommandReadBinary pollPrecedingReadBinaryCommand(byte sfi, int offset) {
+    Command lastCommand = getLastCommandOfSameContext();
+    if (!(lastCommand instanceof CommandReadBinary)) {
+      return null;
+    }
+    CommandReadBinary command = (CommandReadBinary) lastCommand;
+    if (command.getSfi() != sfi || command.getOffset() + command.getLe() != offset) {
+      return null;
+    }
+    commands.remove(commands.size() - 1);
+    return command;
+  }
+
+  /**
+   * Indicates if the data of the provided EF can be taken from the card image instead of being read
+   * from the card.
+   *
+   * @param sfi The SFI of the EF.
+   * @return True if the read-through cache mode is enabled, no secure session is open, no prepared
+   *     command targets the EF and no prepared command modifies the current EF, which may be the
+   *     same.
+   */
+  private boolean isCardImageUsable(byte sfi) {
+    if (!isReadThroughCacheEnabled || sfi == 0 || getCommandContext().isSecureSessionOpen()) {
+      return false;
+    }
+    for (Command command : commands) {
+      int targetSfi = command.getTargetSfi();
+      if (targetSfi == sfi || (targetSfi == 0 && command.isTargetEfModified())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the last prepared command if it has been prepared in the current command context.
+   *
+   * @return Null if there is no such command.
+   */
+  private Command getLastCommandOfSameContext() {
+    if (commands.isEmpty()) {
+      return null;
+    }
+    Command lastCommand = commands.get(commands.size() - 1);
+    CommandContextDto commandContext = getCommandContext();
+    if (lastCommand.getCommandContext().isSecureSessionOpen()
+            != commandContext.isSecureSessionOpen()
+        || lastCommand.getCommandContext().isEncryptionActive()
+            != commandContext.isEncryptionActive()) {
+      return null;
+    }
+    return lastCommand;
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -1299,4 +1586,15 @@ public final List<byte[]> getTransactionAuditData() {
     // CL-CSS-INFODATA.1
     return transactionAuditData;
   }
+
+  /**
+   * Returns the view of the transaction audit data to be provided to a crypto service which may
+   * record its own APDUs from another thread.
+   *
+   * @return A not null reference.
+   * @since 3.1.7
+   */
+  final TransactionAuditData.SharedView getSharedTransactionAuditData() {
+    return sharedTransactionAuditData;
+  }
 }
@@ -0,0 +1,135 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.eclipse.keypop.calypso.card.card.CalypsoCard;
+import org.eclipse.keypop.calypso.card.transaction.ChannelControl;
+import org.eclipse.keypop.calypso.card.transaction.TransactionManager;
+
+/**
+ * Features of the transaction managers specific to the Calypso card extension, not covered by the
+ * Keypop Calypso card API.
+ *
+ * <p>An instance is obtained from a transaction manager created by the factory of this extension
+ * with {@link CalypsoExtensionService#getTransactionManagerExtension(TransactionManager)}. Its
+ * methods act on the transaction manager itself and return it to allow chaining.
+ *
+ * @param <T> The type of the transaction manager.
+ * @since 3.1.7
+ */
+public interface TransactionManagerExtension<T extends TransactionManager<T>> {
+
+  /**
+   * Limits the amount of transaction audit data kept by the manager.<br>
+   * When a limit is reached, the oldest request/response pairs are evicted.
+   *
+   * @param maxApduPairs The maximum number of request/response pairs (0 for no limit).
+   * @param maxBytes The maximum cumulated length of the APDUs (0 for no limit).
+   * @param isByteArenaEnabled true to copy the APDUs into a single array of {@code maxBytes} bytes
+   *     allocated once, instead of keeping one array per APDU.
+   * @return The transaction manager.
+   * @throws IllegalArgumentException If a value is out of range or if the byte arena is enabled
+   *     without limiting the number of bytes.
+   * @since 3.1.7
+   */
+  T setTransactionAuditDataCapacity(int maxApduPairs, int maxBytes, boolean isByteArenaEnabled);
+
+  /**
+   * Registers a sink notified of each request/response pair exchanged with the card, as soon as it
+   * is recorded.
+   *
+   * <p>The in-memory recording can be disabled when the sink is the only consumer of the audit
+   * data, in which case {@link TransactionManager#getTransactionAuditData()} only contains the
+   * APDUs possibly added by the crypto extension.
+   *
+   * <p>A failure of the sink does not abort the processing of the commands: it is logged as a
+   * warning and the pair is lost for the sink only.
+   *
+   * @param auditDataSink The sink to notify (null to unregister it).
+   * @param isAuditDataKeptInMemory false to stop recording the card APDUs in the transaction audit
+   *     data list.
+   * @return The transaction manager.
+   * @since 3.1.7
+   */
+  T setAuditDataSink(AuditDataSink auditDataSink, boolean isAuditDataKeptInMemory);
+
+  /**
+   * Binds the manager to a newly selected card, so that it can be reused for the next transaction
+   * instead of creating a new manager.
+   *
+   * <p>The prepared commands and the transaction audit data are discarded, but the internal lists,
+   * the transaction context and the audit data settings are kept. The card reader and the security
+   * setting remain the same.
+   *
+   * @param card The newly selected card.
+   * @return The transaction manager.
+   * @throws IllegalArgumentException If the card is null, has not been selected with this extension
+   *     or does not meet the preconditions of the factory method creating this type of manager
+   *     (e.g. an undefined product type outside the PKI mode).
+   * @throws IllegalStateException If a secure session is open.
+   * @since 3.1.7
+   */
+  T rebind(CalypsoCard card);
+
+  /**
+   * Enables or disables the read-through cache mode (disabled by default).
+   *
+   * <p>In this mode, the records and binary data requested outside a secure session by {@link
+   * TransactionManager#prepareReadRecord(byte, int)}, {@link
+   * TransactionManager#prepareReadRecords(byte, int, int, int)}, {@link
+   * TransactionManager#prepareReadCounter(byte, int)} and {@link
+   * TransactionManager#prepareReadBinary(byte, int, int)} are not read again if the card image
+   * already contains them as read from the card, either during the card selection or during a
+   * previous transaction step. Such data stops being considered up to date as soon as it is
+   * modified in the card image (update, write, append, increase, decrease, partial read or
+   * cancellation of a secure session).
+   *
+   * <p>The cache is not used for the EF designated by SFI 0, when a command targeting the same EF
+   * is already prepared, or when a command modifying the current EF (SFI 0) is already prepared.
+   *
+   * @param isReadThroughCacheEnabled true to enable the mode.
+   * @return The transaction manager.
+   * @since 3.1.7
+   */
+  T setReadThroughCacheEnabled(boolean isReadThroughCacheEnabled);
+
+  /**
+   * Processes the prepared commands as {@link TransactionManager#processCommands(ChannelControl)}
+   * does, but on a thread of the provided executor, so that the calling thread is not blocked by the
+   * card and crypto exchanges.
+   *
+   * <p>The processing itself is the same blocking one, only executed on another thread: it does not
+   * reduce the duration of the transaction.
+   *
+   * <p><b>Threading contract:</b> the transaction manager is not thread-safe. From the call of this
+   * method until the completion of the returned future, it must not be used by any thread, except
+   * from a dependent stage of the returned future once it is completed. This also applies to the
+   * card image and to the transaction audit data, which are updated by the executor thread. The
+   * completion of the future happens-before the execution of its dependent stages.
+   *
+   * <p>The future is completed with the transaction manager, or exceptionally with the exception
+   * that {@link TransactionManager#processCommands(ChannelControl)} would have thrown. A new
+   * asynchronous processing can be started from a dependent stage of the returned future.
+   *
+   * @param channelControl Policy for managing the physical channel after the card request is
+   *     executed.
+   * @param executor The executor to use.
+   * @return A new future.
+   * @throws IllegalArgumentException If an argument is null.
+   * @throws IllegalStateException If an asynchronous processing is already in progress.
+   * @throws java.util.concurrent.RejectedExecutionException If the executor rejects the task.
+   * @since 3.1.7
+   */
+  CompletableFuture<T> processCommandsAsync(ChannelControl channelControl, Executor executor);
+}
@@ -0,0 +1,43 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.keyple.card.calypso.DtoAdapters.ApduRequestAdapter;
+
+import org.junit.Test;
+
+public class ApduRequestAdapterTest {
+
+  private static final byte[] APDU = {0x00, (byte) 0x84, 0x00, 0x00, 0x08};
+
+  @Test
+  public void getSuccessfulStatusWords_whenNoStatusWordIsAdded_shouldContainOnly9000h() {
+    assertThat(new ApduRequestAdapter(APDU).getSuccessfulStatusWords()).containsOnly(0x9000);
+  }
+
+  @Test
+  public void addSuccessfulStatusWord_shouldShareTheSetsOfTheRequestsHavingTheSameStatusWords() {
+    ApduRequestAdapter apduRequest1 = new ApduRequestAdapter(APDU).addSuccessfulStatusWord(0x6200);
+    ApduRequestAdapter apduRequest2 =
+        new ApduRequestAdapter(APDU)
+            .addSuccessfulStatusWord(0x6200)
+            .addSuccessfulStatusWord(0x9000);
+    ApduRequestAdapter apduRequest3 = new ApduRequestAdapter(APDU).addSuccessfulStatusWord(0x6A82);
+
+    assertThat(apduRequest1.getSuccessfulStatusWords()).containsOnly(0x9000, 0x6200);
+    assertThat(apduRequest2.getSuccessfulStatusWords())
+        .isSameAs(apduRequest1.getSuccessfulStatusWords());
+    assertThat(apduRequest3.getSuccessfulStatusWords()).containsOnly(0x9000, 0x6A82);
+    assertThat(new ApduRequestAdapter(APDU).getSuccessfulStatusWords()).containsOnly(0x9000);
+  }
+}
@@ -12,8 +12,14 @@
 package org.eclipse.keyple.card.calypso;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.eclipse.keyple.core.util.HexUtil;
 import org.eclipse.keypop.calypso.card.transaction.InvalidCertificateException;
 import org.eclipse.keypop.calypso.card.transaction.spi.CaCertificate;
@@ -25,7 +31,9 @@
 import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.*;
 import org.eclipse.keypop.calypso.crypto.asymmetric.transaction.spi.AsymmetricCryptoCardTransactionManagerFactorySpi;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.Mockito;
 
 public class AsymmetricCryptoSecuritySettingAdapterTest {
@@ -33,6 +41,8 @@ public class AsymmetricCryptoSecuritySettingAdapterTest {
       HexUtil.toByteArray("00112233445566778899AABBCCDDEEFF00112233445566778899AABBCC");
   private static final byte[] PUBLIC_KEY_REFERENCE_2 =
       HexUtil.toByteArray("112233445566778899AABBCCDDEEFF00112233445566778899AABBCC00");
+  private static final byte[] PUBLIC_KEY_REFERENCE_3 =
+      HexUtil.toByteArray("2233445566778899AABBCCDDEEFF00112233445566778899AABBCC0011");
   private static final byte CA_CERTIFICATE_TYPE = (byte) 0x90;
   private static final byte CARD_CERTIFICATE_TYPE = (byte) 0x91;
   private static final AsymmetricCryptoCardTransactionManagerFactorySpi
@@ -40,6 +50,8 @@ public class AsymmetricCryptoSecuritySettingAdapterTest {
           mock(AsymmetricCryptoCardTransactionManagerFactorySpi.class);
   private AsymmetricCryptoSecuritySettingAdapter asymmetricCryptoSecuritySettingAdapter;
 
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
   public void setUp() throws Exception {
     // Initialize the class to be tested
@@ -48,6 +60,34 @@ public void setUp() throws Exception {
             asymmetricCryptoCardTransactionManagerFactorySpi);
   }
 
+  private static PcaCertificate mockPcaCertificate(byte[] publicKeyReference) throws Exception {
+    Object mockPcaCert =
+        mock(
+            Object.class,
+            withSettings().extraInterfaces(PcaCertificate.class, PcaCertificateSpi.class));
+    CaCertificateContentSpi mockPcaCertContent = mock(CaCertificateContentSpi.class);
+    when(((PcaCertificateSpi) mockPcaCert).checkCertificateAndGetContent())
+        .thenReturn(mockPcaCertContent);
+    when(mockPcaCertContent.getPublicKeyReference()).thenReturn(publicKeyReference);
+    return (PcaCertificate) mockPcaCert;
+  }
+
+  private static CaCertificate mockCaCertificate(
+      byte[] issuerPublicKeyReference, byte[] publicKeyReference) throws Exception {
+    Object mockCaCert =
+        mock(
+            Object.class,
+            withSettings().extraInterfaces(CaCertificate.class, CaCertificateSpi.class));
+    CaCertificateContentSpi mockCaCertContent = mock(CaCertificateContentSpi.class);
+    when(((CaCertificateSpi) mockCaCert).getIssuerPublicKeyReference())
+        .thenReturn(issuerPublicKeyReference);
+    when(((CaCertificateSpi) mockCaCert)
+            .checkCertificateAndGetContent(any(CaCertificateContentSpi.class)))
+        .thenReturn(mockCaCertContent);
+    when(mockCaCertContent.getPublicKeyReference()).thenReturn(publicKeyReference);
+    return (CaCertificate) mockCaCert;
+  }
+
   @Test
   public void getCryptoCardTransactionManagerFactorySpi_shouldReturnFactory() {
     assertThat(asymmetricCryptoSecuritySettingAdapter.getCryptoCardTransactionManagerFactorySpi())
@@ -303,6 +343,33 @@ public void addCaCertificate_whenValidCertificateAlreadyRegistered_shouldThrowIS
     asymmetricCryptoSecuritySettingAdapter.addCaCertificate((CaCertificate) mockCaCert);
   }
 
+  @Test
+  public void addCaCertificateReadFromCard_whenAlreadyRegistered_shouldKeepTheRegisteredOne()
+      throws Exception {
+    asymmetricCryptoSecuritySettingAdapter.addPcaCertificate(
+        mockPcaCertificate(PUBLIC_KEY_REFERENCE_1));
+    CaCertificate caCertificate =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2);
+    CaCertificateContentSpi caCertificateContent =
+        ((CaCertificateSpi) caCertificate)
+            .checkCertificateAndGetContent(mock(CaCertificateContentSpi.class));
+
+    assertThat(
+            asymmetricCryptoSecuritySettingAdapter.addCaCertificateReadFromCard(
+                (CaCertificateSpi) caCertificate))
+        .isTrue();
+    // The same CA certificate read from another card by a concurrent transaction
+    CaCertificate sameCaCertificate =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2);
+    assertThat(
+            asymmetricCryptoSecuritySettingAdapter.addCaCertificateReadFromCard(
+                (CaCertificateSpi) sameCaCertificate))
+        .isFalse();
+
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_2))
+        .isSameAs(caCertificateContent);
+  }
+
   @Test
   public void addCaCertificateParser_whenValidParser_shouldFillParserStore() {
     // Mocking methods of CaCertificateParserSpi
@@ -385,4 +452,196 @@ public void addCardCertificateParser_whenValidParserAlreadyRegistered_shouldThro
     asymmetricCryptoSecuritySettingAdapter.addCardCertificateParser(
         (CardCertificateParser) mockCardCertParser);
   }
+
+  @Test
+  public void addCaCertificates_whenCertificatesAreNotOrdered_shouldFillCertificateStore()
+      throws Exception {
+    asymmetricCryptoSecuritySettingAdapter.addPcaCertificate(
+        mockPcaCertificate(PUBLIC_KEY_REFERENCE_1));
+    CaCertificate caCertificate2 =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2);
+    CaCertificate caCertificate3 =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_2, PUBLIC_KEY_REFERENCE_3);
+
+    asymmetricCryptoSecuritySettingAdapter.addCaCertificates(
+        Arrays.asList(caCertificate3, caCertificate2));
+
+    CaCertificateContentSpi caCertificateContent2 =
+        asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_2.clone());
+    assertThat(caCertificateContent2.getPublicKeyReference()).isEqualTo(PUBLIC_KEY_REFERENCE_2);
+    verify((CaCertificateSpi) caCertificate3).checkCertificateAndGetContent(caCertificateContent2);
+    assertThat(
+            asymmetricCryptoSecuritySettingAdapter
+                .getCaCertificate(PUBLIC_KEY_REFERENCE_3.clone())
+                .getPublicKeyReference())
+        .isEqualTo(PUBLIC_KEY_REFERENCE_3);
+  }
+
+  @Test
+  public void addCaCertificates_whenAnIssuerIsUnknown_shouldThrowISEAndLeaveStoreUnchanged()
+      throws Exception {
+    asymmetricCryptoSecuritySettingAdapter.addPcaCertificate(
+        mockPcaCertificate(PUBLIC_KEY_REFERENCE_1));
+    CaCertificate caCertificate2 =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2);
+    CaCertificate orphanCaCertificate =
+        mockCaCertificate(HexUtil.toByteArray("FFFF"), PUBLIC_KEY_REFERENCE_3);
+
+    assertThatThrownBy(
+            () ->
+                asymmetricCryptoSecuritySettingAdapter.addCaCertificates(
+                    Arrays.asList(caCertificate2, orphanCaCertificate)))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_2))
+        .isNull();
+  }
+
+  @Test
+  public void reloadCertificates_shouldReplaceCertificateStoreAndClearCardPublicKeyCache()
+      throws Exception {
+    asymmetricCryptoSecuritySettingAdapter.enableCardPublicKeyCache(10, 60000);
+    asymmetricCryptoSecuritySettingAdapter.addPcaCertificate(
+        mockPcaCertificate(PUBLIC_KEY_REFERENCE_1));
+    asymmetricCryptoSecuritySettingAdapter.addCaCertificate(
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2));
+    byte[] serialNumber = HexUtil.toByteArray("0000000011223344");
+    byte[] cardCertificate = HexUtil.toByteArray("1122");
+    CardPublicKeyCache cardPublicKeyCache =
+        asymmetricCryptoSecuritySettingAdapter.getCardPublicKeyCache();
+    long generation = cardPublicKeyCache.getGeneration();
+    cardPublicKeyCache.put(serialNumber, cardCertificate, mock(CardPublicKeySpi.class), generation);
+
+    asymmetricCryptoSecuritySettingAdapter.reloadCertificates(
+        Collections.singletonList(mockPcaCertificate(PUBLIC_KEY_REFERENCE_1)),
+        Collections.singletonList(
+            mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_3)));
+
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_1))
+        .isNotNull();
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_2))
+        .isNull();
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_3))
+        .isNotNull();
+    assertThat(cardPublicKeyCache.get(serialNumber, cardCertificate)).isNull();
+    // A key verified meanwhile with the previous store is not cached
+    cardPublicKeyCache.put(serialNumber, cardCertificate, mock(CardPublicKeySpi.class), generation);
+    assertThat(cardPublicKeyCache.get(serialNumber, cardCertificate)).isNull();
+  }
+
+  @Test
+  public void reloadCertificates_whenACaCertificateIsAddedMeanwhile_shouldKeepIt()
+      throws Exception {
+    asymmetricCryptoSecuritySettingAdapter.addPcaCertificate(
+        mockPcaCertificate(PUBLIC_KEY_REFERENCE_1));
+    CaCertificate caCertificate2 =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2);
+    PcaCertificate pcaCertificate = mockPcaCertificate(PUBLIC_KEY_REFERENCE_1);
+    CaCertificateContentSpi pcaCertificateContent =
+        ((PcaCertificateSpi) pcaCertificate).checkCertificateAndGetContent();
+    when(((PcaCertificateSpi) pcaCertificate).checkCertificateAndGetContent())
+        .thenAnswer(
+            invocation -> {
+              // A card provides a CA certificate while the new store is being built
+              asymmetricCryptoSecuritySettingAdapter.addCaCertificate(caCertificate2);
+              return pcaCertificateContent;
+            });
+
+    asymmetricCryptoSecuritySettingAdapter.reloadCertificates(
+        Collections.singletonList(pcaCertificate), Collections.emptyList());
+
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_2))
+        .isNotNull();
+    verify((CaCertificateSpi) caCertificate2).checkCertificateAndGetContent(pcaCertificateContent);
+  }
+
+  @Test
+  public void
+      reloadCertificates_whenTheIssuerOfACaCertificateAddedMeanwhileIsRemoved_shouldIgnoreIt()
+          throws Exception {
+    asymmetricCryptoSecuritySettingAdapter.addPcaCertificate(
+        mockPcaCertificate(PUBLIC_KEY_REFERENCE_1));
+    CaCertificate caCertificate2 =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2);
+    PcaCertificate pcaCertificate = mockPcaCertificate(PUBLIC_KEY_REFERENCE_3);
+    CaCertificateContentSpi pcaCertificateContent =
+        ((PcaCertificateSpi) pcaCertificate).checkCertificateAndGetContent();
+    when(((PcaCertificateSpi) pcaCertificate).checkCertificateAndGetContent())
+        .thenAnswer(
+            invocation -> {
+              asymmetricCryptoSecuritySettingAdapter.addCaCertificate(caCertificate2);
+              return pcaCertificateContent;
+            });
+
+    asymmetricCryptoSecuritySettingAdapter.reloadCertificates(
+        Collections.singletonList(pcaCertificate), Collections.emptyList());
+
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_2))
+        .isNull();
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_3))
+        .isNotNull();
+  }
+
+  @Test
+  public void enableCaCertificatePersistence_shouldRegisterPersistedAndPersistNewCertificates()
+      throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("ca-certificates.bin");
+    byte[] caCertificateBytes2 = HexUtil.toByteArray("9002");
+    byte[] caCertificateBytes3 = HexUtil.toByteArray("9003");
+    CaCertificateFileStore fileStore = new CaCertificateFileStore(file);
+    fileStore.load();
+    fileStore.append(caCertificateBytes2);
+    Object mockCaCertParser =
+        Mockito.mock(
+            Object.class,
+            withSettings()
+                .extraInterfaces(CaCertificateParser.class, CaCertificateParserSpi.class));
+    when(((CaCertificateParserSpi) mockCaCertParser).getCertificateType())
+        .thenReturn(CA_CERTIFICATE_TYPE);
+    CaCertificate caCertificate2 =
+        mockCaCertificate(PUBLIC_KEY_REFERENCE_1, PUBLIC_KEY_REFERENCE_2);
+    when(((CaCertificateParserSpi) mockCaCertParser).parseCertificate(caCertificateBytes2))
+        .thenReturn((CaCertificateSpi) caCertificate2);
+    asymmetricCryptoSecuritySettingAdapter
+        .addPcaCertificate(mockPcaCertificate(PUBLIC_KEY_REFERENCE_1))
+        .addCaCertificateParser((CaCertificateParser) mockCaCertParser);
+
+    List<Runnable> tasks = new ArrayList<>();
+
+    asymmetricCryptoSecuritySettingAdapter.enableCaCertificatePersistence(file, tasks::add);
+    asymmetricCryptoSecuritySettingAdapter.persistCaCertificate(caCertificateBytes3);
+
+    assertThat(asymmetricCryptoSecuritySettingAdapter.getCaCertificate(PUBLIC_KEY_REFERENCE_2))
+        .isNotNull();
+    assertThat(new CaCertificateFileStore(file).load()).containsExactly(caCertificateBytes2);
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+    assertThat(new CaCertificateFileStore(file).load())
+        .containsExactly(caCertificateBytes2, caCertificateBytes3);
+  }
+
+  @Test
+  public void persistCaCertificate_whenAWriteIsPending_shouldWriteTheCertificatesInOrder()
+      throws Exception {
+    Path file = temporaryFolder.getRoot().toPath().resolve("ca-certificates.bin");
+    byte[] caCertificateBytes2 = HexUtil.toByteArray("9002");
+    byte[] caCertificateBytes3 = HexUtil.toByteArray("9003");
+    List<Runnable> tasks = new ArrayList<>();
+    asymmetricCryptoSecuritySettingAdapter.enableCaCertificatePersistence(file, tasks::add);
+
+    asymmetricCryptoSecuritySettingAdapter.persistCaCertificate(caCertificateBytes2);
+    asymmetricCryptoSecuritySettingAdapter.persistCaCertificate(caCertificateBytes3);
+
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+    assertThat(tasks).hasSize(2);
+    tasks.get(1).run();
+    assertThat(new CaCertificateFileStore(file).load())
+        .containsExactly(caCertificateBytes2, caCertificateBytes3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void enableCaCertificatePersistence_whenExecutorIsNull_shouldThrowIAE() {
+    asymmetricCryptoSecuritySettingAdapter.enableCaCertificatePersistence(
+        temporaryFolder.getRoot().toPath().resolve("ca-certificates.bin"), null);
+  }
 }
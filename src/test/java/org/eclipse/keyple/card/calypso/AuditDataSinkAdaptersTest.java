@@ -0,0 +1,84 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.junit.Test;
+
+public class AuditDataSinkAdaptersTest {
+
+  private static final byte[] REQ = HexUtil.toByteArray("00B2014400");
+  private static final byte[] RESP = HexUtil.toByteArray("11229000");
+  private static final String PAIR = "000500B20144000004" + "11229000";
+
+  @Test(expected = IllegalArgumentException.class)
+  public void byteBufferAuditDataSink_whenBufferIsNull_shouldThrowIAE() {
+    new AuditDataSinkAdapters.ByteBufferAuditDataSink(null);
+  }
+
+  @Test
+  public void byteBufferAuditDataSink_shouldWriteLengthPrefixedApdus() {
+    ByteBuffer buffer = ByteBuffer.allocate(32);
+    AuditDataSink sink = new AuditDataSinkAdapters.ByteBufferAuditDataSink(buffer);
+    sink.onApduExchanged(REQ, RESP);
+    sink.onApduExchanged(REQ, RESP);
+    buffer.flip();
+    byte[] content = new byte[buffer.remaining()];
+    buffer.get(content);
+    assertThat(HexUtil.toHex(content)).isEqualTo(PAIR + PAIR);
+  }
+
+  @Test
+  public void byteBufferAuditDataSink_whenBufferIsFull_shouldThrowISEAndWriteNothing() {
+    ByteBuffer buffer = ByteBuffer.allocate(20);
+    AuditDataSink sink = new AuditDataSinkAdapters.ByteBufferAuditDataSink(buffer);
+    sink.onApduExchanged(REQ, RESP);
+    assertThatThrownBy(() -> sink.onApduExchanged(REQ, RESP))
+        .isInstanceOf(IllegalStateException.class);
+    assertThat(buffer.position()).isEqualTo(13);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void outputStreamAuditDataSink_whenStreamIsNull_shouldThrowIAE() {
+    new AuditDataSinkAdapters.OutputStreamAuditDataSink(null);
+  }
+
+  @Test
+  public void outputStreamAuditDataSink_shouldWriteLengthPrefixedApdus() {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    AuditDataSink sink = new AuditDataSinkAdapters.OutputStreamAuditDataSink(outputStream);
+    sink.onApduExchanged(REQ, RESP);
+    assertThat(HexUtil.toHex(outputStream.toByteArray())).isEqualTo(PAIR);
+  }
+
+  @Test
+  public void outputStreamAuditDataSink_whenIOExceptionOccurs_shouldThrowISE() {
+    AuditDataSink sink =
+        new AuditDataSinkAdapters.OutputStreamAuditDataSink(
+            new OutputStream() {
+              @Override
+              public void write(int b) throws IOException {
+                throw new IOException("disk full");
+              }
+            });
+    assertThatThrownBy(() -> sink.onApduExchanged(REQ, RESP))
+        .isInstanceOf(IllegalStateException.class)
+        .hasCauseInstanceOf(IOException.class);
+  }
+}
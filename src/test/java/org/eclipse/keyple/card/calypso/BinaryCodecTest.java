@@ -0,0 +1,252 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keyple.core.util.json.JsonUtil;
+import org.eclipse.keypop.calypso.card.WriteAccessLevel;
+import org.eclipse.keypop.calypso.card.card.DirectoryHeader;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.transaction.ChannelControl;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryCodecTest {
+
+  private static final byte[] SERIAL_NUMBER = HexUtil.toByteArray("0000000011223344");
+  private static final byte SFI_ENVIRONMENT = 0x07;
+  private static final byte SFI_COUNTERS = 0x19;
+  private static final String POWER_ON_DATA = "3B8F8001805A0A010320031111223344829000F7";
+  private static final String SV_LOG =
+      "79007013DE31A75F00001A123441904244556600000256780000AABBCCDD123456";
+
+  private SimulatedCalypsoCard simulatedCard;
+  private CalypsoCardAdapter card;
+
+  @Before
+  public void setUp() throws Exception {
+    CalypsoExtensionService.getInstance();
+    simulatedCard =
+        new SimulatedCalypsoCard(SERIAL_NUMBER, SimulatedCalypsoCard.APP_TYPE_EXTENDED_WITH_SV)
+            .addFile(0x2001, SFI_ENVIRONMENT, ElementaryFile.Type.LINEAR, 29, 1)
+            .addFile(0x2069, SFI_COUNTERS, ElementaryFile.Type.COUNTERS, 29, 1)
+            .setRecord(SFI_ENVIRONMENT, 1, HexUtil.toByteArray("E0E1E2E3"))
+            .setCounter(SFI_COUNTERS, 1, 1000)
+            .setSvBalance(500);
+    card =
+        new CalypsoCardAdapter(
+            new TestDtoAdapters.CardSelectionResponseAdapter(
+                new TestDtoAdapters.ApduResponseAdapter(
+                    simulatedCard.getSelectApplicationResponse())));
+  }
+
+  private static JsonObject toJsonObject(CalypsoCardAdapter card) {
+    JsonObject jsonObject = JsonParser.parseString(card.toString()).getAsJsonObject();
+    // The current EF is a transient pointer, not part of the image
+    jsonObject.remove("currentEf");
+    return jsonObject;
+  }
+
+  private void fillCard() {
+    card.setDirectoryHeader(
+        DirectoryHeaderAdapter.builder()
+            .lid((short) 0x2000)
+            .accessConditions(HexUtil.toByteArray("10100000"))
+            .keyIndexes(HexUtil.toByteArray("01030101"))
+            .dfStatus((byte) 0x00)
+            .kif(WriteAccessLevel.PERSONALIZATION, (byte) 0x21)
+            .kif(WriteAccessLevel.LOAD, (byte) 0x27)
+            .kif(WriteAccessLevel.DEBIT, (byte) 0x30)
+            .kvc(WriteAccessLevel.PERSONALIZATION, (byte) 0x79)
+            .kvc(WriteAccessLevel.LOAD, (byte) 0x79)
+            .kvc(WriteAccessLevel.DEBIT, (byte) 0x79)
+            .build());
+    card.setFileHeader(
+        SFI_ENVIRONMENT,
+        FileHeaderAdapter.builder()
+            .lid((short) 0x2001)
+            .recordsNumber(1)
+            .recordSize(29)
+            .type(ElementaryFile.Type.LINEAR)
+            .accessConditions(HexUtil.toByteArray("1F101010"))
+            .keyIndexes(HexUtil.toByteArray("01030303"))
+            .dfStatus((byte) 0x00)
+            .sharedReference((short) 0x3F02)
+            .build());
+    card.setContent(SFI_ENVIRONMENT, 1, HexUtil.toByteArray("E0E1E2E3"));
+    card.setCounter(SFI_COUNTERS, 1, HexUtil.toByteArray("0003E8"));
+    card.setContent((byte) 0x14, 1, HexUtil.toByteArray("0102"));
+    card.setContent((byte) 0x14, 3, HexUtil.toByteArray("0304"));
+    card.setDfRatified(true);
+    card.setTransactionCounter(0x123456);
+    card.setPinAttemptRemaining(3);
+    card.setSvData(
+        (byte) 0x79, HexUtil.toByteArray("7C000721"), HexUtil.toByteArray(SV_LOG), 500, 0x1234);
+    card.setTraceabilityInformation(HexUtil.toByteArray("AABBCCDD"));
+    card.setCardPublicKey(new byte[64]);
+    card.addCardCertificateBytes(new byte[CalypsoCardConstant.CARD_CERTIFICATE_SIZE], true);
+  }
+
+  @Test
+  public void decodeCard_whenImageIsEmpty_shouldMatchTheJsonForm() {
+    CalypsoCardAdapter decodedCard = BinaryCodec.decodeCard(BinaryCodec.encodeCard(card));
+    assertThat(toJsonObject(decodedCard)).isEqualTo(toJsonObject(card));
+  }
+
+  @Test
+  public void decodeCard_whenImageIsFilled_shouldMatchTheJsonForm() {
+    fillCard();
+    CalypsoCardAdapter decodedCard = BinaryCodec.decodeCard(BinaryCodec.encodeCard(card));
+    assertThat(toJsonObject(decodedCard)).isEqualTo(toJsonObject(card));
+    assertThat(decodedCard.getFileByLid((short) 0x2001))
+        .isSameAs(decodedCard.getFileBySfi(SFI_ENVIRONMENT));
+  }
+
+  @Test
+  public void decodeCard_whenCardIsSelectedWithPowerOnData_shouldMatchTheJsonForm()
+      throws Exception {
+    card = new CalypsoCardAdapter(new TestDtoAdapters.CardSelectionResponseAdapter(POWER_ON_DATA));
+    card.setContent(SFI_ENVIRONMENT, 1, HexUtil.toByteArray("E0E1E2E3"));
+    CalypsoCardAdapter decodedCard = BinaryCodec.decodeCard(BinaryCodec.encodeCard(card));
+    assertThat(toJsonObject(decodedCard)).isEqualTo(toJsonObject(card));
+  }
+
+  @Test
+  public void decodeCard_afterTransaction_shouldMatchTheJsonForm() {
+    SimulatedCardReader cardReader = new SimulatedCardReader("SIMULATED_READER", simulatedCard);
+    CalypsoExtensionService.getInstance()
+        .getCalypsoCardApiFactory()
+        .createFreeTransactionManager(cardReader, card)
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    CalypsoCardAdapter decodedCard = BinaryCodec.decodeCard(BinaryCodec.encodeCard(card));
+    assertThat(toJsonObject(decodedCard)).isEqualTo(toJsonObject(card));
+  }
+
+  @Test
+  public void encodeCard_shouldBeMoreCompactThanTheJsonForm() {
+    fillCard();
+    assertThat(BinaryCodec.encodeCard(card).length).isLessThan(card.toString().length() / 2);
+  }
+
+  @Test
+  public void decodeDirectoryHeader_shouldMatchTheJsonForm() {
+    fillCard();
+    DirectoryHeader directoryHeader = card.getDirectoryHeader();
+    assertThat(
+            JsonUtil.toJson(
+                BinaryCodec.decodeDirectoryHeader(
+                    BinaryCodec.encodeDirectoryHeader(directoryHeader))))
+        .isEqualTo(JsonUtil.toJson(directoryHeader));
+  }
+
+  @Test
+  public void decodeFileHeader_shouldMatchTheJsonForm() {
+    fillCard();
+    FileHeaderAdapter fileHeader =
+        (FileHeaderAdapter) card.getFileBySfi(SFI_ENVIRONMENT).getHeader();
+    assertThat(BinaryCodec.decodeFileHeader(BinaryCodec.encodeFileHeader(fileHeader)))
+        .isEqualTo(fileHeader);
+    assertThat(
+            JsonUtil.toJson(BinaryCodec.decodeFileHeader(BinaryCodec.encodeFileHeader(fileHeader))))
+        .isEqualTo(JsonUtil.toJson(fileHeader));
+  }
+
+  @Test
+  public void decodeFile_shouldMatchTheJsonForm() {
+    fillCard();
+    ElementaryFile file = card.getFileBySfi((byte) 0x14);
+    assertThat(JsonUtil.toJson(BinaryCodec.decodeFile(BinaryCodec.encodeFile(file))))
+        .isEqualTo(JsonUtil.toJson(file));
+  }
+
+  @Test
+  public void decodeSvLogRecords_shouldMatchTheJsonForm() {
+    byte[] rawData = HexUtil.toByteArray(SV_LOG);
+    SvLoadLogRecordAdapter svLoadLogRecord = new SvLoadLogRecordAdapter(rawData, 2);
+    SvDebitLogRecordAdapter svDebitLogRecord = new SvDebitLogRecordAdapter(rawData, 3);
+    assertThat(
+            JsonUtil.toJson(
+                BinaryCodec.decodeSvLoadLogRecord(
+                    BinaryCodec.encodeSvLoadLogRecord(svLoadLogRecord))))
+        .isEqualTo(JsonUtil.toJson(svLoadLogRecord));
+    assertThat(
+            JsonUtil.toJson(
+                BinaryCodec.decodeSvDebitLogRecord(
+                    BinaryCodec.encodeSvDebitLogRecord(svDebitLogRecord))))
+        .isEqualTo(JsonUtil.toJson(svDebitLogRecord));
+  }
+
+  @Test
+  public void decodeCommands_shouldMatchTheJsonForm() {
+    TransactionContextDto transactionContext = new TransactionContextDto(card);
+    CommandContextDto commandContext = new CommandContextDto(false, false);
+    List<Command> commands = new ArrayList<>();
+    commands.add(
+        new CommandReadRecords(
+            transactionContext,
+            commandContext,
+            SFI_ENVIRONMENT,
+            1,
+            CommandReadRecords.ReadMode.ONE_RECORD,
+            29,
+            29));
+    commands.add(new CommandGetChallenge(transactionContext, commandContext));
+    List<BinaryCodec.CommandRecord> commandRecords =
+        BinaryCodec.decodeCommands(BinaryCodec.encodeCommands(commands));
+    assertThat(commandRecords).hasSize(2);
+    for (int i = 0; i < commands.size(); i++) {
+      JsonObject commandJson =
+          JsonParser.parseString(JsonUtil.toJson(commands.get(i))).getAsJsonObject();
+      JsonObject commandRecordJson =
+          JsonParser.parseString(JsonUtil.toJson(commandRecords.get(i))).getAsJsonObject();
+      assertThat(commandRecordJson.get("commandRef")).isEqualTo(commandJson.get("commandRef"));
+      assertThat(commandRecordJson.get("le")).isEqualTo(commandJson.get("le"));
+      assertThat(commandRecordJson.get("apduRequest")).isEqualTo(commandJson.get("apduRequest"));
+    }
+  }
+
+  @Test
+  public void decode_whenVersionIsNotSupported_shouldThrowIAE() {
+    byte[] data = BinaryCodec.encodeCard(card);
+    data[0] = BinaryCodec.FORMAT_VERSION + 1;
+    assertThatThrownBy(() -> BinaryCodec.decodeCard(data))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void decode_whenDataIsTruncated_shouldThrowIAE() {
+    fillCard();
+    byte[] data = BinaryCodec.encodeCard(card);
+    byte[] truncatedData = Arrays.copyOf(data, data.length - 10);
+    assertThatThrownBy(() -> BinaryCodec.decodeCard(truncatedData))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void decode_whenElementIsUnknown_shouldIgnoreIt() {
+    byte[] data = BinaryCodec.encodeCard(card);
+    byte[] extendedData = Arrays.copyOf(data, data.length + 4);
+    System.arraycopy(HexUtil.toByteArray("7F02ABCD"), 0, extendedData, data.length, 4);
+    assertThat(toJsonObject(BinaryCodec.decodeCard(extendedData))).isEqualTo(toJsonObject(card));
+  }
+}
@@ -0,0 +1,131 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CaCertificateFileStoreTest {
+
+  private static final byte[] CERTIFICATE_1 = HexUtil.toByteArray("9001112233445566778899");
+  private static final byte[] CERTIFICATE_2 = HexUtil.toByteArray("90AABBCCDDEEFF");
+  private static final byte[] CERTIFICATE_3 = HexUtil.toByteArray("9003");
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = temporaryFolder.getRoot().toPath().resolve("ca-certificates.bin");
+  }
+
+  @Test
+  public void load_whenFileDoesNotExist_shouldReturnEmptyList() throws IOException {
+    assertThat(new CaCertificateFileStore(file).load()).isEmpty();
+    assertThat(file.toFile()).doesNotExist();
+  }
+
+  @Test
+  public void load_shouldReturnTheAppendedCertificatesInOrder() throws IOException {
+    CaCertificateFileStore store = new CaCertificateFileStore(file);
+    store.load();
+    assertThat(store.append(CERTIFICATE_1)).isTrue();
+    assertThat(store.append(CERTIFICATE_2)).isTrue();
+
+    assertThat(new CaCertificateFileStore(file).load())
+        .containsExactly(CERTIFICATE_1, CERTIFICATE_2);
+  }
+
+  @Test
+  public void append_whenCertificateIsAlreadyStored_shouldNotAppendItAgain() throws IOException {
+    CaCertificateFileStore store = new CaCertificateFileStore(file);
+    store.load();
+    store.append(CERTIFICATE_1);
+
+    CaCertificateFileStore reloadedStore = new CaCertificateFileStore(file);
+    reloadedStore.load();
+    assertThat(reloadedStore.append(CERTIFICATE_1.clone())).isFalse();
+    assertThat(new CaCertificateFileStore(file).load()).hasSize(1);
+  }
+
+  @Test
+  public void load_whenLastRecordIsCorrupted_shouldIgnoreItAndOverwriteItOnNextAppend()
+      throws IOException {
+    CaCertificateFileStore store = new CaCertificateFileStore(file);
+    store.load();
+    store.append(CERTIFICATE_1);
+    store.append(CERTIFICATE_2);
+    // Simulate a write interrupted in the middle of the last record
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    CaCertificateFileStore reloadedStore = new CaCertificateFileStore(file);
+    assertThat(reloadedStore.load()).containsExactly(CERTIFICATE_1);
+    reloadedStore.append(CERTIFICATE_2);
+    assertThat(new CaCertificateFileStore(file).load())
+        .containsExactly(CERTIFICATE_1, CERTIFICATE_2);
+  }
+
+  @Test
+  public void append_whenACorruptedRecordIsOverwritten_shouldTruncateTheFileAfterTheNewRecord()
+      throws IOException {
+    CaCertificateFileStore store = new CaCertificateFileStore(file);
+    store.load();
+    store.append(CERTIFICATE_2);
+    store.append(CERTIFICATE_1);
+    // Corrupt the CRC of the last record
+    byte[] content = Files.readAllBytes(file);
+    content[content.length - 1] ^= 0xFF;
+    Files.write(file, content);
+
+    CaCertificateFileStore reloadedStore = new CaCertificateFileStore(file);
+    assertThat(reloadedStore.load()).containsExactly(CERTIFICATE_2);
+    reloadedStore.append(CERTIFICATE_3);
+    // Header, then length, certificate and CRC of each record
+    assertThat(Files.size(file))
+        .isEqualTo(5 + (2 + CERTIFICATE_2.length + 4) + (2 + CERTIFICATE_3.length + 4));
+    assertThat(new CaCertificateFileStore(file).load())
+        .containsExactly(CERTIFICATE_2, CERTIFICATE_3);
+  }
+
+  @Test
+  public void load_whenHeaderIsIncomplete_shouldReturnEmptyListAndWriteTheHeaderOnNextAppend()
+      throws IOException {
+    // Simulate a crash during the first writing
+    Files.write(file, HexUtil.toByteArray("4B4341"));
+
+    CaCertificateFileStore store = new CaCertificateFileStore(file);
+    assertThat(store.load()).isEmpty();
+    store.append(CERTIFICATE_1);
+    assertThat(new CaCertificateFileStore(file).load()).containsExactly(CERTIFICATE_1);
+  }
+
+  @Test
+  public void load_whenFileIsNotACaCertificateFile_shouldThrowIOException() throws IOException {
+    Files.write(file, HexUtil.toByteArray("0102030405060708"));
+    assertThatThrownBy(() -> new CaCertificateFileStore(file).load())
+        .isInstanceOf(IOException.class);
+  }
+}
@@ -612,4 +612,185 @@ public void getTransactionCounter_whenNoSessionWasOpened_shouldThrowISE() throws
     calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
     calypsoCardAdapter.getTransactionCounter();
   }
+
+  @Test
+  public void getFileBySfi_whenContentIsSet_shouldReturnTheFileHavingTheSfi() throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.setContent((byte) 0x08, 1, HexUtil.toByteArray("3344"));
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x08).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("3344"));
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x09)).isNull();
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0xFF)).isNull();
+  }
+
+  @Test
+  public void getFileByLid_whenHeaderIsSet_shouldReturnTheFileHavingTheLid() throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.setFileHeader(
+        (byte) 0x07, FileHeaderAdapter.builder().lid((short) 0x2001).build());
+    assertThat(calypsoCardAdapter.getFileByLid((short) 0x2001))
+        .isSameAs(calypsoCardAdapter.getFileBySfi((byte) 0x07));
+    assertThat(calypsoCardAdapter.getFileByLid((short) 0x2002)).isNull();
+  }
+
+  @Test
+  public void getFileByLid_whenManyHeadersAreSetInAnyOrder_shouldReturnTheFileHavingTheLid()
+      throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    for (int sfi = 30; sfi > 0; sfi--) {
+      short lid = (short) ((sfi % 2 == 0 ? 0x8000 : 0x2000) + sfi);
+      calypsoCardAdapter.setFileHeader((byte) sfi, FileHeaderAdapter.builder().lid(lid).build());
+    }
+    for (int sfi = 1; sfi <= 30; sfi++) {
+      short lid = (short) ((sfi % 2 == 0 ? 0x8000 : 0x2000) + sfi);
+      assertThat(calypsoCardAdapter.getFileByLid(lid))
+          .isSameAs(calypsoCardAdapter.getFileBySfi((byte) sfi));
+    }
+    assertThat(calypsoCardAdapter.getFileByLid((short) 0x2000)).isNull();
+    assertThat(calypsoCardAdapter.getFileByLid((short) 0x8001)).isNull();
+  }
+
+  @Test
+  public void isRecordUpToDate_whenRecordIsModifiedAfterBeingRead_shouldReturnFalse()
+      throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.setRecordUpToDate((byte) 0x07, 1);
+    calypsoCardAdapter.setContent((byte) 0x07, 2, HexUtil.toByteArray("3344"));
+    calypsoCardAdapter.setRecordUpToDate((byte) 0x07, 2);
+    assertThat(calypsoCardAdapter.isRecordUpToDate((byte) 0x07, 1)).isTrue();
+    assertThat(calypsoCardAdapter.isRecordUpToDate((byte) 0x07, 3)).isFalse();
+    calypsoCardAdapter.fillContent((byte) 0x07, 1, HexUtil.toByteArray("F0"), 0);
+    assertThat(calypsoCardAdapter.isRecordUpToDate((byte) 0x07, 1)).isFalse();
+    assertThat(calypsoCardAdapter.isRecordUpToDate((byte) 0x07, 2)).isTrue();
+    calypsoCardAdapter.addCyclicContent((byte) 0x07, HexUtil.toByteArray("55"));
+    assertThat(calypsoCardAdapter.isRecordUpToDate((byte) 0x07, 2)).isFalse();
+  }
+
+  @Test
+  public void isBinaryContentUpToDate_whenBytesAreModifiedAfterBeingRead_shouldReturnFalse()
+      throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x01, 1, HexUtil.toByteArray("11223344"), 0);
+    calypsoCardAdapter.setBinaryContentUpToDate((byte) 0x01, 0, 4);
+    assertThat(calypsoCardAdapter.isBinaryContentUpToDate((byte) 0x01, 1, 3)).isTrue();
+    assertThat(calypsoCardAdapter.isBinaryContentUpToDate((byte) 0x01, 2, 3)).isFalse();
+    calypsoCardAdapter.setContent((byte) 0x01, 1, HexUtil.toByteArray("AA"), 2);
+    assertThat(calypsoCardAdapter.isBinaryContentUpToDate((byte) 0x01, 0, 2)).isTrue();
+    assertThat(calypsoCardAdapter.isBinaryContentUpToDate((byte) 0x01, 0, 3)).isFalse();
+  }
+
+  @Test
+  public void isRecordUpToDate_whenCurrentEfIsModifiedWithSfi0_shouldReturnFalse()
+      throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.setRecordUpToDate((byte) 0x07, 1);
+    calypsoCardAdapter.setContent((byte) 0x00, 1, HexUtil.toByteArray("3344"));
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x07).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("3344"));
+    assertThat(calypsoCardAdapter.isRecordUpToDate((byte) 0x07, 1)).isFalse();
+  }
+
+  @Test
+  public void restoreFiles_shouldClearTheUpToDateState() throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.backupFiles();
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.setRecordUpToDate((byte) 0x07, 1);
+    calypsoCardAdapter.restoreFiles();
+    assertThat(calypsoCardAdapter.isRecordUpToDate((byte) 0x07, 1)).isFalse();
+  }
+
+  @Test
+  public void restoreFiles_shouldRestoreTheSfiAndLidIndexes() throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.setFileHeader(
+        (byte) 0x07,
+        FileHeaderAdapter.builder()
+            .lid((short) 0x2001)
+            .accessConditions(new byte[4])
+            .keyIndexes(new byte[4])
+            .build());
+    calypsoCardAdapter.backupFiles();
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("3344"));
+    calypsoCardAdapter.setContent((byte) 0x08, 1, HexUtil.toByteArray("5566"));
+    calypsoCardAdapter.restoreFiles();
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x07).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("1122"));
+    assertThat(calypsoCardAdapter.getFileByLid((short) 0x2001))
+        .isSameAs(calypsoCardAdapter.getFileBySfi((byte) 0x07));
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x08)).isNull();
+    assertThat(calypsoCardAdapter.getFiles()).hasSize(1);
+  }
+
+  @Test
+  public void restoreFiles_whenRecordsAreModifiedInPlace_shouldRestoreTheOriginalContent()
+      throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("11223344"));
+    calypsoCardAdapter.setContent((byte) 0x19, 1, HexUtil.toByteArray("000064000032"));
+    calypsoCardAdapter.backupFiles();
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("AA"), 1);
+    calypsoCardAdapter.fillContent((byte) 0x07, 1, HexUtil.toByteArray("F0"), 3);
+    calypsoCardAdapter.setContent((byte) 0x07, 2, HexUtil.toByteArray("55"));
+    calypsoCardAdapter.setCounter((byte) 0x19, 2, HexUtil.toByteArray("000031"));
+    calypsoCardAdapter.restoreFiles();
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x07).getData().getAllRecordsContent())
+        .containsOnlyKeys(1);
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x07).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("11223344"));
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x19).getData().getContentAsCounterValue(2))
+        .isEqualTo(0x32);
+  }
+
+  @Test
+  public void restoreFiles_whenCyclicContentIsAdded_shouldRestoreTheOriginalRecords()
+      throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.addCyclicContent((byte) 0x08, HexUtil.toByteArray("01"));
+    calypsoCardAdapter.addCyclicContent((byte) 0x08, HexUtil.toByteArray("02"));
+    calypsoCardAdapter.backupFiles();
+    calypsoCardAdapter.addCyclicContent((byte) 0x08, HexUtil.toByteArray("03"));
+    calypsoCardAdapter.addCyclicContent((byte) 0x08, HexUtil.toByteArray("04"));
+    calypsoCardAdapter.restoreFiles();
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x08).getData().getAllRecordsContent())
+        .containsOnlyKeys(1, 2);
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x08).getData().getContent(1))
+        .isEqualTo(HexUtil.toByteArray("02"));
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x08).getData().getContent(2))
+        .isEqualTo(HexUtil.toByteArray("01"));
+  }
+
+  @Test
+  public void restoreFiles_whenCalledTwice_shouldNotRevertModificationsMadeAfterFirstRestore()
+      throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.backupFiles();
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.restoreFiles();
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("3344"));
+    calypsoCardAdapter.restoreFiles();
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x07).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("3344"));
+  }
+
+  @Test
+  public void commitFiles_shouldKeepTheModificationsAndStopTheBackup() throws Exception {
+    calypsoCardAdapter = buildCalypsoCard((ApduResponseApi) null);
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("1122"));
+    calypsoCardAdapter.backupFiles();
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("3344"));
+    calypsoCardAdapter.setContent((byte) 0x08, 1, HexUtil.toByteArray("5566"));
+    calypsoCardAdapter.commitFiles();
+    calypsoCardAdapter.setContent((byte) 0x07, 1, HexUtil.toByteArray("7788"));
+    calypsoCardAdapter.restoreFiles();
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x07).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("7788"));
+    assertThat(calypsoCardAdapter.getFileBySfi((byte) 0x08).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("5566"));
+  }
 }
@@ -168,6 +168,16 @@ public void prepareGetData_whenGetDataTagIsNull_shouldThrowIAE() {
     cardSelectionExtension.prepareGetData(null);
   }
 
+  @Test
+  public void prepareGetData_whenCertificateTags_shouldProduceTwoGetDataApdusPerCertificate() {
+    cardSelectionExtension.prepareGetData(GetDataTag.CARD_CERTIFICATE);
+    cardSelectionExtension.prepareGetData(GetDataTag.CA_CERTIFICATE);
+    CardSelectionRequestSpi cardSelectionRequest = cardSelectionExtension.getCardSelectionRequest();
+    assertThat(cardSelectionRequest.getCardRequest().getApduRequests())
+        .extracting(apduRequest -> HexUtil.toHex(apduRequest.getApdu()))
+        .containsExactly("00CADF4C00", "00CADF4D00", "00CADF4A00", "00CADF4B00");
+  }
+
   @Test
   public void
       getCardSelectionRequest_whenAcceptInvalidatedCardIsInvoked_shouldReturnResponseContainingACardSelectorWithSuccessfulStatusWord6283() {
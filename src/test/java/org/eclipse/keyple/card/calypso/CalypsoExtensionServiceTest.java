@@ -15,8 +15,16 @@
 import static org.eclipse.keyple.card.calypso.TestDtoAdapters.*;
 import static org.mockito.Mockito.mock;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import org.eclipse.keyple.core.common.CommonApiProperties;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.card.CalypsoCard;
+import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
 import org.eclipse.keypop.calypso.card.transaction.FreeTransactionManager;
+import org.eclipse.keypop.calypso.card.transaction.SecureRegularModeTransactionManager;
 import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
 import org.eclipse.keypop.calypso.card.transaction.spi.CardTransactionCryptoExtension;
 import org.eclipse.keypop.calypso.card.transaction.spi.SymmetricCryptoCardTransactionManagerFactory;
@@ -219,4 +227,115 @@ public void createSecureRegularModeTransactionManager_whenInvokedWithNullReader_
         .getCalypsoCardApiFactory()
         .createSecureExtendedModeTransactionManager(reader, calypsoCard, cardSecuritySetting);
   }
+
+  @Test
+  public void getTransactionManagerExtension_shouldReturnTheTransactionManager() throws Exception {
+    calypsoCard = new CalypsoCardAdapter(new CardSelectionResponseAdapter(POWER_ON_DATA));
+    FreeTransactionManager transactionManager =
+        service.getCalypsoCardApiFactory().createFreeTransactionManager(reader, calypsoCard);
+    assertThat(service.getTransactionManagerExtension(transactionManager))
+        .isSameAs(transactionManager);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getTransactionManagerExtension_whenTransactionManagerIsNull_shouldThrowIAE() {
+    service.getTransactionManagerExtension((FreeTransactionManager) null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void
+      getTransactionManagerExtension_whenTransactionManagerIsNotCreatedByTheExtension_shouldThrowIAE() {
+    service.getTransactionManagerExtension(mock(FreeTransactionManager.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void
+      getSecureSymmetricCryptoTransactionManagerExtension_whenTransactionManagerIsNull_shouldThrowIAE() {
+    service.getSecureSymmetricCryptoTransactionManagerExtension(
+        (SecureRegularModeTransactionManager) null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void
+      getSecureSymmetricCryptoTransactionManagerExtension_whenTransactionManagerIsNotCreatedByTheExtension_shouldThrowIAE() {
+    service.getSecureSymmetricCryptoTransactionManagerExtension(
+        mock(SecureRegularModeTransactionManager.class));
+  }
+
+  @Test
+  public void getSymmetricCryptoSecuritySettingExtension_shouldReturnTheSecuritySetting() {
+    SymmetricCryptoSecuritySetting securitySetting =
+        service
+            .getCalypsoCardApiFactory()
+            .createSymmetricCryptoSecuritySetting(symmetricCryptoCardTransactionManagerFactory);
+    assertThat(service.getSymmetricCryptoSecuritySettingExtension(securitySetting))
+        .isSameAs(securitySetting);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getSymmetricCryptoSecuritySettingExtension_whenSecuritySettingIsNull_shouldThrowIAE() {
+    service.getSymmetricCryptoSecuritySettingExtension(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void
+      getSymmetricCryptoSecuritySettingExtension_whenSecuritySettingIsNotCreatedByTheExtension_shouldThrowIAE() {
+    service.getSymmetricCryptoSecuritySettingExtension(mock(SymmetricCryptoSecuritySetting.class));
+  }
+
+  @Test
+  public void getAsymmetricCryptoSecuritySettingExtension_shouldReturnTheSecuritySetting() {
+    AsymmetricCryptoSecuritySetting securitySetting =
+        service
+            .getCalypsoCardApiFactory()
+            .createAsymmetricCryptoSecuritySetting(new SimulatedCryptoServices.AsymmetricFactory());
+    assertThat(service.getAsymmetricCryptoSecuritySettingExtension(securitySetting))
+        .isSameAs(securitySetting);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getAsymmetricCryptoSecuritySettingExtension_whenSecuritySettingIsNull_shouldThrowIAE() {
+    service.getAsymmetricCryptoSecuritySettingExtension(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void
+      getAsymmetricCryptoSecuritySettingExtension_whenSecuritySettingIsNotCreatedByTheExtension_shouldThrowIAE() {
+    service.getAsymmetricCryptoSecuritySettingExtension(
+        mock(AsymmetricCryptoSecuritySetting.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void createAuditDataSink_whenBufferIsNull_shouldThrowIAE() {
+    service.createAuditDataSink((ByteBuffer) null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void createAuditDataSink_whenOutputStreamIsNull_shouldThrowIAE() {
+    service.createAuditDataSink((OutputStream) null);
+  }
+
+  @Test
+  public void decodeCalypsoCard_shouldRestoreTheJsonFormOfTheEncodedCard() throws Exception {
+    calypsoCard = new CalypsoCardAdapter(new CardSelectionResponseAdapter(POWER_ON_DATA));
+    calypsoCard.setContent((byte) 0x07, 1, HexUtil.toByteArray("E0E1E2E3"));
+    calypsoCard.setCounter((byte) 0x19, 1, HexUtil.toByteArray("0003E8"));
+    calypsoCard.setTransactionCounter(0x123456);
+    CalypsoCard decodedCard = service.decodeCalypsoCard(service.encodeCalypsoCard(calypsoCard));
+    JsonObject decodedCardJson = JsonParser.parseString(decodedCard.toString()).getAsJsonObject();
+    JsonObject cardJson = JsonParser.parseString(calypsoCard.toString()).getAsJsonObject();
+    // The current EF is a transient pointer, not part of the image
+    cardJson.remove("currentEf");
+    assertThat(decodedCardJson).isEqualTo(cardJson);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void encodeCalypsoCard_whenCardIsNotSelectedWithTheExtension_shouldThrowIAE() {
+    service.encodeCalypsoCard(mock(CalypsoCard.class));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void decodeCalypsoCard_whenDataIsEmpty_shouldThrowIAE() {
+    service.decodeCalypsoCard(new byte[0]);
+  }
 }
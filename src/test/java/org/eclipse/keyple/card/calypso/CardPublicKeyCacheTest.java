@@ -0,0 +1,92 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.CardPublicKeySpi;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CardPublicKeyCacheTest {
+
+  private static final byte[] SERIAL_NUMBER_1 = HexUtil.toByteArray("0000000011223344");
+  private static final byte[] SERIAL_NUMBER_2 = HexUtil.toByteArray("0000000055667788");
+  private static final byte[] CERTIFICATE_1 = HexUtil.toByteArray("90112233445566778899");
+  private static final byte[] CERTIFICATE_2 = HexUtil.toByteArray("90AABBCCDDEEFF001122");
+  private static final long TTL_MILLIS = 1000;
+
+  private long now;
+  private CardPublicKeyCache cache;
+  private CardPublicKeySpi cardPublicKey1;
+  private CardPublicKeySpi cardPublicKey2;
+
+  @Before
+  public void setUp() {
+    now = 0;
+    cache = new CardPublicKeyCache(2, TTL_MILLIS, () -> now);
+    cardPublicKey1 = mock(CardPublicKeySpi.class);
+    cardPublicKey2 = mock(CardPublicKeySpi.class);
+  }
+
+  @Test
+  public void get_whenKeyIsCached_shouldReturnIt() {
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_1, cardPublicKey1, 0);
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_1.clone())).isSameAs(cardPublicKey1);
+  }
+
+  @Test
+  public void get_whenSerialNumberOrCertificateDiffers_shouldReturnNull() {
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_1, cardPublicKey1, 0);
+    assertThat(cache.get(SERIAL_NUMBER_2, CERTIFICATE_1)).isNull();
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_2)).isNull();
+  }
+
+  @Test
+  public void get_whenTimeToLiveIsElapsed_shouldReturnNull() {
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_1, cardPublicKey1, 0);
+    now = TimeUnit.MILLISECONDS.toNanos(TTL_MILLIS) - 1;
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_1)).isSameAs(cardPublicKey1);
+    now++;
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_1)).isNull();
+  }
+
+  @Test
+  public void put_whenMaxSizeIsReached_shouldEvictTheLeastRecentlyUsedKey() {
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_1, cardPublicKey1, 0);
+    cache.put(SERIAL_NUMBER_2, CERTIFICATE_2, cardPublicKey2, 0);
+    cache.get(SERIAL_NUMBER_1, CERTIFICATE_1);
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_2, mock(CardPublicKeySpi.class), 0);
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_1)).isSameAs(cardPublicKey1);
+    assertThat(cache.get(SERIAL_NUMBER_2, CERTIFICATE_2)).isNull();
+  }
+
+  @Test
+  public void clear_shouldRemoveAllTheKeys() {
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_1, cardPublicKey1, 0);
+    cache.clear();
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_1)).isNull();
+  }
+
+  @Test
+  public void put_whenCacheIsClearedSinceTheGeneration_shouldIgnoreTheKey() {
+    long generation = cache.getGeneration();
+    cache.clear();
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_1, cardPublicKey1, generation);
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_1)).isNull();
+    cache.put(SERIAL_NUMBER_1, CERTIFICATE_1, cardPublicKey1, cache.getGeneration());
+    assertThat(cache.get(SERIAL_NUMBER_1, CERTIFICATE_1)).isSameAs(cardPublicKey1);
+  }
+}
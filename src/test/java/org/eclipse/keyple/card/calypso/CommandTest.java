@@ -0,0 +1,79 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class CommandTest {
+
+  @Test
+  public void statusTable_get_whenStatusWordIsReferenced_shouldReturnItsProperties() {
+    Map<Integer, Command.StatusProperties> m = new HashMap<>();
+    Command.StatusProperties success = new Command.StatusProperties("Success");
+    Command.StatusProperties notFound =
+        new Command.StatusProperties("File not found", CardDataAccessException.class);
+    Command.StatusProperties warning = new Command.StatusProperties("Warning", null);
+    m.put(0x9000, success);
+    m.put(0x6A82, notFound);
+    m.put(0x6200, warning);
+
+    Command.StatusTable statusTable = new Command.StatusTable(m);
+
+    assertThat(statusTable.get(0x6200)).isSameAs(warning);
+    assertThat(statusTable.get(0x6A82)).isSameAs(notFound);
+    assertThat(statusTable.get(0x9000)).isSameAs(success);
+  }
+
+  @Test
+  public void statusTable_get_whenStatusWordIsNotReferenced_shouldReturnNull() {
+    Map<Integer, Command.StatusProperties> m = new HashMap<>();
+    m.put(0x6A82, new Command.StatusProperties("File not found", CardDataAccessException.class));
+    m.put(0x9000, new Command.StatusProperties("Success"));
+
+    Command.StatusTable statusTable = new Command.StatusTable(m);
+
+    assertThat(statusTable.get(0x0000)).isNull();
+    assertThat(statusTable.get(0x6A83)).isNull();
+    assertThat(statusTable.get(0xFFFF)).isNull();
+    assertThat(new Command.StatusTable(new HashMap<>()).get(0x9000)).isNull();
+  }
+
+  @Test
+  public void getStatusTable_whenCommandExtendsTheDefaultTable_shouldMergeBothTables() {
+    Command command =
+        new CommandCloseSecureSession(
+            new TransactionContextDto(), new CommandContextDto(true, false), true, -1);
+
+    Command.StatusTable statusTable = command.getStatusTable();
+
+    assertThat(statusTable.get(0x9000).isSuccessful()).isTrue();
+    assertThat(statusTable.get(0x6700).getExceptionClass())
+        .isEqualTo(CardIllegalParameterException.class);
+    assertThat(statusTable.get(0x6985).getExceptionClass())
+        .isEqualTo(CardAccessForbiddenException.class);
+    assertThat(statusTable.get(0x6A82)).isNull();
+  }
+
+  @Test
+  public void statusTable_whenBuiltFromTheDefaultMap_shouldOnlyReferenceSuccess() {
+    Command.StatusTable statusTable = new Command.StatusTable(Command.STATUS_TABLE);
+
+    assertThat(statusTable.get(0x9000).isSuccessful()).isTrue();
+    assertThat(statusTable.get(0x6700)).isNull();
+    assertThat(statusTable.get(0x6985)).isNull();
+  }
+}
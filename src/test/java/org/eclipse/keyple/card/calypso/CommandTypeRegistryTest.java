@@ -0,0 +1,42 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class CommandTypeRegistryTest {
+
+  @Test
+  public void getCommandClass_whenClassIsRegistered_shouldReturnTheClass() {
+    assertThat(CommandTypeRegistry.getCommandClass(CommandAppendRecord.class.getName()))
+        .isSameAs(CommandAppendRecord.class);
+    assertThat(CommandTypeRegistry.getCommandClass(CommandGetChallenge.class.getName()))
+        .isSameAs(CommandGetChallenge.class);
+    assertThat(CommandTypeRegistry.getCommandClass(CommandWriteRecord.class.getName()))
+        .isSameAs(CommandWriteRecord.class);
+  }
+
+  @Test
+  public void getCommandClass_whenClassIsNotACommand_shouldReturnNull() {
+    assertThat(CommandTypeRegistry.getCommandClass(String.class.getName())).isNull();
+    assertThat(CommandTypeRegistry.getCommandClass(Command.class.getName())).isNull();
+  }
+
+  @Test
+  public void getCommandClass_whenClassNameIsNotQualified_shouldReturnNull() {
+    assertThat(CommandTypeRegistry.getCommandClass(CommandAppendRecord.class.getSimpleName()))
+        .isNull();
+    assertThat(CommandTypeRegistry.getCommandClass("")).isNull();
+  }
+}
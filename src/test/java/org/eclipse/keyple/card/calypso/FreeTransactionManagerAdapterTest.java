@@ -14,6 +14,8 @@
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -329,6 +331,53 @@ public void prepareReadRecords_whenToRecordNumberIsGreaterThan250_shouldThrowIAE
         .isEqualTo(HexUtil.toByteArray("55"));
   }
 
+  @Test
+  public void prepareReadRecords_whenPrecedingReadIsAdjacent_shouldCoalesceTheReadings()
+      throws Exception {
+
+    CardRequestSpi cardRequest =
+        mockTransmitCardRequest(
+            CARD_READ_RECORDS_FROM1_TO2_CMD, CARD_READ_RECORDS_FROM1_TO2_RSP,
+            CARD_READ_RECORDS_FROM3_TO4_CMD, CARD_READ_RECORDS_FROM3_TO4_RSP,
+            CARD_READ_RECORDS_FROM5_TO5_CMD, CARD_READ_RECORDS_FROM5_TO5_RSP);
+    when(calypsoCard.getPayloadCapacity()).thenReturn(7);
+    initTransactionManager();
+
+    cardTransactionManager.prepareReadRecords((byte) 1, 1, 1, 1);
+    cardTransactionManager.prepareReadRecords((byte) 1, 2, 3, 1);
+    cardTransactionManager.prepareReadRecords((byte) 1, 4, 5, 1);
+    cardTransactionManager.processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+
+    verify(cardReader)
+        .transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class));
+
+    assertThat(calypsoCard.getFileBySfi((byte) 1).getData().getContent(1))
+        .isEqualTo(HexUtil.toByteArray("11"));
+    assertThat(calypsoCard.getFileBySfi((byte) 1).getData().getContent(5))
+        .isEqualTo(HexUtil.toByteArray("55"));
+  }
+
+  @Test
+  public void prepareReadRecords_whenPrecedingReadIsNotAdjacent_shouldNotCoalesceTheReadings()
+      throws Exception {
+
+    CardRequestSpi cardRequest =
+        mockTransmitCardRequest(
+            CARD_READ_RECORDS_FROM1_TO2_CMD, CARD_READ_RECORDS_FROM1_TO2_RSP,
+            CARD_READ_RECORDS_FROM5_TO5_CMD, CARD_READ_RECORDS_FROM5_TO5_RSP);
+    when(calypsoCard.getPayloadCapacity()).thenReturn(7);
+    initTransactionManager();
+
+    cardTransactionManager.prepareReadRecords((byte) 1, 1, 2, 1);
+    cardTransactionManager.prepareReadRecords((byte) 1, 5, 5, 1);
+    cardTransactionManager.processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+
+    verify(cardReader)
+        .transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class));
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void prepareReadRecordsPartially_whenProductTypeIsNotPrimeRev3OrLight_shouldThrowUOE()
       throws Exception {
@@ -542,6 +591,24 @@ public void prepareReadBinary_whenNbBytesToReadIsLessThanPayLoad_shouldPrepareOn
         .isEqualTo(HexUtil.toByteArray("11"));
   }
 
+  @Test
+  public void prepareReadBinary_whenPrecedingReadIsAdjacent_shouldCoalesceTheReadings()
+      throws Exception {
+
+    CardRequestSpi cardRequest = mockTransmitCardRequest("00B0810002", "1122" + SW_9000);
+
+    cardTransactionManager.prepareReadBinary((byte) 1, 0, 1);
+    cardTransactionManager.prepareReadBinary((byte) 1, 1, 1);
+    cardTransactionManager.processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+
+    verify(cardReader)
+        .transmitCardRequest(
+            argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class));
+
+    assertThat(calypsoCard.getFileBySfi((byte) 1).getData().getContent())
+        .isEqualTo(HexUtil.toByteArray("1122"));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void prepareReadCounter_whenSfiIsGreaterThan30_shouldThrowIAE() {
     cardTransactionManager.prepareReadCounter((byte) 31, 1);
@@ -1485,4 +1552,97 @@ public void processCommands_whenOutOfSession_shouldExchangeApduWithCardOnly() th
         .transmitCardRequest(
             argThat(new CardRequestMatcher(cardRequest)), any(ChannelControl.class));
   }
+
+  @Test
+  public void setTransactionAuditDataCapacity_shouldKeepTheMostRecentPairsOnly() throws Exception {
+    mockTransmitCardRequest(CARD_SELECT_FILE_1234_CMD, CARD_SELECT_FILE_1234_RSP);
+    CalypsoExtensionService.getInstance()
+        .getTransactionManagerExtension(cardTransactionManager)
+        .setTransactionAuditDataCapacity(1, 0, false)
+        .prepareSelectFile((short) 0x1234)
+        .processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+    mockTransmitCardRequest(CARD_SELECT_FILE_FIRST_CMD, CARD_SELECT_FILE_1234_RSP);
+    cardTransactionManager
+        .prepareSelectFile(SelectFileControl.FIRST_EF)
+        .processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+    assertThat(cardTransactionManager.getTransactionAuditData())
+        .containsExactly(
+            HexUtil.toByteArray(CARD_SELECT_FILE_FIRST_CMD),
+            HexUtil.toByteArray(CARD_SELECT_FILE_1234_RSP));
+  }
+
+  @Test
+  public void setAuditDataSink_shouldStreamTheExchangedApdus() throws Exception {
+    mockTransmitCardRequest(CARD_SELECT_FILE_1234_CMD, CARD_SELECT_FILE_1234_RSP);
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    CalypsoExtensionService service = CalypsoExtensionService.getInstance();
+    service
+        .getTransactionManagerExtension(cardTransactionManager)
+        .setAuditDataSink(service.createAuditDataSink(outputStream), false)
+        .prepareSelectFile((short) 0x1234)
+        .processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+    assertThat(cardTransactionManager.getTransactionAuditData()).isEmpty();
+    ByteBuffer buffer = ByteBuffer.wrap(outputStream.toByteArray());
+    byte[] apduRequest = new byte[buffer.getShort()];
+    buffer.get(apduRequest);
+    byte[] apduResponse = new byte[buffer.getShort()];
+    buffer.get(apduResponse);
+    assertThat(buffer.hasRemaining()).isFalse();
+    assertThat(apduRequest).isEqualTo(HexUtil.toByteArray(CARD_SELECT_FILE_1234_CMD));
+    assertThat(apduResponse).isEqualTo(HexUtil.toByteArray(CARD_SELECT_FILE_1234_RSP));
+  }
+
+  @Test
+  public void setAuditDataSink_whenSinkFails_shouldCompleteTheProcessing() throws Exception {
+    mockTransmitCardRequest(CARD_SELECT_FILE_1234_CMD, CARD_SELECT_FILE_1234_RSP);
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    CalypsoExtensionService service = CalypsoExtensionService.getInstance();
+    service
+        .getTransactionManagerExtension(cardTransactionManager)
+        .setAuditDataSink(service.createAuditDataSink(buffer), true)
+        .prepareSelectFile((short) 0x1234)
+        .processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+    assertThat(buffer.position()).isZero();
+    assertThat(cardTransactionManager.getTransactionAuditData())
+        .containsExactly(
+            HexUtil.toByteArray(CARD_SELECT_FILE_1234_CMD),
+            HexUtil.toByteArray(CARD_SELECT_FILE_1234_RSP));
+  }
+
+  @Test
+  public void rebind_shouldFillTheNewCardOnly() throws Exception {
+    SimulatedCardReader simulatedCardReader =
+        SimulatedCardFixture.createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    CalypsoCardAdapter firstCard = SimulatedCardFixture.selectCard(simulatedCardReader);
+    FreeTransactionManager transactionManager =
+        CalypsoExtensionService.getInstance()
+            .getCalypsoCardApiFactory()
+            .createFreeTransactionManager(simulatedCardReader, firstCard);
+    CalypsoCardAdapter secondCard = SimulatedCardFixture.selectCard(simulatedCardReader);
+    transactionManager.prepareReadRecord(SimulatedCardFixture.SFI_CONTRACTS, 1);
+    CalypsoExtensionService.getInstance()
+        .getTransactionManagerExtension(transactionManager)
+        .rebind(secondCard)
+        .prepareReadRecord(SimulatedCardFixture.SFI_ENVIRONMENT, 1)
+        .processCommands(org.eclipse.keypop.calypso.card.transaction.ChannelControl.CLOSE_AFTER);
+    assertThat(secondCard.getFileBySfi(SimulatedCardFixture.SFI_ENVIRONMENT).getData().getContent())
+        .isEqualTo(
+            simulatedCardReader.getCard().getRecord(SimulatedCardFixture.SFI_ENVIRONMENT, 1));
+    assertThat(secondCard.getFileBySfi(SimulatedCardFixture.SFI_CONTRACTS)).isNull();
+    assertThat(firstCard.getFileBySfi(SimulatedCardFixture.SFI_ENVIRONMENT)).isNull();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rebind_whenCardIsNull_shouldThrowIAE() {
+    CalypsoExtensionService.getInstance()
+        .getTransactionManagerExtension(cardTransactionManager)
+        .rebind(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rebind_whenCardIsNotSelectedWithTheExtension_shouldThrowIAE() {
+    CalypsoExtensionService.getInstance()
+        .getTransactionManagerExtension(cardTransactionManager)
+        .rebind(mock(CalypsoCard.class));
+  }
 }
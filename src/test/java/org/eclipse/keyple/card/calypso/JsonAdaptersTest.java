@@ -0,0 +1,200 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.eclipse.keyple.card.calypso.DtoAdapters.*;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.nio.ByteBuffer;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keyple.core.util.json.ByteArrayJsonAdapter;
+import org.eclipse.keyple.core.util.json.ByteBufferJsonAdapter;
+import org.eclipse.keyple.core.util.json.ByteJsonAdapter;
+import org.eclipse.keyple.core.util.json.IntegerJsonAdapter;
+import org.eclipse.keyple.core.util.json.JsonUtil;
+import org.eclipse.keyple.core.util.json.ShortJsonAdapter;
+import org.eclipse.keypop.calypso.card.WriteAccessLevel;
+import org.eclipse.keypop.calypso.card.card.DirectoryHeader;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.card.FileHeader;
+import org.eclipse.keypop.calypso.card.card.SvDebitLogRecord;
+import org.eclipse.keypop.calypso.card.card.SvLoadLogRecord;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JsonAdaptersTest {
+
+  private static final String SV_LOG =
+      "79007013DE31A75F00001A123441904244556600000256780000AABBCCDD123456";
+
+  /* Reflective parser configured as JsonUtil, without the Calypso adapters */
+  private Gson reflectiveParser;
+  private CalypsoCardAdapter card;
+
+  @Before
+  public void setUp() throws Exception {
+    CalypsoExtensionService.getInstance();
+    reflectiveParser =
+        new GsonBuilder()
+            .enableComplexMapKeySerialization()
+            .registerTypeAdapter(byte.class, new ByteJsonAdapter())
+            .registerTypeAdapter(Byte.class, new ByteJsonAdapter())
+            .registerTypeAdapter(short.class, new ShortJsonAdapter())
+            .registerTypeAdapter(Short.class, new ShortJsonAdapter())
+            .registerTypeAdapter(int.class, new IntegerJsonAdapter())
+            .registerTypeAdapter(Integer.class, new IntegerJsonAdapter())
+            .registerTypeAdapter(byte[].class, new ByteArrayJsonAdapter())
+            .registerTypeHierarchyAdapter(ByteBuffer.class, new ByteBufferJsonAdapter())
+            .create();
+    card =
+        new CalypsoCardAdapter(
+            new TestDtoAdapters.CardSelectionResponseAdapter(
+                new TestDtoAdapters.ApduResponseAdapter(
+                    new SimulatedCalypsoCard(
+                            HexUtil.toByteArray("0000000011223344"),
+                            SimulatedCalypsoCard.APP_TYPE_EXTENDED_WITH_SV)
+                        .getSelectApplicationResponse())));
+    card.setDirectoryHeader(
+        DirectoryHeaderAdapter.builder()
+            .lid((short) 0x2000)
+            .accessConditions(HexUtil.toByteArray("10100000"))
+            .keyIndexes(HexUtil.toByteArray("01030101"))
+            .dfStatus((byte) 0x00)
+            .kif(WriteAccessLevel.PERSONALIZATION, (byte) 0x21)
+            .kif(WriteAccessLevel.LOAD, (byte) 0x27)
+            .kif(WriteAccessLevel.DEBIT, (byte) 0x30)
+            .kvc(WriteAccessLevel.PERSONALIZATION, (byte) 0x79)
+            .kvc(WriteAccessLevel.LOAD, (byte) 0x79)
+            .kvc(WriteAccessLevel.DEBIT, (byte) 0x79)
+            .build());
+    card.setFileHeader(
+        (byte) 0x07,
+        FileHeaderAdapter.builder()
+            .lid((short) 0x2001)
+            .recordsNumber(1)
+            .recordSize(29)
+            .type(ElementaryFile.Type.LINEAR)
+            .accessConditions(HexUtil.toByteArray("1F101010"))
+            .keyIndexes(HexUtil.toByteArray("01030303"))
+            .dfStatus((byte) 0x00)
+            .sharedReference((short) 0x3F02)
+            .build());
+    card.setContent((byte) 0x07, 1, HexUtil.toByteArray("E0E1E2E3"));
+    card.setContent((byte) 0x14, 1, HexUtil.toByteArray("0102"));
+    card.setContent((byte) 0x14, 12, HexUtil.toByteArray("0304"));
+    card.setSvData(
+        (byte) 0x79, HexUtil.toByteArray("7C000721"), HexUtil.toByteArray(SV_LOG), 500, 0x1234);
+  }
+
+  @Test
+  public void toJson_whenCardImage_shouldProduceTheReflectiveForm() {
+    assertThat(card.toString()).isEqualTo(reflectiveParser.toJson(card));
+  }
+
+  @Test
+  public void toJson_whenDirectoryHeader_shouldProduceTheReflectiveForm() {
+    DirectoryHeader directoryHeader = card.getDirectoryHeader();
+    assertThat(JsonUtil.toJson(directoryHeader))
+        .isEqualTo(reflectiveParser.toJson(directoryHeader));
+  }
+
+  @Test
+  public void toJson_whenFileHeaderHasNullFields_shouldOmitThem() {
+    FileHeaderAdapter fileHeader =
+        FileHeaderAdapter.builder().lid((short) 0x2010).recordsNumber(3).recordSize(29).build();
+    assertThat(JsonUtil.toJson(fileHeader)).isEqualTo(reflectiveParser.toJson(fileHeader));
+  }
+
+  @Test
+  public void fromJson_whenDirectoryHeader_shouldRestoreIt() {
+    DirectoryHeader directoryHeader = card.getDirectoryHeader();
+    String json = JsonUtil.toJson(directoryHeader);
+    DirectoryHeader restored = JsonUtil.getParser().fromJson(json, DirectoryHeader.class);
+    assertThat(JsonUtil.toJson(restored)).isEqualTo(json);
+  }
+
+  @Test
+  public void fromJson_whenFileHeader_shouldRestoreIt() {
+    FileHeader fileHeader = card.getFileBySfi((byte) 0x07).getHeader();
+    FileHeader restored =
+        JsonUtil.getParser().fromJson(JsonUtil.toJson(fileHeader), FileHeader.class);
+    assertThat(restored).isEqualTo(fileHeader);
+  }
+
+  @Test
+  public void fromJson_whenElementaryFile_shouldRestoreIt() {
+    ElementaryFile file = card.getFileBySfi((byte) 0x14);
+    String json = JsonUtil.toJson(file);
+    ElementaryFile restored = JsonUtil.getParser().fromJson(json, ElementaryFile.class);
+    assertThat(restored.getSfi()).isEqualTo((byte) 0x14);
+    assertThat(restored.getData().getContent(12)).isEqualTo(HexUtil.toByteArray("0304"));
+    assertThat(JsonUtil.toJson(restored)).isEqualTo(json);
+  }
+
+  @Test
+  public void fromJson_whenSvLogRecords_shouldRestoreThem() {
+    SvLoadLogRecordAdapter svLoadLogRecord =
+        new SvLoadLogRecordAdapter(HexUtil.toByteArray(SV_LOG), 2);
+    SvDebitLogRecordAdapter svDebitLogRecord =
+        new SvDebitLogRecordAdapter(HexUtil.toByteArray(SV_LOG), 3);
+    String loadJson = JsonUtil.toJson(svLoadLogRecord);
+    String debitJson = JsonUtil.toJson(svDebitLogRecord);
+    assertThat(loadJson).isEqualTo(reflectiveParser.toJson(svLoadLogRecord));
+    assertThat(debitJson).isEqualTo(reflectiveParser.toJson(svDebitLogRecord));
+    assertThat(JsonUtil.getParser().fromJson(loadJson, SvLoadLogRecord.class).getAmount())
+        .isEqualTo(svLoadLogRecord.getAmount());
+    assertThat(JsonUtil.getParser().fromJson(debitJson, SvDebitLogRecord.class).getAmount())
+        .isEqualTo(svDebitLogRecord.getAmount());
+  }
+
+  @Test
+  public void toJson_whenCommand_shouldWrapTheReflectiveFormWithTheType() {
+    Command command =
+        new CommandGetChallenge(
+            new TransactionContextDto(card), new CommandContextDto(false, false));
+    String json = JsonUtil.getParser().toJson(command, Command.class);
+    assertThat(json)
+        .isEqualTo(
+            "{\"type\":\""
+                + CommandGetChallenge.class.getName()
+                + "\",\"data\":"
+                + reflectiveParser.toJson(command)
+                + "}");
+  }
+
+  @Test
+  public void fromJson_whenCommandDataPrecedesTheType_shouldRestoreTheCommand() {
+    String json = "{\"data\":{},\"type\":\"" + CommandGetChallenge.class.getName() + "\"}";
+    Command restored = JsonUtil.getParser().fromJson(json, Command.class);
+    assertThat(restored).isInstanceOf(CommandGetChallenge.class);
+  }
+
+  @Test
+  public void fromJson_whenCommandTypeIsAClassName_shouldRestoreTheCommand() {
+    String json = "{\"type\":\"" + CommandGetChallenge.class.getName() + "\",\"data\":{}}";
+    Command restored = JsonUtil.getParser().fromJson(json, Command.class);
+    assertThat(restored).isInstanceOf(CommandGetChallenge.class);
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void fromJson_whenCommandTypeIsANumber_shouldThrowJPE() {
+    JsonUtil.getParser().fromJson("{\"type\":9999,\"data\":{}}", Command.class);
+  }
+
+  @Test(expected = JsonParseException.class)
+  public void fromJson_whenCommandTypeIsAnUnregisteredClassName_shouldThrowJPE() {
+    JsonUtil.getParser().fromJson("{\"type\":\"java.lang.String\",\"data\":{}}", Command.class);
+  }
+}
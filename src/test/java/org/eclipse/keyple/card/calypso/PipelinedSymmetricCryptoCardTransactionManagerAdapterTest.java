@@ -0,0 +1,149 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class PipelinedSymmetricCryptoCardTransactionManagerAdapterTest {
+
+  private static final byte[] APDU_1 = HexUtil.toByteArray("00B2014400");
+  private static final byte[] APDU_2 = HexUtil.toByteArray("11229000");
+  private static final byte[] ENCRYPTED_APDU = HexUtil.toByteArray("E1E2E3");
+
+  private SymmetricCryptoCardTransactionManagerSpi delegate;
+  private List<Runnable> tasks;
+  private TransactionAuditData.SharedView transactionAuditData;
+  private PipelinedSymmetricCryptoCardTransactionManagerAdapter cryptoService;
+
+  @Before
+  public void setUp() {
+    delegate = mock(SymmetricCryptoCardTransactionManagerSpi.class);
+    tasks = new ArrayList<>();
+    transactionAuditData = new TransactionAuditData.SharedView(new TransactionAuditData());
+    cryptoService =
+        new PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+            delegate, tasks::add, transactionAuditData);
+  }
+
+  private void runTasks() {
+    // Tasks may schedule other tasks
+    for (int i = 0; i < tasks.size(); i++) {
+      tasks.get(i).run();
+    }
+    tasks.clear();
+  }
+
+  @Test
+  public void updateTerminalSessionMac_whenEncryptionIsNotActive_shouldDeferTheOperation()
+      throws Exception {
+    assertThat(cryptoService.updateTerminalSessionMac(APDU_1)).isSameAs(APDU_1);
+    verifyNoInteractions(delegate);
+    runTasks();
+    verify(delegate).updateTerminalSessionMac(APDU_1);
+  }
+
+  @Test
+  public void synchronize_shouldBeExecutedSynchronouslyAfterTheDeferredOperations()
+      throws Exception {
+    cryptoService =
+        new PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+            delegate, Runnable::run, transactionAuditData);
+    cryptoService.updateTerminalSessionMac(APDU_1);
+    cryptoService.synchronize();
+    InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate).updateTerminalSessionMac(APDU_1);
+    inOrder.verify(delegate).synchronize();
+  }
+
+  @Test
+  public void synchronize_whenADeferredOperationFailed_shouldThrowItsException() throws Exception {
+    SymmetricCryptoIOException failure = new SymmetricCryptoIOException("SAM removed");
+    when(delegate.updateTerminalSessionMac(APDU_1)).thenThrow(failure);
+    cryptoService =
+        new PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+            delegate, Runnable::run, transactionAuditData);
+    cryptoService.updateTerminalSessionMac(APDU_1);
+    assertThatThrownBy(cryptoService::synchronize).isSameAs(failure);
+    verify(delegate, never()).synchronize();
+  }
+
+  @Test
+  public void finalizeTerminalSessionMac_shouldBeExecutedAfterTheDeferredOperations()
+      throws Exception {
+    cryptoService =
+        new PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+            delegate, Runnable::run, transactionAuditData);
+    cryptoService.initTerminalSessionMac(APDU_1, (byte) 0x30, (byte) 0x79);
+    cryptoService.updateTerminalSessionMac(APDU_1);
+    cryptoService.updateTerminalSessionMac(APDU_2);
+    cryptoService.finalizeTerminalSessionMac();
+    InOrder inOrder = inOrder(delegate);
+    inOrder.verify(delegate).initTerminalSessionMac(APDU_1, (byte) 0x30, (byte) 0x79);
+    inOrder.verify(delegate).updateTerminalSessionMac(APDU_1);
+    inOrder.verify(delegate).updateTerminalSessionMac(APDU_2);
+    inOrder.verify(delegate).finalizeTerminalSessionMac();
+  }
+
+  @Test
+  public void updateTerminalSessionMac_whenEncryptionIsActive_shouldReturnTheDelegateResult()
+      throws Exception {
+    when(delegate.updateTerminalSessionMac(APDU_1)).thenReturn(ENCRYPTED_APDU);
+    cryptoService.activateEncryption();
+    assertThat(cryptoService.updateTerminalSessionMac(APDU_1)).isEqualTo(ENCRYPTED_APDU);
+    cryptoService.deactivateEncryption();
+    assertThat(cryptoService.updateTerminalSessionMac(APDU_1)).isSameAs(APDU_1);
+    assertThat(tasks).hasSize(1);
+  }
+
+  @Test
+  public void finalizeTerminalSessionMac_whenADeferredOperationFailed_shouldThrowItsException()
+      throws Exception {
+    SymmetricCryptoIOException failure = new SymmetricCryptoIOException("SAM removed");
+    when(delegate.updateTerminalSessionMac(APDU_1)).thenThrow(failure);
+    cryptoService =
+        new PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+            delegate, Runnable::run, transactionAuditData);
+    cryptoService.updateTerminalSessionMac(APDU_1);
+    cryptoService.updateTerminalSessionMac(APDU_2);
+    assertThatThrownBy(cryptoService::finalizeTerminalSessionMac).isSameAs(failure);
+    verify(delegate, never()).updateTerminalSessionMac(APDU_2);
+    verify(delegate, never()).finalizeTerminalSessionMac();
+    // The failure is reported only once
+    cryptoService.finalizeTerminalSessionMac();
+    verify(delegate).finalizeTerminalSessionMac();
+  }
+
+  @Test
+  public void awaitPendingOperationsSilently_whenADeferredOperationFailed_shouldIgnoreIt()
+      throws Exception {
+    when(delegate.updateTerminalSessionMac(APDU_1))
+        .thenThrow(new SymmetricCryptoIOException("SAM removed"));
+    cryptoService =
+        new PipelinedSymmetricCryptoCardTransactionManagerAdapter(
+            delegate, Runnable::run, transactionAuditData);
+    cryptoService.updateTerminalSessionMac(APDU_1);
+    cryptoService.awaitPendingOperationsSilently();
+    cryptoService.finalizeTerminalSessionMac();
+    verify(delegate).finalizeTerminalSessionMac();
+  }
+}
@@ -1613,6 +1613,27 @@ public void prepareCloseSecureSession_whenASessionIsOpen_shouldInteractWithCardA
     verifyNoMoreInteractions(symmetricCryptoCardTransactionManager, cardReader);
   }
 
+  @Test
+  public void prepareCloseSecureSession_whenSuccessful_shouldNotKeepTheFilesBackup()
+      throws Exception {
+    mockTransmitCardRequest(CARD_OPEN_SECURE_SESSION_CMD, CARD_OPEN_SECURE_SESSION_RSP);
+    mockTransmitCardRequest(CARD_READ_REC_SFI7_REC1_L29_CMD, CARD_READ_REC_SFI7_REC1_RSP);
+    mockTransmitCardRequest(CARD_CLOSE_SECURE_SESSION_CMD, CARD_CLOSE_SECURE_SESSION_RSP);
+
+    cardTransactionManager
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+    cardTransactionManager
+        .prepareReadRecords(FILE7, 1, 1, 29)
+        .prepareCloseSecureSession()
+        .processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+
+    calypsoCard.setContent(FILE7, 1, HexUtil.toByteArray("1122"));
+    calypsoCard.restoreFiles();
+    assertThat(calypsoCard.getFileBySfi(FILE7).getData().getContent(1))
+        .isEqualTo(HexUtil.toByteArray("1122"));
+  }
+
   @Test(expected = UnexpectedCommandStatusException.class)
   public void prepareCloseSecureSession_whenCloseSessionFails_shouldThrowUCSE() throws Exception {
 
@@ -2483,4 +2504,61 @@ public void prepareChangeKey_shouldSendApdusToTheCardAndTheSAM() throws Exceptio
     inOrder.verify(symmetricCryptoCardTransactionManager).synchronize();
     verifyNoMoreInteractions(symmetricCryptoCardTransactionManager, cardReader);
   }
+
+  @Test
+  public void rebind_whenManagerIsReused_shouldCommitEachTransaction() throws Exception {
+    SimulatedCardReader simulatedCardReader =
+        SimulatedCardFixture.createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SecureRegularModeTransactionManager transactionManager =
+        CalypsoExtensionService.getInstance()
+            .getCalypsoCardApiFactory()
+            .createSecureRegularModeTransactionManager(
+                simulatedCardReader,
+                SimulatedCardFixture.selectCard(simulatedCardReader),
+                SimulatedCardFixture.createSymmetricCryptoSecuritySetting());
+    TransactionManagerExtension<SecureRegularModeTransactionManager> extension =
+        CalypsoExtensionService.getInstance().getTransactionManagerExtension(transactionManager);
+    for (int i = 0; i < 3; i++) {
+      CalypsoCardAdapter card = SimulatedCardFixture.selectCard(simulatedCardReader);
+      long nbApdusBefore = simulatedCardReader.getTransmittedApdusCount();
+      extension
+          .rebind(card)
+          .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+          .prepareReadCounter(SimulatedCardFixture.SFI_COUNTERS, 1)
+          .prepareDecreaseCounter(SimulatedCardFixture.SFI_COUNTERS, 1, 1)
+          .prepareCloseSecureSession()
+          .processCommands(org.eclipse.keypop.calypso.card.transaction.ChannelControl.CLOSE_AFTER);
+      assertThat(
+              card.getFileBySfi(SimulatedCardFixture.SFI_COUNTERS)
+                  .getData()
+                  .getContentAsCounterValue(1))
+          .isEqualTo(999 - i);
+      assertThat(transactionManager.getTransactionAuditData())
+          .hasSize(2 * (int) (simulatedCardReader.getTransmittedApdusCount() - nbApdusBefore));
+    }
+    assertThat(simulatedCardReader.getCard().getCounter(SimulatedCardFixture.SFI_COUNTERS, 1))
+        .isEqualTo(997);
+  }
+
+  @Test
+  public void rebind_whenCardSerialNumberIsUnchanged_shouldReuseTheCryptoService() {
+    CalypsoExtensionService.getInstance()
+        .getTransactionManagerExtension(cardTransactionManager)
+        .rebind(calypsoCard)
+        .rebind(calypsoCard);
+    verify(symmetricCryptoCardTransactionManagerFactory, times(1))
+        .createCardTransactionManager(
+            any(byte[].class), any(Boolean.class), ArgumentMatchers.<byte[]>anyList());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void rebind_whenSecureSessionIsOpen_shouldThrowISE() throws Exception {
+    mockTransmitCardRequest(CARD_OPEN_SECURE_SESSION_CMD, CARD_OPEN_SECURE_SESSION_RSP);
+    cardTransactionManager
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .processCommands(CHANNEL_CONTROL_KEEP_OPEN);
+    CalypsoExtensionService.getInstance()
+        .getTransactionManagerExtension(cardTransactionManager)
+        .rebind(calypsoCard);
+  }
 }
@@ -0,0 +1,128 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+import org.eclipse.keypop.calypso.card.transaction.CryptoIOException;
+import org.eclipse.keypop.calypso.card.transaction.spi.CardTransactionCryptoExtension;
+import org.eclipse.keypop.calypso.crypto.symmetric.SvCommandSecurityDataApi;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SharedSymmetricCryptoCardTransactionManagerAdapterTest {
+
+  private static final byte[] PIN = new byte[4];
+
+  private SymmetricCryptoCardTransactionManagerSpi delegate1;
+  private SymmetricCryptoCardTransactionManagerSpi delegate2;
+  private SharedSymmetricCryptoCardTransactionManagerAdapter cryptoService1;
+  private SharedSymmetricCryptoCardTransactionManagerAdapter cryptoService2;
+
+  interface CryptoExtensionMock extends CardTransactionCryptoExtension {
+    void prepareOperation();
+  }
+
+  @Before
+  public void setUp() {
+    CryptoModuleAccessArbiter arbiter = new CryptoModuleAccessArbiter(0);
+    delegate1 = mock(SymmetricCryptoCardTransactionManagerSpi.class);
+    delegate2 = mock(SymmetricCryptoCardTransactionManagerSpi.class);
+    cryptoService1 = new SharedSymmetricCryptoCardTransactionManagerAdapter(delegate1, arbiter);
+    cryptoService2 = new SharedSymmetricCryptoCardTransactionManagerAdapter(delegate2, arbiter);
+  }
+
+  @Test
+  public void cipherPinForPresentation_whenNoOperationIsInProgress_shouldReleaseTheAccess()
+      throws Exception {
+    cryptoService1.cipherPinForPresentation(PIN, PIN, null, null);
+    cryptoService2.cipherPinForPresentation(PIN, PIN, null, null);
+    verify(delegate2).cipherPinForPresentation(PIN, PIN, null, null);
+  }
+
+  @Test
+  public void initTerminalSecureSessionContext_shouldKeepTheAccessUntilTheSessionMacIsVerified()
+      throws Exception {
+    cryptoService1.initTerminalSecureSessionContext();
+    cryptoService1.updateTerminalSessionMac(PIN);
+    assertThatThrownBy(() -> cryptoService2.cipherPinForPresentation(PIN, PIN, null, null))
+        .isInstanceOf(SymmetricCryptoIOException.class);
+    verifyNoInteractions(delegate2);
+
+    cryptoService1.isCardSessionMacValid(PIN);
+    cryptoService2.cipherPinForPresentation(PIN, PIN, null, null);
+    verify(delegate2).cipherPinForPresentation(PIN, PIN, null, null);
+  }
+
+  @Test
+  public void computeSvCommandSecurityData_whenOutsideSession_shouldKeepTheAccessUntilSvMacCheck()
+      throws Exception {
+    cryptoService1.computeSvCommandSecurityData(mock(SvCommandSecurityDataApi.class));
+    assertThatThrownBy(cryptoService2::initTerminalSecureSessionContext)
+        .isInstanceOf(SymmetricCryptoIOException.class);
+
+    cryptoService1.isCardSvMacValid(PIN);
+    cryptoService2.initTerminalSecureSessionContext();
+    verify(delegate2).initTerminalSecureSessionContext();
+  }
+
+  @Test
+  public void releaseAccess_whenSessionIsInProgress_shouldReleaseTheAccess() throws Exception {
+    cryptoService1.initTerminalSecureSessionContext();
+    cryptoService1.releaseAccess();
+    cryptoService2.initTerminalSecureSessionContext();
+    verify(delegate2).initTerminalSecureSessionContext();
+  }
+
+  @Test
+  public void initTerminalSecureSessionContext_whenDelegateFails_shouldReleaseTheAccess()
+      throws Exception {
+    when(delegate1.initTerminalSecureSessionContext())
+        .thenThrow(new SymmetricCryptoIOException("SAM removed"));
+    assertThatThrownBy(cryptoService1::initTerminalSecureSessionContext)
+        .isInstanceOf(SymmetricCryptoIOException.class);
+    cryptoService2.initTerminalSecureSessionContext();
+    verify(delegate2).initTerminalSecureSessionContext();
+  }
+
+  @Test
+  public void decorateCryptoExtension_whenNoOperationIsInProgress_shouldReleaseTheAccess()
+      throws Exception {
+    CryptoExtensionMock cryptoExtension = mock(CryptoExtensionMock.class);
+    cryptoService1
+        .decorateCryptoExtension(CryptoExtensionMock.class, cryptoExtension)
+        .prepareOperation();
+    verify(cryptoExtension).prepareOperation();
+    cryptoService2.initTerminalSecureSessionContext();
+    verify(delegate2).initTerminalSecureSessionContext();
+  }
+
+  @Test
+  public void decorateCryptoExtension_whenAccessIsHeldByAnotherTransaction_shouldThrowCIOE()
+      throws Exception {
+    CryptoExtensionMock cryptoExtension = mock(CryptoExtensionMock.class);
+    CryptoExtensionMock decoratedCryptoExtension =
+        cryptoService2.decorateCryptoExtension(CryptoExtensionMock.class, cryptoExtension);
+    cryptoService1.initTerminalSecureSessionContext();
+    assertThatThrownBy(decoratedCryptoExtension::prepareOperation)
+        .isInstanceOf(CryptoIOException.class);
+    verifyNoInteractions(cryptoExtension);
+
+    cryptoService2.releaseAccess();
+    cryptoService1.isCardSessionMacValid(PIN);
+    decoratedCryptoExtension.prepareOperation();
+    verify(cryptoExtension).prepareOperation();
+  }
+}
@@ -0,0 +1,888 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.eclipse.keyple.core.util.ByteArrayUtil;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+
+/**
+ * Deterministic simulation of a Calypso Prime revision 3 card.
+ *
+ * <p>The card owns an in-memory file system and answers the APDUs built by the {@code Command*}
+ * classes: Open/Close Secure Session (regular, extended and PKI modes), Read Records, Update/Write/
+ * Append Record, Read/Update/Write Binary, Increase/Decrease (Multiple), Search Record Multiple, SV
+ * Get/Reload/Debit/Undebit and Get Data (FCI, EF list, traceability information, certificates).
+ *
+ * <p>No cryptographic check is performed: the terminal MACs are ignored and the card MACs and
+ * signatures are derived from the transaction counter, so that the same sequence of APDUs always
+ * produces the same sequence of responses. Modifications made in a secure session are rolled back
+ * when the session is aborted.
+ *
+ * <p>An instance is thread-safe but models a single card: use one instance per simulated reader.
+ */
+final class SimulatedCalypsoCard {
+
+  static final byte APP_TYPE_REGULAR = 0x20;
+  static final byte APP_TYPE_WITH_SV = 0x22;
+  static final byte APP_TYPE_EXTENDED = 0x28;
+  static final byte APP_TYPE_EXTENDED_WITH_SV = 0x2A;
+  static final byte APP_TYPE_PKI = 0x38;
+
+  static final int SW_SUCCESS = 0x9000;
+  static final int SW_POSTPONED_DATA = 0x6200;
+  static final int SW_WRONG_LENGTH = 0x6700;
+  static final int SW_COMMAND_INCOMPATIBLE_WITH_FILE = 0x6981;
+  static final int SW_SECURITY_STATUS_NOT_SATISFIED = 0x6982;
+  static final int SW_CONDITIONS_NOT_SATISFIED = 0x6985;
+  static final int SW_OUT_OF_RANGE = 0x6A80;
+  static final int SW_FILE_NOT_FOUND = 0x6A82;
+  static final int SW_RECORD_NOT_FOUND = 0x6A83;
+  static final int SW_DATA_NOT_FOUND = 0x6A88;
+  static final int SW_WRONG_P1_P2 = 0x6B00;
+  static final int SW_INS_NOT_SUPPORTED = 0x6D00;
+
+  private static final String DF_NAME = "315449432E49434131";
+  private static final byte KVC = 0x79;
+  private static final byte[] KIFS = {0x21, 0x27, 0x30};
+  private static final byte SV_KVC = 0x12;
+  private static final int SV_LOAD_LOG_SIZE = 22;
+  private static final int SV_DEBIT_LOG_SIZE = 19;
+  private static final int PKI_SIGNATURE_SIZE = 64;
+  private static final int CERTIFICATE_FIRST_PART_SIZE = 200;
+
+  private final byte[] serialNumber;
+  private final byte applicationType;
+  private final boolean isExtendedMode;
+  private final boolean isPkiMode;
+  private final boolean isSvAvailable;
+  private final Map<Integer, SimulatedFile> files = new TreeMap<>();
+  private final byte[] traceabilityInformation = HexUtil.toByteArray("00112233445566778899");
+  private int currentSfi;
+  private byte[] cardCertificate;
+  private byte[] caCertificate;
+
+  private int transactionCounter = 0xFFFFFF;
+  private int svBalance;
+  private int svTNum;
+  private byte[] svLoadLog = new byte[SV_LOAD_LOG_SIZE];
+  private byte[] svDebitLog = new byte[SV_DEBIT_LOG_SIZE];
+  private boolean isSvGetDone;
+
+  private State sessionBackup;
+  private final List<byte[]> postponedData = new ArrayList<>();
+
+  /**
+   * Builds a new card with an empty file system.
+   *
+   * @param serialNumber The 8-byte application serial number.
+   * @param applicationType The application type byte of the startup information (see the {@code
+   *     APP_TYPE_*} constants).
+   */
+  SimulatedCalypsoCard(byte[] serialNumber, byte applicationType) {
+    this.serialNumber = serialNumber.clone();
+    this.applicationType = applicationType;
+    isExtendedMode = (applicationType & 0x08) != 0;
+    isPkiMode = (applicationType & 0x10) != 0;
+    isSvAvailable = (applicationType & 0x02) != 0;
+  }
+
+  /**
+   * Adds an elementary file.
+   *
+   * @param lid The LID.
+   * @param sfi The SFI (1..30).
+   * @param type The type of file.
+   * @param recordSize The size of the records.
+   * @param recordsNumber The number of records (the size of a binary file is the product of both).
+   * @return The current instance.
+   */
+  synchronized SimulatedCalypsoCard addFile(
+      int lid, int sfi, ElementaryFile.Type type, int recordSize, int recordsNumber) {
+    files.put(sfi, new SimulatedFile(lid, sfi, type, recordSize, recordsNumber));
+    return this;
+  }
+
+  /**
+   * Sets the content of a record (padded with zeros up to the record size).
+   *
+   * @param sfi The SFI of an existing file.
+   * @param recordNumber The record number (1..N).
+   * @param content The content.
+   * @return The current instance.
+   */
+  synchronized SimulatedCalypsoCard setRecord(int sfi, int recordNumber, byte[] content) {
+    SimulatedFile file = files.get(sfi);
+    file.records[recordNumber - 1] = Arrays.copyOf(content, file.recordSize);
+    return this;
+  }
+
+  /**
+   * Sets the value of a counter.
+   *
+   * @param sfi The SFI of an existing counters file.
+   * @param counterNumber The counter number (1..N).
+   * @param value The value.
+   * @return The current instance.
+   */
+  synchronized SimulatedCalypsoCard setCounter(int sfi, int counterNumber, int value) {
+    ByteArrayUtil.copyBytes(value, files.get(sfi).records[0], (counterNumber - 1) * 3, 3);
+    return this;
+  }
+
+  /**
+   * Sets the SV balance.
+   *
+   * @param svBalance The balance.
+   * @return The current instance.
+   */
+  synchronized SimulatedCalypsoCard setSvBalance(int svBalance) {
+    this.svBalance = svBalance;
+    return this;
+  }
+
+  /**
+   * Sets the card certificate returned by the Get Data command.
+   *
+   * @param cardCertificate A 316-byte array.
+   * @return The current instance.
+   */
+  synchronized SimulatedCalypsoCard setCardCertificate(byte[] cardCertificate) {
+    this.cardCertificate = cardCertificate.clone();
+    return this;
+  }
+
+  /**
+   * Sets the CA certificate returned by the Get Data command.
+   *
+   * @param caCertificate A 384-byte array.
+   * @return The current instance.
+   */
+  synchronized SimulatedCalypsoCard setCaCertificate(byte[] caCertificate) {
+    this.caCertificate = caCertificate.clone();
+    return this;
+  }
+
+  /**
+   * Returns a copy of a record.
+   *
+   * @param sfi The SFI.
+   * @param recordNumber The record number (1..N).
+   * @return Null if the file does not exist.
+   */
+  synchronized byte[] getRecord(int sfi, int recordNumber) {
+    SimulatedFile file = files.get(sfi);
+    return file != null ? file.records[recordNumber - 1].clone() : null;
+  }
+
+  /**
+   * Returns a copy of the content of a binary file.
+   *
+   * @param sfi The SFI.
+   * @return Null if the file does not exist.
+   */
+  synchronized byte[] getBinary(int sfi) {
+    SimulatedFile file = files.get(sfi);
+    return file != null ? file.records[0].clone() : null;
+  }
+
+  /**
+   * Returns the value of a counter.
+   *
+   * @param sfi The SFI of a counters file.
+   * @param counterNumber The counter number (1..N).
+   * @return The value.
+   */
+  synchronized int getCounter(int sfi, int counterNumber) {
+    return ByteArrayUtil.extractInt(files.get(sfi).records[0], (counterNumber - 1) * 3, 3, false);
+  }
+
+  /**
+   * Returns the SV balance.
+   *
+   * @return The balance.
+   */
+  synchronized int getSvBalance() {
+    return svBalance;
+  }
+
+  /**
+   * Returns true if a secure session is currently open.
+   *
+   * @return True if a secure session is open.
+   */
+  synchronized boolean isSessionOpen() {
+    return sessionBackup != null;
+  }
+
+  /**
+   * Takes a snapshot of the file system and of the SV data (the transaction counter, as on a real
+   * card, is never restored).
+   *
+   * @return A not null reference.
+   */
+  synchronized State saveState() {
+    return new State(this);
+  }
+
+  /**
+   * Restores a snapshot previously taken with {@link #saveState()} and closes any open session.
+   *
+   * @param state The snapshot.
+   */
+  synchronized void restoreState(State state) {
+    state.restoreInto(this);
+    sessionBackup = null;
+    postponedData.clear();
+    isSvGetDone = false;
+  }
+
+  /**
+   * Returns the response to the Select Application command.
+   *
+   * @return The R-APDU (FCI followed by SW 9000h).
+   */
+  byte[] getSelectApplicationResponse() {
+    return HexUtil.toByteArray(
+        "6F238409"
+            + DF_NAME
+            + "A516BF0C13C708"
+            + HexUtil.toHex(serialNumber)
+            + "53070A3C"
+            + HexUtil.toHex(applicationType)
+            + "051410019000");
+  }
+
+  /**
+   * Processes a C-APDU.
+   *
+   * @param apdu The C-APDU.
+   * @return The R-APDU (data out followed by the status word).
+   */
+  synchronized byte[] processApdu(byte[] apdu) {
+    try {
+      switch (apdu[1]) {
+        case (byte) 0xB2:
+          return readRecords(apdu);
+        case (byte) 0xDC:
+        case (byte) 0xD2:
+          return updateOrWriteRecord(apdu);
+        case (byte) 0xE2:
+          return appendRecord(apdu);
+        case (byte) 0xB0:
+          return readBinary(apdu);
+        case (byte) 0xD6:
+        case (byte) 0xD0:
+          return updateOrWriteBinary(apdu);
+        case (byte) 0x30:
+        case (byte) 0x32:
+          return increaseOrDecrease(apdu);
+        case (byte) 0x38:
+        case (byte) 0x3A:
+          return increaseOrDecreaseMultiple(apdu);
+        case (byte) 0xA2:
+          return searchRecordMultiple(apdu);
+        case (byte) 0x8A:
+          return openSecureSession(apdu);
+        case (byte) 0x8E:
+          return closeSecureSession(apdu);
+        case (byte) 0x7C:
+          return svGet(apdu);
+        case (byte) 0xB8:
+          return svReload(apdu);
+        case (byte) 0xBA:
+        case (byte) 0xBC:
+          return svDebitOrUndebit(apdu);
+        case (byte) 0xCA:
+          return getData(apdu);
+        default:
+          return sw(SW_INS_NOT_SUPPORTED);
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      return sw(SW_WRONG_LENGTH);
+    }
+  }
+
+  private byte[] readRecords(byte[] apdu) {
+    int recordNumber = apdu[2] & 0xFF;
+    int sfi = (apdu[3] & 0xFF) >> 3;
+    int le = apdu[apdu.length - 1] & 0xFF;
+    SimulatedFile file = selectFile(sfi);
+    if (recordNumber == 0) {
+      // Ratification command
+      return sw(SW_WRONG_P1_P2);
+    }
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    if (recordNumber > file.records.length) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    if ((apdu[3] & 0x07) == 0x04) {
+      byte[] record = file.records[recordNumber - 1];
+      return response(le != 0 ? Arrays.copyOf(record, Math.min(le, record.length)) : record);
+    }
+    // Multiple records mode: as many records as fitting in Le
+    int nbRecords =
+        Math.min(le == 0 ? 1 : le / (file.recordSize + 2), file.records.length - recordNumber + 1);
+    byte[] dataOut = new byte[nbRecords * (file.recordSize + 2)];
+    for (int i = 0; i < nbRecords; i++) {
+      int offset = i * (file.recordSize + 2);
+      dataOut[offset] = (byte) (recordNumber + i);
+      dataOut[offset + 1] = (byte) file.recordSize;
+      System.arraycopy(file.records[recordNumber - 1 + i], 0, dataOut, offset + 2, file.recordSize);
+    }
+    return response(dataOut);
+  }
+
+  private byte[] updateOrWriteRecord(byte[] apdu) {
+    int recordNumber = apdu[2] & 0xFF;
+    SimulatedFile file = selectFile((apdu[3] & 0xFF) >> 3);
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    if (recordNumber == 0 || recordNumber > file.records.length) {
+      return sw(SW_RECORD_NOT_FOUND);
+    }
+    byte[] data = extractDataIn(apdu);
+    if (data.length > file.recordSize) {
+      return sw(SW_WRONG_LENGTH);
+    }
+    byte[] record = file.records[recordNumber - 1];
+    for (int i = 0; i < data.length; i++) {
+      record[i] = apdu[1] == (byte) 0xD2 ? (byte) (record[i] | data[i]) : data[i];
+    }
+    if (apdu[1] == (byte) 0xDC) {
+      Arrays.fill(record, data.length, record.length, (byte) 0);
+    }
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] appendRecord(byte[] apdu) {
+    SimulatedFile file = selectFile((apdu[3] & 0xFF) >> 3);
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    if (file.type != ElementaryFile.Type.CYCLIC) {
+      return sw(SW_COMMAND_INCOMPATIBLE_WITH_FILE);
+    }
+    byte[] data = extractDataIn(apdu);
+    if (data.length > file.recordSize) {
+      return sw(SW_WRONG_LENGTH);
+    }
+    System.arraycopy(file.records, 0, file.records, 1, file.records.length - 1);
+    file.records[0] = Arrays.copyOf(data, file.recordSize);
+    return sw(SW_SUCCESS);
+  }
+
+  private byte[] readBinary(byte[] apdu) {
+    SimulatedFile file = selectBinaryFile(apdu);
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    if (file.type != ElementaryFile.Type.BINARY) {
+      return sw(SW_COMMAND_INCOMPATIBLE_WITH_FILE);
+    }
+    int offset = getBinaryOffset(apdu);
+    int le = apdu[4] & 0xFF;
+    if (offset + le > file.records[0].length) {
+      return sw(SW_OUT_OF_RANGE);
+    }
+    return response(Arrays.copyOfRange(file.records[0], offset, offset + le));
+  }
+
+  private byte[] updateOrWriteBinary(byte[] apdu) {
+    SimulatedFile file = selectBinaryFile(apdu);
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    if (file.type != ElementaryFile.Type.BINARY) {
+      return sw(SW_COMMAND_INCOMPATIBLE_WITH_FILE);
+    }
+    int offset = getBinaryOffset(apdu);
+    byte[] data = extractDataIn(apdu);
+    if (offset + data.length > file.records[0].length) {
+      return sw(SW_OUT_OF_RANGE);
+    }
+    for (int i = 0; i < data.length; i++) {
+      file.records[0][offset + i] =
+          apdu[1] == (byte) 0xD0 ? (byte) (file.records[0][offset + i] | data[i]) : data[i];
+    }
+    return sw(SW_SUCCESS);
+  }
+
+  /** Returns the EF identified by the SFI encoded in P1 if any, otherwise the current EF. */
+  private SimulatedFile selectBinaryFile(byte[] apdu) {
+    return (apdu[2] & 0x80) != 0 ? selectFile(apdu[2] & 0x1F) : files.get(currentSfi);
+  }
+
+  /** Returns the offset in P2 if P1 encodes an SFI, otherwise the 15-bit offset in P1-P2. */
+  private static int getBinaryOffset(byte[] apdu) {
+    return (apdu[2] & 0x80) != 0 ? apdu[3] & 0xFF : ((apdu[2] & 0x7F) << 8) | (apdu[3] & 0xFF);
+  }
+
+  /** Returns the EF identified by the SFI and makes it the current EF if it exists. */
+  private SimulatedFile selectFile(int sfi) {
+    SimulatedFile file = files.get(sfi);
+    if (file != null) {
+      currentSfi = sfi;
+    }
+    return file;
+  }
+
+  private byte[] increaseOrDecrease(byte[] apdu) {
+    SimulatedFile file = getCountersFile(apdu);
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    int counterNumber = apdu[2] & 0xFF;
+    int newValue =
+        updateCounter(
+            file, counterNumber, ByteArrayUtil.extractInt(apdu, 5, 3, false), apdu[1] == 0x32);
+    if (newValue < 0) {
+      return sw(newValue == -1 ? SW_WRONG_P1_P2 : SW_OUT_OF_RANGE);
+    }
+    return response(ByteArrayUtil.extractBytes(newValue, 3));
+  }
+
+  private byte[] increaseOrDecreaseMultiple(byte[] apdu) {
+    SimulatedFile file = getCountersFile(apdu);
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    byte[] data = extractDataIn(apdu);
+    byte[] dataOut = new byte[data.length];
+    for (int i = 0; i < data.length; i += 4) {
+      int counterNumber = data[i] & 0xFF;
+      int newValue =
+          updateCounter(
+              file,
+              counterNumber,
+              ByteArrayUtil.extractInt(data, i + 1, 3, false),
+              apdu[1] == 0x3A);
+      if (newValue < 0) {
+        return sw(newValue == -1 ? SW_WRONG_P1_P2 : SW_OUT_OF_RANGE);
+      }
+      dataOut[i] = (byte) counterNumber;
+      ByteArrayUtil.copyBytes(newValue, dataOut, i + 1, 3);
+    }
+    return response(dataOut);
+  }
+
+  private SimulatedFile getCountersFile(byte[] apdu) {
+    SimulatedFile file = selectFile((apdu[3] & 0xFF) >> 3);
+    return file != null && file.type == ElementaryFile.Type.COUNTERS ? file : null;
+  }
+
+  /** Returns the new value, -1 if the counter does not exist or -2 if out of range. */
+  private static int updateCounter(
+      SimulatedFile file, int counterNumber, int value, boolean isIncrease) {
+    if (counterNumber == 0 || counterNumber * 3 > file.recordSize) {
+      return -1;
+    }
+    int offset = (counterNumber - 1) * 3;
+    int oldValue = ByteArrayUtil.extractInt(file.records[0], offset, 3, false);
+    int newValue = isIncrease ? oldValue + value : oldValue - value;
+    if (newValue < 0 || newValue > 0xFFFFFF) {
+      return -2;
+    }
+    ByteArrayUtil.copyBytes(newValue, file.records[0], offset, 3);
+    return newValue;
+  }
+
+  private byte[] searchRecordMultiple(byte[] apdu) {
+    SimulatedFile file = selectFile((apdu[3] & 0xFF) >> 3);
+    if (file == null) {
+      return sw(SW_FILE_NOT_FOUND);
+    }
+    int firstRecordNumber = apdu[2] & 0xFF;
+    byte[] data = extractDataIn(apdu);
+    boolean isRepeatedOffset = (data[0] & 0x80) != 0;
+    boolean isFetchFirstMatchingResult = (data[0] & 0x01) != 0;
+    int offset = data[1] & 0xFF;
+    int length = data[2] & 0xFF;
+    List<Integer> matchingRecordNumbers = new ArrayList<>();
+    for (int i = firstRecordNumber; i <= file.records.length; i++) {
+      int lastOffset = isRepeatedOffset ? file.recordSize - length : offset;
+      for (int o = offset; o <= lastOffset; o++) {
+        if (matches(file.records[i - 1], o, data, length)) {
+          matchingRecordNumbers.add(i);
+          break;
+        }
+      }
+    }
+    int fetchedLength =
+        isFetchFirstMatchingResult && !matchingRecordNumbers.isEmpty() ? file.recordSize : 0;
+    byte[] dataOut = new byte[1 + matchingRecordNumbers.size() + fetchedLength];
+    dataOut[0] = (byte) matchingRecordNumbers.size();
+    for (int i = 0; i < matchingRecordNumbers.size(); i++) {
+      dataOut[i + 1] = matchingRecordNumbers.get(i).byteValue();
+    }
+    if (fetchedLength != 0) {
+      System.arraycopy(
+          file.records[matchingRecordNumbers.get(0) - 1],
+          0,
+          dataOut,
+          1 + matchingRecordNumbers.size(),
+          fetchedLength);
+    }
+    return response(dataOut);
+  }
+
+  private static boolean matches(byte[] record, int offset, byte[] searchData, int length) {
+    if (offset + length > record.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      byte mask = searchData[3 + length + i];
+      if ((record[offset + i] & mask) != (searchData[3 + i] & mask)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private byte[] openSecureSession(byte[] apdu) {
+    if (sessionBackup != null) {
+      // A new opening cancels the current session
+      sessionBackup.restoreInto(this);
+    }
+    int keyIndex = apdu[2] & 0x07;
+    int recordNumber = (apdu[2] & 0xFF) >> 3;
+    int sfi = (apdu[3] & 0xFF) >> 3;
+    int mode = apdu[3] & 0x07;
+    if ((mode == 0x02 && !isExtendedMode) || (mode == 0x03 && !isPkiMode) || mode == 0) {
+      return sw(SW_WRONG_P1_P2);
+    }
+    byte[] recordData = new byte[0];
+    if (recordNumber != 0) {
+      SimulatedFile file = selectFile(sfi);
+      if (file == null) {
+        return sw(SW_FILE_NOT_FOUND);
+      }
+      if (recordNumber > file.records.length) {
+        return sw(SW_RECORD_NOT_FOUND);
+      }
+      recordData = file.records[recordNumber - 1];
+    }
+    sessionBackup = new State(this);
+    postponedData.clear();
+    transactionCounter--;
+    byte[] counter = ByteArrayUtil.extractBytes(transactionCounter, 3);
+    byte[] header;
+    switch (mode) {
+      case 0x01:
+        // Counter(3) Random(1) Ratification(1) KIF KVC Length
+        header =
+            new byte[] {
+              counter[0], counter[1], counter[2], 0x5A, 0x00, KIFS[keyIndex - 1], KVC, 0x00
+            };
+        break;
+      case 0x02:
+        // Counter(3) Random(5) Flags(1) KIF KVC Length
+        header = new byte[12];
+        System.arraycopy(counter, 0, header, 0, 3);
+        Arrays.fill(header, 3, 8, (byte) 0x5A);
+        header[8] = 0x02;
+        header[9] = KIFS[keyIndex - 1];
+        header[10] = KVC;
+        break;
+      default:
+        // AID length, AID, serial number(8), RFU(1), counter(3), random(5), flags(1), RFU(2),
+        // length
+        byte[] aid = HexUtil.toByteArray(DF_NAME);
+        header = new byte[1 + aid.length + 8 + 1 + 8 + 1 + 2 + 1];
+        header[0] = (byte) aid.length;
+        System.arraycopy(aid, 0, header, 1, aid.length);
+        System.arraycopy(serialNumber, 0, header, 1 + aid.length, 8);
+        System.arraycopy(counter, 0, header, 1 + aid.length + 9, 3);
+    }
+    header[header.length - 1] = (byte) recordData.length;
+    byte[] dataOut = Arrays.copyOf(header, header.length + recordData.length);
+    System.arraycopy(recordData, 0, dataOut, header.length, recordData.length);
+    return response(dataOut);
+  }
+
+  private byte[] closeSecureSession(byte[] apdu) {
+    boolean isAbort = apdu.length == 5 && apdu[4] == 0;
+    if (isAbort) {
+      if (sessionBackup != null) {
+        sessionBackup.restoreInto(this);
+        sessionBackup = null;
+        postponedData.clear();
+      }
+      return sw(SW_SUCCESS);
+    }
+    if (sessionBackup == null) {
+      return sw(SW_CONDITIONS_NOT_SATISFIED);
+    }
+    sessionBackup = null;
+    byte[] signature;
+    if (apdu.length == 5) {
+      // PKI mode
+      signature = new byte[PKI_SIGNATURE_SIZE];
+    } else {
+      // Regular or extended mode: postponed data then card session MAC
+      int postponedDataLength = 0;
+      for (byte[] data : postponedData) {
+        postponedDataLength += data.length + 1;
+      }
+      signature = new byte[postponedDataLength + (isExtendedMode ? 8 : 4)];
+      int offset = 0;
+      for (byte[] data : postponedData) {
+        signature[offset] = (byte) (data.length + 1);
+        System.arraycopy(data, 0, signature, offset + 1, data.length);
+        offset += data.length + 1;
+      }
+    }
+    ByteArrayUtil.copyBytes(transactionCounter, signature, signature.length - 3, 3);
+    postponedData.clear();
+    return response(signature);
+  }
+
+  private byte[] svGet(byte[] apdu) {
+    if (!isSvAvailable) {
+      return sw(SW_INS_NOT_SUPPORTED);
+    }
+    boolean isExtended = apdu[2] == 0x01;
+    boolean isReload = apdu[3] == 0x07;
+    if ((isExtended && !isExtendedMode) || (!isReload && apdu[3] != 0x09)) {
+      return sw(SW_WRONG_P1_P2);
+    }
+    byte[] balance = ByteArrayUtil.extractBytes(svBalance, 3);
+    byte[] tNum = ByteArrayUtil.extractBytes(svTNum, 2);
+    byte[] dataOut;
+    if (isExtended) {
+      // Challenge(8) KVC(1) TNum(2) PrevSignLo(6) Balance(3) LoadLog(22) DebitLog(19)
+      dataOut = new byte[8 + 1 + 2 + 6 + 3 + SV_LOAD_LOG_SIZE + SV_DEBIT_LOG_SIZE];
+      dataOut[8] = SV_KVC;
+      System.arraycopy(tNum, 0, dataOut, 9, 2);
+      System.arraycopy(balance, 0, dataOut, 17, 3);
+      System.arraycopy(svLoadLog, 0, dataOut, 20, SV_LOAD_LOG_SIZE);
+      System.arraycopy(svDebitLog, 0, dataOut, 20 + SV_LOAD_LOG_SIZE, SV_DEBIT_LOG_SIZE);
+    } else {
+      // KVC(1) TNum(2) PrevSignLo(3) Challenge(2) Balance(3) Log(22 or 19)
+      byte[] log = isReload ? svLoadLog : svDebitLog;
+      dataOut = new byte[11 + log.length];
+      dataOut[0] = SV_KVC;
+      System.arraycopy(tNum, 0, dataOut, 1, 2);
+      System.arraycopy(balance, 0, dataOut, 8, 3);
+      System.arraycopy(log, 0, dataOut, 11, log.length);
+    }
+    isSvGetDone = true;
+    return response(dataOut);
+  }
+
+  private byte[] svReload(byte[] apdu) {
+    if (!isSvAvailable) {
+      return sw(SW_INS_NOT_SUPPORTED);
+    }
+    if (!isSvGetDone) {
+      return sw(SW_CONDITIONS_NOT_SATISFIED);
+    }
+    byte[] data = extractDataIn(apdu);
+    int amount = ByteArrayUtil.extractInt(data, 6, 3, true);
+    svBalance += amount;
+    svTNum++;
+    // Date(2) Free(1) KVC(1) Free(1) Balance(3) Amount(3) Time(2) SamId(4) SamTNum(3) SvTNum(2)
+    svLoadLog = new byte[SV_LOAD_LOG_SIZE];
+    System.arraycopy(data, 1, svLoadLog, 0, 5);
+    ByteArrayUtil.copyBytes(svBalance, svLoadLog, 5, 3);
+    System.arraycopy(data, 6, svLoadLog, 8, 3);
+    System.arraycopy(data, 9, svLoadLog, 11, 2);
+    System.arraycopy(data, 11, svLoadLog, 13, 7);
+    ByteArrayUtil.copyBytes(svTNum, svLoadLog, 20, 2);
+    return svOperationResponse();
+  }
+
+  private byte[] svDebitOrUndebit(byte[] apdu) {
+    if (!isSvAvailable) {
+      return sw(SW_INS_NOT_SUPPORTED);
+    }
+    if (!isSvGetDone) {
+      return sw(SW_CONDITIONS_NOT_SATISFIED);
+    }
+    byte[] data = extractDataIn(apdu);
+    int amount = ByteArrayUtil.extractInt(data, 1, 2, true);
+    svBalance += amount;
+    svTNum++;
+    // Amount(2) Date(2) Time(2) KVC(1) SamId(4) SamTNum(3) Balance(3) SvTNum(2)
+    svDebitLog = new byte[SV_DEBIT_LOG_SIZE];
+    System.arraycopy(data, 1, svDebitLog, 0, 14);
+    ByteArrayUtil.copyBytes(svBalance, svDebitLog, 14, 3);
+    ByteArrayUtil.copyBytes(svTNum, svDebitLog, 17, 2);
+    return svOperationResponse();
+  }
+
+  private byte[] svOperationResponse() {
+    isSvGetDone = false;
+    byte[] svMac = new byte[isExtendedMode ? 6 : 3];
+    ByteArrayUtil.copyBytes(svTNum, svMac, svMac.length - 2, 2);
+    if (sessionBackup != null) {
+      postponedData.add(svMac);
+      return sw(SW_POSTPONED_DATA);
+    }
+    return response(svMac);
+  }
+
+  private byte[] getData(byte[] apdu) {
+    int tag = ((apdu[2] & 0xFF) << 8) | (apdu[3] & 0xFF);
+    switch (tag) {
+      case CalypsoCardConstant.TAG_FCI_FOR_CURRENT_DF:
+        return getSelectApplicationResponse();
+      case CalypsoCardConstant.TAG_EF_LIST:
+        return response(buildEfList());
+      case CalypsoCardConstant.TAG_TRACEABILITY_INFORMATION:
+        return response(traceabilityInformation);
+      case CalypsoCardConstant.TAG_CARD_CERTIFICATE:
+        return getCertificatePart(
+            cardCertificate, CalypsoCardConstant.TAG_CARD_CERTIFICATE_HEADER, true);
+      case CalypsoCardConstant.TAG_CARD_CERTIFICATE + 1:
+        return getCertificatePart(cardCertificate, null, false);
+      case CalypsoCardConstant.TAG_CA_CERTIFICATE:
+        return getCertificatePart(
+            caCertificate, CalypsoCardConstant.TAG_CA_CERTIFICATE_HEADER, true);
+      case CalypsoCardConstant.TAG_CA_CERTIFICATE + 1:
+        return getCertificatePart(caCertificate, null, false);
+      default:
+        return sw(SW_DATA_NOT_FOUND);
+    }
+  }
+
+  private byte[] buildEfList() {
+    byte[] dataOut = new byte[2 + files.size() * 8];
+    dataOut[0] = (byte) CalypsoCardConstant.TAG_EF_LIST;
+    dataOut[1] = (byte) (files.size() * 8);
+    int offset = 2;
+    for (SimulatedFile file : files.values()) {
+      dataOut[offset] = (byte) 0xC1;
+      dataOut[offset + 1] = 0x06;
+      ByteArrayUtil.copyBytes(file.lid, dataOut, offset + 2, 2);
+      dataOut[offset + 4] = (byte) file.sfi;
+      dataOut[offset + 5] = (byte) file.getEfType();
+      dataOut[offset + 6] = (byte) file.recordSize;
+      dataOut[offset + 7] = (byte) file.recordsNumber;
+      offset += 8;
+    }
+    return dataOut;
+  }
+
+  private static byte[] getCertificatePart(byte[] certificate, byte[] header, boolean isFirstPart) {
+    if (certificate == null) {
+      return sw(SW_DATA_NOT_FOUND);
+    }
+    if (!isFirstPart) {
+      return response(
+          Arrays.copyOfRange(certificate, CERTIFICATE_FIRST_PART_SIZE, certificate.length));
+    }
+    byte[] dataOut = Arrays.copyOf(header, header.length + CERTIFICATE_FIRST_PART_SIZE);
+    System.arraycopy(certificate, 0, dataOut, header.length, CERTIFICATE_FIRST_PART_SIZE);
+    return response(dataOut);
+  }
+
+  private static byte[] extractDataIn(byte[] apdu) {
+    int lc = apdu[4] & 0xFF;
+    return Arrays.copyOfRange(apdu, 5, 5 + lc);
+  }
+
+  private static byte[] response(byte[] dataOut) {
+    byte[] response = Arrays.copyOf(dataOut, dataOut.length + 2);
+    response[dataOut.length] = (byte) 0x90;
+    return response;
+  }
+
+  private static byte[] sw(int statusWord) {
+    return new byte[] {(byte) (statusWord >> 8), (byte) statusWord};
+  }
+
+  /** An elementary file of the simulated card. */
+  private static final class SimulatedFile {
+
+    private final int lid;
+    private final int sfi;
+    private final ElementaryFile.Type type;
+    private final int recordSize;
+    private final int recordsNumber;
+    private final byte[][] records;
+
+    private SimulatedFile(
+        int lid, int sfi, ElementaryFile.Type type, int recordSize, int recordsNumber) {
+      this.lid = lid;
+      this.sfi = sfi;
+      this.type = type;
+      this.recordSize = recordSize;
+      this.recordsNumber = recordsNumber;
+      if (type == ElementaryFile.Type.BINARY) {
+        records = new byte[1][recordSize * recordsNumber];
+      } else {
+        records = new byte[type == ElementaryFile.Type.COUNTERS ? 1 : recordsNumber][recordSize];
+      }
+    }
+
+    private int getEfType() {
+      switch (type) {
+        case LINEAR:
+          return CalypsoCardConstant.EF_TYPE_LINEAR;
+        case CYCLIC:
+          return CalypsoCardConstant.EF_TYPE_CYCLIC;
+        case COUNTERS:
+          return CalypsoCardConstant.EF_TYPE_COUNTERS;
+        case SIMULATED_COUNTERS:
+          return CalypsoCardConstant.EF_TYPE_SIMULATED_COUNTERS;
+        default:
+          return CalypsoCardConstant.EF_TYPE_BINARY;
+      }
+    }
+  }
+
+  /** A snapshot of the mutable content of the card. */
+  static final class State {
+
+    private final Map<Integer, byte[][]> records = new TreeMap<>();
+    private final int svBalance;
+    private final int svTNum;
+    private final byte[] svLoadLog;
+    private final byte[] svDebitLog;
+
+    private State(SimulatedCalypsoCard card) {
+      for (SimulatedFile file : card.files.values()) {
+        byte[][] copy = new byte[file.records.length][];
+        for (int i = 0; i < copy.length; i++) {
+          copy[i] = file.records[i].clone();
+        }
+        records.put(file.sfi, copy);
+      }
+      svBalance = card.svBalance;
+      svTNum = card.svTNum;
+      svLoadLog = card.svLoadLog;
+      svDebitLog = card.svDebitLog;
+    }
+
+    private void restoreInto(SimulatedCalypsoCard card) {
+      for (SimulatedFile file : card.files.values()) {
+        byte[][] copy = records.get(file.sfi);
+        for (int i = 0; i < copy.length; i++) {
+          file.records[i] = copy[i].clone();
+        }
+      }
+      card.svBalance = svBalance;
+      card.svTNum = svTNum;
+      card.svLoadLog = svLoadLog;
+      card.svDebitLog = svDebitLog;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
+
+/**
+ * Common card layout and helpers of the tests running transactions on a {@link
+ * SimulatedCalypsoCard}.
+ */
+final class SimulatedCardFixture {
+
+  static final byte SFI_ENVIRONMENT = 0x07;
+  static final byte SFI_EVENT_LOG = 0x08;
+  static final byte SFI_CONTRACTS = 0x09;
+  static final byte SFI_COUNTERS = 0x19;
+  static final int RECORD_SIZE = 29;
+  static final int NB_CONTRACTS = 4;
+  static final byte[] SERIAL_NUMBER = HexUtil.toByteArray("0000000011223344");
+  static final byte[] ENVIRONMENT = HexUtil.toByteArray("E0E1E2E3");
+  static final byte[] EVENT = HexUtil.toByteArray("EE01EE02");
+
+  private SimulatedCardFixture() {}
+
+  /**
+   * Creates a reader holding a card with an environment, an event log, a contracts file and a
+   * counters file, an SV balance of 500 and a card certificate.
+   */
+  static SimulatedCardReader createCardReader(byte applicationType) {
+    SimulatedCalypsoCard card =
+        new SimulatedCalypsoCard(SERIAL_NUMBER, applicationType)
+            .addFile(0x2001, SFI_ENVIRONMENT, ElementaryFile.Type.LINEAR, RECORD_SIZE, 1)
+            .addFile(0x2010, SFI_EVENT_LOG, ElementaryFile.Type.CYCLIC, RECORD_SIZE, 3)
+            .addFile(0x2020, SFI_CONTRACTS, ElementaryFile.Type.LINEAR, RECORD_SIZE, NB_CONTRACTS)
+            .addFile(0x2069, SFI_COUNTERS, ElementaryFile.Type.COUNTERS, RECORD_SIZE, 1)
+            .setRecord(SFI_ENVIRONMENT, 1, ENVIRONMENT)
+            .setCounter(SFI_COUNTERS, 1, 1000)
+            .setSvBalance(500)
+            .setCardCertificate(SimulatedCryptoServices.buildCardCertificate(SERIAL_NUMBER));
+    for (int i = 1; i <= NB_CONTRACTS; i++) {
+      card.setRecord(SFI_CONTRACTS, i, new byte[] {(byte) 0xC0, (byte) i});
+    }
+    return new SimulatedCardReader("SIMULATED_READER", card);
+  }
+
+  /** Builds the image of the card of the reader from its select application response. */
+  static CalypsoCardAdapter selectCard(SimulatedCardReader cardReader) throws Exception {
+    return new CalypsoCardAdapter(
+        new TestDtoAdapters.CardSelectionResponseAdapter(
+            new TestDtoAdapters.ApduResponseAdapter(
+                cardReader.getCard().getSelectApplicationResponse())));
+  }
+
+  /** Selects the card of the reader by processing the commands of the selection extension. */
+  static CalypsoCardAdapter selectCard(
+      SimulatedCardReader cardReader, CalypsoCardSelectionExtensionAdapter cardSelectionExtension)
+      throws Exception {
+    return (CalypsoCardAdapter)
+        cardSelectionExtension.parse(
+            new TestDtoAdapters.CardSelectionResponseAdapter(
+                new TestDtoAdapters.ApduResponseAdapter(
+                    cardReader.getCard().getSelectApplicationResponse()),
+                cardReader.transmitCardRequest(
+                    cardSelectionExtension.getCardSelectionRequest().getCardRequest(),
+                    org.eclipse.keypop.card.ChannelControl.KEEP_OPEN)));
+  }
+
+  /** Creates a symmetric crypto security setting using the simulated crypto services. */
+  static SymmetricCryptoSecuritySetting createSymmetricCryptoSecuritySetting() {
+    return CalypsoExtensionService.getInstance()
+        .getCalypsoCardApiFactory()
+        .createSymmetricCryptoSecuritySetting(new SimulatedCryptoServices.SymmetricFactory());
+  }
+
+  /** Creates an asymmetric crypto security setting using the simulated crypto services. */
+  static AsymmetricCryptoSecuritySetting createAsymmetricCryptoSecuritySetting() {
+    return CalypsoExtensionService.getInstance()
+        .getCalypsoCardApiFactory()
+        .createAsymmetricCryptoSecuritySetting(new SimulatedCryptoServices.AsymmetricFactory())
+        .addPcaCertificate(new SimulatedCryptoServices.Pca())
+        .addCardCertificateParser(new SimulatedCryptoServices.CardCertificateParserImpl());
+  }
+}
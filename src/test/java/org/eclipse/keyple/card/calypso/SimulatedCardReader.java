@@ -0,0 +1,143 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.card.ApduResponseApi;
+import org.eclipse.keypop.card.CardResponseApi;
+import org.eclipse.keypop.card.ChannelControl;
+import org.eclipse.keypop.card.ProxyReaderApi;
+import org.eclipse.keypop.card.UnexpectedStatusWordException;
+import org.eclipse.keypop.card.spi.ApduRequestSpi;
+import org.eclipse.keypop.card.spi.CardRequestSpi;
+import org.eclipse.keypop.reader.CardReader;
+
+/**
+ * Reader holding a {@link SimulatedCalypsoCard}, with an optional latency per APDU to mimic the RF
+ * exchanges.
+ *
+ * <p>The reader honours the "stop on unsuccessful status word" flag of the card requests, so that
+ * the error paths of the transaction managers can be exercised too. It is thread-safe and can be
+ * shared by several transactions running concurrently on the same card, although the typical load
+ * test uses one reader per thread.
+ */
+final class SimulatedCardReader implements CardReader, ProxyReaderApi {
+
+  private final String name;
+  private final SimulatedCalypsoCard card;
+  private final AtomicLong transmittedApdusCount = new AtomicLong();
+  private volatile long apduLatencyNanos;
+  private volatile boolean isLogicalChannelOpen;
+
+  /**
+   * Builds a new reader without latency.
+   *
+   * @param name The name of the reader.
+   * @param card The inserted card.
+   */
+  SimulatedCardReader(String name, SimulatedCalypsoCard card) {
+    this.name = name;
+    this.card = card;
+  }
+
+  /**
+   * Sets the time spent by the card to process each APDU.
+   *
+   * @param latency The latency (0 for none).
+   * @param unit The unit of the latency.
+   * @return The current instance.
+   */
+  SimulatedCardReader setApduLatency(long latency, TimeUnit unit) {
+    apduLatencyNanos = unit.toNanos(latency);
+    return this;
+  }
+
+  /**
+   * Returns the inserted card.
+   *
+   * @return A not null reference.
+   */
+  SimulatedCalypsoCard getCard() {
+    return card;
+  }
+
+  /**
+   * Returns the number of APDUs transmitted to the card since the creation of the reader.
+   *
+   * @return A positive number.
+   */
+  long getTransmittedApdusCount() {
+    return transmittedApdusCount.get();
+  }
+
+  /**
+   * Returns true if the logical channel has been left open by the last card request.
+   *
+   * @return True if the logical channel is open.
+   */
+  boolean isLogicalChannelOpen() {
+    return isLogicalChannelOpen;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public boolean isContactless() {
+    return true;
+  }
+
+  @Override
+  public boolean isCardPresent() {
+    return true;
+  }
+
+  @Override
+  public CardResponseApi transmitCardRequest(
+      CardRequestSpi cardRequest, ChannelControl channelControl)
+      throws UnexpectedStatusWordException {
+    List<ApduRequestSpi> apduRequests = cardRequest.getApduRequests();
+    List<ApduResponseApi> apduResponses = new ArrayList<>(apduRequests.size());
+    for (int i = 0; i < apduRequests.size(); i++) {
+      ApduRequestSpi apduRequest = apduRequests.get(i);
+      if (apduLatencyNanos > 0) {
+        LockSupport.parkNanos(apduLatencyNanos);
+      }
+      ApduResponseApi apduResponse =
+          new TestDtoAdapters.ApduResponseAdapter(card.processApdu(apduRequest.getApdu()));
+      transmittedApdusCount.incrementAndGet();
+      apduResponses.add(apduResponse);
+      if (cardRequest.stopOnUnsuccessfulStatusWord()
+          && !apduRequest.getSuccessfulStatusWords().contains(apduResponse.getStatusWord())) {
+        isLogicalChannelOpen = true;
+        throw new UnexpectedStatusWordException(
+            new TestDtoAdapters.CardResponseAdapter(apduResponses, true),
+            i == apduRequests.size() - 1,
+            "Unexpected status word: " + HexUtil.toHex(apduResponse.getStatusWord()) + "h");
+      }
+    }
+    isLogicalChannelOpen = channelControl == ChannelControl.KEEP_OPEN;
+    return new TestDtoAdapters.CardResponseAdapter(apduResponses, isLogicalChannelOpen);
+  }
+
+  @Override
+  public void releaseChannel() {
+    isLogicalChannelOpen = false;
+  }
+}
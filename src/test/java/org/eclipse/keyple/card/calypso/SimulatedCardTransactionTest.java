@@ -0,0 +1,994 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.eclipse.keyple.card.calypso.SimulatedCardFixture.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.CalypsoCardApiFactory;
+import org.eclipse.keypop.calypso.card.GetDataTag;
+import org.eclipse.keypop.calypso.card.WriteAccessLevel;
+import org.eclipse.keypop.calypso.card.card.ElementaryFile;
+import org.eclipse.keypop.calypso.card.transaction.AsymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.ChannelControl;
+import org.eclipse.keypop.calypso.card.transaction.CryptoIOException;
+import org.eclipse.keypop.calypso.card.transaction.FreeTransactionManager;
+import org.eclipse.keypop.calypso.card.transaction.InvalidCertificateException;
+import org.eclipse.keypop.calypso.card.transaction.SearchCommandData;
+import org.eclipse.keypop.calypso.card.transaction.SecurePkiModeTransactionManager;
+import org.eclipse.keypop.calypso.card.transaction.SecureRegularModeTransactionManager;
+import org.eclipse.keypop.calypso.card.transaction.SessionBufferOverflowException;
+import org.eclipse.keypop.calypso.card.transaction.SvAction;
+import org.eclipse.keypop.calypso.card.transaction.SvOperation;
+import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
+import org.eclipse.keypop.calypso.card.transaction.UnexpectedCommandStatusException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SimulatedCardTransactionTest {
+
+  private CalypsoCardApiFactory calypsoCardApiFactory;
+  private SymmetricCryptoSecuritySetting symmetricCryptoSecuritySetting;
+  private AsymmetricCryptoSecuritySetting asymmetricCryptoSecuritySetting;
+
+  @Before
+  public void setUp() {
+    calypsoCardApiFactory = CalypsoExtensionService.getInstance().getCalypsoCardApiFactory();
+    symmetricCryptoSecuritySetting = createSymmetricCryptoSecuritySetting();
+    asymmetricCryptoSecuritySetting = createAsymmetricCryptoSecuritySetting();
+  }
+
+  private void processSecureRegularModeValidation(SimulatedCardReader cardReader) throws Exception {
+    calypsoCardApiFactory
+        .createSecureRegularModeTransactionManager(
+            cardReader, selectCard(cardReader), symmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+  }
+
+  @Test
+  public void freeTransaction_shouldReadAndModifyTheSimulatedCard() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    CalypsoCardAdapter card = selectCard(cardReader);
+    calypsoCardApiFactory
+        .createFreeTransactionManager(cardReader, card)
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .prepareReadRecords(SFI_CONTRACTS, 1, NB_CONTRACTS, RECORD_SIZE)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 10)
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(card.getFileBySfi(SFI_ENVIRONMENT).getData().getContent())
+        .isEqualTo(cardReader.getCard().getRecord(SFI_ENVIRONMENT, 1));
+    assertThat(card.getFileBySfi(SFI_CONTRACTS).getData().getContent(NB_CONTRACTS))
+        .isEqualTo(cardReader.getCard().getRecord(SFI_CONTRACTS, NB_CONTRACTS));
+    assertThat(card.getFileBySfi(SFI_COUNTERS).getData().getContentAsCounterValue(1))
+        .isEqualTo(990);
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(990);
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+    assertThat(cardReader.isLogicalChannelOpen()).isFalse();
+  }
+
+  @Test
+  public void secureRegularModeTransaction_shouldCommitTheModificationsOnTheCard()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    processSecureRegularModeValidation(cardReader);
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(999);
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+    assertThat(cardReader.getCard().isSessionOpen()).isFalse();
+  }
+
+  @Test
+  public void secureExtendedModeTransaction_whenSvReloadInSession_shouldUpdateTheBalance()
+      throws Exception {
+    SimulatedCardReader cardReader =
+        createCardReader(SimulatedCalypsoCard.APP_TYPE_EXTENDED_WITH_SV);
+    CalypsoCardAdapter card = selectCard(cardReader);
+    calypsoCardApiFactory
+        .createSecureExtendedModeTransactionManager(
+            cardReader, card, symmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession(WriteAccessLevel.LOAD)
+        .prepareSvGet(SvOperation.RELOAD, SvAction.DO)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareSvReload(100)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(card.getSvBalance()).isEqualTo(600);
+    assertThat(cardReader.getCard().getSvBalance()).isEqualTo(600);
+  }
+
+  @Test
+  public void secureRegularModeTransaction_whenSvDebitOutsideSession_shouldUpdateTheBalance()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_WITH_SV);
+    calypsoCardApiFactory
+        .createSecureRegularModeTransactionManager(
+            cardReader, selectCard(cardReader), symmetricCryptoSecuritySetting)
+        .prepareSvGet(SvOperation.DEBIT, SvAction.DO)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareSvDebit(50)
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader.getCard().getSvBalance()).isEqualTo(450);
+  }
+
+  @Test
+  public void securePkiModeTransaction_shouldCommitTheModificationsOnTheCard() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    calypsoCardApiFactory
+        .createSecurePkiModeTransactionManager(
+            cardReader, selectCard(cardReader), asymmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession()
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 5)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(995);
+  }
+
+  @Test
+  public void securePkiModeTransaction_whenManagerIsRebound_shouldCommitEachTransaction()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    SecurePkiModeTransactionManager transactionManager =
+        calypsoCardApiFactory.createSecurePkiModeTransactionManager(
+            cardReader, selectCard(cardReader), asymmetricCryptoSecuritySetting);
+    TransactionManagerExtension<SecurePkiModeTransactionManager> extension =
+        CalypsoExtensionService.getInstance().getTransactionManagerExtension(transactionManager);
+    for (int i = 0; i < 2; i++) {
+      extension
+          .rebind(selectCard(cardReader))
+          .prepareOpenSecureSession()
+          .prepareReadCounter(SFI_COUNTERS, 1)
+          .processCommands(ChannelControl.KEEP_OPEN)
+          .prepareDecreaseCounter(SFI_COUNTERS, 1, 5)
+          .prepareCloseSecureSession()
+          .processCommands(ChannelControl.CLOSE_AFTER);
+    }
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(990);
+  }
+
+  @Test
+  public void prepareCancelSecureSession_shouldRollbackTheModificationsOnTheCard()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    calypsoCardApiFactory
+        .createSecureRegularModeTransactionManager(
+            cardReader, selectCard(cardReader), symmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareCancelSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(1000);
+    assertThat(cardReader.getCard().isSessionOpen()).isFalse();
+  }
+
+  @Test
+  public void prepareSearchRecords_shouldReturnTheMatchingRecords() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SearchCommandData searchCommandData =
+        calypsoCardApiFactory
+            .createSearchCommandData()
+            .setSfi(SFI_CONTRACTS)
+            .setOffset(1)
+            .setSearchData(new byte[] {0x02})
+            .fetchFirstMatchingResult();
+    CalypsoCardAdapter card = selectCard(cardReader);
+    calypsoCardApiFactory
+        .createFreeTransactionManager(cardReader, card)
+        .prepareSearchRecords(searchCommandData)
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(searchCommandData.getMatchingRecordNumbers()).containsExactly(2);
+    assertThat(card.getFileBySfi(SFI_CONTRACTS).getData().getContent(2))
+        .isEqualTo(cardReader.getCard().getRecord(SFI_CONTRACTS, 2));
+  }
+
+  @Test
+  public void processCommands_whenCardReturnsAnErrorStatusWord_shouldThrowUCSE() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    assertThatThrownBy(
+            () ->
+                calypsoCardApiFactory
+                    .createFreeTransactionManager(cardReader, selectCard(cardReader))
+                    .prepareDecreaseCounter(SFI_COUNTERS, 1, 2000)
+                    .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+                    .processCommands(ChannelControl.CLOSE_AFTER))
+        .isInstanceOf(UnexpectedCommandStatusException.class);
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(1000);
+    assertThat(cardReader.getTransmittedApdusCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void secureRegularModeTransaction_whenRunConcurrentlyOnManyCards_shouldCommitAll()
+      throws Exception {
+    final int nbCards = 8;
+    final int nbTransactionsPerCard = 50;
+    List<SimulatedCardReader> cardReaders = new ArrayList<>(nbCards);
+    List<Callable<Void>> tasks = new ArrayList<>(nbCards);
+    for (int i = 0; i < nbCards; i++) {
+      final SimulatedCardReader cardReader =
+          createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR)
+              .setApduLatency(10, TimeUnit.MICROSECONDS);
+      cardReaders.add(cardReader);
+      tasks.add(
+          () -> {
+            for (int j = 0; j < nbTransactionsPerCard; j++) {
+              processSecureRegularModeValidation(cardReader);
+            }
+            return null;
+          });
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(nbCards);
+    try {
+      for (Future<Void> future : executorService.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    for (SimulatedCardReader cardReader : cardReaders) {
+      assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1))
+          .isEqualTo(1000 - nbTransactionsPerCard);
+    }
+  }
+
+  @Test
+  public void restoreState_shouldRestoreTheContentOfTheCard() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SimulatedCalypsoCard.State state = cardReader.getCard().saveState();
+    processSecureRegularModeValidation(cardReader);
+    cardReader.getCard().restoreState(state);
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(1000);
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).isEqualTo(new byte[RECORD_SIZE]);
+  }
+
+  private static final byte[] LONG_RECORD = new byte[29];
+  private static final byte[] SHORT_RECORD = new byte[14];
+
+  /**
+   * Prepares, in a single secure session, the update of 25 records: a short one, 23 long ones and a
+   * short one. With a 430 bytes modifications buffer, the greedy split needs 3 sessions while 2 are
+   * enough.
+   */
+  private static int processLargeBatch(
+      SimulatedCardReader cardReader,
+      SymmetricCryptoSecuritySetting securitySetting,
+      boolean isSessionPackingEnabled)
+      throws Exception {
+    CalypsoCardAdapter card = selectCard(cardReader);
+    assertThat(card.isModificationsCounterInBytes()).isTrue();
+    assertThat(card.getModificationsCounter()).isEqualTo(430);
+    SecureRegularModeTransactionManager transactionManager =
+        CalypsoExtensionService.getInstance()
+            .getCalypsoCardApiFactory()
+            .createSecureRegularModeTransactionManager(cardReader, card, securitySetting);
+    CalypsoExtensionService.getInstance()
+        .getSecureSymmetricCryptoTransactionManagerExtension(transactionManager)
+        .setSessionPackingEnabled(isSessionPackingEnabled)
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT);
+    for (int sfi = 1; sfi <= 25; sfi++) {
+      transactionManager.prepareUpdateRecord(
+          (byte) sfi, 1, sfi == 1 || sfi == 25 ? SHORT_RECORD : LONG_RECORD);
+    }
+    transactionManager.prepareCloseSecureSession().processCommands(ChannelControl.CLOSE_AFTER);
+    int nbSessions = 0;
+    List<byte[]> auditData = transactionManager.getTransactionAuditData();
+    for (int i = 0; i < auditData.size(); i += 2) {
+      if (auditData.get(i)[1] == (byte) 0x8A) {
+        nbSessions++;
+      }
+    }
+    return nbSessions;
+  }
+
+  private static SimulatedCardReader createCardReaderWithManyFiles() {
+    SimulatedCalypsoCard card =
+        new SimulatedCalypsoCard(SERIAL_NUMBER, SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    for (int sfi = 1; sfi <= 25; sfi++) {
+      card.addFile(0x2100 + sfi, (byte) sfi, ElementaryFile.Type.LINEAR, RECORD_SIZE, 1);
+    }
+    return new SimulatedCardReader("SIMULATED_READER", card);
+  }
+
+  @Test
+  public void processCommands_whenSessionPackingIsDisabled_shouldSplitGreedily() throws Exception {
+    assertThat(
+            processLargeBatch(
+                createCardReaderWithManyFiles(),
+                calypsoCardApiFactory
+                    .createSymmetricCryptoSecuritySetting(
+                        new SimulatedCryptoServices.SymmetricFactory())
+                    .enableMultipleSession(),
+                false))
+        .isEqualTo(3);
+  }
+
+  @Test
+  public void processCommands_whenSessionPackingIsEnabled_shouldUseFewerSessions()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReaderWithManyFiles();
+    assertThat(
+            processLargeBatch(
+                cardReader,
+                calypsoCardApiFactory
+                    .createSymmetricCryptoSecuritySetting(
+                        new SimulatedCryptoServices.SymmetricFactory())
+                    .enableMultipleSession(),
+                true))
+        .isEqualTo(2);
+    assertThat(cardReader.getCard().isSessionOpen()).isFalse();
+    for (int sfi = 1; sfi <= 25; sfi++) {
+      assertThat(cardReader.getCard().getRecord((byte) sfi, 1)).isNotNull();
+    }
+  }
+
+  @Test
+  public void processCommands_whenSessionPackingReordersCommands_shouldKeepTheOrderPerEf()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReaderWithManyFiles();
+    CalypsoCardAdapter card = selectCard(cardReader);
+    SecureRegularModeTransactionManager transactionManager =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader,
+            card,
+            calypsoCardApiFactory
+                .createSymmetricCryptoSecuritySetting(
+                    new SimulatedCryptoServices.SymmetricFactory())
+                .enableMultipleSession());
+    CalypsoExtensionService.getInstance()
+        .getSecureSymmetricCryptoTransactionManagerExtension(transactionManager)
+        .setSessionPackingEnabled(true)
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT);
+    for (int i = 0; i < 12; i++) {
+      transactionManager.prepareUpdateRecord((byte) 1, 1, new byte[] {(byte) i});
+      transactionManager.prepareUpdateRecord((byte) 2, 1, LONG_RECORD);
+    }
+    transactionManager.prepareReadRecord((byte) 1, 1);
+    transactionManager.prepareCloseSecureSession().processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader.getCard().getRecord((byte) 1, 1)).startsWith(11);
+    assertThat(card.getFileBySfi((byte) 1).getData().getContent()).startsWith(11);
+  }
+
+  @Test
+  public void
+      processCommands_whenSessionPackingAndUpdateBinaryBeyondOffset255_shouldKeepTheEfSelection()
+          throws Exception {
+    SimulatedCalypsoCard simulatedCard =
+        new SimulatedCalypsoCard(SERIAL_NUMBER, SimulatedCalypsoCard.APP_TYPE_REGULAR)
+            .addFile(0x2101, 1, ElementaryFile.Type.BINARY, 100, 4);
+    for (int sfi = 2; sfi <= 13; sfi++) {
+      simulatedCard.addFile(0x2100 + sfi, sfi, ElementaryFile.Type.LINEAR, RECORD_SIZE, 1);
+    }
+    SimulatedCardReader cardReader = new SimulatedCardReader("SIMULATED_READER", simulatedCard);
+    SecureRegularModeTransactionManager transactionManager =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader,
+            selectCard(cardReader),
+            calypsoCardApiFactory
+                .createSymmetricCryptoSecuritySetting(
+                    new SimulatedCryptoServices.SymmetricFactory())
+                .enableMultipleSession());
+    CalypsoExtensionService.getInstance()
+        .getSecureSymmetricCryptoTransactionManagerExtension(transactionManager)
+        .setSessionPackingEnabled(true)
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT);
+    // 11 records of 35 bytes then a record of 35 bytes: 10 bytes left in the buffer
+    for (int sfi = 3; sfi <= 13; sfi++) {
+      transactionManager.prepareUpdateRecord((byte) sfi, 1, LONG_RECORD);
+    }
+    byte[] record = new byte[RECORD_SIZE];
+    Arrays.fill(record, (byte) 0x22);
+    transactionManager.prepareUpdateRecord((byte) 2, 1, record);
+    // Preceded by a "Read Binary" of SFI 1 selecting the EF, and needs a new session (46 bytes)
+    byte[] data = new byte[40];
+    Arrays.fill(data, (byte) 0x11);
+    transactionManager
+        .prepareUpdateBinary((byte) 1, 300, data)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(Arrays.copyOfRange(simulatedCard.getBinary(1), 300, 340)).isEqualTo(data);
+    assertThat(simulatedCard.getRecord(2, 1)).isEqualTo(record);
+  }
+
+  @Test
+  public void
+      prepareCloseSecureSession_whenSessionPackingNeedsANewSessionAndMultipleSessionIsDisabled_shouldThrowSBOE()
+          throws Exception {
+    SimulatedCardReader cardReader = createCardReaderWithManyFiles();
+    SecureRegularModeTransactionManagerAdapter transactionManager =
+        (SecureRegularModeTransactionManagerAdapter)
+            calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+                cardReader, selectCard(cardReader), symmetricCryptoSecuritySetting);
+    transactionManager
+        .setSessionPackingEnabled(true)
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT);
+    for (int sfi = 1; sfi <= 13; sfi++) {
+      transactionManager.prepareUpdateRecord((byte) sfi, 1, LONG_RECORD);
+    }
+    assertThatThrownBy(transactionManager::prepareCloseSecureSession)
+        .isInstanceOf(SessionBufferOverflowException.class);
+  }
+
+  @Test
+  public void freeTransaction_whenReadThroughCacheIsEnabled_shouldNotReadTheKnownRecordsAgain()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    CalypsoCardAdapter card = selectCard(cardReader);
+    FreeTransactionManager transactionManager =
+        calypsoCardApiFactory.createFreeTransactionManager(cardReader, card);
+    CalypsoExtensionService.getInstance()
+        .getTransactionManagerExtension(transactionManager)
+        .setReadThroughCacheEnabled(true)
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .prepareReadRecords(SFI_CONTRACTS, 1, 2, RECORD_SIZE)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    long nbApdus = cardReader.getTransmittedApdusCount();
+
+    transactionManager
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .prepareReadRecords(SFI_CONTRACTS, 1, 3, RECORD_SIZE)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    assertThat(cardReader.getTransmittedApdusCount()).isEqualTo(nbApdus + 1);
+    assertThat(card.getFileBySfi(SFI_CONTRACTS).getData().getContent(3))
+        .isEqualTo(cardReader.getCard().getRecord(SFI_CONTRACTS, 3));
+
+    transactionManager
+        .prepareUpdateRecord(SFI_ENVIRONMENT, 1, new byte[] {0x01})
+        .processCommands(ChannelControl.KEEP_OPEN);
+    transactionManager
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader.getTransmittedApdusCount()).isEqualTo(nbApdus + 3);
+    assertThat(card.getFileBySfi(SFI_ENVIRONMENT).getData().getContent())
+        .isEqualTo(cardReader.getCard().getRecord(SFI_ENVIRONMENT, 1));
+  }
+
+  @Test
+  public void freeTransaction_whenCurrentEfModificationIsPrepared_shouldNotUseTheCardImage()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    FreeTransactionManagerAdapter transactionManager =
+        (FreeTransactionManagerAdapter)
+            calypsoCardApiFactory.createFreeTransactionManager(cardReader, selectCard(cardReader));
+    transactionManager
+        .setReadThroughCacheEnabled(true)
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    transactionManager
+        .prepareUpdateRecord((byte) 0, 1, new byte[] {0x01})
+        .prepareReadRecord(SFI_ENVIRONMENT, 1);
+    assertThat(transactionManager.commands).hasSize(2);
+  }
+
+  @Test
+  public void freeTransaction_whenReadThroughCacheIsDisabled_shouldReadTheRecordsAgain()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    FreeTransactionManager transactionManager =
+        calypsoCardApiFactory.createFreeTransactionManager(cardReader, selectCard(cardReader));
+    transactionManager
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareReadRecord(SFI_ENVIRONMENT, 1)
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader.getTransmittedApdusCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void secureTransaction_whenReadThroughCacheIsEnabled_shouldReadTheRecordsInTheSession()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    CalypsoCardAdapter card = selectCard(cardReader);
+    SecureRegularModeTransactionManagerAdapter transactionManager =
+        (SecureRegularModeTransactionManagerAdapter)
+            calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+                cardReader, card, symmetricCryptoSecuritySetting);
+    transactionManager
+        .setReadThroughCacheEnabled(true)
+        .prepareReadRecords(SFI_CONTRACTS, 1, 1, RECORD_SIZE)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    long nbApdus = cardReader.getTransmittedApdusCount();
+    transactionManager
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareReadRecords(SFI_CONTRACTS, 1, 1, RECORD_SIZE)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    // The record is read again by the "Open Secure Session" command
+    assertThat(cardReader.getTransmittedApdusCount()).isEqualTo(nbApdus + 2);
+    assertThat(transactionManager.getTransactionAuditData().get(2 * (int) nbApdus)[3])
+        .isEqualTo((byte) (SFI_CONTRACTS * 8 + 1));
+  }
+
+  @Test
+  public void processCommandsAsync_shouldProcessTheCommandsOnTheExecutor() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    CalypsoCardAdapter card = selectCard(cardReader);
+    FreeTransactionManager transactionManager =
+        calypsoCardApiFactory.createFreeTransactionManager(cardReader, card);
+    TransactionManagerExtension<FreeTransactionManager> extension =
+        CalypsoExtensionService.getInstance().getTransactionManagerExtension(transactionManager);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      transactionManager.prepareDecreaseCounter(SFI_COUNTERS, 1, 10);
+      FreeTransactionManager result =
+          extension
+              .processCommandsAsync(ChannelControl.KEEP_OPEN, executor)
+              .thenCompose(
+                  tm -> {
+                    tm.prepareAppendRecord(SFI_EVENT_LOG, EVENT);
+                    return extension.processCommandsAsync(ChannelControl.CLOSE_AFTER, executor);
+                  })
+              .get(5, TimeUnit.SECONDS);
+      assertThat(result).isSameAs(transactionManager);
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(990);
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+    assertThat(cardReader.isLogicalChannelOpen()).isFalse();
+  }
+
+  @Test
+  public void processCommandsAsync_whenProcessingFails_shouldCompleteExceptionally()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    FreeTransactionManagerAdapter transactionManager =
+        (FreeTransactionManagerAdapter)
+            calypsoCardApiFactory.createFreeTransactionManager(cardReader, selectCard(cardReader));
+    transactionManager.prepareDecreaseCounter((byte) 0x1E, 1, 10);
+    CompletableFuture<FreeTransactionManager> future =
+        transactionManager.processCommandsAsync(ChannelControl.CLOSE_AFTER, Runnable::run);
+    assertThat(future).isCompletedExceptionally();
+    assertThatThrownBy(future::join).hasCauseInstanceOf(UnexpectedCommandStatusException.class);
+    // The manager is available again
+    transactionManager.prepareReadRecord(SFI_ENVIRONMENT, 1);
+    transactionManager.processCommandsAsync(ChannelControl.CLOSE_AFTER, Runnable::run).join();
+  }
+
+  @Test
+  public void processCommandsAsync_whenAProcessingIsInProgress_shouldThrowISE() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    FreeTransactionManagerAdapter transactionManager =
+        (FreeTransactionManagerAdapter)
+            calypsoCardApiFactory.createFreeTransactionManager(cardReader, selectCard(cardReader));
+    List<Runnable> tasks = new ArrayList<>();
+    transactionManager.processCommandsAsync(ChannelControl.KEEP_OPEN, tasks::add);
+    assertThatThrownBy(
+            () -> transactionManager.processCommandsAsync(ChannelControl.KEEP_OPEN, tasks::add))
+        .isInstanceOf(IllegalStateException.class);
+    tasks.get(0).run();
+    assertThat(transactionManager.processCommandsAsync(ChannelControl.KEEP_OPEN, Runnable::run))
+        .isCompleted();
+  }
+
+  @Test
+  public void secureTransaction_whenCryptoServiceExecutorIsSet_shouldProduceTheSameCardContent()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SecureRegularModeTransactionManager transactionManager =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader, selectCard(cardReader), symmetricCryptoSecuritySetting);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CalypsoExtensionService.getInstance()
+          .getSecureSymmetricCryptoTransactionManagerExtension(transactionManager)
+          .setCryptoServiceExecutor(executor)
+          .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+          .prepareReadRecord(SFI_ENVIRONMENT, 1)
+          .prepareReadCounter(SFI_COUNTERS, 1)
+          .processCommands(ChannelControl.KEEP_OPEN)
+          .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+          .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+          .prepareCloseSecureSession()
+          .processCommands(ChannelControl.CLOSE_AFTER);
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(999);
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+    assertThat(cardReader.getCard().isSessionOpen()).isFalse();
+  }
+
+  @Test
+  public void
+      secureTransaction_whenCryptoServiceExecutorIsSet_shouldRecordTheCryptoServiceApdusAsPairs()
+          throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SecureRegularModeTransactionManager transactionManager =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader,
+            selectCard(cardReader),
+            calypsoCardApiFactory.createSymmetricCryptoSecuritySetting(
+                new SimulatedCryptoServices.SymmetricFactory().enableSynchronizationRecording()));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CalypsoExtensionService.getInstance()
+          .getSecureSymmetricCryptoTransactionManagerExtension(transactionManager)
+          .setCryptoServiceExecutor(executor)
+          .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+          .prepareReadRecord(SFI_ENVIRONMENT, 1)
+          .processCommands(ChannelControl.KEEP_OPEN);
+      // The session is still open: the deferred operations are nevertheless completed
+      assertThat(transactionManager.getTransactionAuditData())
+          .hasSize(2 * ((int) cardReader.getTransmittedApdusCount() + 1));
+      assertThat(countSynchronizations(transactionManager.getTransactionAuditData())).isEqualTo(1);
+      transactionManager
+          .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+          .prepareCloseSecureSession()
+          .processCommands(ChannelControl.CLOSE_AFTER);
+    } finally {
+      executor.shutdown();
+    }
+    // One synchronization of the crypto service per call to processCommands
+    List<byte[]> auditData = transactionManager.getTransactionAuditData();
+    assertThat(auditData).hasSize(2 * ((int) cardReader.getTransmittedApdusCount() + 2));
+    assertThat(countSynchronizations(auditData)).isEqualTo(2);
+  }
+
+  private static int countSynchronizations(List<byte[]> auditData) {
+    int nbSynchronizations = 0;
+    for (int i = 0; i < auditData.size(); i += 2) {
+      if (auditData.get(i) == SimulatedCryptoServices.SymmetricFactory.SYNCHRONIZATION_REQUEST) {
+        assertThat(auditData.get(i + 1))
+            .isSameAs(SimulatedCryptoServices.SymmetricFactory.SYNCHRONIZATION_RESPONSE);
+        nbSynchronizations++;
+      }
+    }
+    return nbSynchronizations;
+  }
+
+  @Test
+  public void setCryptoServiceExecutor_whenSecureSessionIsOpen_shouldThrowISE() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SecureRegularModeTransactionManager transactionManager =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader, selectCard(cardReader), symmetricCryptoSecuritySetting);
+    SecureSymmetricCryptoTransactionManagerExtension<SecureRegularModeTransactionManager>
+        extension =
+            CalypsoExtensionService.getInstance()
+                .getSecureSymmetricCryptoTransactionManagerExtension(transactionManager);
+    transactionManager
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    assertThatThrownBy(() -> extension.setCryptoServiceExecutor(Runnable::run))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void secureTransaction_whenCryptoContextPrefetchIsEnabled_shouldPrepareTheNextTransaction()
+      throws Exception {
+    SimulatedCryptoServices.SymmetricFactory cryptoFactory =
+        new SimulatedCryptoServices.SymmetricFactory();
+    SymmetricCryptoSecuritySetting securitySetting =
+        calypsoCardApiFactory.createSymmetricCryptoSecuritySetting(cryptoFactory);
+    List<Runnable> tasks = new ArrayList<>();
+    CalypsoExtensionService.getInstance()
+        .getSymmetricCryptoSecuritySettingExtension(securitySetting)
+        .setCryptoContextPrefetchExecutor(tasks::add);
+    assertThat(tasks).hasSize(1);
+    tasks.get(0).run();
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SecureRegularModeTransactionManager transactionManager =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader, selectCard(cardReader), securitySetting);
+    transactionManager
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    assertThat(tasks).hasSize(1);
+    transactionManager.prepareCloseSecureSession().processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(tasks).hasSize(2);
+    assertThat(cardReader.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(999);
+  }
+
+  @Test
+  public void secureTransaction_whenCryptoModuleIsShared_shouldSerializeTheSecureSessions()
+      throws Exception {
+    SymmetricCryptoSecuritySetting securitySetting =
+        calypsoCardApiFactory.createSymmetricCryptoSecuritySetting(
+            new SimulatedCryptoServices.SymmetricFactory());
+    CalypsoExtensionService.getInstance()
+        .getSymmetricCryptoSecuritySettingExtension(securitySetting)
+        .enableCryptoModuleSharing(0);
+    SimulatedCardReader cardReader1 = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SimulatedCardReader cardReader2 = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SecureRegularModeTransactionManager transactionManager1 =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader1, selectCard(cardReader1), securitySetting);
+    SecureRegularModeTransactionManager transactionManager2 =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader2, selectCard(cardReader2), securitySetting);
+
+    transactionManager1
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    transactionManager2.prepareOpenSecureSession(WriteAccessLevel.DEBIT);
+    assertThatThrownBy(() -> transactionManager2.processCommands(ChannelControl.KEEP_OPEN))
+        .isInstanceOf(CryptoIOException.class);
+    assertThat(cardReader2.getCard().isSessionOpen()).isFalse();
+
+    transactionManager1
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    transactionManager2
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .processCommands(ChannelControl.KEEP_OPEN)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    assertThatThrownBy(
+            () ->
+                transactionManager1
+                    .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+                    .processCommands(ChannelControl.KEEP_OPEN))
+        .isInstanceOf(CryptoIOException.class);
+
+    transactionManager2.prepareCancelSecureSession().processCommands(ChannelControl.CLOSE_AFTER);
+    transactionManager1
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader1.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(999);
+    assertThat(cardReader2.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(1000);
+  }
+
+  @Test(timeout = 10000)
+  public void
+      secureTransaction_whenCryptoModuleIsSharedAndPrefetched_shouldNotWaitForThePrefetchInSession()
+          throws Exception {
+    SymmetricCryptoSecuritySetting securitySetting =
+        calypsoCardApiFactory.createSymmetricCryptoSecuritySetting(
+            new SimulatedCryptoServices.SymmetricFactory());
+    SymmetricCryptoSecuritySettingExtension securitySettingExtension =
+        CalypsoExtensionService.getInstance()
+            .getSymmetricCryptoSecuritySettingExtension(securitySetting);
+    List<Runnable> tasks = new ArrayList<>();
+    securitySettingExtension.enableCryptoModuleSharing(60000);
+    securitySettingExtension.setCryptoContextPrefetchExecutor(tasks::add);
+    tasks.get(0).run();
+    SimulatedCardReader cardReader1 = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SimulatedCardReader cardReader2 = createCardReader(SimulatedCalypsoCard.APP_TYPE_REGULAR);
+    SecureRegularModeTransactionManager transactionManager1 =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader1, selectCard(cardReader1), securitySetting);
+    SecureRegularModeTransactionManager transactionManager2 =
+        calypsoCardApiFactory.createSecureRegularModeTransactionManager(
+            cardReader2, selectCard(cardReader2), securitySetting);
+
+    transactionManager1
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareReadCounter(SFI_COUNTERS, 1)
+        .processCommands(ChannelControl.KEEP_OPEN);
+    // The preparation requested meanwhile waits for the crypto module held by the session
+    securitySetting.initCryptoContextForNextTransaction();
+    assertThat(tasks).hasSize(2);
+    transactionManager1
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+
+    tasks.get(1).run();
+    transactionManager2
+        .prepareOpenSecureSession(WriteAccessLevel.DEBIT)
+        .prepareDecreaseCounter(SFI_COUNTERS, 1, 1)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(cardReader1.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(999);
+    assertThat(cardReader2.getCard().getCounter(SFI_COUNTERS, 1)).isEqualTo(999);
+  }
+
+  @Test
+  public void securePkiModeTransaction_whenCardPublicKeyCacheIsEnabled_shouldReuseTheVerifiedKey()
+      throws Exception {
+    CalypsoExtensionService.getInstance()
+        .getAsymmetricCryptoSecuritySettingExtension(asymmetricCryptoSecuritySetting)
+        .enableCardPublicKeyCache(10, 60000);
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    CalypsoCardAdapter card1 = selectCard(cardReader);
+    calypsoCardApiFactory
+        .createSecurePkiModeTransactionManager(cardReader, card1, asymmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession()
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    CalypsoCardAdapter card2 = selectCard(cardReader);
+    calypsoCardApiFactory
+        .createSecurePkiModeTransactionManager(cardReader, card2, asymmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession()
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(card2.getCardPublicKeySpi()).isSameAs(card1.getCardPublicKeySpi());
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+    assertThat(cardReader.isLogicalChannelOpen()).isFalse();
+  }
+
+  @Test
+  public void securePkiModeTransaction_whenCardPublicKeyCacheIsDisabled_shouldVerifyTheKeyAgain()
+      throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    CalypsoCardAdapter card1 = selectCard(cardReader);
+    calypsoCardApiFactory
+        .createSecurePkiModeTransactionManager(cardReader, card1, asymmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession()
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    CalypsoCardAdapter card2 = selectCard(cardReader);
+    calypsoCardApiFactory
+        .createSecurePkiModeTransactionManager(cardReader, card2, asymmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession()
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(card2.getCardPublicKeySpi()).isNotSameAs(card1.getCardPublicKeySpi());
+    assertThat(cardReader.isLogicalChannelOpen()).isFalse();
+  }
+
+  @Test
+  public void
+      securePkiModeTransaction_whenCardCertificateIsReadDuringSelection_shouldNotReadItAgain()
+          throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    CalypsoCardSelectionExtensionAdapter cardSelectionExtension =
+        (CalypsoCardSelectionExtensionAdapter)
+            calypsoCardApiFactory.createCalypsoCardSelectionExtension();
+    cardSelectionExtension.prepareGetData(GetDataTag.CARD_CERTIFICATE);
+    CalypsoCardAdapter card = selectCard(cardReader, cardSelectionExtension);
+    assertThat(card.getCardCertificate())
+        .isEqualTo(SimulatedCryptoServices.buildCardCertificate(SERIAL_NUMBER));
+    long transmittedApdusCount = cardReader.getTransmittedApdusCount();
+    calypsoCardApiFactory
+        .createSecurePkiModeTransactionManager(cardReader, card, asymmetricCryptoSecuritySetting)
+        .prepareOpenSecureSession()
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    // Open, append and close only
+    assertThat(cardReader.getTransmittedApdusCount() - transmittedApdusCount).isEqualTo(3);
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+    assertThat(cardReader.isLogicalChannelOpen()).isFalse();
+  }
+
+  @Test
+  public void selection_whenCaCertificateIsNotAvailable_shouldLeaveItEmpty() throws Exception {
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    CalypsoCardSelectionExtensionAdapter cardSelectionExtension =
+        (CalypsoCardSelectionExtensionAdapter)
+            calypsoCardApiFactory.createCalypsoCardSelectionExtension();
+    cardSelectionExtension
+        .prepareGetData(GetDataTag.CA_CERTIFICATE)
+        .prepareGetData(GetDataTag.CARD_CERTIFICATE);
+    CalypsoCardAdapter card = selectCard(cardReader, cardSelectionExtension);
+    assertThat(card.getCaCertificate()).isEmpty();
+    assertThat(card.getCardCertificate()).isNotEmpty();
+  }
+
+  private CalypsoCardAdapter selectCardWithCardCertificate(SimulatedCardReader cardReader)
+      throws Exception {
+    CalypsoCardSelectionExtensionAdapter cardSelectionExtension =
+        (CalypsoCardSelectionExtensionAdapter)
+            calypsoCardApiFactory.createCalypsoCardSelectionExtension();
+    cardSelectionExtension.prepareGetData(GetDataTag.CARD_CERTIFICATE);
+    return selectCard(cardReader, cardSelectionExtension);
+  }
+
+  @Test
+  public void
+      securePkiModeTransaction_whenVerificationExecutorIsSet_shouldVerifyTheCertificateWhenPreparingTheSession()
+          throws Exception {
+    AtomicInteger verificationCount = new AtomicInteger();
+    CalypsoExtensionService.getInstance()
+        .getAsymmetricCryptoSecuritySettingExtension(asymmetricCryptoSecuritySetting)
+        .setCardCertificateVerificationExecutor(
+            task -> {
+              verificationCount.incrementAndGet();
+              task.run();
+            });
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    CalypsoCardAdapter card = selectCardWithCardCertificate(cardReader);
+    SecurePkiModeTransactionManager cardTransactionManager =
+        calypsoCardApiFactory
+            .createSecurePkiModeTransactionManager(
+                cardReader, card, asymmetricCryptoSecuritySetting)
+            .prepareOpenSecureSession();
+    assertThat(verificationCount).hasValue(1);
+    cardTransactionManager
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(card.getCardPublicKeySpi()).isNotNull();
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+    assertThat(cardReader.isLogicalChannelOpen()).isFalse();
+  }
+
+  @Test
+  public void
+      securePkiModeTransaction_whenVerificationExecutorIsSetAndCertificateNotReadAtSelection_shouldVerifyTheCertificateOnceRead()
+          throws Exception {
+    AtomicInteger verificationCount = new AtomicInteger();
+    CalypsoExtensionService.getInstance()
+        .getAsymmetricCryptoSecuritySettingExtension(asymmetricCryptoSecuritySetting)
+        .setCardCertificateVerificationExecutor(
+            task -> {
+              verificationCount.incrementAndGet();
+              task.run();
+            });
+    SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+    CalypsoCardAdapter card = selectCard(cardReader);
+    assertThat(card.getCardCertificate()).isEmpty();
+    SecurePkiModeTransactionManager cardTransactionManager =
+        calypsoCardApiFactory
+            .createSecurePkiModeTransactionManager(
+                cardReader, card, asymmetricCryptoSecuritySetting)
+            .prepareOpenSecureSession();
+    assertThat(verificationCount).hasValue(0);
+    cardTransactionManager
+        .prepareAppendRecord(SFI_EVENT_LOG, EVENT)
+        .prepareCloseSecureSession()
+        .processCommands(ChannelControl.CLOSE_AFTER);
+    assertThat(verificationCount).hasValue(1);
+    assertThat(card.getCardCertificate()).isNotEmpty();
+    assertThat(card.getCardPublicKeySpi()).isNotNull();
+    assertThat(cardReader.getCard().getRecord(SFI_EVENT_LOG, 1)).startsWith(EVENT);
+  }
+
+  @Test
+  public void
+      securePkiModeTransaction_whenCertificateVerifiedInBackgroundIsInvalid_shouldThrowInvalidCertificateException()
+          throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CalypsoExtensionService.getInstance()
+          .getAsymmetricCryptoSecuritySettingExtension(asymmetricCryptoSecuritySetting)
+          .setCardCertificateVerificationExecutor(executor);
+      SimulatedCardReader cardReader = createCardReader(SimulatedCalypsoCard.APP_TYPE_PKI);
+      cardReader
+          .getCard()
+          .setCardCertificate(
+              SimulatedCryptoServices.buildCardCertificate(
+                  HexUtil.toByteArray("00000000AABBCCDD")));
+      CalypsoCardAdapter card = selectCardWithCardCertificate(cardReader);
+      SecurePkiModeTransactionManager cardTransactionManager =
+          calypsoCardApiFactory
+              .createSecurePkiModeTransactionManager(
+                  cardReader, card, asymmetricCryptoSecuritySetting)
+              .prepareOpenSecureSession()
+              .prepareCloseSecureSession();
+      assertThatThrownBy(() -> cardTransactionManager.processCommands(ChannelControl.CLOSE_AFTER))
+          .isInstanceOf(InvalidCertificateException.class);
+      assertThat(card.getCardPublicKeySpi()).isNull();
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,328 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keypop.calypso.card.transaction.spi.AsymmetricCryptoCardTransactionManagerFactory;
+import org.eclipse.keypop.calypso.card.transaction.spi.CardCertificateParser;
+import org.eclipse.keypop.calypso.card.transaction.spi.CardTransactionCryptoExtension;
+import org.eclipse.keypop.calypso.card.transaction.spi.PcaCertificate;
+import org.eclipse.keypop.calypso.card.transaction.spi.SymmetricCryptoCardTransactionManagerFactory;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.CaCertificateContentSpi;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.CardCertificateParserSpi;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.CardCertificateSpi;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.CardPublicKeySpi;
+import org.eclipse.keypop.calypso.crypto.asymmetric.certificate.spi.PcaCertificateSpi;
+import org.eclipse.keypop.calypso.crypto.asymmetric.transaction.spi.AsymmetricCryptoCardTransactionManagerFactorySpi;
+import org.eclipse.keypop.calypso.crypto.asymmetric.transaction.spi.AsymmetricCryptoCardTransactionManagerSpi;
+import org.eclipse.keypop.calypso.crypto.symmetric.SvCommandSecurityDataApi;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerFactorySpi;
+import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerSpi;
+
+/**
+ * Fake implementations of the symmetric and asymmetric crypto SPIs, to be used with {@link
+ * SimulatedCalypsoCard} in load tests and benchmarks.
+ *
+ * <p>No cryptographic computation is performed: the session MAC is a simple running XOR of the
+ * exchanged APDUs and every signature or certificate is considered valid. This isolates the cost of
+ * the library itself from the cost of a real SAM or crypto provider.
+ */
+final class SimulatedCryptoServices {
+
+  static final byte[] PCA_PUBLIC_KEY_REFERENCE = new byte[29];
+
+  static {
+    Arrays.fill(PCA_PUBLIC_KEY_REFERENCE, (byte) 0x0B);
+  }
+
+  static final byte CARD_CERTIFICATE_TYPE = (byte) 0x90;
+
+  private SimulatedCryptoServices() {}
+
+  /**
+   * Builds a card certificate understood by {@link CardCertificateParserImpl}.
+   *
+   * @param serialNumber The 8-byte application serial number of the card.
+   * @return A 316-byte array.
+   */
+  static byte[] buildCardCertificate(byte[] serialNumber) {
+    byte[] cardCertificate = new byte[CalypsoCardConstant.CARD_CERTIFICATE_SIZE];
+    cardCertificate[0] = CARD_CERTIFICATE_TYPE;
+    System.arraycopy(serialNumber, 0, cardCertificate, 1, 8);
+    System.arraycopy(PCA_PUBLIC_KEY_REFERENCE, 0, cardCertificate, 9, 29);
+    return cardCertificate;
+  }
+
+  /** Symmetric crypto factory answering as a SAM C1 would (extended mode, 250-byte APDUs). */
+  static final class SymmetricFactory
+      implements SymmetricCryptoCardTransactionManagerFactory,
+          SymmetricCryptoCardTransactionManagerFactorySpi {
+
+    static final byte[] SYNCHRONIZATION_REQUEST = HexUtil.toByteArray("801C000000");
+    static final byte[] SYNCHRONIZATION_RESPONSE = HexUtil.toByteArray("9000");
+
+    private boolean isSynchronizationRecorded;
+
+    @Override
+    public boolean isExtendedModeSupported() {
+      return true;
+    }
+
+    @Override
+    public int getMaxCardApduLengthSupported() {
+      return 250;
+    }
+
+    @Override
+    public void preInitTerminalSessionContext() {
+      // NOP
+    }
+
+    @Override
+    public SymmetricCryptoCardTransactionManagerSpi createCardTransactionManager(
+        byte[] cardKeyDiversifier, boolean useExtendedMode, List<byte[]> transactionAuditData) {
+      return new SymmetricManager(
+          useExtendedMode, isSynchronizationRecorded ? transactionAuditData : null);
+    }
+
+    /**
+     * Makes the created managers record a pair of APDUs in the transaction audit data at each
+     * synchronization, as a SAM would.
+     */
+    SymmetricFactory enableSynchronizationRecording() {
+      isSynchronizationRecorded = true;
+      return this;
+    }
+  }
+
+  /** Symmetric crypto manager computing a trivial session MAC. */
+  static final class SymmetricManager
+      implements SymmetricCryptoCardTransactionManagerSpi, CardTransactionCryptoExtension {
+
+    private final int macLength;
+    private final byte[] mac;
+    private final List<byte[]> transactionAuditData;
+
+    private SymmetricManager(boolean isExtendedMode, List<byte[]> transactionAuditData) {
+      macLength = isExtendedMode ? 8 : 4;
+      mac = new byte[macLength];
+      this.transactionAuditData = transactionAuditData;
+    }
+
+    @Override
+    public byte[] initTerminalSecureSessionContext() {
+      return new byte[macLength];
+    }
+
+    @Override
+    public void initTerminalSessionMac(byte[] openSecureSessionDataOut, byte kif, byte kvc) {
+      Arrays.fill(mac, (byte) 0);
+      updateTerminalSessionMac(openSecureSessionDataOut);
+    }
+
+    @Override
+    public byte[] updateTerminalSessionMac(byte[] cardApdu) {
+      for (int i = 0; i < cardApdu.length; i++) {
+        mac[i % macLength] ^= cardApdu[i];
+      }
+      return cardApdu;
+    }
+
+    @Override
+    public byte[] finalizeTerminalSessionMac() {
+      return mac.clone();
+    }
+
+    @Override
+    public byte[] generateTerminalSessionMac() {
+      return mac.clone();
+    }
+
+    @Override
+    public void activateEncryption() {
+      // NOP
+    }
+
+    @Override
+    public void deactivateEncryption() {
+      // NOP
+    }
+
+    @Override
+    public boolean isCardSessionMacValid(byte[] cardSessionMac) {
+      return true;
+    }
+
+    @Override
+    public void computeSvCommandSecurityData(SvCommandSecurityDataApi data) {
+      data.setSerialNumber(new byte[4]);
+      data.setTransactionNumber(new byte[3]);
+      data.setTerminalChallenge(new byte[3]);
+      data.setTerminalSvMac(new byte[macLength == 8 ? 10 : 5]);
+    }
+
+    @Override
+    public boolean isCardSvMacValid(byte[] cardSvMac) {
+      return true;
+    }
+
+    @Override
+    public byte[] cipherPinForPresentation(byte[] cardChallenge, byte[] pin, Byte kif, Byte kvc) {
+      return new byte[8];
+    }
+
+    @Override
+    public byte[] cipherPinForModification(
+        byte[] cardChallenge, byte[] currentPin, byte[] newPin, Byte kif, Byte kvc) {
+      return new byte[16];
+    }
+
+    @Override
+    public byte[] generateCipheredCardKey(
+        byte[] cardChallenge,
+        byte issuerKeyKif,
+        byte issuerKeyKvc,
+        byte targetKeyKif,
+        byte targetKeyKvc) {
+      return new byte[32];
+    }
+
+    @Override
+    public void synchronize() {
+      if (transactionAuditData != null) {
+        transactionAuditData.add(SymmetricFactory.SYNCHRONIZATION_REQUEST);
+        transactionAuditData.add(SymmetricFactory.SYNCHRONIZATION_RESPONSE);
+      }
+    }
+  }
+
+  /** Asymmetric crypto factory. */
+  static final class AsymmetricFactory
+      implements AsymmetricCryptoCardTransactionManagerFactory,
+          AsymmetricCryptoCardTransactionManagerFactorySpi {
+
+    @Override
+    public AsymmetricCryptoCardTransactionManagerSpi createCardTransactionManager() {
+      return new AsymmetricManager();
+    }
+  }
+
+  /** Asymmetric crypto manager accepting any card session signature. */
+  static final class AsymmetricManager
+      implements AsymmetricCryptoCardTransactionManagerSpi, CardTransactionCryptoExtension {
+
+    @Override
+    public void initTerminalPkiSession(CardPublicKeySpi cardPublicKey) {
+      // NOP
+    }
+
+    @Override
+    public void updateTerminalPkiSession(byte[] cardApdu) {
+      // NOP
+    }
+
+    @Override
+    public boolean isCardPkiSessionValid(byte[] cardSessionSignature) {
+      return true;
+    }
+  }
+
+  /** Root certificate whose content exposes {@link #PCA_PUBLIC_KEY_REFERENCE}. */
+  static final class Pca implements PcaCertificate, PcaCertificateSpi, CaCertificateContentSpi {
+
+    @Override
+    public CaCertificateContentSpi checkCertificateAndGetContent() {
+      return this;
+    }
+
+    @Override
+    public byte[] getPublicKeyReference() {
+      return PCA_PUBLIC_KEY_REFERENCE;
+    }
+  }
+
+  /**
+   * Parser of the card certificates built by {@link #buildCardCertificate(byte[])} (type, serial
+   * number and issuer key reference).
+   */
+  static final class CardCertificateParserImpl
+      implements CardCertificateParser, CardCertificateParserSpi {
+
+    private final long verificationLatencyNanos;
+
+    /** Builds a new parser of certificates verified without latency. */
+    CardCertificateParserImpl() {
+      this(0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Builds a new parser of certificates whose verification takes the provided time, as a real
+     * signature verification would.
+     *
+     * @param verificationLatency The latency (0 for none).
+     * @param unit The unit of the latency.
+     */
+    CardCertificateParserImpl(long verificationLatency, TimeUnit unit) {
+      verificationLatencyNanos = unit.toNanos(verificationLatency);
+    }
+
+    @Override
+    public byte getCertificateType() {
+      return CARD_CERTIFICATE_TYPE;
+    }
+
+    @Override
+    public CardCertificateSpi parseCertificate(byte[] cardCertificate) {
+      return new CardCertificateImpl(
+          Arrays.copyOfRange(cardCertificate, 1, 9),
+          Arrays.copyOfRange(cardCertificate, 9, 38),
+          verificationLatencyNanos);
+    }
+  }
+
+  /** Parsed card certificate. */
+  static final class CardCertificateImpl implements CardCertificateSpi, CardPublicKeySpi {
+
+    private final byte[] cardSerialNumber;
+    private final byte[] issuerPublicKeyReference;
+    private final long verificationLatencyNanos;
+
+    private CardCertificateImpl(
+        byte[] cardSerialNumber, byte[] issuerPublicKeyReference, long verificationLatencyNanos) {
+      this.cardSerialNumber = cardSerialNumber;
+      this.issuerPublicKeyReference = issuerPublicKeyReference;
+      this.verificationLatencyNanos = verificationLatencyNanos;
+    }
+
+    @Override
+    public byte[] getIssuerPublicKeyReference() {
+      return issuerPublicKeyReference;
+    }
+
+    @Override
+    public byte[] getCardSerialNumber() {
+      return cardSerialNumber;
+    }
+
+    @Override
+    public CardPublicKeySpi checkCertificateAndGetPublicKey(CaCertificateContentSpi issuer) {
+      if (verificationLatencyNanos > 0) {
+        LockSupport.parkNanos(verificationLatencyNanos);
+      }
+      return this;
+    }
+  }
+}
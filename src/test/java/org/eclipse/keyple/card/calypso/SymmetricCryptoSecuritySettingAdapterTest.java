@@ -15,8 +15,13 @@
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.keypop.calypso.card.transaction.SymmetricCryptoSecuritySetting;
 import org.eclipse.keypop.calypso.card.transaction.spi.SymmetricCryptoCardTransactionManagerFactory;
+import org.eclipse.keypop.calypso.crypto.symmetric.SymmetricCryptoIOException;
 import org.eclipse.keypop.calypso.crypto.symmetric.spi.SymmetricCryptoCardTransactionManagerFactorySpi;
 import org.junit.Before;
 import org.junit.Test;
@@ -55,4 +60,71 @@ public void initCryptoContextForNextTransaction_shouldRequestCryptoModule() thro
     verify(symmetricCryptoCardTransactionManagerFactory).preInitTerminalSessionContext();
     verifyNoMoreInteractions(symmetricCryptoCardTransactionManagerFactory);
   }
+
+  @Test
+  public void setCryptoContextPrefetchExecutor_shouldPrepareTheCryptoContextInTheBackground()
+      throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+
+    CalypsoExtensionService.getInstance()
+        .getSymmetricCryptoSecuritySettingExtension(cardSecuritySetting)
+        .setCryptoContextPrefetchExecutor(tasks::add);
+    verifyNoInteractions(symmetricCryptoCardTransactionManagerFactory);
+    assertEquals(1, tasks.size());
+
+    tasks.get(0).run();
+    verify(symmetricCryptoCardTransactionManagerFactory).preInitTerminalSessionContext();
+  }
+
+  @Test
+  public void prefetchCryptoContextIfEnabled_whenAPreparationIsPending_shouldNotScheduleANewOne() {
+    List<Runnable> tasks = new ArrayList<>();
+    SymmetricCryptoSecuritySettingAdapter adapter =
+        (SymmetricCryptoSecuritySettingAdapter) cardSecuritySetting;
+
+    adapter.prefetchCryptoContextIfEnabled();
+    assertTrue(tasks.isEmpty());
+
+    adapter.setCryptoContextPrefetchExecutor(tasks::add);
+    adapter.prefetchCryptoContextIfEnabled();
+    assertEquals(1, tasks.size());
+  }
+
+  @Test
+  public void initCryptoContextForNextTransaction_whenPrefetchFails_shouldNotThrow()
+      throws Exception {
+    doThrow(new SymmetricCryptoIOException("SAM removed"))
+        .when(symmetricCryptoCardTransactionManagerFactory)
+        .preInitTerminalSessionContext();
+    SymmetricCryptoSecuritySettingAdapter adapter =
+        (SymmetricCryptoSecuritySettingAdapter) cardSecuritySetting;
+
+    adapter.setCryptoContextPrefetchExecutor(Runnable::run);
+    adapter.initCryptoContextForNextTransaction();
+    adapter.awaitCryptoContextPrefetch();
+
+    verify(symmetricCryptoCardTransactionManagerFactory, times(2)).preInitTerminalSessionContext();
+  }
+
+  @Test
+  public void awaitCryptoContextPrefetch_whenCalledConcurrently_shouldWaitForThePreparation()
+      throws Exception {
+    List<Runnable> tasks = new ArrayList<>();
+    SymmetricCryptoSecuritySettingAdapter adapter =
+        (SymmetricCryptoSecuritySettingAdapter) cardSecuritySetting;
+    adapter.setCryptoContextPrefetchExecutor(tasks::add);
+
+    CompletableFuture<Void> firstWait =
+        CompletableFuture.runAsync(adapter::awaitCryptoContextPrefetch);
+    CompletableFuture<Void> secondWait =
+        CompletableFuture.runAsync(adapter::awaitCryptoContextPrefetch);
+    Thread.sleep(100);
+    assertFalse(firstWait.isDone());
+    assertFalse(secondWait.isDone());
+
+    tasks.get(0).run();
+    firstWait.get(1, TimeUnit.SECONDS);
+    secondWait.get(1, TimeUnit.SECONDS);
+    verify(symmetricCryptoCardTransactionManagerFactory).preInitTerminalSessionContext();
+  }
 }
@@ -155,6 +155,7 @@ static class CardSelectionResponseAdapter implements CardSelectionResponseApi {
 
     private String powerOnData = null;
     private ApduResponseApi selectApplicationResponse = null;
+    private CardResponseApi cardResponse = null;
 
     CardSelectionResponseAdapter(String powerOnData) {
       this.powerOnData = powerOnData;
@@ -164,6 +165,12 @@ static class CardSelectionResponseAdapter implements CardSelectionResponseApi {
       this.selectApplicationResponse = selectApplicationResponse;
     }
 
+    CardSelectionResponseAdapter(
+        ApduResponseApi selectApplicationResponse, CardResponseApi cardResponse) {
+      this.selectApplicationResponse = selectApplicationResponse;
+      this.cardResponse = cardResponse;
+    }
+
     @Override
     public String getPowerOnData() {
       return powerOnData;
@@ -181,7 +188,10 @@ public boolean hasMatched() {
 
     @Override
     public CardResponseApi getCardResponse() {
-      throw new UnsupportedOperationException("hasMatched");
+      if (cardResponse == null) {
+        throw new UnsupportedOperationException("getCardResponse");
+      }
+      return cardResponse;
     }
   }
 }
@@ -0,0 +1,198 @@
+/* **************************************************************************************
+ * Copyright (c) 2024 Calypso Networks Association https://calypsonet.org/
+ *
+ * See the NOTICE file(s) distributed with this work for additional information
+ * regarding copyright ownership.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License 2.0 which is available at http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ ************************************************************************************** */
+package org.eclipse.keyple.card.calypso;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import org.eclipse.keyple.core.util.HexUtil;
+import org.eclipse.keyple.core.util.json.JsonUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransactionAuditDataTest {
+
+  private static final byte[] REQ_1 = HexUtil.toByteArray("00B2014400");
+  private static final byte[] RESP_1 = HexUtil.toByteArray("11223344559000");
+  private static final byte[] REQ_2 = HexUtil.toByteArray("00B2024400");
+  private static final byte[] RESP_2 = HexUtil.toByteArray("66778899AA9000");
+  private static final byte[] REQ_3 = HexUtil.toByteArray("00B2034400");
+  private static final byte[] RESP_3 = HexUtil.toByteArray("6A83");
+
+  private TransactionAuditData transactionAuditData;
+
+  @Before
+  public void setUp() {
+    transactionAuditData = new TransactionAuditData();
+  }
+
+  private void addAllPairs() {
+    transactionAuditData.add(REQ_1);
+    transactionAuditData.add(RESP_1);
+    transactionAuditData.add(REQ_2);
+    transactionAuditData.add(RESP_2);
+    transactionAuditData.add(REQ_3);
+    transactionAuditData.add(RESP_3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void configure_whenMaxApduPairsIsNegative_shouldThrowIAE() {
+    transactionAuditData.configure(-1, 0, false);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void configure_whenByteArenaIsEnabledWithoutMaxBytes_shouldThrowIAE() {
+    transactionAuditData.configure(0, 0, true);
+  }
+
+  @Test
+  public void add_whenUnbounded_shouldKeepAllApdus() {
+    for (int i = 0; i < 100; i++) {
+      addAllPairs();
+    }
+    assertThat(transactionAuditData).hasSize(600);
+    assertThat(transactionAuditData.get(599)).isSameAs(RESP_3);
+  }
+
+  @Test
+  public void add_whenMaxApduPairsIsReached_shouldEvictTheOldestPairs() {
+    transactionAuditData.configure(2, 0, false);
+    addAllPairs();
+    assertThat(transactionAuditData).containsExactly(REQ_2, RESP_2, REQ_3, RESP_3);
+  }
+
+  @Test
+  public void add_whenMaxBytesIsReached_shouldEvictTheOldestPairs() {
+    transactionAuditData.configure(0, 20, false);
+    addAllPairs();
+    assertThat(transactionAuditData).containsExactly(REQ_2, RESP_2, REQ_3, RESP_3);
+  }
+
+  @Test
+  public void add_whenResponseOverflowsMaxBytesRightAfterItsRequest_shouldDropTheWholePair() {
+    transactionAuditData.configure(0, 10, false);
+    transactionAuditData.add(REQ_1);
+    assertThat(transactionAuditData.add(RESP_1)).isFalse();
+    assertThat(transactionAuditData).isEmpty();
+    transactionAuditData.add(REQ_3);
+    transactionAuditData.add(RESP_3);
+    assertThat(transactionAuditData).containsExactly(REQ_3, RESP_3);
+    transactionAuditData.addApduPair(REQ_1, RESP_1);
+    assertThat(transactionAuditData).isEmpty();
+    transactionAuditData.addApduPair(REQ_3, RESP_3);
+    assertThat(transactionAuditData).containsExactly(REQ_3, RESP_3);
+  }
+
+  @Test
+  public void addApduPair_whenCountIsOdd_shouldEvictTheIncompletePairAlone() {
+    transactionAuditData.configure(2, 0, false);
+    transactionAuditData.add(REQ_1);
+    transactionAuditData.addApduPair(REQ_2, RESP_2);
+    transactionAuditData.addApduPair(REQ_3, RESP_3);
+    assertThat(transactionAuditData).containsExactly(REQ_2, RESP_2, REQ_3, RESP_3);
+  }
+
+  @Test
+  public void addApduPair_whenCountIsOddAndByteArenaIsEnabled_shouldEvictCompletePairs() {
+    transactionAuditData.configure(0, 20, true);
+    transactionAuditData.addApduPair(REQ_1, RESP_1);
+    transactionAuditData.add(REQ_2);
+    transactionAuditData.addApduPair(REQ_3, RESP_3);
+    transactionAuditData.addApduPair(REQ_1, RESP_1);
+    assertThat(transactionAuditData).containsExactly(REQ_3, RESP_3, REQ_1, RESP_1);
+  }
+
+  @Test
+  public void configure_whenCountIsOdd_shouldKeepThePairBoundaries() {
+    transactionAuditData.add(REQ_1);
+    transactionAuditData.addApduPair(REQ_2, RESP_2);
+    transactionAuditData.addApduPair(REQ_3, RESP_3);
+    transactionAuditData.configure(2, 0, false);
+    assertThat(transactionAuditData).containsExactly(REQ_2, RESP_2, REQ_3, RESP_3);
+    transactionAuditData.configure(1, 0, false);
+    assertThat(transactionAuditData).containsExactly(REQ_3, RESP_3);
+  }
+
+  @Test
+  public void add_whenByteArenaIsEnabled_shouldReturnCopiesOfTheApdus() {
+    transactionAuditData.configure(0, 20, true);
+    addAllPairs();
+    assertThat(transactionAuditData).containsExactly(REQ_2, RESP_2, REQ_3, RESP_3);
+    assertThat(transactionAuditData.get(0)).isNotSameAs(REQ_2);
+  }
+
+  @Test
+  public void add_whenByteArenaWraps_shouldReturnTheApdusUnchanged() {
+    transactionAuditData.configure(0, 13, true);
+    for (int i = 0; i < 5; i++) {
+      addAllPairs();
+    }
+    assertThat(transactionAuditData).containsExactly(REQ_3, RESP_3);
+  }
+
+  @Test
+  public void add_whenApduIsLongerThanTheByteArena_shouldNotRecordIt() {
+    transactionAuditData.configure(0, 6, true);
+    transactionAuditData.add(REQ_1);
+    transactionAuditData.add(RESP_1);
+    assertThat(transactionAuditData).isEmpty();
+  }
+
+  @Test
+  public void configure_whenContentExists_shouldKeepTheMostRecentPairs() {
+    addAllPairs();
+    transactionAuditData.configure(1, 0, false);
+    assertThat(transactionAuditData).hasSize(2);
+    transactionAuditData.configure(1, 100, true);
+    assertThat(transactionAuditData).containsExactly(REQ_3, RESP_3);
+  }
+
+  @Test
+  public void clear_shouldEmptyTheList() {
+    transactionAuditData.configure(2, 100, true);
+    addAllPairs();
+    transactionAuditData.clear();
+    assertThat(transactionAuditData).isEmpty();
+    transactionAuditData.add(REQ_1);
+    assertThat(transactionAuditData).containsExactly(REQ_1);
+  }
+
+  @Test
+  public void sharedView_whenDeferredOperationIsInProgress_shouldRecordItsApdusAtTheEnd() {
+    TransactionAuditData.SharedView sharedView =
+        new TransactionAuditData.SharedView(transactionAuditData);
+    sharedView.beginDeferredOperation();
+    sharedView.add(REQ_1);
+    transactionAuditData.addApduPair(REQ_2, RESP_2);
+    sharedView.add(RESP_1);
+    assertThat(transactionAuditData).containsExactly(REQ_2, RESP_2);
+    sharedView.endDeferredOperation();
+    assertThat(sharedView).containsExactly(REQ_2, RESP_2, REQ_1, RESP_1);
+  }
+
+  @Test
+  public void sharedView_whenNoDeferredOperationIsInProgress_shouldRecordTheApdusDirectly() {
+    TransactionAuditData.SharedView sharedView =
+        new TransactionAuditData.SharedView(transactionAuditData);
+    sharedView.add(REQ_1);
+    sharedView.add(RESP_1);
+    assertThat(transactionAuditData).containsExactly(REQ_1, RESP_1);
+  }
+
+  @Test
+  public void toJson_shouldSerializeTheApdusAsAList() {
+    transactionAuditData.configure(1, 100, true);
+    addAllPairs();
+    assertThat(JsonUtil.toJson(transactionAuditData))
+        .isEqualTo(JsonUtil.toJson(Arrays.asList(REQ_3, RESP_3)));
+  }
+}